@@ -0,0 +1,112 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.benchmark;
+
+import org.lisapark.octopus.core.memory.DoubleMemory;
+import org.lisapark.octopus.core.memory.Memory;
+import org.lisapark.octopus.core.memory.aggregate.WindowAggregate;
+import org.lisapark.octopus.core.memory.heap.HeapMemoryProvider;
+import org.lisapark.octopus.core.memory.heap.HeapPrimitiveMemoryProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the circular buffer handed out by the {@link HeapMemoryProvider}, which is the memory behind the
+ * windowed processors like the Sma, compared with the primitive double buffer of the
+ * {@link HeapPrimitiveMemoryProvider} and the incremental {@link WindowAggregate}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class CircularBufferBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int bufferSize;
+
+    private Memory<Double> buffer;
+    private DoubleMemory doubleBuffer;
+    private WindowAggregate aggregate;
+    private double nextValue;
+
+    @Setup
+    public void setUp() {
+        buffer = new HeapMemoryProvider().createCircularBuffer(bufferSize);
+        doubleBuffer = new HeapPrimitiveMemoryProvider().createDoubleCircularBuffer(bufferSize);
+        aggregate = new WindowAggregate(new HeapPrimitiveMemoryProvider().createDoubleCircularBuffer(bufferSize));
+
+        // start with full buffers, that is the steady state of a running model
+        for (int i = 0; i < bufferSize; ++i) {
+            buffer.add((double) i);
+            doubleBuffer.add((double) i);
+            aggregate.add((double) i);
+        }
+    }
+
+    @Benchmark
+    public void add() {
+        buffer.add(nextValue++);
+    }
+
+    @Benchmark
+    public Collection<Double> values() {
+        return buffer.values();
+    }
+
+    /**
+     * This is what a windowed processor does for every event
+     */
+    @Benchmark
+    public double addAndAverage() {
+        buffer.add(nextValue++);
+
+        double total = 0;
+        Collection<Double> values = buffer.values();
+        for (Double value : values) {
+            total += value;
+        }
+
+        return total / values.size();
+    }
+
+    @Benchmark
+    public void addDouble() {
+        doubleBuffer.add(nextValue++);
+    }
+
+    @Benchmark
+    public double addDoubleAndAverage() {
+        doubleBuffer.add(nextValue++);
+
+        return doubleBuffer.mean();
+    }
+
+    @Benchmark
+    public double addToAggregateAndAverage() {
+        aggregate.add(nextValue++);
+
+        return aggregate.mean();
+    }
+}
@@ -0,0 +1,111 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.benchmark;
+
+import com.google.common.collect.Maps;
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.event.EventSchema;
+import org.lisapark.octopus.core.event.IndexedEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for creating {@link Event}s and reading their attributes, which happens for every event at every node.
+ * The same operations are measured for the {@link IndexedEvent}, with the slot of the attribute resolved up front.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class EventBenchmark {
+
+    private Map<String, Object> data;
+    private Event event;
+    private Event otherEvent;
+
+    private EventSchema schema;
+    private IndexedEvent indexedEvent;
+    private int priceIndex;
+
+    @Setup
+    public void setUp() {
+        data = Maps.newHashMap();
+        data.put("price", 101.25);
+        data.put("volume", 2500);
+        data.put("symbol", "LSP");
+        data.put("timestamp", 1357000000000L);
+
+        event = new Event(data);
+        otherEvent = new Event("sma", 100.75);
+
+        schema = EventSchema.withAttributeNames(data.keySet());
+        indexedEvent = IndexedEvent.fromMap(schema, data);
+        priceIndex = schema.indexOf("price");
+    }
+
+    @Benchmark
+    public Event newEvent() {
+        return new Event(data);
+    }
+
+    @Benchmark
+    public Double getAttributeAsDouble() {
+        return event.getAttributeAsDouble("price");
+    }
+
+    @Benchmark
+    public Integer getAttributeAsInteger() {
+        return event.getAttributeAsInteger("volume");
+    }
+
+    @Benchmark
+    public Long getAttributeAsLong() {
+        return event.getAttributeAsLong("timestamp");
+    }
+
+    @Benchmark
+    public String getAttributeAsString() {
+        return event.getAttributeAsString("symbol");
+    }
+
+    @Benchmark
+    public Event unionWith() {
+        return event.unionWith(otherEvent);
+    }
+
+    @Benchmark
+    public IndexedEvent newIndexedEvent() {
+        return IndexedEvent.fromMap(schema, data);
+    }
+
+    @Benchmark
+    public double getIndexedDouble() {
+        return indexedEvent.getDouble(priceIndex, 0);
+    }
+
+    @Benchmark
+    public Double getIndexedAttributeAsDouble() {
+        return indexedEvent.getAttributeAsDouble("price");
+    }
+}
@@ -0,0 +1,26 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.benchmark;
+
+import org.lisapark.octopus.core.processor.CrossAbove;
+
+/**
+ * {@link CrossAbove} with a join between its two inputs, which the processor does not declare itself. Without a join
+ * Esper produces the cartesian product of the two input windows, so the cost of each event keeps growing for as long
+ * as the benchmark runs. The attributes of the join are set through {@link #getJoins()}.
+ */
+class JoinedCrossAbove extends CrossAbove {
+
+    JoinedCrossAbove() {
+        super(CrossAbove.newTemplate());
+        addJoin(getFirstInput(), getSecondInput());
+    }
+}
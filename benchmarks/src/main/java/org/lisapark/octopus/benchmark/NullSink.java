@@ -0,0 +1,120 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.benchmark;
+
+import com.google.common.collect.ImmutableList;
+import org.lisapark.octopus.core.AbstractNode;
+import org.lisapark.octopus.core.Input;
+import org.lisapark.octopus.core.ValidationException;
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.runtime.SinkContext;
+import org.lisapark.octopus.core.sink.external.CompiledExternalSink;
+import org.lisapark.octopus.core.sink.external.ExternalSink;
+import org.lisapark.octopus.core.source.Source;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An {@link ExternalSink} that does nothing but count the events it receives, so a benchmark measures the engine and
+ * not the cost of writing the output somewhere.
+ */
+public class NullSink extends AbstractNode implements ExternalSink {
+
+    private static final String DEFAULT_NAME = "Null sink";
+    private static final String DEFAULT_DESCRIPTION = "Sink that discards all events";
+    private static final String DEFAULT_INPUT = "Input";
+
+    private final AtomicLong eventCount = new AtomicLong();
+    private Input<Event> input;
+
+    private NullSink(UUID id, String name, String description) {
+        super(id, name, description);
+        input = Input.eventInputWithId(1);
+        input.setName(DEFAULT_INPUT);
+        input.setDescription(DEFAULT_INPUT);
+    }
+
+    private NullSink(UUID id, NullSink copyFromSink) {
+        super(id, copyFromSink);
+        this.input = copyFromSink.input.copyOf();
+    }
+
+    private NullSink(NullSink copyFromSink) {
+        super(copyFromSink);
+        this.input = copyFromSink.input.copyOf();
+    }
+
+    public Input<Event> getInput() {
+        return input;
+    }
+
+    @Override
+    public List<Input<Event>> getInputs() {
+        return ImmutableList.of(input);
+    }
+
+    @Override
+    public boolean isConnectedTo(Source source) {
+        return input.isConnectedTo(source);
+    }
+
+    @Override
+    public void disconnect(Source source) {
+        if (input.isConnectedTo(source)) {
+            input.clearSource();
+        }
+    }
+
+    /**
+     * Returns the number of events this sink received across all of its compiled instances.
+     *
+     * @return event count
+     */
+    public long getEventCount() {
+        return eventCount.get();
+    }
+
+    @Override
+    public NullSink newInstance() {
+        return new NullSink(UUID.randomUUID(), this);
+    }
+
+    @Override
+    public NullSink copyOf() {
+        return new NullSink(this);
+    }
+
+    public static NullSink newTemplate() {
+        return new NullSink(UUID.randomUUID(), DEFAULT_NAME, DEFAULT_DESCRIPTION);
+    }
+
+    @Override
+    public CompiledExternalSink compile() throws ValidationException {
+        return new CompiledNullSink(this);
+    }
+
+    static class CompiledNullSink extends CompiledExternalSink {
+        private final AtomicLong eventCount;
+
+        CompiledNullSink(NullSink nullSink) {
+            super(nullSink);
+            this.eventCount = nullSink.eventCount;
+        }
+
+        @Override
+        public void processEvent(SinkContext ctx, Map<Integer, Event> eventsByInputId) {
+            eventCount.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.benchmark;
+
+import com.google.common.collect.Maps;
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.ValidationException;
+import org.lisapark.octopus.core.event.Attribute;
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.processor.Addition;
+import org.lisapark.octopus.core.processor.CrossAbove;
+import org.lisapark.octopus.core.processor.Processor;
+import org.lisapark.octopus.core.processor.ProcessorJoin;
+import org.lisapark.octopus.core.processor.Sma;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the path of an event through a single processor: Esper matches the event against the processor's
+ * statement, the processor adaptor turns it into an {@link Event}, the processor processes it and the result is
+ * routed on to a {@link NullSink}.
+ * <p/>
+ * Processors with two inputs are fed by two {@link PushSource}s, in that case one operation sends an event to each
+ * source. The two inputs are joined on a tick attribute that is unique per operation, so every event on the second
+ * input matches exactly one event on the first. Because of the unique tick these events are created in the benchmark
+ * method, the cost of that is measured by the {@link EventBenchmark}.
+ * <p/>
+ * Every processor is measured with each of the compilers of the {@link RunningModel}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ProcessorBenchmark {
+
+    /**
+     * Seed for the generated prices so every run sees the same events
+     */
+    private static final long SEED = 42;
+    private static final int NUMBER_OF_EVENTS = 1024;
+    private static final String ATTRIBUTE_NAME = "price";
+    private static final String JOIN_ATTRIBUTE_NAME = "tick";
+
+    @Param({"sma", "addition", "crossAbove"})
+    public String processorName;
+
+    @Param({RunningModel.ESPER_COMPILER, RunningModel.INCREMENTAL_COMPILER})
+    public String compilerName;
+
+    private RunningModel runningModel;
+    private PushSource firstSource;
+    private PushSource secondSource;
+
+    private double[] firstPrices;
+    private double[] secondPrices;
+    private long tick;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        firstSource = PushSource.newTemplate(ATTRIBUTE_NAME);
+        firstSource.getOutput().addAttribute(Attribute.longAttribute(JOIN_ATTRIBUTE_NAME));
+        secondSource = PushSource.newTemplate(ATTRIBUTE_NAME);
+        secondSource.getOutput().addAttribute(Attribute.longAttribute(JOIN_ATTRIBUTE_NAME));
+
+        ProcessingModel model = new ProcessingModel("processor-benchmark-" + processorName);
+        model.addExternalEventSource(firstSource);
+
+        Processor<?> processor;
+        if ("sma".equals(processorName)) {
+            Sma sma = Sma.newTemplate();
+            sma.getInput().connectSource(firstSource);
+            sma.getInput().setSourceAttribute(ATTRIBUTE_NAME);
+            processor = sma;
+            secondSource = null;
+
+        } else if ("addition".equals(processorName)) {
+            Addition addition = Addition.newTemplate();
+            addition.getFirstInput().connectSource(firstSource);
+            addition.getFirstInput().setSourceAttribute(ATTRIBUTE_NAME);
+            addition.getSecondInput().connectSource(secondSource);
+            addition.getSecondInput().setSourceAttribute(ATTRIBUTE_NAME);
+            joinOnTick(addition);
+            processor = addition;
+
+        } else if ("crossAbove".equals(processorName)) {
+            CrossAbove crossAbove = new JoinedCrossAbove();
+            crossAbove.getFirstInput().connectSource(firstSource);
+            crossAbove.getFirstInput().setSourceAttribute(ATTRIBUTE_NAME);
+            crossAbove.getSecondInput().connectSource(secondSource);
+            crossAbove.getSecondInput().setSourceAttribute(ATTRIBUTE_NAME);
+            joinOnTick(crossAbove);
+            processor = crossAbove;
+
+        } else {
+            throw new IllegalArgumentException("Unknown processor " + processorName);
+        }
+
+        if (secondSource != null) {
+            model.addExternalEventSource(secondSource);
+        }
+        model.addProcessor(processor);
+
+        NullSink sink = NullSink.newTemplate();
+        sink.getInput().connectSource(processor);
+        model.addExternalSink(sink);
+
+        Random random = new Random(SEED);
+        firstPrices = newPrices(random);
+        secondPrices = newPrices(random);
+
+        runningModel = new RunningModel(model, compilerName);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        runningModel.close();
+    }
+
+    @Benchmark
+    public void processEvent() {
+        int index = (int) (tick & (NUMBER_OF_EVENTS - 1));
+
+        runningModel.send(newEvent(firstPrices[index], tick), firstSource);
+        if (secondSource != null) {
+            runningModel.send(newEvent(secondPrices[index], tick), secondSource);
+        }
+        tick++;
+    }
+
+    private static Event newEvent(double price, long tick) {
+        Map<String, Object> data = Maps.newHashMap();
+        data.put(ATTRIBUTE_NAME, price);
+        data.put(JOIN_ATTRIBUTE_NAME, tick);
+
+        return new Event(data);
+    }
+
+    private void joinOnTick(Processor<?> processor) throws ValidationException {
+        ProcessorJoin join = processor.getJoins().get(0);
+        Attribute firstTick = firstSource.getOutput().getAttributeByName(JOIN_ATTRIBUTE_NAME);
+        Attribute secondTick = secondSource.getOutput().getAttributeByName(JOIN_ATTRIBUTE_NAME);
+
+        join.setJoinAttributeForInput(join.getFirstInput(), firstTick);
+        join.setJoinAttributeForInput(join.getSecondInput(), secondTick);
+    }
+
+    /**
+     * Creates a random walk of prices, so the crossing processors actually see some crossings
+     */
+    private static double[] newPrices(Random random) {
+        double[] prices = new double[NUMBER_OF_EVENTS];
+
+        double price = 100;
+        for (int i = 0; i < prices.length; ++i) {
+            price += random.nextGaussian();
+            prices[i] = price;
+        }
+
+        return prices;
+    }
+}
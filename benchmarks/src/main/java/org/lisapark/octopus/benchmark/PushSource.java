@@ -0,0 +1,101 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.benchmark;
+
+import org.lisapark.octopus.core.Output;
+import org.lisapark.octopus.core.ValidationException;
+import org.lisapark.octopus.core.event.Attribute;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.source.external.CompiledExternalSource;
+import org.lisapark.octopus.core.source.external.ExternalSource;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * An {@link ExternalSource} that never produces events by itself. Its compiled form just keeps the runtime running
+ * until it is stopped, so a benchmark can push events into the runtime with
+ * {@link ProcessingRuntime#sendEventFromSource(org.lisapark.octopus.core.event.Event, org.lisapark.octopus.core.source.Source)}
+ * and measure nothing but the engine.
+ */
+public class PushSource extends ExternalSource {
+
+    private static final String DEFAULT_NAME = "Push source";
+    private static final String DEFAULT_DESCRIPTION = "Source whose events are pushed in by a benchmark";
+
+    private PushSource(UUID id, String name, String description) {
+        super(id, name, description);
+    }
+
+    private PushSource(UUID id, PushSource copyFromSource) {
+        super(id, copyFromSource);
+    }
+
+    private PushSource(PushSource copyFromSource) {
+        super(copyFromSource);
+    }
+
+    @Override
+    public PushSource newInstance() {
+        return new PushSource(UUID.randomUUID(), this);
+    }
+
+    @Override
+    public PushSource copyOf() {
+        return new PushSource(this);
+    }
+
+    /**
+     * Creates a new source whose events have a double attribute for each of the specified names.
+     *
+     * @param attributeNames of the double attributes
+     * @return new source
+     * @throws ValidationException if one of the names is not a valid attribute name
+     */
+    public static PushSource newTemplate(String... attributeNames) throws ValidationException {
+        PushSource source = new PushSource(UUID.randomUUID(), DEFAULT_NAME, DEFAULT_DESCRIPTION);
+        source.setOutput(Output.outputWithId(1).setName("Output"));
+
+        for (String attributeName : attributeNames) {
+            source.getOutput().addAttribute(Attribute.doubleAttribute(attributeName));
+        }
+
+        return source;
+    }
+
+    @Override
+    public CompiledExternalSource compile() throws ValidationException {
+        return new CompiledPushSource();
+    }
+
+    static class CompiledPushSource implements CompiledExternalSource {
+        private final CountDownLatch stopped = new CountDownLatch(1);
+
+        @Override
+        public void startProcessingEvents(ProcessingRuntime runtime) {
+            // the events are pushed in from the outside, all we do is keep the runtime from draining
+            boolean done = false;
+            while (!done) {
+                try {
+                    stopped.await();
+                    done = true;
+                } catch (InterruptedException e) {
+                    // keep waiting until we are stopped
+                }
+            }
+        }
+
+        @Override
+        public void stopProcessingEvents() {
+            stopped.countDown();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.benchmark;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.ValidationException;
+import org.lisapark.octopus.core.compiler.Compiler;
+import org.lisapark.octopus.core.compiler.esper.EsperCompiler;
+import org.lisapark.octopus.core.compiler.incremental.IncrementalEsperCompiler;
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.runtime.ProcessingRuntimes;
+import org.lisapark.octopus.core.runtime.control.RunControl;
+import org.lisapark.octopus.core.source.Source;
+
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * A compiled and started {@link ProcessingModel} whose {@link PushSource}s are driven by a benchmark. The runtime
+ * keeps running until {@link #close()} is called.
+ * <p/>
+ * By default the model is compiled with the {@link EsperCompiler}, so the results stay comparable with those of
+ * earlier versions. The {@link #INCREMENTAL_COMPILER} measures the {@link IncrementalEsperCompiler} instead, with its
+ * indexed adaptors, fused processors and batch runtime.
+ */
+public class RunningModel {
+
+    public static final String ESPER_COMPILER = "esper";
+    public static final String INCREMENTAL_COMPILER = "incremental";
+
+    private final RunControl control = new RunControl();
+    private final ProcessingRuntime runtime;
+
+    public RunningModel(ProcessingModel model) throws ValidationException {
+        this(model, ESPER_COMPILER);
+    }
+
+    public RunningModel(ProcessingModel model, String compilerName) throws ValidationException {
+        PrintStream nullStream = new PrintStream(new NullOutputStream());
+
+        Compiler compiler = newCompiler(compilerName);
+        compiler.setStandardOut(nullStream);
+        compiler.setStandardError(nullStream);
+
+        runtime = compiler.compile(control.controlledCopyOf(model));
+        runtime.start();
+    }
+
+    private static Compiler newCompiler(String compilerName) {
+        if (ESPER_COMPILER.equals(compilerName)) {
+            return new EsperCompiler();
+        } else if (INCREMENTAL_COMPILER.equals(compilerName)) {
+            return new IncrementalEsperCompiler();
+        } else {
+            throw new IllegalArgumentException("Unknown compiler " + compilerName);
+        }
+    }
+
+    public void send(Event event, Source source) {
+        runtime.sendEventFromSource(event, source);
+    }
+
+    public void sendAll(List<Event> events, Source source) {
+        ProcessingRuntimes.sendEventsFromSource(runtime, events, source);
+    }
+
+    public ProcessingRuntime getRuntime() {
+        return runtime;
+    }
+
+    /**
+     * Stops the push sources and waits for the runtime to shutdown.
+     */
+    public void close() {
+        control.stop();
+        runtime.shutdown();
+    }
+}
@@ -0,0 +1,89 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.benchmark;
+
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.event.Event;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link org.lisapark.octopus.core.runtime.ProcessingRuntime#sendEventFromSource} with a source connected
+ * straight to a {@link NullSink}, which is the fixed cost every event pays before any processor sees it, and compares
+ * it with sending the same events in batches. The esper runtime sends the events of a batch one at a time, the batch
+ * runtime of the incremental compiler sends them in one call.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class RuntimeBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({RunningModel.ESPER_COMPILER, RunningModel.INCREMENTAL_COMPILER})
+    public String compilerName;
+
+    private RunningModel runningModel;
+    private PushSource source;
+    private Event event;
+    private List<Event> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        source = PushSource.newTemplate("price");
+
+        NullSink sink = NullSink.newTemplate();
+        sink.getInput().connectSource(source);
+
+        ProcessingModel model = new ProcessingModel("runtime-benchmark");
+        model.addExternalEventSource(source);
+        model.addExternalSink(sink);
+
+        event = new Event("price", 100.0);
+        batch = Collections.nCopies(BATCH_SIZE, event);
+        runningModel = new RunningModel(model, compilerName);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        runningModel.close();
+    }
+
+    @Benchmark
+    public void sendEventFromSource() {
+        runningModel.send(event, source);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void sendEventsFromSource() {
+        runningModel.sendAll(batch, source);
+    }
+}
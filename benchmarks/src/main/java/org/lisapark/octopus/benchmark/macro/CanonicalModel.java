@@ -0,0 +1,65 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.benchmark.macro;
+
+import com.google.common.collect.ImmutableList;
+import org.lisapark.octopus.benchmark.NullSink;
+import org.lisapark.octopus.benchmark.PushSource;
+import org.lisapark.octopus.core.ProcessingModel;
+
+import java.util.List;
+
+/**
+ * A {@link ProcessingModel} built by {@link CanonicalModels} together with the {@link PushSource} that drives it and
+ * the {@link NullSink}s at the end of it.
+ */
+public class CanonicalModel {
+
+    private final ProcessingModel model;
+    private final PushSource source;
+    private final List<NullSink> sinks;
+
+    CanonicalModel(ProcessingModel model, PushSource source, List<NullSink> sinks) {
+        this.model = model;
+        this.source = source;
+        this.sinks = ImmutableList.copyOf(sinks);
+    }
+
+    public String getName() {
+        return model.getModelName();
+    }
+
+    public ProcessingModel getModel() {
+        return model;
+    }
+
+    public PushSource getSource() {
+        return source;
+    }
+
+    public List<NullSink> getSinks() {
+        return sinks;
+    }
+
+    /**
+     * Returns the number of events that have reached all of the sinks.
+     *
+     * @return sink event count
+     */
+    public long getSinkEventCount() {
+        long count = 0;
+        for (NullSink sink : sinks) {
+            count += sink.getEventCount();
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,116 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.benchmark.macro;
+
+import com.google.common.collect.Lists;
+import org.lisapark.octopus.benchmark.NullSink;
+import org.lisapark.octopus.benchmark.PushSource;
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.ValidationException;
+import org.lisapark.octopus.core.processor.CrossAbove;
+import org.lisapark.octopus.core.processor.Sma;
+import org.lisapark.octopus.core.source.Source;
+
+import java.util.List;
+
+/**
+ * Factory for the models used by the {@link MacroBenchmark}. Every model is fed by a single {@link PushSource} whose
+ * events have the same <code>value</code> attribute as the designer's test source, and ends in {@link NullSink}s
+ * instead of console sinks so that formatting output is not part of the measurement.
+ */
+public abstract class CanonicalModels {
+
+    public static final String ATTRIBUTE_NAME = "value";
+
+    private static final int SHORT_WINDOW_LENGTH = 5;
+    private static final int LONG_WINDOW_LENGTH = 20;
+
+    /**
+     * Source -> Sma -> sink
+     */
+    public static CanonicalModel smaChain() throws ValidationException {
+        PushSource source = PushSource.newTemplate(ATTRIBUTE_NAME);
+        ProcessingModel model = new ProcessingModel("sma-chain");
+        model.addExternalEventSource(source);
+
+        Sma sma = newSma(source, SHORT_WINDOW_LENGTH);
+        model.addProcessor(sma);
+
+        NullSink sink = newSink(sma);
+        model.addExternalSink(sink);
+
+        return new CanonicalModel(model, source, Lists.newArrayList(sink));
+    }
+
+    /**
+     * A short and a long Sma over the same source, both feeding a CrossAbove -> sink. The CrossAbove does not
+     * declare a join, so this model also measures how the unjoined windows of a two input processor behave.
+     */
+    public static CanonicalModel crossAboveOfSmas() throws ValidationException {
+        PushSource source = PushSource.newTemplate(ATTRIBUTE_NAME);
+        ProcessingModel model = new ProcessingModel("cross-above-of-smas");
+        model.addExternalEventSource(source);
+
+        Sma shortSma = newSma(source, SHORT_WINDOW_LENGTH);
+        Sma longSma = newSma(source, LONG_WINDOW_LENGTH);
+        model.addProcessor(shortSma);
+        model.addProcessor(longSma);
+
+        CrossAbove crossAbove = CrossAbove.newTemplate();
+        crossAbove.getFirstInput().connectSource(shortSma);
+        crossAbove.getFirstInput().setSourceAttribute(shortSma.getOutput().getAttributes().get(0));
+        crossAbove.getSecondInput().connectSource(longSma);
+        crossAbove.getSecondInput().setSourceAttribute(longSma.getOutput().getAttributes().get(0));
+        model.addProcessor(crossAbove);
+
+        NullSink sink = newSink(crossAbove);
+        model.addExternalSink(sink);
+
+        return new CanonicalModel(model, source, Lists.newArrayList(sink));
+    }
+
+    /**
+     * A single source feeding the specified number of Smas with increasing window lengths, each with its own sink.
+     */
+    public static CanonicalModel fanOut(int numberOfProcessors) throws ValidationException {
+        PushSource source = PushSource.newTemplate(ATTRIBUTE_NAME);
+        ProcessingModel model = new ProcessingModel("fan-out-" + numberOfProcessors);
+        model.addExternalEventSource(source);
+
+        List<NullSink> sinks = Lists.newArrayList();
+        for (int i = 0; i < numberOfProcessors; ++i) {
+            Sma sma = newSma(source, i + 1);
+            model.addProcessor(sma);
+
+            NullSink sink = newSink(sma);
+            model.addExternalSink(sink);
+            sinks.add(sink);
+        }
+
+        return new CanonicalModel(model, source, sinks);
+    }
+
+    private static Sma newSma(Source source, int windowLength) throws ValidationException {
+        Sma sma = Sma.newTemplate();
+        sma.setWindowLength(windowLength);
+        sma.getInput().connectSource(source);
+        sma.getInput().setSourceAttribute(ATTRIBUTE_NAME);
+
+        return sma;
+    }
+
+    private static NullSink newSink(Source source) {
+        NullSink sink = NullSink.newTemplate();
+        sink.getInput().connectSource(source);
+
+        return sink;
+    }
+}
@@ -0,0 +1,65 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.benchmark.macro;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Records the latency of every event of a run into an array that is allocated up front, so recording does not add
+ * to the heap churn that is being measured.
+ */
+class LatencyRecorder {
+
+    private final long[] latencies;
+    private int count;
+    private boolean sorted;
+
+    LatencyRecorder(int capacity) {
+        checkArgument(capacity > 0, "capacity has to be greater than zero");
+        this.latencies = new long[capacity];
+    }
+
+    void record(long latencyNanos) {
+        latencies[count++] = latencyNanos;
+        sorted = false;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the latency at the specified percentile using the nearest rank method.
+     *
+     * @param percentile between 0 and 100
+     * @return latency in nanoseconds
+     */
+    long getPercentile(double percentile) {
+        checkArgument(percentile >= 0 && percentile <= 100, "percentile has to be between 0 and 100");
+        checkState(count > 0, "no latencies have been recorded");
+
+        if (!sorted) {
+            Arrays.sort(latencies, 0, count);
+            sorted = true;
+        }
+
+        int rank = (int) Math.ceil(percentile / 100 * count);
+
+        return latencies[Math.max(rank, 1) - 1];
+    }
+
+    long getMax() {
+        return getPercentile(100);
+    }
+}
@@ -0,0 +1,286 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.benchmark.macro;
+
+import com.google.common.collect.Lists;
+import org.lisapark.octopus.benchmark.RunningModel;
+import org.lisapark.octopus.core.ValidationException;
+import org.lisapark.octopus.core.event.Event;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * End to end benchmark that compiles a set of {@link CanonicalModels} with the esper compiler and pushes events
+ * through them, measuring the sustained throughput, the latency of each event and the heap churn of the run. Every
+ * scenario is then run again with the incremental compiler, its results are named after the scenario with an
+ * <code>-incremental</code> suffix, so the results of the esper compiler keep the names of earlier versions.
+ * <p/>
+ * Events are dispatched synchronously, so by the time <code>sendEventFromSource</code> returns the event has passed
+ * through every processor and reached the sinks. The latency of an event is therefore the time spent in that call,
+ * and the allocations of the run are the allocations made by the sending thread.
+ * <p/>
+ * The results are printed as a table and written to a json file so runs of different versions can be compared.
+ * <p/>
+ * Usage: <code>MacroBenchmark [-events count] [-warmup count] [-label text] [-out file]</code>
+ */
+public class MacroBenchmark {
+
+    private static final long SEED = 42;
+    private static final int FAN_OUT_PROCESSORS = 50;
+
+    private static final int DEFAULT_EVENT_COUNT = 200000;
+    private static final int DEFAULT_WARMUP_COUNT = 50000;
+    private static final String DEFAULT_OUTPUT_FILE = "macro-benchmark.json";
+
+    private static final String[] COMPILER_NAMES = {RunningModel.ESPER_COMPILER, RunningModel.INCREMENTAL_COMPILER};
+
+    private final int eventCount;
+    private final int warmupCount;
+
+    public MacroBenchmark(int eventCount, int warmupCount) {
+        this.eventCount = eventCount;
+        this.warmupCount = warmupCount;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int eventCount = DEFAULT_EVENT_COUNT;
+        int warmupCount = DEFAULT_WARMUP_COUNT;
+        String label = "";
+        String outputFile = DEFAULT_OUTPUT_FILE;
+
+        for (int i = 0; i < args.length; ++i) {
+            String arg = args[i];
+            if (i + 1 == args.length) {
+                usage();
+            }
+
+            String value = args[++i];
+            if ("-events".equals(arg)) {
+                eventCount = Integer.parseInt(value);
+            } else if ("-warmup".equals(arg)) {
+                warmupCount = Integer.parseInt(value);
+            } else if ("-label".equals(arg)) {
+                label = value;
+            } else if ("-out".equals(arg)) {
+                outputFile = value;
+            } else {
+                usage();
+            }
+        }
+
+        MacroBenchmark benchmark = new MacroBenchmark(eventCount, warmupCount);
+        List<ScenarioResult> results = benchmark.runAllScenarios();
+
+        System.out.println(ScenarioResult.getSummaryHeader());
+        for (ScenarioResult result : results) {
+            System.out.println(result.toSummaryLine());
+        }
+
+        writeJson(new File(outputFile), label, eventCount, results);
+        System.out.printf("Results written to %s\n", outputFile);
+
+        // the esper engines have timer threads that would keep the vm alive
+        System.exit(0);
+    }
+
+    private static void usage() {
+        System.err.printf("Usage: MacroBenchmark [-events count] [-warmup count] [-label text] [-out file]\n");
+        System.exit(-1);
+    }
+
+    public List<ScenarioResult> runAllScenarios() throws ValidationException {
+        List<ScenarioResult> results = Lists.newArrayList();
+
+        for (Scenario scenario : Scenario.values()) {
+            for (String compilerName : COMPILER_NAMES) {
+                System.out.printf("Running %s...\n", getResultName(scenario, compilerName));
+                results.add(runScenario(scenario, compilerName));
+            }
+        }
+
+        return results;
+    }
+
+    private static String getResultName(Scenario scenario, String compilerName) {
+        return RunningModel.ESPER_COMPILER.equals(compilerName) ? scenario.name : scenario.name + "-" + compilerName;
+    }
+
+    ScenarioResult runScenario(Scenario scenario, String compilerName) throws ValidationException {
+        int scenarioEventCount = Math.max(eventCount / scenario.eventCountDivisor, 1);
+        int scenarioWarmupCount = warmupCount / scenario.eventCountDivisor;
+
+        // events are created up front so creating them is not part of the measurement
+        Event[] events = newEvents(Math.max(scenarioEventCount, scenarioWarmupCount));
+
+        if (scenarioWarmupCount > 0) {
+            CanonicalModel warmupModel = scenario.newModel();
+            RunningModel warmupRun = new RunningModel(warmupModel.getModel(), compilerName);
+            try {
+                for (int i = 0; i < scenarioWarmupCount; ++i) {
+                    warmupRun.send(events[i], warmupModel.getSource());
+                }
+            } finally {
+                warmupRun.close();
+            }
+        }
+
+        CanonicalModel model = scenario.newModel();
+        RunningModel run = new RunningModel(model.getModel(), compilerName);
+        LatencyRecorder latencies = new LatencyRecorder(scenarioEventCount);
+
+        System.gc();
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = getAllocatedBytes(threadBean, threadId);
+        long gcCountBefore = getGcCount();
+        long gcMillisBefore = getGcMillis();
+
+        long elapsedNanos;
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < scenarioEventCount; ++i) {
+                long eventStart = System.nanoTime();
+                run.send(events[i], model.getSource());
+                latencies.record(System.nanoTime() - eventStart);
+            }
+            elapsedNanos = System.nanoTime() - start;
+
+        } finally {
+            run.close();
+        }
+
+        long allocatedAfter = getAllocatedBytes(threadBean, threadId);
+        long allocatedBytes = allocatedBefore >= 0 && allocatedAfter >= 0 ? allocatedAfter - allocatedBefore : -1;
+
+        return new ScenarioResult(getResultName(scenario, compilerName), model.getModel().getProcessors().size(), scenarioEventCount,
+                model.getSinkEventCount(), elapsedNanos, latencies, allocatedBytes,
+                getGcCount() - gcCountBefore, getGcMillis() - gcMillisBefore);
+    }
+
+    /**
+     * Creates events with a random walk of values, so the crossing processors actually see some crossings
+     */
+    static Event[] newEvents(int count) {
+        Random random = new Random(SEED);
+        Event[] events = new Event[count];
+
+        double value = 100;
+        for (int i = 0; i < count; ++i) {
+            value += random.nextGaussian();
+            events[i] = new Event(CanonicalModels.ATTRIBUTE_NAME, value);
+        }
+
+        return events;
+    }
+
+    /**
+     * Returns the number of bytes allocated by the thread, or -1 if the jvm does not support measuring it
+     */
+    private static long getAllocatedBytes(ThreadMXBean threadBean, long threadId) {
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+            if (sunThreadBean.isThreadAllocatedMemorySupported() && sunThreadBean.isThreadAllocatedMemoryEnabled()) {
+                return sunThreadBean.getThreadAllocatedBytes(threadId);
+            }
+        }
+
+        return -1;
+    }
+
+    private static long getGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(gcBean.getCollectionCount(), 0);
+        }
+
+        return count;
+    }
+
+    private static long getGcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(gcBean.getCollectionTime(), 0);
+        }
+
+        return millis;
+    }
+
+    private static void writeJson(File file, String label, int eventCount, List<ScenarioResult> results)
+            throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write("{\n");
+            writer.write(String.format("  \"label\": \"%s\",\n", escape(label)));
+            writer.write(String.format("  \"timestamp\": %d,\n", System.currentTimeMillis()));
+            writer.write(String.format("  \"javaVersion\": \"%s\",\n", escape(System.getProperty("java.version"))));
+            writer.write(String.format("  \"availableProcessors\": %d,\n", Runtime.getRuntime().availableProcessors()));
+            writer.write(String.format("  \"eventCount\": %d,\n", eventCount));
+            writer.write("  \"scenarios\": [\n");
+            for (int i = 0; i < results.size(); ++i) {
+                writer.write("    " + results.get(i).toJson() + (i + 1 < results.size() ? ",\n" : "\n"));
+            }
+            writer.write("  ]\n");
+            writer.write("}\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /**
+     * The models that are benchmarked. The event count divisor scales down the number of events for scenarios that
+     * are much more expensive per event, so every scenario takes about the same time. The cross above scenario is
+     * quadratic in the number of events, since esper joins every event against the whole time window of the other
+     * branch.
+     */
+    static enum Scenario {
+        SMA_CHAIN("sma-chain", 1) {
+            @Override
+            CanonicalModel newModel() throws ValidationException {
+                return CanonicalModels.smaChain();
+            }
+        },
+        CROSS_ABOVE_OF_SMAS("cross-above-of-smas", 20) {
+            @Override
+            CanonicalModel newModel() throws ValidationException {
+                return CanonicalModels.crossAboveOfSmas();
+            }
+        },
+        FAN_OUT("fan-out-" + FAN_OUT_PROCESSORS, 1) {
+            @Override
+            CanonicalModel newModel() throws ValidationException {
+                return CanonicalModels.fanOut(FAN_OUT_PROCESSORS);
+            }
+        };
+
+        private final String name;
+        private final int eventCountDivisor;
+
+        private Scenario(String name, int eventCountDivisor) {
+            this.name = name;
+            this.eventCountDivisor = eventCountDivisor;
+        }
+
+        abstract CanonicalModel newModel() throws ValidationException;
+    }
+}
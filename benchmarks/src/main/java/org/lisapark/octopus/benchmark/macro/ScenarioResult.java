@@ -0,0 +1,81 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.benchmark.macro;
+
+import java.util.Locale;
+
+/**
+ * The measurements of a single scenario of a {@link MacroBenchmark} run.
+ */
+class ScenarioResult {
+
+    private final String name;
+    private final int processorCount;
+    private final long eventCount;
+    private final long sinkEventCount;
+    private final long elapsedNanos;
+    private final long p50Nanos;
+    private final long p99Nanos;
+    private final long maxNanos;
+    private final long allocatedBytes;
+    private final long gcCount;
+    private final long gcMillis;
+
+    ScenarioResult(String name, int processorCount, long eventCount, long sinkEventCount, long elapsedNanos,
+                   LatencyRecorder latencies, long allocatedBytes, long gcCount, long gcMillis) {
+        this.name = name;
+        this.processorCount = processorCount;
+        this.eventCount = eventCount;
+        this.sinkEventCount = sinkEventCount;
+        this.elapsedNanos = elapsedNanos;
+        this.p50Nanos = latencies.getPercentile(50);
+        this.p99Nanos = latencies.getPercentile(99);
+        this.maxNanos = latencies.getMax();
+        this.allocatedBytes = allocatedBytes;
+        this.gcCount = gcCount;
+        this.gcMillis = gcMillis;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    double getEventsPerSecond() {
+        return elapsedNanos > 0 ? eventCount * 1000000000.0 / elapsedNanos : 0;
+    }
+
+    /**
+     * Returns the number of bytes allocated per source event, or -1 if the jvm cannot measure allocation.
+     */
+    long getAllocatedBytesPerEvent() {
+        return allocatedBytes >= 0 && eventCount > 0 ? allocatedBytes / eventCount : -1;
+    }
+
+    String toSummaryLine() {
+        return String.format(Locale.US, "%-32s %,14.1f %,10.1f %,10.1f %,12d %,6d %,8d",
+                name, getEventsPerSecond(), p50Nanos / 1000.0, p99Nanos / 1000.0, getAllocatedBytesPerEvent(),
+                gcCount, gcMillis);
+    }
+
+    static String getSummaryHeader() {
+        return String.format(Locale.US, "%-32s %14s %10s %10s %12s %6s %8s",
+                "scenario", "events/sec", "p50 us", "p99 us", "bytes/event", "gcs", "gc ms");
+    }
+
+    String toJson() {
+        return String.format(Locale.US,
+                "{\"name\": \"%s\", \"processors\": %d, \"events\": %d, \"sinkEvents\": %d, \"elapsedNanos\": %d, " +
+                        "\"eventsPerSecond\": %.1f, \"latencyNanos\": {\"p50\": %d, \"p99\": %d, \"max\": %d}, " +
+                        "\"allocatedBytes\": %d, \"allocatedBytesPerEvent\": %d, \"gcCount\": %d, \"gcMillis\": %d}",
+                name, processorCount, eventCount, sinkEventCount, elapsedNanos, getEventsPerSecond(),
+                p50Nanos, p99Nanos, maxNanos, allocatedBytes, getAllocatedBytesPerEvent(), gcCount, gcMillis);
+    }
+}
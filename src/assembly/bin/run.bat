@@ -0,0 +1,28 @@
+rem Guess OCTOPUS_HOME if not defined
+
+set CURRENT_DIR=%cd%
+
+if not "%OCTOPUS_HOME%" == "" goto gotHome
+set OCTOPUS_HOME=%CURRENT_DIR%
+if exist "%OCTOPUS_HOME%\bin\start.bat" goto okHome
+cd ..
+set OCTOPUS_HOME=%cd%
+cd %CURRENT_DIR%
+:gotHome
+if exist "%OCTOPUS_HOME%\bin\start.bat" goto okHome
+echo The OCTOPUS_HOME environment variable is not defined correctly
+echo This environment variable is needed to run this program
+goto end
+:okHome
+
+
+if "%1" == "" goto usage
+
+java -classpath "%OCTOPUS_HOME%\lib\*" -Djava.awt.headless=true org.lisapark.octopus.designer.HeadlessRunner "%OCTOPUS_HOME%\conf\octopus.properties" %1
+
+goto end
+
+:usage
+echo Usage: run.bat modelName
+
+:end
\ No newline at end of file
@@ -0,0 +1,57 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.cache;
+
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.runtime.control.RunControl;
+import org.lisapark.octopus.core.runtime.metrics.ModelMetrics;
+
+/**
+ * A {@link CompiledModel} is the result of compiling a {@link org.lisapark.octopus.core.ProcessingModel} through the
+ * {@link CompiledRuntimeCache}. It holds the {@link ProcessingRuntime} together with the {@link RunControl} the
+ * model's sources were bound to when it was compiled, and the {@link ModelMetrics} its nodes record to.
+ */
+public class CompiledModel {
+
+    private final String modelName;
+    private final String fingerprint;
+    private final ProcessingRuntime runtime;
+    private final RunControl control;
+    private final ModelMetrics metrics;
+
+    CompiledModel(String modelName, String fingerprint, ProcessingRuntime runtime, RunControl control, ModelMetrics metrics) {
+        this.modelName = modelName;
+        this.fingerprint = fingerprint;
+        this.runtime = runtime;
+        this.control = control;
+        this.metrics = metrics;
+    }
+
+    public String getModelName() {
+        return modelName;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public ProcessingRuntime getRuntime() {
+        return runtime;
+    }
+
+    public RunControl getControl() {
+        return control;
+    }
+
+    public ModelMetrics getMetrics() {
+        return metrics;
+    }
+}
@@ -0,0 +1,191 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.cache;
+
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.ValidationException;
+import org.lisapark.octopus.core.compiler.incremental.IncrementalEsperCompiler;
+import org.lisapark.octopus.core.memory.MemoryProvider;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.runtime.control.RunControl;
+import org.lisapark.octopus.core.runtime.metrics.ModelMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.PrintStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Cache of {@link CompiledModel}s keyed by their {@link ModelFingerprint}. Compiling a model whose fingerprint is
+ * already in the cache returns the cached result instead of recompiling, so a compile followed by a run of an
+ * unchanged model only compiles once.
+ * <p/>
+ * There are two things about the compiled runtimes that the cache has to respect:
+ * <ul>
+ * <li>A runtime can only be started once, so {@link #takeForRun(ProcessingModel)} removes the entry.</li>
+ * <li>The Esper engine of a runtime is looked up by model name and reinitialized on every compile, so there can
+ * only be one valid entry per model name. Compiling a changed model evicts the older entries with the same name.</li>
+ * </ul>
+ * The cache is bounded and evicts the least recently used entry when it is full. All of the runtimes are compiled
+ * with the same standard out and error streams.
+ * <p/>
+ * A miss is compiled with an {@link IncrementalEsperCompiler}, so a model that changed since it was last compiled
+ * only has the statements of the changed nodes regenerated.
+ */
+public class CompiledRuntimeCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompiledRuntimeCache.class);
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 8;
+
+    private final IncrementalEsperCompiler compiler;
+    private final Map<String, CompiledModel> entries;
+
+    private long hitCount;
+    private long missCount;
+
+    public CompiledRuntimeCache(PrintStream standardOut, PrintStream standardError) {
+        this(standardOut, standardError, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public CompiledRuntimeCache(PrintStream standardOut, PrintStream standardError, final int maximumSize) {
+        checkArgument(standardOut != null, "standardOut cannot be null");
+        checkArgument(standardError != null, "standardError cannot be null");
+        checkArgument(maximumSize > 0, "maximumSize has to be greater than zero");
+
+        this.compiler = new IncrementalEsperCompiler();
+        this.compiler.setStandardOut(standardOut);
+        this.compiler.setStandardError(standardError);
+        // access ordered map gives us the LRU ordering for free
+        this.entries = new LinkedHashMap<String, CompiledModel>(maximumSize * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledModel> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Sets the provider of the memory of the processors for all later compiles. The cache is cleared since the
+     * cached runtimes have their memory from the previous provider.
+     *
+     * @param memoryProvider to use
+     */
+    public synchronized void setMemoryProvider(MemoryProvider memoryProvider) {
+        compiler.setMemoryProvider(memoryProvider);
+        invalidateAll();
+    }
+
+    /**
+     * Compiles the model, or returns the cached result if the model has not changed since it was last compiled. The
+     * result stays in the cache.
+     *
+     * @param model to compile
+     * @return compiled model
+     * @throws ValidationException if the model fails to compile
+     */
+    public synchronized CompiledModel compile(ProcessingModel model) throws ValidationException {
+        checkArgument(model != null, "model cannot be null");
+
+        String fingerprint = ModelFingerprint.forModel(model);
+        CompiledModel compiledModel = entries.get(fingerprint);
+
+        if (compiledModel == null) {
+            ++missCount;
+            compiledModel = compileModel(model, fingerprint);
+
+            invalidate(model.getModelName());
+            entries.put(fingerprint, compiledModel);
+        } else {
+            ++hitCount;
+            LOG.debug("Using cached runtime for model '{}'", model.getModelName());
+        }
+
+        return compiledModel;
+    }
+
+    /**
+     * Same as {@link #compile(ProcessingModel)} except that the result is removed from the cache, since a runtime can
+     * only be started once.
+     *
+     * @param model to compile
+     * @return compiled model that is ready to be started
+     * @throws ValidationException if the model fails to compile
+     */
+    public synchronized CompiledModel takeForRun(ProcessingModel model) throws ValidationException {
+        CompiledModel compiledModel = compile(model);
+        entries.remove(compiledModel.getFingerprint());
+
+        return compiledModel;
+    }
+
+    /**
+     * Returns true if the model, as it currently is, has been compiled and is still in the cache.
+     *
+     * @param model to check
+     * @return true if the model does not need to be compiled
+     */
+    public synchronized boolean contains(ProcessingModel model) {
+        return entries.containsKey(ModelFingerprint.forModel(model));
+    }
+
+    /**
+     * Removes all of the entries for the model with the specified name. This should be called whenever the model is
+     * changed on the canvas.
+     *
+     * @param modelName of model to invalidate
+     */
+    public synchronized void invalidate(String modelName) {
+        Iterator<CompiledModel> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getModelName().equals(modelName)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of nodes whose statements had to be regenerated by the last miss.
+     *
+     * @return number of recompiled nodes
+     */
+    public synchronized int getLastRecompiledNodeCount() {
+        return compiler.getLastRecompiledNodeCount();
+    }
+
+    private CompiledModel compileModel(ProcessingModel model, String fingerprint) throws ValidationException {
+        RunControl control = new RunControl();
+        ModelMetrics metrics = new ModelMetrics();
+        ProcessingRuntime runtime = compiler.compile(control.controlledCopyOf(model), metrics);
+
+        return new CompiledModel(model.getModelName(), fingerprint, runtime, control, metrics);
+    }
+}
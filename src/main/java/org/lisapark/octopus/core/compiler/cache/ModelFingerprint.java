@@ -0,0 +1,172 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.cache;
+
+import com.google.common.collect.Lists;
+import org.lisapark.octopus.ProgrammerException;
+import org.lisapark.octopus.core.Input;
+import org.lisapark.octopus.core.Node;
+import org.lisapark.octopus.core.Output;
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.event.Attribute;
+import org.lisapark.octopus.core.parameter.Parameter;
+import org.lisapark.octopus.core.processor.Processor;
+import org.lisapark.octopus.core.processor.ProcessorInput;
+import org.lisapark.octopus.core.processor.ProcessorJoin;
+import org.lisapark.octopus.core.sink.Sink;
+import org.lisapark.octopus.core.source.Source;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A {@link ModelFingerprint} is a digest over everything in a {@link ProcessingModel} that has an effect on the
+ * compiled result: the nodes and their types, parameter values, connections, joins and event types. Two models
+ * with the same fingerprint compile to equivalent runtimes. Things like the location of a node on the canvas are
+ * not part of the fingerprint.
+ */
+public abstract class ModelFingerprint {
+
+    private static final String DIGEST_ALGORITHM = "SHA-1";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Sorts nodes by id so the fingerprint does not depend on the iteration order of the model's sets
+     */
+    private static final Comparator<Node> NODE_ID_COMPARATOR = new Comparator<Node>() {
+        @Override
+        public int compare(Node node1, Node node2) {
+            return node1.getId().compareTo(node2.getId());
+        }
+    };
+
+    private static final Comparator<Parameter> PARAMETER_ID_COMPARATOR = new Comparator<Parameter>() {
+        @Override
+        public int compare(Parameter parameter1, Parameter parameter2) {
+            return parameter1.getId() - parameter2.getId();
+        }
+    };
+
+    /**
+     * Returns the fingerprint of the whole model. The model name is part of the fingerprint since the Esper engine
+     * of a compiled model is looked up by name.
+     *
+     * @param model to fingerprint
+     * @return hex encoded digest
+     */
+    public static String forModel(ProcessingModel model) {
+        List<Node> nodes = Lists.newArrayList();
+        nodes.addAll(model.getExternalSources());
+        nodes.addAll(model.getProcessors());
+        nodes.addAll(model.getExternalSinks());
+        Collections.sort(nodes, NODE_ID_COMPARATOR);
+
+        StringBuilder description = new StringBuilder();
+        description.append("model:").append(model.getModelName()).append('\n');
+        for (Node node : nodes) {
+            description.append(forNode(node)).append('\n');
+        }
+
+        return digest(description.toString());
+    }
+
+    /**
+     * Returns the fingerprint of a single node, including the ids and attributes of the sources it is connected to,
+     * but not the contents of those sources.
+     *
+     * @param node to fingerprint
+     * @return hex encoded digest
+     */
+    public static String forNode(Node node) {
+        StringBuilder description = new StringBuilder();
+        describeNode(node, description);
+
+        return digest(description.toString());
+    }
+
+    static void describeNode(Node node, StringBuilder description) {
+        description.append("node:").append(node.getId()).append(':').append(node.getClass().getName()).append('\n');
+
+        List<Parameter> parameters = Lists.newArrayList(node.getParameters());
+        Collections.sort(parameters, PARAMETER_ID_COMPARATOR);
+        for (Parameter parameter : parameters) {
+            description.append("param:").append(parameter.getId()).append('=').append(parameter.getValue()).append('\n');
+        }
+
+        if (node instanceof Source) {
+            describeOutput(((Source) node).getOutput(), description);
+        }
+
+        if (node instanceof Sink) {
+            for (Input input : ((Sink) node).getInputs()) {
+                describeInput(input, description);
+            }
+        }
+
+        if (node instanceof Processor) {
+            for (Object join : ((Processor) node).getJoins()) {
+                describeJoin((ProcessorJoin) join, description);
+            }
+        }
+    }
+
+    private static void describeOutput(Output output, StringBuilder description) {
+        description.append("output:").append(output.getId());
+        for (Attribute attribute : output.getAttributes()) {
+            description.append(':').append(attribute.getName()).append('/').append(attribute.getType().getName());
+        }
+        description.append('\n');
+    }
+
+    private static void describeInput(Input input, StringBuilder description) {
+        description.append("input:").append(input.getId()).append("<-");
+
+        Source source = input.getSource();
+        description.append(source != null ? source.getId() : "none");
+
+        if (input instanceof ProcessorInput) {
+            description.append('.').append(((ProcessorInput) input).getSourceAttributeName());
+        }
+        description.append('\n');
+    }
+
+    private static void describeJoin(ProcessorJoin join, StringBuilder description) {
+        description.append("join:")
+                .append(join.getFirstInput().getId()).append('.').append(join.getFirstInputAttributeName())
+                .append('=')
+                .append(join.getSecondInput().getId()).append('.').append(join.getSecondInputAttributeName())
+                .append('\n');
+    }
+
+    static String digest(String description) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            byte[] bytes = messageDigest.digest(description.getBytes("UTF-8"));
+
+            char[] hex = new char[bytes.length * 2];
+            for (int i = 0; i < bytes.length; ++i) {
+                hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+                hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+            }
+
+            return new String(hex);
+
+        } catch (NoSuchAlgorithmException e) {
+            throw new ProgrammerException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new ProgrammerException(e);
+        }
+    }
+}
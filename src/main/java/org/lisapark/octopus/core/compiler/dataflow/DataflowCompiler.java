@@ -0,0 +1,339 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.dataflow;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+import org.lisapark.octopus.core.Input;
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.ValidationException;
+import org.lisapark.octopus.core.compiler.Compiler;
+import org.lisapark.octopus.core.event.Attribute;
+import org.lisapark.octopus.core.event.EventSchema;
+import org.lisapark.octopus.core.memory.Memory;
+import org.lisapark.octopus.core.memory.MemoryProvider;
+import org.lisapark.octopus.core.memory.heap.HeapPrimitiveMemoryProvider;
+import org.lisapark.octopus.core.processor.CompiledProcessor;
+import org.lisapark.octopus.core.processor.Processor;
+import org.lisapark.octopus.core.processor.ProcessorInput;
+import org.lisapark.octopus.core.processor.ProcessorJoin;
+import org.lisapark.octopus.core.processor.window.WindowedProcessors;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.runtime.basic.BasicProcessorContext;
+import org.lisapark.octopus.core.runtime.checkpoint.Checkpointer;
+import org.lisapark.octopus.core.runtime.basic.BasicSinkContext;
+import org.lisapark.octopus.core.sink.external.CompiledExternalSink;
+import org.lisapark.octopus.core.sink.external.ExternalSink;
+import org.lisapark.octopus.core.source.Source;
+import org.lisapark.octopus.core.source.external.CompiledExternalSource;
+import org.lisapark.octopus.core.source.external.ExternalSource;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A {@link DataflowCompiler} turns a {@link ProcessingModel} into a graph of stages that call the compiled
+ * processors and sinks directly, without an Esper engine, see {@link DataflowRuntime}. It can be selected with
+ * {@link Compiler#newCompiler(String)}.
+ * <p/>
+ * The runtime follows the semantics of the statements generated by the
+ * {@link org.lisapark.octopus.core.compiler.esper.EsperCompiler}, so both compilers produce the same results: every
+ * input of a processor with two inputs keeps the events of the last 10 seconds, joined on the attributes of the
+ * {@link ProcessorJoin} if it is required, and the order in which the stages see an event is the order in which
+ * the {@link org.lisapark.octopus.core.compiler.esper.EsperCompiler} creates its statements.
+ * <p/>
+ * Models that need more than that, like processors with more than two inputs or two inputs reading the same
+ * source, fail validation and have to be compiled with one of the Esper compilers.
+ */
+public class DataflowCompiler extends Compiler {
+
+    private MemoryProvider memoryProvider = new HeapPrimitiveMemoryProvider();
+    private PrintStream standardOut;
+    private PrintStream standardError;
+    private Checkpointer checkpointer;
+    private boolean incrementalAggregates;
+
+    @Override
+    public synchronized void setMemoryProvider(MemoryProvider memoryProvider) {
+        checkArgument(memoryProvider != null, "memoryProvider cannot be null");
+        this.memoryProvider = memoryProvider;
+    }
+
+    @Override
+    public synchronized void setStandardOut(PrintStream standardOut) {
+        checkArgument(standardOut != null, "standardOut cannot be null");
+        this.standardOut = standardOut;
+    }
+
+    @Override
+    public synchronized void setStandardError(PrintStream standardError) {
+        checkArgument(standardError != null, "standardError cannot be null");
+        this.standardError = standardError;
+    }
+
+    /**
+     * Sets the {@link Checkpointer} that the memory of every processor is registered with, so it is restored from
+     * and saved to snapshots. Takes effect at the next compile.
+     *
+     * @param checkpointer to register with, or null for none
+     */
+    public synchronized void setCheckpointer(Checkpointer checkpointer) {
+        this.checkpointer = checkpointer;
+    }
+
+    /**
+     * Turns the incremental versions of windowed processors on or off, they are off by default since their results
+     * can differ from the original processors in the last bits, see {@link WindowedProcessors}. Takes effect at the
+     * next compile.
+     *
+     * @param incrementalAggregates true to compile windowed processors to their incremental versions
+     */
+    public synchronized void setIncrementalAggregates(boolean incrementalAggregates) {
+        this.incrementalAggregates = incrementalAggregates;
+    }
+
+    @Override
+    public synchronized ProcessingRuntime compile(ProcessingModel model) throws ValidationException {
+        checkArgument(model != null, "model cannot be null");
+
+        if (model.getExternalSources().size() == 0) {
+            throw new ValidationException(String.format("The model '%s' must have at least one source configured.", model.getModelName()));
+        }
+
+        List<String> errors = Lists.newLinkedList();
+        List<CompiledExternalSource> compiledSources = Lists.newArrayList();
+        for (ExternalSource externalSource : model.getExternalSources()) {
+            try {
+                compiledSources.add(externalSource.compile());
+            } catch (ValidationException e) {
+                errors.add(e.getLocalizedMessage());
+            }
+        }
+
+        checkSupported(model, errors);
+        if (!errors.isEmpty()) {
+            throw new ValidationException(Joiner.on('\n').join(errors));
+        }
+
+        // the stages reading each source and processor, in the order the EsperCompiler creates their statements
+        Map<UUID, List<Stage>> stagesBySourceId = Maps.newHashMap();
+        Map<UUID, List<Integer>> streamsBySourceId = Maps.newHashMap();
+        Map<UUID, ProcessorStage> processorStages = Maps.newHashMap();
+
+        for (Processor<?> processor : model.getProcessors()) {
+            try {
+                ProcessorStage stage = compileProcessor(processor);
+                processorStages.put(processor.getId(), stage);
+
+                List<ProcessorInput> inputs = processor.getInputs();
+                for (int stream = 0; stream < inputs.size(); ++stream) {
+                    addStage(stagesBySourceId, streamsBySourceId, inputs.get(stream).getSource(), stage, stream);
+                }
+            } catch (ValidationException e) {
+                errors.add(e.getLocalizedMessage());
+            }
+        }
+
+        for (ExternalSink externalSink : model.getExternalSinks()) {
+            try {
+                CompiledExternalSink compiledSink = externalSink.compile();
+                SinkStage stage = new SinkStage(compiledSink, new BasicSinkContext(standardOut, standardError));
+
+                Source source = ((Input) externalSink.getInputs().get(0)).getSource();
+                addStage(stagesBySourceId, streamsBySourceId, source, stage, 0);
+            } catch (ValidationException e) {
+                errors.add(e.getLocalizedMessage());
+            }
+        }
+
+        if (!errors.isEmpty()) {
+            throw new ValidationException(Joiner.on('\n').join(errors));
+        }
+
+        for (Processor<?> processor : model.getProcessors()) {
+            processorStages.get(processor.getId()).setOutputRoute(
+                    routeFor(processor, stagesBySourceId, streamsBySourceId));
+        }
+
+        Map<UUID, Route> sourceRoutes = Maps.newHashMap();
+        for (ExternalSource externalSource : model.getExternalSources()) {
+            sourceRoutes.put(externalSource.getId(), routeFor(externalSource, stagesBySourceId, streamsBySourceId));
+        }
+
+        return new DataflowRuntime(sourceRoutes, compiledSources, standardError);
+    }
+
+    /**
+     * Adds errors for everything in the model that the {@link DataflowRuntime} cannot run with the same results as
+     * the engine.
+     */
+    private static void checkSupported(ProcessingModel model, List<String> errors) {
+        Map<UUID, Source> sources = Maps.newHashMap();
+        for (ExternalSource externalSource : model.getExternalSources()) {
+            sources.put(externalSource.getId(), externalSource);
+        }
+        for (Processor<?> processor : model.getProcessors()) {
+            sources.put(processor.getId(), processor);
+        }
+
+        for (Processor<?> processor : model.getProcessors()) {
+            List<ProcessorInput> inputs = processor.getInputs();
+
+            if (inputs.size() > 2 || processor.getJoins().size() > 1) {
+                errors.add(String.format("Processor '%s' has more than two inputs, which needs the Esper compiler.", processor.getName()));
+            }
+            if (inputs.size() == 2 && inputs.get(0).getSource() != null &&
+                    inputs.get(0).getSource() == inputs.get(1).getSource()) {
+                errors.add(String.format("Processor '%s' reads the same source on both inputs, which needs the Esper compiler.", processor.getName()));
+            }
+            for (ProcessorInput input : inputs) {
+                if (input.getSource() != null && !sources.containsKey(input.getSource().getId())) {
+                    errors.add(String.format("Processor '%s' reads from '%s', which is not part of the model.",
+                            processor.getName(), input.getSource().getName()));
+                }
+            }
+        }
+
+        for (ExternalSink externalSink : model.getExternalSinks()) {
+            Source source = ((Input) externalSink.getInputs().get(0)).getSource();
+            if (source != null && !sources.containsKey(source.getId())) {
+                errors.add(String.format("Sink '%s' reads from '%s', which is not part of the model.",
+                        externalSink.getName(), source.getName()));
+            }
+        }
+
+        if (errors.isEmpty() && !isAcyclic(model)) {
+            errors.add(String.format("The processors of model '%s' form a cycle.", model.getModelName()));
+        }
+    }
+
+    /**
+     * Returns true if the processors can be put in a topological order, i.e. the model has no cycles
+     */
+    private static boolean isAcyclic(ProcessingModel model) {
+        Map<UUID, Integer> unresolvedInputs = Maps.newHashMap();
+        Map<UUID, List<Processor<?>>> readers = Maps.newHashMap();
+        List<UUID> resolved = Lists.newLinkedList();
+
+        for (Processor<?> processor : model.getProcessors()) {
+            int count = 0;
+            for (ProcessorInput input : processor.getInputs()) {
+                Source source = input.getSource();
+                if (source instanceof Processor) {
+                    List<Processor<?>> sourceReaders = readers.get(source.getId());
+                    if (sourceReaders == null) {
+                        sourceReaders = Lists.newArrayList();
+                        readers.put(source.getId(), sourceReaders);
+                    }
+                    sourceReaders.add(processor);
+                    count++;
+                }
+            }
+            unresolvedInputs.put(processor.getId(), count);
+            if (count == 0) {
+                resolved.add(processor.getId());
+            }
+        }
+
+        int resolvedCount = 0;
+        while (!resolved.isEmpty()) {
+            UUID id = resolved.remove(0);
+            resolvedCount++;
+
+            List<Processor<?>> sourceReaders = readers.get(id);
+            if (sourceReaders != null) {
+                for (Processor<?> reader : sourceReaders) {
+                    int count = unresolvedInputs.get(reader.getId()) - 1;
+                    unresolvedInputs.put(reader.getId(), count);
+                    if (count == 0) {
+                        resolved.add(reader.getId());
+                    }
+                }
+            }
+        }
+
+        return resolvedCount == model.getProcessors().size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private ProcessorStage compileProcessor(Processor<?> processor) throws ValidationException {
+        CompiledProcessor<?> compiledProcessor = WindowedProcessors.compile(processor, incrementalAggregates);
+
+        Memory memory = WindowedProcessors.createMemoryForProcessor(processor, memoryProvider, incrementalAggregates);
+        if (memory != null && checkpointer != null) {
+            checkpointer.register(processor, memory);
+        }
+        BasicProcessorContext ctx = memory != null ?
+                new BasicProcessorContext(standardOut, standardError, memory) :
+                new BasicProcessorContext(standardOut, standardError);
+
+        List<ProcessorInput> inputs = compiledProcessor.getInputs();
+        List<EventSchema> inputSchemas = Lists.newArrayList();
+        for (ProcessorInput input : inputs) {
+            inputSchemas.add(EventSchema.forSource(input.getSource()));
+        }
+
+        JoinWindow[] windows = null;
+        if (inputs.size() == 2) {
+            ProcessorJoin join = compiledProcessor.getJoinForInput(inputs.get(0));
+
+            if (join != null && join.isRequired()) {
+                Attribute firstAttribute = join.getJoinAttributeForInput(inputs.get(0));
+                Attribute secondAttribute = join.getJoinAttributeForInput(inputs.get(1));
+                boolean numericKeys = firstAttribute.getType() != secondAttribute.getType() &&
+                        Number.class.isAssignableFrom(firstAttribute.getType()) &&
+                        Number.class.isAssignableFrom(secondAttribute.getType());
+
+                windows = new JoinWindow[]{
+                        new JoinWindow(inputSchemas.get(0).indexOf(firstAttribute.getName()), numericKeys),
+                        new JoinWindow(inputSchemas.get(1).indexOf(secondAttribute.getName()), numericKeys)
+                };
+            } else {
+                windows = new JoinWindow[]{new JoinWindow(-1, false), new JoinWindow(-1, false)};
+            }
+        }
+
+        return new ProcessorStage(compiledProcessor, ctx, inputSchemas, EventSchema.forSource(processor), windows);
+    }
+
+    private static void addStage(Map<UUID, List<Stage>> stagesBySourceId, Map<UUID, List<Integer>> streamsBySourceId,
+                                 Source source, Stage stage, int stream) {
+        if (source == null) {
+            return;
+        }
+
+        List<Stage> stages = stagesBySourceId.get(source.getId());
+        if (stages == null) {
+            stages = Lists.newArrayList();
+            stagesBySourceId.put(source.getId(), stages);
+            streamsBySourceId.put(source.getId(), Lists.<Integer>newArrayList());
+        }
+        stages.add(stage);
+        streamsBySourceId.get(source.getId()).add(stream);
+    }
+
+    private static Route routeFor(Source source, Map<UUID, List<Stage>> stagesBySourceId,
+                                  Map<UUID, List<Integer>> streamsBySourceId) {
+        List<Stage> stages = stagesBySourceId.get(source.getId());
+        if (stages == null) {
+            return new Route(EventSchema.forSource(source), new Stage[0], new int[0]);
+        }
+
+        return new Route(EventSchema.forSource(source), stages.toArray(new Stage[stages.size()]),
+                Ints.toArray(streamsBySourceId.get(source.getId())));
+    }
+}
@@ -0,0 +1,184 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.dataflow;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.lisapark.octopus.core.ProcessingException;
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.event.IndexedEvent;
+import org.lisapark.octopus.core.runtime.BatchProcessingRuntime;
+import org.lisapark.octopus.core.source.Source;
+import org.lisapark.octopus.core.source.external.CompiledExternalSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.PrintStream;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * The runtime produced by the {@link DataflowCompiler}. An event from a source is inserted into every stage that
+ * reads the source, and the stages that have something to process are queued. The queue is then drained, first in
+ * first out, and the output events of every processor are inserted and queued the same way. Since every stage is
+ * queued after the stages it reads from, the stages run in a topological order of the graph.
+ * <p/>
+ * Events are processed one at a time; sources that send from different threads take turns.
+ */
+public class DataflowRuntime implements BatchProcessingRuntime {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DataflowRuntime.class);
+
+    private enum State {
+        NOT_STARTED, RUNNING, SHUTDOWN
+    }
+
+    private final Map<UUID, Route> sourceRoutes;
+    private final List<CompiledExternalSource> compiledSources;
+    private final PrintStream standardError;
+
+    private final LinkedList<Stage> dispatchQueue = new LinkedList<Stage>();
+    private final Object lock = new Object();
+
+    private volatile State currentState = State.NOT_STARTED;
+    private ExecutorService sourceExecutor;
+
+    DataflowRuntime(Map<UUID, Route> sourceRoutes, List<CompiledExternalSource> compiledSources, PrintStream standardError) {
+        this.sourceRoutes = Maps.newHashMap(sourceRoutes);
+        this.compiledSources = Lists.newArrayList(compiledSources);
+        this.standardError = standardError;
+    }
+
+    @Override
+    public synchronized void start() {
+        checkState(currentState == State.NOT_STARTED, "Runtime has already been started");
+        currentState = State.RUNNING;
+
+        sourceExecutor = Executors.newFixedThreadPool(Math.max(1, compiledSources.size()));
+        for (CompiledExternalSource compiledSource : compiledSources) {
+            sourceExecutor.submit(new SourceDrainer(compiledSource));
+        }
+    }
+
+    /**
+     * Waits for all of the sources to be drained.
+     */
+    @Override
+    public synchronized void shutdown() {
+        if (currentState == State.RUNNING) {
+            sourceExecutor.shutdown();
+            try {
+                while (!sourceExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS)) {
+                    // keep waiting
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        currentState = State.SHUTDOWN;
+    }
+
+    @Override
+    public void sendEventFromSource(Event event, Source source) {
+        checkState(currentState == State.RUNNING, "Cannot send events unless the runtime has been started");
+
+        Route route = routeForSource(source);
+        synchronized (lock) {
+            sendEvent(route, event);
+        }
+    }
+
+    @Override
+    public void sendEventsFromSource(List<Event> events, Source source) {
+        checkArgument(events != null, "events cannot be null");
+        checkState(currentState == State.RUNNING, "Cannot send events unless the runtime has been started");
+
+        Route route = routeForSource(source);
+        synchronized (lock) {
+            for (Event event : events) {
+                sendEvent(route, event);
+            }
+        }
+    }
+
+    private Route routeForSource(Source source) {
+        Route route = sourceRoutes.get(source.getId());
+        checkArgument(route != null, "Source %s is not part of the model", source.getName());
+
+        return route;
+    }
+
+    private void sendEvent(Route route, Event event) {
+        route(route, IndexedEvent.fromMap(route.getSchema(), event.getData()));
+
+        Stage stage;
+        while ((stage = dispatchQueue.poll()) != null) {
+            stage.dispatch(this);
+        }
+    }
+
+    /**
+     * Inserts the event into every stage of the route and queues the stages that became pending.
+     *
+     * @param route of the source or processor that produced the event
+     * @param event to insert
+     */
+    void route(Route route, IndexedEvent event) {
+        long timestamp = System.currentTimeMillis();
+
+        for (int i = 0; i < route.size(); ++i) {
+            Stage stage = route.getStage(i);
+            if (stage.insert(route.getStream(i), event, timestamp)) {
+                dispatchQueue.add(stage);
+            }
+        }
+    }
+
+    /**
+     * Runs a single compiled source against this runtime
+     */
+    private class SourceDrainer implements Runnable {
+        private final CompiledExternalSource compiledSource;
+
+        SourceDrainer(CompiledExternalSource compiledSource) {
+            this.compiledSource = compiledSource;
+        }
+
+        @Override
+        public void run() {
+            try {
+                compiledSource.startProcessingEvents(DataflowRuntime.this);
+
+            } catch (ProcessingException e) {
+                standardError.println(e.getLocalizedMessage());
+                e.printStackTrace(standardError);
+                LOG.error(String.format("Processing exception while draining source [%s]", compiledSource), e);
+
+            } catch (RuntimeException e) {
+                standardError.println(e.getLocalizedMessage());
+                e.printStackTrace(standardError);
+                LOG.error(String.format("Uncaught exception while draining source [%s]", compiledSource), e);
+
+            } finally {
+                compiledSource.stopProcessingEvents();
+            }
+        }
+    }
+}
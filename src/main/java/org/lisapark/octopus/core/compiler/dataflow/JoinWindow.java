@@ -0,0 +1,135 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.dataflow;
+
+import com.google.common.collect.Maps;
+import org.lisapark.octopus.core.event.IndexedEvent;
+
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * The events of one input of a joining processor from the last {@link #WINDOW_LENGTH_MILLIS}, the same as the
+ * <code>win:time(10 sec)</code> view in the statements of the
+ * {@link org.lisapark.octopus.core.compiler.esper.EsperCompiler}. If the join has attributes, the events are also
+ * indexed by the value of their join attribute. As in the <code>=</code> of the statement, a null value never
+ * matches anything, not even another null, so events with a null join attribute are not indexed.
+ * <p/>
+ * Lookups return the oldest matching event. That is the event the engine puts in the first row of the join, which
+ * is the only row the processor adaptors use.
+ */
+class JoinWindow {
+
+    static final long WINDOW_LENGTH_MILLIS = 10 * 1000L;
+
+    /**
+     * Slot of the join attribute in the events of the window, or -1 if every event matches
+     */
+    private final int keyIndex;
+    private final boolean numericKeys;
+
+    private final LinkedList<Entry> entries = new LinkedList<Entry>();
+    private final Map<Object, LinkedList<Entry>> entriesByKey;
+
+    /**
+     * Creates the window.
+     *
+     * @param keyIndex    slot of the join attribute in the events, or -1 for a join without attributes
+     * @param numericKeys true if keys have to be compared as doubles since the two sides of the join have different
+     *                    numeric types
+     */
+    JoinWindow(int keyIndex, boolean numericKeys) {
+        this.keyIndex = keyIndex;
+        this.numericKeys = numericKeys;
+        this.entriesByKey = keyIndex >= 0 ? Maps.<Object, LinkedList<Entry>>newHashMap() : null;
+    }
+
+    /**
+     * Returns the value the events of this window are joined on, or null for a join without attributes.
+     */
+    Object keyOf(IndexedEvent event) {
+        if (keyIndex < 0) {
+            return null;
+        }
+
+        Object key = event.get(keyIndex);
+        if (numericKeys && key instanceof Number) {
+            return ((Number) key).doubleValue();
+        }
+
+        return key;
+    }
+
+    void add(IndexedEvent event, long timestamp) {
+        Entry entry = new Entry(event, timestamp);
+        entries.addLast(entry);
+
+        Object key = keyOf(event);
+        if (entriesByKey != null && key != null) {
+            LinkedList<Entry> keyEntries = entriesByKey.get(key);
+            if (keyEntries == null) {
+                keyEntries = new LinkedList<Entry>();
+                entriesByKey.put(key, keyEntries);
+            }
+            keyEntries.addLast(entry);
+        }
+    }
+
+    /**
+     * Removes the events that are older than the window.
+     *
+     * @param timestamp current time in milliseconds
+     */
+    void expire(long timestamp) {
+        while (!entries.isEmpty() && entries.getFirst().timestamp + WINDOW_LENGTH_MILLIS <= timestamp) {
+            Entry entry = entries.removeFirst();
+
+            Object key = keyOf(entry.event);
+            if (entriesByKey != null && key != null) {
+                // entries are added in time order, so the oldest entry of the window is also the oldest of its key
+                LinkedList<Entry> keyEntries = entriesByKey.get(key);
+                keyEntries.removeFirst();
+                if (keyEntries.isEmpty()) {
+                    entriesByKey.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the oldest event that joins with the specified key.
+     *
+     * @param key value of the join attribute of the event on the other input, ignored for joins without attributes
+     * @return matching event, or null if there is none, which is always the case for a null key
+     */
+    IndexedEvent firstMatch(Object key) {
+        if (entriesByKey == null) {
+            return entries.isEmpty() ? null : entries.getFirst().event;
+        }
+        if (key == null) {
+            return null;
+        }
+
+        LinkedList<Entry> keyEntries = entriesByKey.get(key);
+
+        return keyEntries != null ? keyEntries.getFirst().event : null;
+    }
+
+    private static class Entry {
+        final IndexedEvent event;
+        final long timestamp;
+
+        Entry(IndexedEvent event, long timestamp) {
+            this.event = event;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.dataflow;
+
+import org.lisapark.octopus.core.event.EventSchema;
+import org.lisapark.octopus.core.event.IndexedEvent;
+import org.lisapark.octopus.core.event.InputEvents;
+import org.lisapark.octopus.core.processor.CompiledProcessor;
+import org.lisapark.octopus.core.processor.ProcessorInput;
+import org.lisapark.octopus.core.processor.ProcessorJoin;
+import org.lisapark.octopus.core.runtime.ProcessorContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * A {@link Stage} that calls {@link CompiledProcessor#processEvent} directly. A processor with a single input is
+ * given every event of the input. A processor with two inputs keeps a {@link JoinWindow} per input, and is given an
+ * event together with the oldest event on the other input it joins with.
+ * <p/>
+ * While the stage is pending, further events only go into the windows: like the engine, which collects the rows of
+ * a statement until its listener is called, and the adaptor, which only uses the first row, the processor is given
+ * the first events that arrived since it was last dispatched.
+ * <p/>
+ * The input events are handed to the processor, and copied into the output event, exactly the way the
+ * {@link org.lisapark.octopus.core.compiler.incremental.IncrementalEsperCompiler} adaptors do.
+ */
+class ProcessorStage extends Stage {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProcessorStage.class);
+
+    private final CompiledProcessor processor;
+    private final ProcessorContext ctx;
+
+    /**
+     * For each input, in the order of the inputs of the processor: the position of the input when ordered by id,
+     * the position of the other input of an optional join or -1, and the slots of its events in the output
+     */
+    private final int[] positions;
+    private final int[] otherPositions;
+    private final int[][] outputIndexes;
+    private final int[] inputIdsByPosition;
+    private final JoinWindow[] windows;
+
+    private final EventSchema outputSchema;
+    private final int outputAttributeIndex;
+    private Route outputRoute;
+
+    /**
+     * The events to process at the next dispatch, by input
+     */
+    private final IndexedEvent[] pendingEvents;
+    private final InputEvents eventsByInputId;
+    private final IndexedEvent[] eventsByPosition;
+    private final int[] inputsByPosition;
+
+    /**
+     * Creates the stage.
+     *
+     * @param processor    to call
+     * @param ctx          of the processor
+     * @param inputSchemas schema of the events of each input, in the order of the inputs of the processor
+     * @param outputSchema schema of the output events
+     * @param windows      join window of each input, or null if the processor has a single input
+     */
+    ProcessorStage(CompiledProcessor<?> processor, ProcessorContext<?> ctx, List<EventSchema> inputSchemas,
+                   EventSchema outputSchema, JoinWindow[] windows) {
+        this.processor = processor;
+        this.ctx = ctx;
+        this.windows = windows;
+        this.outputSchema = outputSchema;
+
+        String outputAttributeName = processor.getOutput().getAttributeName();
+        this.outputAttributeIndex = outputAttributeName != null ? outputSchema.indexOf(outputAttributeName) : -1;
+
+        List<ProcessorInput> inputs = processor.getInputs();
+        int inputCount = inputs.size();
+        this.positions = new int[inputCount];
+        this.otherPositions = new int[inputCount];
+        this.outputIndexes = new int[inputCount][];
+        this.inputIdsByPosition = new int[inputCount];
+
+        int maximumInputId = 0;
+        for (int i = 0; i < inputCount; ++i) {
+            ProcessorInput input = inputs.get(i);
+            positions[i] = positionById(inputs, input);
+            inputIdsByPosition[positions[i]] = input.getId();
+            outputIndexes[i] = inputSchemas.get(i).indexesIn(outputSchema);
+            maximumInputId = Math.max(maximumInputId, input.getId());
+
+            ProcessorJoin join = processor.getJoinForInput(input);
+            otherPositions[i] = join != null && !join.isRequired() ? positionById(inputs, join.getOtherInput(input)) : -1;
+        }
+
+        this.pendingEvents = new IndexedEvent[inputCount];
+        this.eventsByInputId = new InputEvents(maximumInputId);
+        this.eventsByPosition = new IndexedEvent[inputCount];
+        this.inputsByPosition = new int[inputCount];
+    }
+
+    /**
+     * Returns the position of the input among the inputs ordered by id
+     */
+    private static int positionById(List<ProcessorInput> inputs, ProcessorInput input) {
+        int position = 0;
+        for (ProcessorInput other : inputs) {
+            if (other.getId() < input.getId()) {
+                position++;
+            }
+        }
+
+        return position;
+    }
+
+    void setOutputRoute(Route outputRoute) {
+        this.outputRoute = outputRoute;
+    }
+
+    @Override
+    boolean receive(int stream, IndexedEvent event, long timestamp, boolean pending) {
+        if (windows == null) {
+            if (!pending) {
+                pendingEvents[stream] = event;
+            }
+            return true;
+        }
+
+        int otherStream = 1 - stream;
+        windows[stream].expire(timestamp);
+        windows[otherStream].expire(timestamp);
+
+        IndexedEvent match = windows[otherStream].firstMatch(windows[stream].keyOf(event));
+        windows[stream].add(event, timestamp);
+
+        if (match == null) {
+            return false;
+        }
+        if (!pending) {
+            pendingEvents[stream] = event;
+            pendingEvents[otherStream] = match;
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    void process(DataflowRuntime runtime) {
+        for (int i = 0; i < pendingEvents.length; ++i) {
+            IndexedEvent event = pendingEvents[i];
+            if (event != null) {
+                put(positions[i], event, i);
+                if (otherPositions[i] >= 0) {
+                    put(otherPositions[i], event, i);
+                }
+            }
+        }
+
+        IndexedEvent outputEvent = null;
+        try {
+            Object result = processor.processEvent(ctx, eventsByInputId);
+
+            if (result != null && outputAttributeIndex >= 0) {
+                outputEvent = new IndexedEvent(outputSchema);
+                outputEvent.set(outputAttributeIndex, result);
+
+                for (int position = 0; position < eventsByPosition.length; ++position) {
+                    if (eventsByPosition[position] != null) {
+                        eventsByPosition[position].copyTo(outputEvent, outputIndexes[inputsByPosition[position]]);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // the engine logs exceptions of listeners and carries on with the next event
+            LOG.error("Problem processing event in processor " + processor.getId(), e);
+        } finally {
+            clear();
+        }
+
+        if (outputEvent != null) {
+            runtime.route(outputRoute, outputEvent);
+        }
+    }
+
+    private void put(int position, IndexedEvent event, int input) {
+        eventsByInputId.put(inputIdsByPosition[position], event);
+        eventsByPosition[position] = event;
+        inputsByPosition[position] = input;
+    }
+
+    private void clear() {
+        eventsByInputId.clear();
+        for (int i = 0; i < pendingEvents.length; ++i) {
+            pendingEvents[i] = null;
+            eventsByPosition[i] = null;
+        }
+    }
+}
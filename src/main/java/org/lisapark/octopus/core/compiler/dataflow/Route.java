@@ -0,0 +1,47 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.dataflow;
+
+import org.lisapark.octopus.core.event.EventSchema;
+
+/**
+ * The stages, and their streams, that read the events of a single source or processor. The stages are in the order
+ * the {@link org.lisapark.octopus.core.compiler.esper.EsperCompiler} creates its statements, which is the order the
+ * engine hands them an event in.
+ */
+class Route {
+
+    private final EventSchema schema;
+    private final Stage[] stages;
+    private final int[] streams;
+
+    Route(EventSchema schema, Stage[] stages, int[] streams) {
+        this.schema = schema;
+        this.stages = stages;
+        this.streams = streams;
+    }
+
+    EventSchema getSchema() {
+        return schema;
+    }
+
+    int size() {
+        return stages.length;
+    }
+
+    Stage getStage(int index) {
+        return stages[index];
+    }
+
+    int getStream(int index) {
+        return streams[index];
+    }
+}
@@ -0,0 +1,66 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.dataflow;
+
+import com.google.common.collect.Lists;
+import org.lisapark.octopus.core.Input;
+import org.lisapark.octopus.core.event.IndexedEvent;
+import org.lisapark.octopus.core.event.InputEvents;
+import org.lisapark.octopus.core.runtime.SinkContext;
+import org.lisapark.octopus.core.sink.external.CompiledExternalSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * A {@link Stage} that hands every event of the first input of a sink to the sink, the same input the statement of
+ * a sink selects from. All events that arrive while the stage is pending are handed over at the next dispatch.
+ */
+class SinkStage extends Stage {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SinkStage.class);
+
+    private final CompiledExternalSink sink;
+    private final SinkContext ctx;
+    private final int inputId;
+
+    private final List<IndexedEvent> pendingEvents = Lists.newArrayList();
+    private final InputEvents eventsByInputId;
+
+    SinkStage(CompiledExternalSink sink, SinkContext ctx) {
+        this.sink = sink;
+        this.ctx = ctx;
+        this.inputId = ((Input) sink.getInputs().get(0)).getId();
+        this.eventsByInputId = new InputEvents(inputId);
+    }
+
+    @Override
+    boolean receive(int stream, IndexedEvent event, long timestamp, boolean pending) {
+        pendingEvents.add(event);
+        return true;
+    }
+
+    @Override
+    void process(DataflowRuntime runtime) {
+        for (int i = 0; i < pendingEvents.size(); ++i) {
+            eventsByInputId.put(inputId, pendingEvents.get(i));
+            try {
+                sink.processEvent(ctx, eventsByInputId);
+            } catch (RuntimeException e) {
+                LOG.error("Problem processing event in sink", e);
+            }
+        }
+
+        eventsByInputId.clear();
+        pendingEvents.clear();
+    }
+}
@@ -0,0 +1,64 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.dataflow;
+
+import org.lisapark.octopus.core.event.IndexedEvent;
+
+/**
+ * A processor or sink in the graph of a {@link DataflowRuntime}. Events are first inserted into the stage, which
+ * decides whether it has anything to process; the runtime then dispatches the stages in the order they became
+ * pending. This is the same two step delivery the Esper engine does with its statements and listeners, which is
+ * what makes the runtime produce the same results.
+ */
+abstract class Stage {
+
+    private boolean pending;
+
+    /**
+     * Inserts the event into the stream of the stage.
+     *
+     * @param stream    index of the input in the inputs of the processor or sink
+     * @param event     that arrived on the stream
+     * @param timestamp current time in milliseconds
+     * @return true if the stage was not pending before, but is now and has to be dispatched
+     */
+    final boolean insert(int stream, IndexedEvent event, long timestamp) {
+        if (receive(stream, event, timestamp, pending) && !pending) {
+            pending = true;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Processes what has been received since the last dispatch and routes the results through the runtime.
+     *
+     * @param runtime to route the output events through
+     */
+    final void dispatch(DataflowRuntime runtime) {
+        pending = false;
+        process(runtime);
+    }
+
+    /**
+     * Receives an event.
+     *
+     * @param stream    index of the input
+     * @param event     that arrived
+     * @param timestamp current time in milliseconds
+     * @param pending   true if the stage is still waiting to be dispatched for earlier events
+     * @return true if the event produced something that has to be processed
+     */
+    abstract boolean receive(int stream, IndexedEvent event, long timestamp, boolean pending);
+
+    abstract void process(DataflowRuntime runtime);
+}
@@ -0,0 +1,130 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.incremental;
+
+import com.espertech.esper.client.Configuration;
+import com.google.common.collect.Maps;
+import org.lisapark.octopus.core.Input;
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.processor.CompiledProcessor;
+import org.lisapark.octopus.core.processor.Processor;
+import org.lisapark.octopus.core.processor.ProcessorInput;
+import org.lisapark.octopus.core.processor.ProcessorJoin;
+import org.lisapark.octopus.core.sink.external.CompiledExternalSink;
+import org.lisapark.octopus.core.source.external.ExternalSource;
+import org.lisapark.octopus.util.esper.EsperUtils;
+
+import java.util.Map;
+
+/**
+ * Event types and EPL statements of a model, built the same way as the
+ * {@link org.lisapark.octopus.core.compiler.esper.EsperCompiler} builds them, so that the statements of both
+ * compilers select the same events. Only the public API of the nodes is used.
+ */
+abstract class EsperStatements {
+
+    /**
+     * Window of the inputs of a processor, which is also the window of its joins
+     */
+    private static final String PROCESSOR_WINDOW = ".win:time(10 sec)";
+    private static final String SINK_WINDOW = ".win:length(1)";
+
+    /**
+     * Registers an event type for the output of every source and processor of the model.
+     *
+     * @param configuration of the engine
+     * @param model         whose event types to register
+     */
+    static void registerEventTypesForModel(Configuration configuration, ProcessingModel model) {
+        for (ExternalSource source : model.getExternalSources()) {
+            configuration.addEventType(EsperUtils.getEventNameForSource(source), source.getOutput().getEventDefinition());
+        }
+        for (Processor processor : model.getProcessors()) {
+            configuration.addEventType(EsperUtils.getEventNameForSource(processor), processor.getOutput().getEventDefinition());
+        }
+    }
+
+    /**
+     * Returns the statement that selects the events of every input of the processor from the last 10 seconds,
+     * joined on the join attributes of its required joins. The event of the input at position i is selected as the
+     * property <code>_i_properties</code>.
+     *
+     * @param processor to create the statement for
+     * @return EPL statement
+     */
+    static String statementForProcessor(CompiledProcessor<?> processor) {
+        StringBuilder select = new StringBuilder();
+        StringBuilder from = new StringBuilder();
+        Map<ProcessorInput, String> streamNames = Maps.newHashMap();
+
+        int position = 0;
+        for (Object input : processor.getInputs()) {
+            ProcessorInput processorInput = (ProcessorInput) input;
+            if (select.length() > 0) {
+                select.append(", ");
+                from.append(", ");
+            }
+
+            String streamName = "_" + position++;
+            streamNames.put(processorInput, streamName);
+            select.append(streamName).append(".* as ").append(streamName).append("_properties");
+            from.append(EsperUtils.getEventNameForSource(processorInput.getSource()))
+                    .append(PROCESSOR_WINDOW).append(" as ").append(streamName);
+        }
+
+        StringBuilder where = new StringBuilder();
+        for (Object join : processor.getJoins()) {
+            ProcessorJoin processorJoin = (ProcessorJoin) join;
+            if (processorJoin.isRequired()) {
+                if (where.length() > 0) {
+                    where.append(" AND ");
+                }
+                where.append(streamNames.get(processorJoin.getFirstInput())).append('.')
+                        .append(processorJoin.getFirstInputAttributeName())
+                        .append(" = ")
+                        .append(streamNames.get(processorJoin.getSecondInput())).append('.')
+                        .append(processorJoin.getSecondInputAttributeName());
+            }
+        }
+
+        if (where.length() == 0) {
+            return String.format("SELECT %s FROM %s", select, from);
+        }
+
+        return String.format("SELECT %s FROM %s WHERE %s", select, from, where);
+    }
+
+    /**
+     * Returns the statement that selects the latest event of every input of the sink.
+     *
+     * @param sink to create the statement for
+     * @return EPL statement
+     */
+    static String statementForSink(CompiledExternalSink sink) {
+        StringBuilder select = new StringBuilder();
+        StringBuilder from = new StringBuilder();
+
+        int position = 0;
+        for (Object input : sink.getInputs()) {
+            if (select.length() > 0) {
+                select.append(", ");
+                from.append(", ");
+            }
+
+            String streamName = "_" + position++;
+            select.append(streamName).append(".*");
+            from.append(EsperUtils.getEventNameForSource(((Input<?>) input).getSource()))
+                    .append(SINK_WINDOW).append(" as ").append(streamName);
+        }
+
+        return String.format("SELECT %s FROM %s", select, from);
+    }
+}
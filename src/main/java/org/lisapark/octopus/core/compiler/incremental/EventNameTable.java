@@ -0,0 +1,91 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.incremental;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Lookup table from the Esper event name of a source to a position, built once when an adaptor is created. The
+ * size of the table is grown until every name lands in its own bucket, so a lookup is the cached hash code of the
+ * name, a mask and a single <code>equals</code>. Only if two names have the same hash code does a lookup have to
+ * probe a second bucket.
+ */
+class EventNameTable {
+
+    /**
+     * Stop growing the table at this many buckets per name and live with a collision
+     */
+    private static final int MAXIMUM_LOAD_FACTOR = 64;
+
+    private final String[] names;
+    private final int[] positions;
+    private final int mask;
+
+    EventNameTable(String[] eventNames) {
+        checkArgument(eventNames.length > 0, "eventNames cannot be empty");
+
+        int size = Integer.highestOneBit(eventNames.length) << 1;
+        while (size < eventNames.length * MAXIMUM_LOAD_FACTOR && !isPerfect(eventNames, size - 1)) {
+            size <<= 1;
+        }
+
+        this.names = new String[size];
+        this.positions = new int[size];
+        this.mask = size - 1;
+
+        for (int position = 0; position < eventNames.length; ++position) {
+            int bucket = bucketOf(eventNames[position]);
+            while (names[bucket] != null) {
+                checkArgument(!names[bucket].equals(eventNames[position]), "Event %s is in the table twice", eventNames[position]);
+                bucket = (bucket + 1) & mask;
+            }
+            names[bucket] = eventNames[position];
+            positions[bucket] = position;
+        }
+    }
+
+    /**
+     * Returns the position the name had in the array the table was created with.
+     *
+     * @param eventName to look up
+     * @return position, or -1 if the name is not in the table
+     */
+    int positionOf(String eventName) {
+        for (int bucket = bucketOf(eventName); names[bucket] != null; bucket = (bucket + 1) & mask) {
+            if (names[bucket].equals(eventName)) {
+                return positions[bucket];
+            }
+        }
+
+        return -1;
+    }
+
+    private int bucketOf(String eventName) {
+        return spread(eventName.hashCode()) & mask;
+    }
+
+    private static boolean isPerfect(String[] eventNames, int mask) {
+        boolean[] used = new boolean[mask + 1];
+        for (String eventName : eventNames) {
+            int bucket = spread(eventName.hashCode()) & mask;
+            if (used[bucket]) {
+                return false;
+            }
+            used[bucket] = true;
+        }
+
+        return true;
+    }
+
+    private static int spread(int hashCode) {
+        return hashCode ^ (hashCode >>> 16);
+    }
+}
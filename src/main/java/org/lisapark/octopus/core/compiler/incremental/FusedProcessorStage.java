@@ -0,0 +1,104 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.incremental;
+
+import org.lisapark.octopus.core.event.EventSchema;
+import org.lisapark.octopus.core.event.IndexedEvent;
+import org.lisapark.octopus.core.event.InputEvents;
+import org.lisapark.octopus.core.processor.CompiledProcessor;
+import org.lisapark.octopus.core.processor.ProcessorInput;
+import org.lisapark.octopus.core.runtime.ProcessorContext;
+import org.lisapark.octopus.util.esper.EsperUtils;
+
+/**
+ * A processor with a single input that has been fused onto the processor upstream of it, see
+ * {@link IncrementalEsperCompiler#setFusionEnabled(boolean)}. The output events of the upstream processor are given
+ * to the stage directly by the {@link IndexedEsperProcessorAdaptor} of the first processor of the chain, instead of
+ * being sent through the engine to a statement of its own.
+ * <p/>
+ * The processor sees the same input event, and produces the same output event, as it would with an adaptor of its
+ * own: the input event has the output schema of the upstream processor, and the output event has the output
+ * attribute of the stage together with all attributes of the input event.
+ */
+class FusedProcessorStage {
+
+    private final CompiledProcessor processor;
+    private final ProcessorContext ctx;
+    private final int inputId;
+
+    private final EventSchema outputSchema;
+    private final int outputAttributeIndex;
+    private final String outputEventId;
+    /**
+     * The slot in the output schema for each slot of the input schema
+     */
+    private final int[] outputIndexes;
+
+    FusedProcessorStage(CompiledProcessor<?> processor, ProcessorContext<?> ctx, EventSchema inputSchema) {
+        this.processor = processor;
+        this.ctx = ctx;
+
+        ProcessorInput input = processor.getInputs().get(0);
+        this.inputId = input.getId();
+
+        String outputAttributeName = processor.getOutput().getAttributeName();
+        this.outputSchema = IndexedEsperProcessorAdaptor.outputSchema(processor);
+        this.outputAttributeIndex = outputAttributeName != null ? outputSchema.indexOf(outputAttributeName) : -1;
+        this.outputEventId = EsperUtils.getEventNameForProcessor(processor);
+        this.outputIndexes = inputSchema.indexesIn(outputSchema);
+    }
+
+    int getInputId() {
+        return inputId;
+    }
+
+    EventSchema getOutputSchema() {
+        return outputSchema;
+    }
+
+    String getOutputEventId() {
+        return outputEventId;
+    }
+
+    /**
+     * Gives the event to the processor and fills the output event with the result.
+     *
+     * @param event         output event of the upstream processor
+     * @param eventsByInput reused map to hand the event to the processor in, it is cleared afterwards
+     * @param outputEvent   event with the {@link #getOutputSchema() output schema} to fill, or null to create a new
+     *                      one
+     * @return output event, or null if the processor did not produce a result
+     */
+    @SuppressWarnings("unchecked")
+    IndexedEvent processEvent(IndexedEvent event, InputEvents eventsByInput, IndexedEvent outputEvent) {
+        eventsByInput.put(inputId, event);
+        Object result;
+        try {
+            result = processor.processEvent(ctx, eventsByInput);
+        } finally {
+            eventsByInput.clear();
+        }
+
+        if (result == null || outputAttributeIndex < 0) {
+            return null;
+        }
+
+        if (outputEvent == null) {
+            outputEvent = new IndexedEvent(outputSchema);
+        } else {
+            outputEvent.clear();
+        }
+        outputEvent.set(outputAttributeIndex, result);
+        event.copyTo(outputEvent, outputIndexes);
+
+        return outputEvent;
+    }
+}
@@ -0,0 +1,612 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.incremental;
+
+import com.espertech.esper.client.Configuration;
+import com.espertech.esper.client.ConfigurationException;
+import com.espertech.esper.client.ConfigurationOperations;
+import com.espertech.esper.client.EPException;
+import com.espertech.esper.client.EPServiceProvider;
+import com.espertech.esper.client.EPServiceProviderManager;
+import com.espertech.esper.client.EPStatement;
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.lisapark.octopus.core.Input;
+import org.lisapark.octopus.core.Node;
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.ValidationException;
+import org.lisapark.octopus.core.compiler.Compiler;
+import org.lisapark.octopus.core.compiler.cache.ModelFingerprint;
+import org.lisapark.octopus.core.compiler.esper.EsperCompiler;
+import org.lisapark.octopus.core.event.EventSchema;
+import org.lisapark.octopus.core.memory.Memory;
+import org.lisapark.octopus.core.memory.MemoryProvider;
+import org.lisapark.octopus.core.memory.heap.HeapPrimitiveMemoryProvider;
+import org.lisapark.octopus.core.processor.CompiledProcessor;
+import org.lisapark.octopus.core.processor.Processor;
+import org.lisapark.octopus.core.processor.window.WindowedProcessors;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.runtime.basic.BasicProcessorContext;
+import org.lisapark.octopus.core.runtime.basic.BasicSinkContext;
+import org.lisapark.octopus.core.runtime.esper.BatchEsperRuntime;
+import org.lisapark.octopus.core.runtime.metrics.InstrumentedCompiledProcessor;
+import org.lisapark.octopus.core.runtime.metrics.InstrumentedCompiledSink;
+import org.lisapark.octopus.core.runtime.checkpoint.Checkpointer;
+import org.lisapark.octopus.core.runtime.metrics.ModelMetrics;
+import org.lisapark.octopus.core.sink.Sink;
+import org.lisapark.octopus.core.sink.external.CompiledExternalSink;
+import org.lisapark.octopus.core.sink.external.ExternalSink;
+import org.lisapark.octopus.core.source.Source;
+import org.lisapark.octopus.core.source.external.CompiledExternalSource;
+import org.lisapark.octopus.core.source.external.ExternalSource;
+import org.lisapark.octopus.util.esper.EsperUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.PrintStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * An {@link IncrementalEsperCompiler} produces the same runtime as the {@link EsperCompiler}, but it remembers what it
+ * compiled for each model name. The next time a model with the same name is compiled, only the EPL statements of
+ * {@link Node}s that changed since the last compile are regenerated, together with the statements of the nodes
+ * that read from a node whose event type changed. All other statements are kept in the engine.
+ * <p/>
+ * Every compile still binds fresh adaptors and processor memory to all statements, and restarts the statements that
+ * were kept, so no state is carried over from a previous run.
+ * <p/>
+ * A processor with a single input, whose upstream processor has no other consumers, is fused onto that upstream
+ * processor: its events are handed over directly by the adaptor of the upstream processor and its own statement is
+ * stopped, see {@link #setFusionEnabled(boolean)}. Statements over a single stream only pass the events through, so
+ * the processors see exactly the same events as without fusion.
+ * <p/>
+ * If a {@link Checkpointer} is set, the memory of every processor is registered with it, see
+ * {@link #setCheckpointer(Checkpointer)}.
+ * <p/>
+ * If a {@link ModelMetrics} is passed to {@link #compile(ProcessingModel, ModelMetrics)}, every processor and sink is
+ * decorated so it records its events and processing time in the metrics.
+ * <p/>
+ * Since the compiled runtimes share the engine of the model, a model must not be compiled again while a runtime
+ * from a previous compile of that model is still running.
+ */
+public class IncrementalEsperCompiler extends Compiler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IncrementalEsperCompiler.class);
+
+    private final Map<String, CompiledModelState> modelStates = Maps.newHashMap();
+
+    private MemoryProvider memoryProvider = new HeapPrimitiveMemoryProvider();
+    private PrintStream standardOut;
+    private PrintStream standardError;
+
+    private Checkpointer checkpointer;
+    private boolean fusionEnabled = true;
+    private boolean incrementalAggregates;
+
+    private int lastRecompiledNodeCount;
+    private int lastFusedNodeCount;
+
+    @Override
+    public synchronized void setMemoryProvider(MemoryProvider memoryProvider) {
+        checkArgument(memoryProvider != null, "memoryProvider cannot be null");
+        this.memoryProvider = memoryProvider;
+    }
+
+    @Override
+    public synchronized void setStandardOut(PrintStream standardOut) {
+        checkArgument(standardOut != null, "standardOut cannot be null");
+        this.standardOut = standardOut;
+    }
+
+    @Override
+    public synchronized void setStandardError(PrintStream standardError) {
+        checkArgument(standardError != null, "standardError cannot be null");
+        this.standardError = standardError;
+    }
+
+    /**
+     * Sets the {@link Checkpointer} that the memory of every processor is registered with, so it is restored from
+     * and saved to snapshots. Takes effect at the next compile.
+     *
+     * @param checkpointer to register with, or null for none
+     */
+    public synchronized void setCheckpointer(Checkpointer checkpointer) {
+        this.checkpointer = checkpointer;
+    }
+
+    /**
+     * Turns the fusing of chains of single input processors on or off, it is on by default. Takes effect at the next
+     * compile.
+     *
+     * @param fusionEnabled true to fuse processors
+     */
+    public synchronized void setFusionEnabled(boolean fusionEnabled) {
+        this.fusionEnabled = fusionEnabled;
+    }
+
+    public synchronized boolean isFusionEnabled() {
+        return fusionEnabled;
+    }
+
+    /**
+     * Turns the incremental versions of windowed processors on or off, they are off by default since their results
+     * can differ from the original processors in the last bits, see {@link WindowedProcessors}. Changing it forgets
+     * everything that was compiled, so the next compile is a full compile.
+     *
+     * @param incrementalAggregates true to compile windowed processors to their incremental versions
+     */
+    public synchronized void setIncrementalAggregates(boolean incrementalAggregates) {
+        if (this.incrementalAggregates != incrementalAggregates) {
+            this.incrementalAggregates = incrementalAggregates;
+            modelStates.clear();
+        }
+    }
+
+    public synchronized boolean isIncrementalAggregates() {
+        return incrementalAggregates;
+    }
+
+    /**
+     * Returns the number of processors that were fused onto their upstream processor by the last call to
+     * {@link #compile(ProcessingModel)}.
+     *
+     * @return number of fused processors
+     */
+    public synchronized int getLastFusedNodeCount() {
+        return lastFusedNodeCount;
+    }
+
+    /**
+     * Returns the number of processors and sinks whose statements were regenerated by the last call to
+     * {@link #compile(ProcessingModel)}.
+     *
+     * @return number of recompiled nodes
+     */
+    public synchronized int getLastRecompiledNodeCount() {
+        return lastRecompiledNodeCount;
+    }
+
+    /**
+     * Forgets everything that was compiled for the model with the specified name, the next compile will be a full
+     * compile.
+     *
+     * @param modelName of model
+     */
+    public synchronized void reset(String modelName) {
+        modelStates.remove(modelName);
+    }
+
+    @Override
+    public synchronized ProcessingRuntime compile(ProcessingModel model) throws ValidationException {
+        return compile(model, null);
+    }
+
+    /**
+     * Compiles the model and records the metrics of every processor and sink in the specified metrics.
+     *
+     * @param model   to compile
+     * @param metrics to record to, or null if the runtime should not be instrumented
+     * @return runtime for model
+     * @throws ValidationException if the model fails to compile
+     */
+    public synchronized ProcessingRuntime compile(ProcessingModel model, ModelMetrics metrics) throws ValidationException {
+        checkArgument(model != null, "model cannot be null");
+
+        if (model.getExternalSources().size() == 0) {
+            throw new ValidationException(String.format("The model '%s' must have at least one source configured.", model.getModelName()));
+        }
+
+        CompiledModelState state = modelStates.get(model.getModelName());
+        if (state == null || !state.isIntact()) {
+            state = newModelState(model);
+            modelStates.put(model.getModelName(), state);
+        }
+
+        List<String> errors = Lists.newLinkedList();
+        try {
+            Collection<CompiledExternalSource> sources = compileExternalSources(model.getExternalSources(), errors);
+            if (errors.isEmpty()) {
+                lastRecompiledNodeCount = updateStatements(state, model, errors);
+            }
+
+            if (!errors.isEmpty()) {
+                throw new ValidationException(Joiner.on('\n').join(errors));
+            }
+
+            Map<UUID, UUID> fusedConsumers = fusionEnabled ?
+                    fusedConsumersForModel(model) : Collections.<UUID, UUID>emptyMap();
+            lastFusedNodeCount = fusedConsumers.size();
+
+            bindStatements(state, fusedConsumers, metrics, errors);
+            if (!errors.isEmpty()) {
+                throw new ValidationException(Joiner.on('\n').join(errors));
+            }
+
+            return new BatchEsperRuntime(state.epService, sources, standardOut, standardError);
+
+        } catch (ValidationException e) {
+            // we don't know what made it into the engine, so the next compile starts from scratch
+            modelStates.remove(model.getModelName());
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a fresh engine for the model with all of the event types registered, the same as the
+     * {@link EsperCompiler} does.
+     */
+    private CompiledModelState newModelState(ProcessingModel model) {
+        LOG.debug("Doing full compile of model '{}'", model.getModelName());
+
+        Configuration configuration = new Configuration();
+        EsperStatements.registerEventTypesForModel(configuration, model);
+
+        EPServiceProvider epService = EPServiceProviderManager.getProvider(model.getModelName(), configuration);
+        epService.initialize();
+
+        CompiledModelState state = new CompiledModelState(epService);
+        state.eventDefinitions.putAll(eventDefinitionsForModel(model));
+
+        return state;
+    }
+
+    private Collection<CompiledExternalSource> compileExternalSources(Set<ExternalSource> externalSources, List<String> errors) {
+        Collection<CompiledExternalSource> compiledSources = Lists.newLinkedList();
+
+        for (ExternalSource externalSource : externalSources) {
+            try {
+                compiledSources.add(externalSource.compile());
+            } catch (ValidationException e) {
+                errors.add(e.getLocalizedMessage());
+            }
+        }
+
+        return compiledSources;
+    }
+
+    /**
+     * Brings the statements in the engine up to date with the model.
+     *
+     * @return number of nodes whose statements were regenerated
+     */
+    private int updateStatements(CompiledModelState state, ProcessingModel model, List<String> errors) {
+        ConfigurationOperations configuration = state.epService.getEPAdministrator().getConfiguration();
+
+        // first figure out which event types have changed
+        Map<String, Map<String, Object>> currentDefinitions = eventDefinitionsForModel(model);
+
+        Set<String> changedEventTypes = Sets.newHashSet();
+        for (Map.Entry<String, Map<String, Object>> entry : currentDefinitions.entrySet()) {
+            if (!entry.getValue().equals(state.eventDefinitions.get(entry.getKey()))) {
+                changedEventTypes.add(entry.getKey());
+            }
+        }
+        Set<String> removedEventTypes = Sets.newHashSet(state.eventDefinitions.keySet());
+        removedEventTypes.removeAll(currentDefinitions.keySet());
+
+        // now find the processors and sinks that need new statements
+        Map<UUID, Sink> currentSinks = Maps.newHashMap();
+        for (Processor processor : model.getProcessors()) {
+            currentSinks.put(processor.getId(), processor);
+        }
+        for (ExternalSink sink : model.getExternalSinks()) {
+            currentSinks.put(sink.getId(), sink);
+        }
+
+        Map<UUID, String> fingerprints = Maps.newHashMap();
+        Set<UUID> dirty = Sets.newHashSet();
+        for (Sink sink : currentSinks.values()) {
+            String fingerprint = ModelFingerprint.forNode(sink);
+            fingerprints.put(sink.getId(), fingerprint);
+
+            CompiledNode compiledNode = state.compiledNodes.get(sink.getId());
+            if (compiledNode == null || !compiledNode.fingerprint.equals(fingerprint) || readsFrom(sink, changedEventTypes)) {
+                dirty.add(sink.getId());
+            }
+        }
+
+        // statements have to go before the event types they use can be replaced
+        Iterator<Map.Entry<UUID, CompiledNode>> compiledNodes = state.compiledNodes.entrySet().iterator();
+        while (compiledNodes.hasNext()) {
+            Map.Entry<UUID, CompiledNode> entry = compiledNodes.next();
+            if (dirty.contains(entry.getKey()) || !currentSinks.containsKey(entry.getKey())) {
+                entry.getValue().statement.destroy();
+                compiledNodes.remove();
+            }
+        }
+
+        try {
+            for (String eventName : Sets.union(changedEventTypes, removedEventTypes)) {
+                if (configuration.getEventType(eventName) != null) {
+                    configuration.removeEventType(eventName, false);
+                }
+                state.eventDefinitions.remove(eventName);
+            }
+            for (String eventName : changedEventTypes) {
+                configuration.addEventType(eventName, currentDefinitions.get(eventName));
+                state.eventDefinitions.put(eventName, currentDefinitions.get(eventName));
+            }
+        } catch (ConfigurationException e) {
+            errors.add(e.getLocalizedMessage());
+            return dirty.size();
+        }
+
+        for (UUID id : dirty) {
+            Sink sink = currentSinks.get(id);
+            try {
+                if (sink instanceof Processor) {
+                    CompiledProcessor<?> compiledProcessor = WindowedProcessors.compile((Processor<?>) sink, incrementalAggregates);
+                    EPStatement statement = state.epService.getEPAdministrator().createEPL(
+                            EsperStatements.statementForProcessor(compiledProcessor));
+
+                    state.compiledNodes.put(id, new CompiledNode(fingerprints.get(id), statement, (Processor<?>) sink, compiledProcessor));
+                } else {
+                    CompiledExternalSink compiledSink = ((ExternalSink) sink).compile();
+                    EPStatement statement = state.epService.getEPAdministrator().createEPL(
+                            EsperStatements.statementForSink(compiledSink));
+
+                    state.compiledNodes.put(id, new CompiledNode(fingerprints.get(id), statement, (ExternalSink) sink, compiledSink));
+                }
+            } catch (ValidationException e) {
+                errors.add(e.getLocalizedMessage());
+            } catch (EPException e) {
+                errors.add(e.getLocalizedMessage());
+            }
+        }
+
+        LOG.debug("Recompiled {} of {} nodes in model '{}'", new Object[]{dirty.size(), currentSinks.size(), model.getModelName()});
+
+        return dirty.size();
+    }
+
+    /**
+     * Hooks a new adaptor, with fresh processor memory, up to every statement. Statements that were kept from the last
+     * compile are restarted first so their windows are empty. The statements of fused processors are stopped, their
+     * processors are bound as stages of the adaptor of the first processor of the chain.
+     *
+     * @param fusedConsumers id of the processor that is fused onto it by the id of every upstream processor
+     */
+    @SuppressWarnings("unchecked")
+    private void bindStatements(CompiledModelState state, Map<UUID, UUID> fusedConsumers, ModelMetrics metrics, List<String> errors) {
+        Set<UUID> fusedIds = Sets.newHashSet(fusedConsumers.values());
+
+        for (Map.Entry<UUID, CompiledNode> entry : state.compiledNodes.entrySet()) {
+            CompiledNode compiledNode = entry.getValue();
+            EPStatement statement = compiledNode.statement;
+            if (statement.isStarted() && (compiledNode.bound || fusedIds.contains(entry.getKey()))) {
+                statement.stop();
+            }
+
+            if (fusedIds.contains(entry.getKey())) {
+                statement.removeAllListeners();
+                continue;
+            }
+            if (!statement.isStarted()) {
+                statement.start();
+            }
+
+            try {
+                if (compiledNode.processor != null) {
+                    List<FusedProcessorStage> fusedStages = Lists.newArrayList();
+                    EventSchema schema = IndexedEsperProcessorAdaptor.outputSchema(compiledNode.compiledProcessor);
+                    UUID fusedId = fusedConsumers.get(entry.getKey());
+                    while (fusedId != null) {
+                        CompiledNode fusedNode = state.compiledNodes.get(fusedId);
+                        FusedProcessorStage stage = new FusedProcessorStage(bindProcessor(fusedNode, metrics),
+                                newProcessorContext(fusedNode), schema);
+                        fusedStages.add(stage);
+                        schema = stage.getOutputSchema();
+                        fusedId = fusedConsumers.get(fusedId);
+                    }
+
+                    CompiledProcessor compiledProcessor = bindProcessor(compiledNode, metrics);
+                    statement.removeAllListeners();
+                    statement.addListener(new IndexedEsperProcessorAdaptor(compiledProcessor,
+                            newProcessorContext(compiledNode), state.epService.getEPRuntime(), fusedStages));
+                } else {
+                    CompiledExternalSink compiledSink = bindSink(compiledNode.sink, compiledNode.compiledSink);
+                    if (metrics != null) {
+                        compiledSink = new InstrumentedCompiledSink(compiledNode.sink, compiledSink, metrics.metricsForNode(entry.getKey()));
+                    }
+
+                    statement.setSubscriber(new IndexedEsperExternalSinkAdaptor(compiledSink,
+                            new BasicSinkContext(standardOut, standardError)));
+                    compiledNode.bound = true;
+                }
+
+            } catch (ValidationException e) {
+                errors.add(e.getLocalizedMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the compiled processor of the node for a new runtime, the one compiled with the statement is only
+     * handed out once.
+     */
+    @SuppressWarnings("unchecked")
+    private CompiledProcessor<?> bindProcessor(CompiledNode compiledNode, ModelMetrics metrics) throws ValidationException {
+        CompiledProcessor compiledProcessor = compiledNode.bound ?
+                WindowedProcessors.compile(compiledNode.processor, incrementalAggregates) : compiledNode.compiledProcessor;
+        compiledNode.bound = true;
+
+        if (metrics != null) {
+            compiledProcessor = new InstrumentedCompiledProcessor(compiledNode.processor, compiledProcessor,
+                    metrics.metricsForNode(compiledNode.processor.getId()));
+        }
+
+        return compiledProcessor;
+    }
+
+    @SuppressWarnings("unchecked")
+    private BasicProcessorContext newProcessorContext(CompiledNode compiledNode) {
+        Memory memory = WindowedProcessors.createMemoryForProcessor(compiledNode.processor, memoryProvider,
+                incrementalAggregates);
+        if (memory != null && checkpointer != null) {
+            checkpointer.register(compiledNode.processor, memory);
+        }
+
+        return memory != null ?
+                new BasicProcessorContext(standardOut, standardError, memory) :
+                new BasicProcessorContext(standardOut, standardError);
+    }
+
+    /**
+     * Finds the processors that can be fused onto the processor upstream of them. A processor can be fused if it
+     * has a single input and no joins, and its upstream processor is read by nothing else, so the events of the
+     * upstream processor never have to go through the engine.
+     *
+     * @return id of the fused processor by the id of its upstream processor
+     */
+    private static Map<UUID, UUID> fusedConsumersForModel(ProcessingModel model) {
+        Map<UUID, Integer> consumerCounts = Maps.newHashMap();
+        List<Sink> sinks = Lists.newArrayList();
+        sinks.addAll(model.getProcessors());
+        sinks.addAll(model.getExternalSinks());
+        for (Sink sink : sinks) {
+            for (Object input : sink.getInputs()) {
+                Source source = ((Input) input).getSource();
+                if (source != null) {
+                    Integer count = consumerCounts.get(source.getId());
+                    consumerCounts.put(source.getId(), count == null ? 1 : count + 1);
+                }
+            }
+        }
+
+        Set<UUID> processorIds = Sets.newHashSet();
+        for (Processor processor : model.getProcessors()) {
+            processorIds.add(processor.getId());
+        }
+
+        Map<UUID, UUID> fusedConsumers = Maps.newHashMap();
+        for (Processor processor : model.getProcessors()) {
+            if (processor.getInputs().size() != 1 || !processor.getJoins().isEmpty()) {
+                continue;
+            }
+
+            Source source = ((Input) processor.getInputs().get(0)).getSource();
+            if (source != null && processorIds.contains(source.getId()) && consumerCounts.get(source.getId()) == 1) {
+                fusedConsumers.put(source.getId(), processor.getId());
+            }
+        }
+
+        return fusedConsumers;
+    }
+
+    /**
+     * Returns the compiled sink that will receive the events of the statement of the specified sink. This
+     * implementation returns the compiled sink unchanged; subclasses can return a different one, for instance to
+     * send the events of several engines to the same sink.
+     *
+     * @param sink         that is being bound
+     * @param compiledSink the sink compiled to
+     * @return compiled sink to bind to the statement
+     */
+    protected CompiledExternalSink bindSink(ExternalSink sink, CompiledExternalSink compiledSink) {
+        return compiledSink;
+    }
+
+    private static Map<String, Map<String, Object>> eventDefinitionsForModel(ProcessingModel model) {
+        Map<String, Map<String, Object>> eventDefinitions = Maps.newHashMap();
+
+        for (ExternalSource source : model.getExternalSources()) {
+            eventDefinitions.put(EsperUtils.getEventNameForSource(source), source.getOutput().getEventDefinition());
+        }
+        for (Processor processor : model.getProcessors()) {
+            eventDefinitions.put(EsperUtils.getEventNameForSource(processor), processor.getOutput().getEventDefinition());
+        }
+
+        return eventDefinitions;
+    }
+
+    private static boolean readsFrom(Sink sink, Set<String> eventNames) {
+        for (Object input : sink.getInputs()) {
+            Source source = ((Input) input).getSource();
+            if (source != null && eventNames.contains(EsperUtils.getEventNameForSource(source))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Everything we remember about a model between compiles
+     */
+    private static class CompiledModelState {
+        private final EPServiceProvider epService;
+        /**
+         * Event definitions by event type name
+         */
+        private final Map<String, Map<String, Object>> eventDefinitions = Maps.newHashMap();
+        private final Map<UUID, CompiledNode> compiledNodes = Maps.newHashMap();
+
+        private CompiledModelState(EPServiceProvider epService) {
+            this.epService = epService;
+        }
+
+        /**
+         * Somebody else, like the {@link EsperCompiler}, may have reinitialized the engine for the same model name
+         */
+        private boolean isIntact() {
+            if (epService.isDestroyed()) {
+                return false;
+            }
+            for (CompiledNode compiledNode : compiledNodes.values()) {
+                if (compiledNode.statement.isDestroyed()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class CompiledNode {
+        private final String fingerprint;
+        private final EPStatement statement;
+        private final Processor<?> processor;
+        private final CompiledProcessor<?> compiledProcessor;
+        private final ExternalSink sink;
+        private final CompiledExternalSink compiledSink;
+        /**
+         * True once the statement has been handed out in a runtime
+         */
+        private boolean bound;
+
+        private CompiledNode(String fingerprint, EPStatement statement, Processor<?> processor, CompiledProcessor<?> compiledProcessor) {
+            this.fingerprint = fingerprint;
+            this.statement = statement;
+            this.processor = processor;
+            this.compiledProcessor = compiledProcessor;
+            this.sink = null;
+            this.compiledSink = null;
+        }
+
+        private CompiledNode(String fingerprint, EPStatement statement, ExternalSink sink, CompiledExternalSink compiledSink) {
+            this.fingerprint = fingerprint;
+            this.statement = statement;
+            this.processor = null;
+            this.compiledProcessor = null;
+            this.sink = sink;
+            this.compiledSink = compiledSink;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.incremental;
+
+import org.lisapark.octopus.core.Input;
+import org.lisapark.octopus.core.event.EventSchema;
+import org.lisapark.octopus.core.event.IndexedEvent;
+import org.lisapark.octopus.core.event.InputEvents;
+import org.lisapark.octopus.core.runtime.SinkContext;
+import org.lisapark.octopus.core.sink.external.CompiledExternalSink;
+
+import java.util.Map;
+
+/**
+ * Replacement for the <code>EsperExternalSinkAdaptor</code> of the core that hands the sink an {@link IndexedEvent}. The event and
+ * the map it is handed to the sink in are reused for every event that is dispatched on a thread, so once the
+ * adaptor has seen an event on a thread, dispatching to the sink does not allocate anything. The sink is only
+ * allowed to use the event while it processes it.
+ */
+class IndexedEsperExternalSinkAdaptor {
+
+    private final CompiledExternalSink externalSink;
+    private final SinkContext ctx;
+
+    private final int inputId;
+    private final EventSchema schema;
+
+    private final ThreadLocal<DispatchState> dispatchState = new ThreadLocal<DispatchState>() {
+        @Override
+        protected DispatchState initialValue() {
+            return new DispatchState(schema, inputId);
+        }
+    };
+
+    IndexedEsperExternalSinkAdaptor(CompiledExternalSink externalSink, SinkContext ctx) {
+        this.externalSink = externalSink;
+        this.ctx = ctx;
+
+        // the statement of a sink only ever selects from its first input, see EsperStatements#statementForSink
+        Input input = (Input) externalSink.getInputs().get(0);
+        this.inputId = input.getId();
+        this.schema = IndexedEsperProcessorAdaptor.schemaForSource(input.getSource());
+    }
+
+    /**
+     * Called by Esper with the underlying map of every event selected by the statement of the sink.
+     *
+     * @param data of the event
+     */
+    @SuppressWarnings("unchecked")
+    public void update(Map<String, Object> data) {
+        DispatchState state = dispatchState.get();
+        state.event.copyFrom(data);
+
+        externalSink.processEvent(ctx, state.eventsByInputId);
+    }
+
+    private static class DispatchState {
+        final IndexedEvent event;
+        final InputEvents eventsByInputId;
+
+        DispatchState(EventSchema schema, int inputId) {
+            this.event = new IndexedEvent(schema);
+            this.eventsByInputId = new InputEvents(inputId);
+            eventsByInputId.put(inputId, event);
+        }
+    }
+}
@@ -0,0 +1,345 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.incremental;
+
+import com.espertech.esper.client.EPRuntime;
+import com.espertech.esper.client.EventBean;
+import com.espertech.esper.client.UpdateListener;
+import com.espertech.esper.event.map.MapEventBean;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.event.EventSchema;
+import org.lisapark.octopus.core.event.IndexedEvent;
+import org.lisapark.octopus.core.event.InputEvents;
+import org.lisapark.octopus.core.processor.CompiledProcessor;
+import org.lisapark.octopus.core.processor.ProcessorInput;
+import org.lisapark.octopus.core.processor.ProcessorJoin;
+import org.lisapark.octopus.core.runtime.ProcessorContext;
+import org.lisapark.octopus.core.source.Source;
+import org.lisapark.octopus.util.esper.EsperUtils;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replacement for the <code>EsperProcessorAdaptor</code> of the core that hands {@link IndexedEvent}s to the processor. The schema of
+ * every input, the schema of the output event and the slots that have to be copied from each input into the output
+ * are all resolved when the adaptor is created, so no attribute names are looked up for the output event. Since
+ * the schema of an input is the output schema of the adaptor upstream, the input events are copied from the
+ * upstream slots directly.
+ * <p/>
+ * The processor sees exactly the same events as with the <code>EsperProcessorAdaptor</code>, and the output event has the
+ * same attributes: the output attribute together with every attribute of the input events, where the attributes of
+ * the inputs win if a name is used more than once.
+ * <p/>
+ * If processors have been fused onto the processor, see {@link FusedProcessorStage}, its output events go through
+ * them first and only the output events of the last stage are sent to the engine.
+ */
+class IndexedEsperProcessorAdaptor implements UpdateListener {
+
+    private static final Comparator<ProcessorInput> INPUT_ID_COMPARATOR = new Comparator<ProcessorInput>() {
+        @Override
+        public int compare(ProcessorInput input1, ProcessorInput input2) {
+            return input1.getId() - input2.getId();
+        }
+    };
+
+    private final CompiledProcessor processor;
+    private final ProcessorContext ctx;
+    private final EPRuntime runtime;
+
+    /**
+     * The inputs of the processor ordered by id, which is the order their events are copied into the output
+     */
+    private final InputSlot[] inputs;
+    private final EventNameTable inputsByEventName;
+    /**
+     * Position of the input for each name in the {@link #inputsByEventName}
+     */
+    private final int[] inputPositions;
+    /**
+     * Name of the property that holds the event of each input in the events of the statement, see
+     * {@link EsperStatements#statementForProcessor}
+     */
+    private final String[] streamPropertyNames;
+    private final int maximumInputId;
+
+    private final EventSchema outputSchema;
+    private final int outputAttributeIndex;
+    /**
+     * Processors fused onto this one, in the order the output events go through them
+     */
+    private final FusedProcessorStage[] fusedStages;
+    /**
+     * Name of the event that is sent to the engine, which is the output of the last fused stage if there are any
+     */
+    private final String outputEventId;
+
+    private final ThreadLocal<DispatchState> dispatchState = new ThreadLocal<DispatchState>() {
+        @Override
+        protected DispatchState initialValue() {
+            return new DispatchState(inputs, maximumInputId, outputSchema, fusedStages);
+        }
+    };
+
+    IndexedEsperProcessorAdaptor(CompiledProcessor<?> processor, ProcessorContext<?> ctx, EPRuntime runtime) {
+        this(processor, ctx, runtime, Collections.<FusedProcessorStage>emptyList());
+    }
+
+    /**
+     * Creates an adaptor that hands the output events of the processor to the fused stages, one after the other,
+     * and only sends the output events of the last stage to the engine.
+     */
+    IndexedEsperProcessorAdaptor(CompiledProcessor<?> processor, ProcessorContext<?> ctx, EPRuntime runtime,
+                                 List<FusedProcessorStage> fusedStages) {
+        this.processor = processor;
+        this.ctx = ctx;
+        this.runtime = runtime;
+
+        List<ProcessorInput> processorInputs = sortedById(processor.getInputs());
+
+        String outputAttributeName = processor.getOutput().getAttributeName();
+        this.outputSchema = EventSchema.forProcessorOutput(outputAttributeName, processorInputs);
+        this.outputAttributeIndex = outputAttributeName != null ? outputSchema.indexOf(outputAttributeName) : -1;
+        this.fusedStages = fusedStages.toArray(new FusedProcessorStage[fusedStages.size()]);
+        this.outputEventId = this.fusedStages.length > 0 ?
+                this.fusedStages[this.fusedStages.length - 1].getOutputEventId() :
+                EsperUtils.getEventNameForProcessor(processor);
+
+        this.inputs = new InputSlot[processorInputs.size()];
+        List<String> eventNames = Lists.newArrayList();
+        List<Integer> positions = Lists.newArrayList();
+        int maximumId = 0;
+        for (int i = 0; i < inputs.length; ++i) {
+            ProcessorInput input = processorInputs.get(i);
+            EventSchema schema = schemaForSource(input.getSource());
+            String eventName = EsperUtils.getEventNameForSource(input.getSource());
+
+            inputs[i] = new InputSlot(input.getId(), schema, schema.indexesIn(outputSchema));
+            maximumId = Math.max(maximumId, input.getId());
+            // when two inputs read the same source, its events go to the first one, as in the EsperProcessorAdaptor
+            if (!eventNames.contains(eventName)) {
+                eventNames.add(eventName);
+                positions.add(i);
+            }
+        }
+        this.maximumInputId = maximumId;
+        this.inputsByEventName = new EventNameTable(eventNames.toArray(new String[eventNames.size()]));
+        this.inputPositions = Ints.toArray(positions);
+
+        // an event on an input with an optional join is also given to the processor as the event of the other input
+        for (InputSlot inputSlot : inputs) {
+            ProcessorInput input = findInputWithId(processorInputs, inputSlot.inputId);
+            ProcessorJoin join = processor.getJoinForInput(input);
+            if (join != null && !join.isRequired()) {
+                inputSlot.otherPosition = positionOfInputWithId(processorInputs, join.getOtherInput(input).getId());
+            }
+        }
+
+        List<ProcessorInput> statementInputs = processor.getInputs();
+        this.streamPropertyNames = new String[statementInputs.size()];
+        for (int i = 0; i < streamPropertyNames.length; ++i) {
+            streamPropertyNames[i] = "_" + i + "_properties";
+        }
+    }
+
+    /**
+     * Returns the schema of the events that the source sends, see {@link EventSchema#forSource(Source)}.
+     *
+     * @param source to get the schema for
+     * @return schema of the events of the source
+     */
+    static EventSchema schemaForSource(Source source) {
+        return EventSchema.forSource(source);
+    }
+
+    /**
+     * Returns the schema of the output events of the compiled processor.
+     *
+     * @param processor to get the schema for
+     * @return schema of the events the processor sends
+     */
+    static EventSchema outputSchema(CompiledProcessor<?> processor) {
+        return EventSchema.forProcessorOutput(processor.getOutput().getAttributeName(), processor.getInputs());
+    }
+
+    private static List<ProcessorInput> sortedById(List<ProcessorInput> processorInputs) {
+        List<ProcessorInput> sortedInputs = Lists.newArrayList(processorInputs);
+        Collections.sort(sortedInputs, INPUT_ID_COMPARATOR);
+
+        return sortedInputs;
+    }
+
+    private static int positionOfInputWithId(List<ProcessorInput> processorInputs, int inputId) {
+        return processorInputs.indexOf(findInputWithId(processorInputs, inputId));
+    }
+
+    private static ProcessorInput findInputWithId(List<ProcessorInput> processorInputs, int inputId) {
+        for (ProcessorInput input : processorInputs) {
+            if (input.getId() == inputId) {
+                return input;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void update(EventBean[] newEvents, EventBean[] oldEvents) {
+        if (newEvents == null || newEvents.length == 0 || !(newEvents[0] instanceof MapEventBean)) {
+            return;
+        }
+
+        DispatchState state = dispatchState.get();
+        state.clear();
+
+        Map<String, Object> streams = ((MapEventBean) newEvents[0]).getProperties();
+        boolean found = false;
+        for (String propertyName : streamPropertyNames) {
+            Object stream = streams.get(propertyName);
+            if (stream != null) {
+                receive((MapEventBean) stream, state);
+                found = true;
+            }
+        }
+        if (!found) {
+            // the statement does not name its streams the way we expect, so just take all of them
+            for (Object stream : streams.values()) {
+                receive((MapEventBean) stream, state);
+            }
+        }
+
+        Object result = processor.processEvent(ctx, state.eventsByInputId);
+
+        if (result != null && outputAttributeIndex >= 0) {
+            // the engine keeps the events it is sent, only the events between fused stages can be reused
+            IndexedEvent outputEvent;
+            if (fusedStages.length == 0) {
+                outputEvent = new IndexedEvent(outputSchema);
+            } else {
+                outputEvent = state.stageEvents[0];
+                outputEvent.clear();
+            }
+            outputEvent.set(outputAttributeIndex, result);
+
+            for (int i = 0; i < inputs.length; ++i) {
+                if (state.eventsByPosition[i] != null) {
+                    state.eventsByPosition[i].copyTo(outputEvent, state.slotsByPosition[i].outputIndexes);
+                }
+            }
+
+            for (int i = 0; i < fusedStages.length && outputEvent != null; ++i) {
+                outputEvent = fusedStages[i].processEvent(outputEvent, state.stageInputEvents[i], state.stageEvents[i + 1]);
+            }
+
+            if (outputEvent != null) {
+                runtime.sendEvent(outputEvent.getData(), outputEventId);
+            }
+        }
+
+        // do not hold on to the events of the statement until the next event
+        state.clear();
+    }
+
+    private void receive(MapEventBean streamEvent, DispatchState state) {
+        int namePosition = inputsByEventName.positionOf(streamEvent.getEventType().getName());
+        if (namePosition < 0) {
+            return;
+        }
+
+        int position = inputPositions[namePosition];
+        InputSlot inputSlot = inputs[position];
+        IndexedEvent event = state.inputEvents[position];
+        event.copyFrom(streamEvent.getProperties());
+
+        state.put(position, event, inputSlot);
+        if (inputSlot.otherPosition >= 0) {
+            state.put(inputSlot.otherPosition, event, inputSlot);
+        }
+    }
+
+    /**
+     * The events of a single dispatch, which are reused for every event that is dispatched on a thread. The
+     * processor is only allowed to use the events while it processes them, none of the processors keep them.
+     */
+    private static class DispatchState {
+        final InputEvents eventsByInputId;
+        final IndexedEvent[] inputEvents;
+        final IndexedEvent[] eventsByPosition;
+        final InputSlot[] slotsByPosition;
+        final InputSlot[] inputs;
+        /**
+         * The map each fused stage is given its input event in
+         */
+        final InputEvents[] stageInputEvents;
+        /**
+         * The input event of each fused stage, the last slot is null since the output of the last stage is sent to
+         * the engine
+         */
+        final IndexedEvent[] stageEvents;
+
+        DispatchState(InputSlot[] inputs, int maximumInputId, EventSchema outputSchema, FusedProcessorStage[] fusedStages) {
+            this.inputs = inputs;
+            this.eventsByInputId = new InputEvents(maximumInputId);
+            this.inputEvents = new IndexedEvent[inputs.length];
+            this.eventsByPosition = new IndexedEvent[inputs.length];
+            this.slotsByPosition = new InputSlot[inputs.length];
+
+            for (int i = 0; i < inputs.length; ++i) {
+                inputEvents[i] = new IndexedEvent(inputs[i].schema);
+            }
+
+            this.stageInputEvents = new InputEvents[fusedStages.length];
+            this.stageEvents = new IndexedEvent[fusedStages.length + 1];
+            for (int i = 0; i < fusedStages.length; ++i) {
+                stageInputEvents[i] = new InputEvents(fusedStages[i].getInputId());
+                stageEvents[i] = new IndexedEvent(i == 0 ? outputSchema : fusedStages[i - 1].getOutputSchema());
+            }
+        }
+
+        void put(int position, IndexedEvent event, InputSlot eventSlot) {
+            eventsByInputId.put(inputs[position].inputId, event);
+            eventsByPosition[position] = event;
+            slotsByPosition[position] = eventSlot;
+        }
+
+        void clear() {
+            eventsByInputId.clear();
+            for (int i = 0; i < eventsByPosition.length; ++i) {
+                eventsByPosition[i] = null;
+                slotsByPosition[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Everything that is resolved up front for a single input
+     */
+    private static class InputSlot {
+        final int inputId;
+        final EventSchema schema;
+        /**
+         * The slot in the output schema for each slot of the input schema
+         */
+        final int[] outputIndexes;
+        int otherPosition = -1;
+
+        InputSlot(int inputId, EventSchema schema, int[] outputIndexes) {
+            this.inputId = inputId;
+            this.schema = schema;
+            this.outputIndexes = outputIndexes;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.incremental;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.lisapark.octopus.core.Input;
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.ValidationException;
+import org.lisapark.octopus.core.event.Attribute;
+import org.lisapark.octopus.core.memory.heap.HeapMemoryProvider;
+import org.lisapark.octopus.core.processor.Processor;
+import org.lisapark.octopus.core.processor.ProcessorInput;
+import org.lisapark.octopus.core.processor.ProcessorJoin;
+import org.lisapark.octopus.core.source.Source;
+import org.lisapark.octopus.core.source.external.ExternalSource;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Checks that a model gives the same results when its events are spread over the replicas of a
+ * {@link PartitionedEsperCompiler} as it does on a single engine.
+ * <p/>
+ * Every replica keeps its own processor memories and join windows. That is only correct for the processors that
+ * see all events of their sources, which are the ones fed by sources without a partition key, since those events
+ * all go to the first replica. A processor fed by a partitioned source only sees the keys of its own replica, so:
+ * <ul>
+ * <li>it cannot have a memory, a window over part of the keys is neither the window over all of them nor the window
+ * of a single key</li>
+ * <li>it can only join if every source it is fed by is partitioned, and the join attribute of both inputs is the
+ * partition key, with the same type, so that the events that match are always processed by the same replica</li>
+ * </ul>
+ */
+class PartitionScopes {
+
+    private final Map<UUID, String> partitionKeys;
+    private final Map<UUID, Set<ExternalSource>> sourcesByProcessor = Maps.newHashMap();
+
+    private PartitionScopes(Map<UUID, String> partitionKeys) {
+        this.partitionKeys = partitionKeys;
+    }
+
+    /**
+     * Validates the processors of the model for the specified partition keys.
+     *
+     * @param model         to validate
+     * @param partitionKeys names of the key attributes by source id, sources without a key are not in the map
+     * @throws ValidationException if a processor would give different results once partitioned
+     */
+    static void validate(ProcessingModel model, Map<UUID, String> partitionKeys) throws ValidationException {
+        PartitionScopes scopes = new PartitionScopes(partitionKeys);
+
+        for (Processor<?> processor : model.getProcessors()) {
+            scopes.validate(processor);
+        }
+    }
+
+    private void validate(Processor<?> processor) throws ValidationException {
+        Set<ExternalSource> partitionedSources = Sets.newLinkedHashSet();
+        for (ExternalSource source : sourcesOf(processor)) {
+            if (partitionKeys.containsKey(source.getId())) {
+                partitionedSources.add(source);
+            }
+        }
+
+        if (partitionedSources.isEmpty()) {
+            return;
+        }
+
+        if (processor.createMemoryForProcessor(new HeapMemoryProvider()) != null) {
+            throw new ValidationException(String.format("Processor %s keeps a memory over the events of the " +
+                    "partitioned sources %s, so every partition would only remember part of the events. Remove " +
+                    "the partition keys of the sources.", processor.getName(), namesOf(partitionedSources)));
+        }
+
+        if (processor.getInputs().size() > 1 && processor.getJoins().isEmpty()) {
+            throw new ValidationException(String.format("Processor %s combines the events of more than one input " +
+                    "without a join attribute, which cannot be partitioned", processor.getName()));
+        }
+
+        for (ProcessorJoin join : processor.getJoins()) {
+            validateJoin(processor, join);
+        }
+    }
+
+    private void validateJoin(Processor<?> processor, ProcessorJoin join) throws ValidationException {
+        Class<?> keyType = null;
+
+        for (ProcessorInput input : new ProcessorInput[]{join.getFirstInput(), join.getSecondInput()}) {
+            Attribute joinAttribute = join.getJoinAttributeForInput(input);
+
+            for (ExternalSource source : sourcesOf(input)) {
+                String partitionKey = partitionKeys.get(source.getId());
+
+                if (joinAttribute == null || partitionKey == null || !partitionKey.equals(joinAttribute.getName())) {
+                    throw new ValidationException(String.format("Processor %s joins events from %s, which has to " +
+                            "be partitioned on the join attribute of the input so that matching events are " +
+                            "processed by the same partition", processor.getName(), source.getName()));
+                }
+            }
+
+            // the same value of a different type, like 1 and 1.0, hashes to a different partition
+            if (keyType == null) {
+                keyType = joinAttribute.getType();
+            } else if (!keyType.equals(joinAttribute.getType())) {
+                throw new ValidationException(String.format("Processor %s joins on attributes of different types, " +
+                        "which are not partitioned the same way", processor.getName()));
+            }
+        }
+    }
+
+    private Set<ExternalSource> sourcesOf(Processor<?> processor) {
+        Set<ExternalSource> sources = sourcesByProcessor.get(processor.getId());
+
+        if (sources == null) {
+            sources = Sets.newLinkedHashSet();
+            for (Object input : processor.getInputs()) {
+                sources.addAll(sourcesOf((Input<?>) input));
+            }
+            sourcesByProcessor.put(processor.getId(), sources);
+        }
+
+        return sources;
+    }
+
+    private Set<ExternalSource> sourcesOf(Input<?> input) {
+        Source source = input.getSource();
+
+        if (source instanceof ExternalSource) {
+            return Sets.newHashSet((ExternalSource) source);
+        } else if (source instanceof Processor) {
+            return sourcesOf((Processor<?>) source);
+        }
+
+        return Sets.newHashSet();
+    }
+
+    private static String namesOf(Set<ExternalSource> sources) {
+        StringBuilder names = new StringBuilder();
+        for (ExternalSource source : sources) {
+            if (names.length() > 0) {
+                names.append(", ");
+            }
+            names.append(source.getName());
+        }
+
+        return names.toString();
+    }
+}
@@ -0,0 +1,166 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.incremental;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.ValidationException;
+import org.lisapark.octopus.core.compiler.Compiler;
+import org.lisapark.octopus.core.event.Attribute;
+import org.lisapark.octopus.core.memory.MemoryProvider;
+import org.lisapark.octopus.core.processor.Processor;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.runtime.partition.PartitionedProcessingRuntime;
+import org.lisapark.octopus.core.sink.external.CompiledExternalSink;
+import org.lisapark.octopus.core.sink.external.ExternalSink;
+import org.lisapark.octopus.core.source.external.CompiledExternalSource;
+import org.lisapark.octopus.core.source.external.ExternalSource;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A {@link PartitionedEsperCompiler} compiles a {@link ProcessingModel} into a number of replicas, each with its own
+ * Esper engine, so that a single model can use more than one core. The events of every {@link ExternalSource} are
+ * hashed on the partition key {@link Attribute} of the source to pick the replica they are processed by, see
+ * {@link PartitionedProcessingRuntime}. Events of a source without a partition key all go to the first replica.
+ * <p/>
+ * Processors only ever see the events of their own replica, so every replica has its own memories and join windows.
+ * To give the same results as a single engine, a processor that is fed by a partitioned source cannot have a memory,
+ * and can only join on the partition key; models that break these rules are rejected when they are compiled, see
+ * {@link PartitionScopes}. Windowed processors can still be fed by sources without a partition key, whose events are
+ * all processed by the first replica.
+ * <p/>
+ * Every sink is compiled once and shared by all replicas, calls to it are serialized. Since all events with the
+ * same key are processed in order by the same replica, a sink receives the events for a key in the order the
+ * source sent them.
+ */
+public class PartitionedEsperCompiler extends Compiler {
+
+    private static final String REPLICA_NAME_SEPARATOR = "#partition-";
+
+    private final int numberOfPartitions;
+    private final ReplicaCompiler replicaCompiler = new ReplicaCompiler();
+    private final Map<UUID, String> partitionKeys = Maps.newHashMap();
+
+    private PrintStream standardError;
+
+    public PartitionedEsperCompiler(int numberOfPartitions) {
+        checkArgument(numberOfPartitions > 0, "numberOfPartitions has to be greater than zero");
+        this.numberOfPartitions = numberOfPartitions;
+    }
+
+    public int getNumberOfPartitions() {
+        return numberOfPartitions;
+    }
+
+    /**
+     * Sets the attribute whose value decides which replica processes an event of the source.
+     *
+     * @param source    to partition
+     * @param attribute of the source's output, or null to send all events of the source to the first replica
+     */
+    public synchronized void setPartitionKey(ExternalSource source, Attribute attribute) {
+        checkArgument(source != null, "source cannot be null");
+
+        if (attribute == null) {
+            partitionKeys.remove(source.getId());
+        } else {
+            checkArgument(source.getOutput().getAttributeByName(attribute.getName()) != null,
+                    "Source %s does not have an attribute named %s", source.getName(), attribute.getName());
+            partitionKeys.put(source.getId(), attribute.getName());
+        }
+    }
+
+    @Override
+    public synchronized void setMemoryProvider(MemoryProvider memoryProvider) {
+        replicaCompiler.setMemoryProvider(memoryProvider);
+    }
+
+    @Override
+    public synchronized void setStandardOut(PrintStream standardOut) {
+        replicaCompiler.setStandardOut(standardOut);
+    }
+
+    @Override
+    public synchronized void setStandardError(PrintStream standardError) {
+        checkArgument(standardError != null, "standardError cannot be null");
+        this.standardError = standardError;
+        replicaCompiler.setStandardError(standardError);
+    }
+
+    @Override
+    public synchronized ProcessingRuntime compile(ProcessingModel model) throws ValidationException {
+        checkArgument(model != null, "model cannot be null");
+
+        if (numberOfPartitions > 1) {
+            PartitionScopes.validate(model, partitionKeys);
+        }
+
+        List<CompiledExternalSource> compiledSources = Lists.newArrayList();
+        List<ExternalSource> sources = Lists.newArrayList();
+        for (ExternalSource source : model.getExternalSources()) {
+            sources.add(source);
+            compiledSources.add(source.compile());
+        }
+
+        replicaCompiler.sharedSinks.clear();
+        List<ProcessingRuntime> replicas = Lists.newArrayListWithCapacity(numberOfPartitions);
+        for (int partition = 0; partition < numberOfPartitions; ++partition) {
+            replicas.add(replicaCompiler.compile(replicaOf(model, partition)));
+        }
+
+        return new PartitionedProcessingRuntime(replicas, sources, compiledSources, Maps.newHashMap(partitionKeys), standardError);
+    }
+
+    /**
+     * Returns a copy of the model with its own name, so it gets its own engine, and with sources that do not produce
+     * any events themselves.
+     */
+    private static ProcessingModel replicaOf(ProcessingModel model, int partition) {
+        ProcessingModel replica = new ProcessingModel(model.getModelName() + REPLICA_NAME_SEPARATOR + partition);
+
+        for (ExternalSource externalSource : model.getExternalSources()) {
+            replica.addExternalEventSource(new ReplicaExternalSource(externalSource));
+        }
+        for (Processor processor : model.getProcessors()) {
+            replica.addProcessor(processor);
+        }
+        for (ExternalSink externalSink : model.getExternalSinks()) {
+            replica.addExternalSink(externalSink);
+        }
+
+        return replica;
+    }
+
+    /**
+     * Compiles the replicas, binding the statement of every sink in every replica to the same compiled sink
+     */
+    private static class ReplicaCompiler extends IncrementalEsperCompiler {
+        final Map<UUID, SharedCompiledSink> sharedSinks = Maps.newHashMap();
+
+        @Override
+        protected CompiledExternalSink bindSink(ExternalSink sink, CompiledExternalSink compiledSink) {
+            SharedCompiledSink sharedSink = sharedSinks.get(sink.getId());
+            if (sharedSink == null) {
+                sharedSink = new SharedCompiledSink(sink, compiledSink);
+                sharedSinks.put(sink.getId(), sharedSink);
+            }
+
+            return sharedSink;
+        }
+    }
+}
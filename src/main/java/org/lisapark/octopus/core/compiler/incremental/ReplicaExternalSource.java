@@ -0,0 +1,57 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.incremental;
+
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.source.Source;
+import org.lisapark.octopus.core.source.external.CompiledExternalSource;
+import org.lisapark.octopus.core.source.external.ExternalSource;
+
+/**
+ * Stands in for an {@link ExternalSource} in a replica compiled by the {@link PartitionedEsperCompiler}. It keeps the
+ * id and output of the source, so the replica has the same event types, but it does not produce any events; the
+ * events of the real source are handed to the replica by the
+ * {@link org.lisapark.octopus.core.runtime.partition.PartitionedProcessingRuntime}.
+ */
+class ReplicaExternalSource extends ExternalSource {
+
+    private static final CompiledExternalSource NO_EVENTS = new CompiledExternalSource() {
+        @Override
+        public void startProcessingEvents(ProcessingRuntime runtime) {
+        }
+
+        @Override
+        public void stopProcessingEvents() {
+        }
+    };
+
+    private final ExternalSource source;
+
+    ReplicaExternalSource(ExternalSource source) {
+        super(source.getId(), source);
+        this.source = source;
+    }
+
+    @Override
+    public CompiledExternalSource compile() {
+        return NO_EVENTS;
+    }
+
+    @Override
+    public Source newInstance() {
+        return source.newInstance();
+    }
+
+    @Override
+    public Source copyOf() {
+        return new ReplicaExternalSource((ExternalSource) source.copyOf());
+    }
+}
@@ -0,0 +1,37 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.incremental;
+
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.runtime.SinkContext;
+import org.lisapark.octopus.core.sink.Sink;
+import org.lisapark.octopus.core.sink.external.CompiledExternalSink;
+
+import java.util.Map;
+
+/**
+ * A {@link CompiledExternalSink} that is bound to the sink statements of several engines. The calls from the
+ * engines are serialized, so the sink it delegates to never sees more than one event at a time.
+ */
+class SharedCompiledSink extends CompiledExternalSink {
+
+    private final CompiledExternalSink delegate;
+
+    SharedCompiledSink(Sink sink, CompiledExternalSink delegate) {
+        super(sink);
+        this.delegate = delegate;
+    }
+
+    @Override
+    public synchronized void processEvent(SinkContext ctx, Map<Integer, Event> eventsByInputId) {
+        delegate.processEvent(ctx, eventsByInputId);
+    }
+}
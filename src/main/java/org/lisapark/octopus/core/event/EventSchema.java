@@ -0,0 +1,192 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.event;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.lisapark.octopus.core.Output;
+import org.lisapark.octopus.core.processor.Processor;
+import org.lisapark.octopus.core.processor.ProcessorInput;
+import org.lisapark.octopus.core.source.Source;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * An {@link EventSchema} assigns each attribute of an {@link EventType} a fixed slot, so the values of an
+ * {@link IndexedEvent} can be kept in an array. Resolving an attribute name to its slot is a hash lookup, which
+ * should be done once when a model is compiled; the slot is then used for every event.
+ */
+public class EventSchema {
+
+    private static final Comparator<ProcessorInput> INPUT_ID_COMPARATOR = new Comparator<ProcessorInput>() {
+        @Override
+        public int compare(ProcessorInput input1, ProcessorInput input2) {
+            return input1.getId() - input2.getId();
+        }
+    };
+
+    private final String[] attributeNames;
+    private final Map<String, Integer> indexesByName;
+
+    private EventSchema(Collection<String> attributeNames) {
+        this.attributeNames = attributeNames.toArray(new String[attributeNames.size()]);
+        this.indexesByName = Maps.newHashMapWithExpectedSize(attributeNames.size());
+
+        for (int i = 0; i < this.attributeNames.length; ++i) {
+            Integer previous = indexesByName.put(this.attributeNames[i], i);
+            checkArgument(previous == null, "Attribute %s is in the schema more than once", this.attributeNames[i]);
+        }
+    }
+
+    public int size() {
+        return attributeNames.length;
+    }
+
+    public String getAttributeName(int index) {
+        return attributeNames[index];
+    }
+
+    /**
+     * Returns the slot of the attribute with the specified name.
+     *
+     * @param attributeName to look up
+     * @return slot, or -1 if the schema has no attribute with that name
+     */
+    public int indexOf(String attributeName) {
+        Integer index = indexesByName.get(attributeName);
+
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Returns, for every slot of this schema, the slot of the attribute with the same name in the target schema,
+     * or -1 if the target does not have the attribute. This is used to copy the values of an event into an event
+     * of a wider schema without looking up any names.
+     *
+     * @param target schema to map to
+     * @return slots in the target schema
+     */
+    public int[] indexesIn(EventSchema target) {
+        int[] indexes = new int[attributeNames.length];
+        for (int i = 0; i < attributeNames.length; ++i) {
+            indexes[i] = target.indexOf(attributeNames[i]);
+        }
+
+        return indexes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        return Arrays.equals(attributeNames, ((EventSchema) o).attributeNames);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(attributeNames);
+    }
+
+    @Override
+    public String toString() {
+        return "EventSchema" + Lists.newArrayList(attributeNames);
+    }
+
+    public static EventSchema withAttributeNames(Collection<String> attributeNames) {
+        checkArgument(attributeNames != null, "attributeNames cannot be null");
+        return new EventSchema(attributeNames);
+    }
+
+    public static EventSchema forEventType(EventType eventType) {
+        checkArgument(eventType != null, "eventType cannot be null");
+        return new EventSchema(eventType.getAttributeNames());
+    }
+
+    public static EventSchema forOutput(Output output) {
+        checkArgument(output != null, "output cannot be null");
+        return new EventSchema(output.getAttributeNames());
+    }
+
+    /**
+     * Returns a schema with all attributes of the specified schemas, in the order they first appear.
+     *
+     * @param schemas to combine
+     * @return union of the schemas
+     */
+    public static EventSchema unionOf(List<EventSchema> schemas) {
+        List<String> attributeNames = Lists.newArrayList();
+        Map<String, Boolean> seen = Maps.newHashMap();
+
+        for (EventSchema schema : schemas) {
+            for (String attributeName : schema.attributeNames) {
+                if (seen.put(attributeName, Boolean.TRUE) == null) {
+                    attributeNames.add(attributeName);
+                }
+            }
+        }
+
+        return new EventSchema(attributeNames);
+    }
+
+    /**
+     * Returns the schema of the events that the source sends at runtime. The events of a processor do not only have
+     * the declared output attribute, but also all attributes of its input events, see
+     * {@link #forProcessorOutput(String, List)}.
+     *
+     * @param source to get the schema for
+     * @return schema of the events of the source
+     */
+    public static EventSchema forSource(Source source) {
+        checkArgument(source != null, "source cannot be null");
+
+        if (source instanceof Processor) {
+            Processor<?> processor = (Processor<?>) source;
+
+            return forProcessorOutput(processor.getOutput().getAttributeName(), processor.getInputs());
+        }
+
+        return forOutput(source.getOutput());
+    }
+
+    /**
+     * Returns the schema of the output events of a processor: the output attribute followed by the attributes of
+     * the sources of the inputs, taking the inputs in the order of their ids.
+     *
+     * @param outputAttributeName name of the output attribute of the processor, may be null
+     * @param inputs              of the processor
+     * @return schema of the output events
+     */
+    public static EventSchema forProcessorOutput(String outputAttributeName, List<ProcessorInput> inputs) {
+        List<ProcessorInput> sortedInputs = Lists.newArrayList(inputs);
+        Collections.sort(sortedInputs, INPUT_ID_COMPARATOR);
+
+        List<EventSchema> schemas = Lists.newArrayList();
+        schemas.add(withAttributeNames(outputAttributeName != null ?
+                Collections.singletonList(outputAttributeName) : Collections.<String>emptyList()));
+        for (ProcessorInput input : sortedInputs) {
+            schemas.add(forSource(input.getSource()));
+        }
+
+        return unionOf(schemas);
+    }
+}
@@ -0,0 +1,215 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.event;
+
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * An {@link Event} that keeps its values in an array, in the slots assigned by its {@link EventSchema}. Code that
+ * resolved the slot of an attribute when the model was compiled can read and write values with {@link #get(int)}
+ * and {@link #set(int, Object)}, which is an array access instead of a hash lookup.
+ * <p/>
+ * Everything else still works as it does for a plain {@link Event}: the attributes can be read by name, and
+ * {@link #getData()} returns a {@link Map} view that reads and writes through to the slots. Since the slots are
+ * fixed, only attributes of the schema can be put into that map. A null value is treated as a missing attribute.
+ */
+public class IndexedEvent extends Event {
+
+    private final EventSchema schema;
+    private final Object[] values;
+    private Map<String, Object> data;
+
+    public IndexedEvent(EventSchema schema) {
+        this(schema, new Object[schema.size()]);
+    }
+
+    /**
+     * Creates an event that uses the specified array for its slots; the array is not copied.
+     *
+     * @param schema of the event
+     * @param values one for each slot of the schema
+     */
+    public IndexedEvent(EventSchema schema, Object[] values) {
+        // the map of the super class stays empty, all values live in the array
+        super(Collections.<String, Object>emptyMap());
+        checkArgument(values.length == schema.size(), "Expected %s values, but got %s", schema.size(), values.length);
+
+        this.schema = schema;
+        this.values = values;
+    }
+
+    /**
+     * Creates an event with the values of all attributes of the schema that are in the specified map.
+     *
+     * @param schema of the event
+     * @param data   to copy the values from
+     * @return new event
+     */
+    public static IndexedEvent fromMap(EventSchema schema, Map<String, ?> data) {
+        IndexedEvent event = new IndexedEvent(schema);
+        event.copyFrom(data);
+
+        return event;
+    }
+
+    public EventSchema getSchema() {
+        return schema;
+    }
+
+    public Object get(int index) {
+        return values[index];
+    }
+
+    public void set(int index, Object value) {
+        values[index] = value;
+    }
+
+    /**
+     * Returns the value in the slot as a double without boxing it.
+     *
+     * @param index       of the slot
+     * @param valueIfNull returned if the slot is empty
+     * @return value
+     */
+    public double getDouble(int index, double valueIfNull) {
+        Object value = values[index];
+
+        return value != null ? ((Number) value).doubleValue() : valueIfNull;
+    }
+
+    /**
+     * Copies the values of this event into the target event.
+     *
+     * @param target        event to copy to
+     * @param targetIndexes slot in the target for each slot of this event, see {@link EventSchema#indexesIn}
+     */
+    public void copyTo(IndexedEvent target, int[] targetIndexes) {
+        for (int i = 0; i < values.length; ++i) {
+            int targetIndex = targetIndexes[i];
+            if (targetIndex >= 0 && values[i] != null) {
+                target.values[targetIndex] = values[i];
+            }
+        }
+    }
+
+    /**
+     * Replaces the values of this event with the values of the attributes of the schema that are in the specified
+     * map. If the map is the data of another {@link IndexedEvent} with the same schema, the slots are copied
+     * without looking up any names. Used to refill an event that is reused for every incoming event.
+     *
+     * @param data to copy the values from
+     */
+    public void copyFrom(Map<String, ?> data) {
+        if (data instanceof IndexedEventData && ((IndexedEventData) data).copyTo(schema, values)) {
+            return;
+        }
+
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = data.get(schema.getAttributeName(i));
+        }
+    }
+
+    /**
+     * Sets every slot of this event to null, so it can be refilled with {@link #copyTo} and {@link #set}.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+    }
+
+    private Object getValue(String attributeName) {
+        int index = schema.indexOf(attributeName);
+
+        return index >= 0 ? values[index] : null;
+    }
+
+    @Override
+    public Map<String, Object> getData() {
+        if (data == null) {
+            data = new IndexedEventData(schema, values);
+        }
+
+        return data;
+    }
+
+    @Override
+    public Event unionWith(Event event) {
+        return new Event(getData()).unionWith(event);
+    }
+
+    @Override
+    public Event unionWith(Collection<Event> events) {
+        return new Event(getData()).unionWith(events);
+    }
+
+    @Override
+    public Integer getAttributeAsInteger(String attributeName) {
+        Object value = getValue(attributeName);
+
+        return value != null ? ((Number) value).intValue() : null;
+    }
+
+    @Override
+    public Short getAttributeAsShort(String attributeName) {
+        Object value = getValue(attributeName);
+
+        return value != null ? ((Number) value).shortValue() : null;
+    }
+
+    @Override
+    public Long getAttributeAsLong(String attributeName) {
+        Object value = getValue(attributeName);
+
+        return value != null ? ((Number) value).longValue() : null;
+    }
+
+    @Override
+    public Float getAttributeAsFloat(String attributeName) {
+        Object value = getValue(attributeName);
+
+        return value != null ? ((Number) value).floatValue() : null;
+    }
+
+    @Override
+    public Double getAttributeAsDouble(String attributeName) {
+        Object value = getValue(attributeName);
+
+        return value != null ? ((Number) value).doubleValue() : null;
+    }
+
+    @Override
+    public String getAttributeAsString(String attributeName) {
+        return (String) getValue(attributeName);
+    }
+
+    @Override
+    public Boolean getAttributeAsBoolean(String attributeName) {
+        return (Boolean) getValue(attributeName);
+    }
+
+    /**
+     * Prints the event exactly like a plain {@link Event} with the same attributes, since sinks like the console
+     * print their events.
+     */
+    @Override
+    public String toString() {
+        Map<String, Object> copy = Maps.newHashMap();
+        copy.putAll(getData());
+
+        return "Event{data=" + copy + '}';
+    }
+}
@@ -0,0 +1,152 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.event;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * {@link Map} view of the slots of an {@link IndexedEvent}. Empty slots are not part of the map.
+ */
+class IndexedEventData extends AbstractMap<String, Object> {
+
+    private final EventSchema schema;
+    private final Object[] values;
+
+    IndexedEventData(EventSchema schema, Object[] values) {
+        this.schema = schema;
+        this.values = values;
+    }
+
+    /**
+     * Copies the values into the target array if the target has the same schema.
+     *
+     * @param targetSchema schema of the target
+     * @param target       values to copy into
+     * @return true if the values were copied
+     */
+    boolean copyTo(EventSchema targetSchema, Object[] target) {
+        if (targetSchema != schema && !targetSchema.equals(schema)) {
+            return false;
+        }
+
+        System.arraycopy(values, 0, target, 0, values.length);
+        return true;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = key instanceof String ? schema.indexOf((String) key) : -1;
+
+        return index >= 0 ? values[index] : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        int index = schema.indexOf(key);
+        if (index < 0) {
+            throw new UnsupportedOperationException("Attribute " + key + " is not part of " + schema);
+        }
+
+        Object previous = values[index];
+        values[index] = value;
+
+        return previous;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int index = key instanceof String ? schema.indexOf((String) key) : -1;
+        if (index < 0) {
+            return null;
+        }
+
+        Object previous = values[index];
+        values[index] = null;
+
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Object value : values) {
+            if (value != null) {
+                size++;
+            }
+        }
+
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return IndexedEventData.this.size();
+            }
+        };
+    }
+
+    private class EntryIterator implements Iterator<Entry<String, Object>> {
+        private int nextIndex = nextNonNull(0);
+        private int lastIndex = -1;
+
+        @Override
+        public boolean hasNext() {
+            return nextIndex < values.length;
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            lastIndex = nextIndex;
+            nextIndex = nextNonNull(nextIndex + 1);
+
+            return new SimpleEntry<String, Object>(schema.getAttributeName(lastIndex), values[lastIndex]);
+        }
+
+        @Override
+        public void remove() {
+            if (lastIndex < 0) {
+                throw new IllegalStateException();
+            }
+            values[lastIndex] = null;
+            lastIndex = -1;
+        }
+
+        private int nextNonNull(int index) {
+            while (index < values.length && values[index] == null) {
+                index++;
+            }
+
+            return index;
+        }
+    }
+}
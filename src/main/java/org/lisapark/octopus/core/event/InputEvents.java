@@ -0,0 +1,74 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.event;
+
+import com.google.common.collect.Maps;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The <code>Map&lt;Integer, Event&gt;</code> of events by input id that is handed to a processor or sink. Input
+ * ids are small numbers, so the events are kept in an array indexed by the id and the map can be cleared and
+ * filled again for every incoming event without allocating anything.
+ */
+public class InputEvents extends AbstractMap<Integer, Event> {
+
+    private final Event[] eventsByInputId;
+
+    public InputEvents(int maximumInputId) {
+        this.eventsByInputId = new Event[maximumInputId + 1];
+    }
+
+    public void put(int inputId, Event event) {
+        eventsByInputId[inputId] = event;
+    }
+
+    @Override
+    public Event get(Object key) {
+        if (key instanceof Integer) {
+            int inputId = (Integer) key;
+            if (inputId >= 0 && inputId < eventsByInputId.length) {
+                return eventsByInputId[inputId];
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < eventsByInputId.length; ++i) {
+            eventsByInputId[i] = null;
+        }
+    }
+
+    /**
+     * Iterating over the map is not on the path of any of the processors, so it is done on a copy.
+     */
+    @Override
+    public Set<Entry<Integer, Event>> entrySet() {
+        Map<Integer, Event> copy = Maps.newTreeMap();
+        for (int inputId = 0; inputId < eventsByInputId.length; ++inputId) {
+            if (eventsByInputId[inputId] != null) {
+                copy.put(inputId, eventsByInputId[inputId]);
+            }
+        }
+
+        return copy.entrySet();
+    }
+}
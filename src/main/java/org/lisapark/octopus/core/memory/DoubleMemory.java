@@ -0,0 +1,68 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.memory;
+
+/**
+ * {@link Memory} of primitive doubles. The values are stored unboxed and can be read one at a time with
+ * {@link #get(int)} and aggregated without allocating anything. The boxed {@link Memory} methods are still
+ * supported so the memory can be used by processors that do not know about primitives, but
+ * {@link #values()} has to allocate a new collection on every call.
+ */
+public interface DoubleMemory extends MarkableMemory<Double> {
+
+    void add(double value);
+
+    /**
+     * Returns the value at the specified index, where 0 is the oldest value in the memory.
+     *
+     * @param index between 0 and {@link #size()} - 1
+     * @return value
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    double get(int index);
+
+    /**
+     * Returns the number of values currently in the memory, never more than the {@link #capacity()}.
+     *
+     * @return size
+     */
+    int size();
+
+    int capacity();
+
+    /**
+     * Returns the sum of the values, or 0 if the memory is empty.
+     *
+     * @return sum
+     */
+    double sum();
+
+    /**
+     * Returns the mean of the values, or NaN if the memory is empty.
+     *
+     * @return mean
+     */
+    double mean();
+
+    /**
+     * Returns the smallest value, or NaN if the memory is empty.
+     *
+     * @return min
+     */
+    double min();
+
+    /**
+     * Returns the largest value, or NaN if the memory is empty.
+     *
+     * @return max
+     */
+    double max();
+}
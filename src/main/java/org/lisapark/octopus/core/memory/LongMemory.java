@@ -0,0 +1,63 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.memory;
+
+/**
+ * {@link Memory} of primitive longs, see {@link DoubleMemory}.
+ */
+public interface LongMemory extends MarkableMemory<Long> {
+
+    void add(long value);
+
+    /**
+     * Returns the value at the specified index, where 0 is the oldest value in the memory.
+     *
+     * @param index between 0 and {@link #size()} - 1
+     * @return value
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    long get(int index);
+
+    int size();
+
+    int capacity();
+
+    /**
+     * Returns the sum of the values, or 0 if the memory is empty. Like all long arithmetic the sum silently
+     * overflows.
+     *
+     * @return sum
+     */
+    long sum();
+
+    /**
+     * Returns the mean of the values, or NaN if the memory is empty.
+     *
+     * @return mean
+     */
+    double mean();
+
+    /**
+     * Returns the smallest value.
+     *
+     * @return min
+     * @throws IllegalStateException if the memory is empty
+     */
+    long min();
+
+    /**
+     * Returns the largest value.
+     *
+     * @return max
+     * @throws IllegalStateException if the memory is empty
+     */
+    long max();
+}
@@ -0,0 +1,27 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.memory;
+
+/**
+ * A {@link Memory} that can be marked to capture its values at that moment without copying them right away. The
+ * memory copies them into the {@link MemoryMark} the first time it is written to after being marked, so marking
+ * takes constant time no matter how many values the memory holds.
+ */
+public interface MarkableMemory<T> extends Memory<T> {
+
+    /**
+     * Marks the values the memory holds now. Nothing may write to the memory while it is marked, so the caller has to
+     * hold back its writers, but only for as long as this call takes.
+     *
+     * @return the values as of now, copied when the memory is written to next or when they are read
+     */
+    MemoryMark<T> mark();
+}
@@ -0,0 +1,60 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.memory;
+
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
+/**
+ * The values of a {@link Memory} at the moment it was marked, see {@link MarkableMemory#mark()}. They are copied
+ * out of the memory once, either by the memory right before it is written to, or by the first call to
+ * {@link #values()}, whichever comes first.
+ */
+public class MemoryMark<T> {
+
+    private final Memory<T> memory;
+    private List<T> values;
+
+    public MemoryMark(Memory<T> memory) {
+        this.memory = memory;
+    }
+
+    /**
+     * Copies the values out of the memory, unless they have been copied already. A {@link MarkableMemory} calls this
+     * before it is written to for the first time after it was marked.
+     */
+    public synchronized void copy() {
+        if (values == null) {
+            values = valuesOldestFirst(memory);
+        }
+    }
+
+    /**
+     * Returns the values the memory held when it was marked, oldest first, copying them now if the memory has not
+     * been written to since.
+     *
+     * @return values, oldest first
+     */
+    public synchronized List<T> values() {
+        copy();
+        return values;
+    }
+
+    private static <T> List<T> valuesOldestFirst(Memory<T> memory) {
+        if (memory instanceof OrderedMemory) {
+            return ((OrderedMemory<T>) memory).valuesOldestFirst();
+        }
+
+        // the primitive and off heap memories return their values oldest first already
+        return Lists.newArrayList(memory.values());
+    }
+}
@@ -0,0 +1,50 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.memory;
+
+import org.lisapark.octopus.core.memory.heap.HeapPrimitiveMemoryProvider;
+
+/**
+ * Static helpers for getting primitive memory from any {@link MemoryProvider}.
+ */
+public abstract class MemoryProviders {
+
+    private static final PrimitiveMemoryProvider DEFAULT_PRIMITIVE_PROVIDER = new HeapPrimitiveMemoryProvider();
+
+    /**
+     * Creates a double circular buffer from the provider if it is a {@link PrimitiveMemoryProvider}, otherwise
+     * the buffer is created on the heap.
+     *
+     * @param memoryProvider to create the buffer with
+     * @param maximumSize    of buffer
+     * @return new buffer
+     */
+    public static DoubleMemory createDoubleCircularBuffer(MemoryProvider memoryProvider, int maximumSize) {
+        return primitiveProviderFor(memoryProvider).createDoubleCircularBuffer(maximumSize);
+    }
+
+    /**
+     * Creates a long circular buffer from the provider if it is a {@link PrimitiveMemoryProvider}, otherwise the
+     * buffer is created on the heap.
+     *
+     * @param memoryProvider to create the buffer with
+     * @param maximumSize    of buffer
+     * @return new buffer
+     */
+    public static LongMemory createLongCircularBuffer(MemoryProvider memoryProvider, int maximumSize) {
+        return primitiveProviderFor(memoryProvider).createLongCircularBuffer(maximumSize);
+    }
+
+    private static PrimitiveMemoryProvider primitiveProviderFor(MemoryProvider memoryProvider) {
+        return memoryProvider instanceof PrimitiveMemoryProvider ?
+                (PrimitiveMemoryProvider) memoryProvider : DEFAULT_PRIMITIVE_PROVIDER;
+    }
+}
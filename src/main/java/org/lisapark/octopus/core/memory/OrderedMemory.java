@@ -0,0 +1,27 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.memory;
+
+import java.util.List;
+
+/**
+ * {@link Memory} that can return its values in the order they were added, even where {@link #values()} does not.
+ */
+public interface OrderedMemory<T> extends MarkableMemory<T> {
+
+    /**
+     * Returns the non null values in the memory, oldest first, so that adding them to an empty memory of the same
+     * size gives a memory that evicts them in the same order.
+     *
+     * @return new list of values
+     */
+    List<T> valuesOldestFirst();
+}
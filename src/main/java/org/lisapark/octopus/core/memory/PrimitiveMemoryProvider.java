@@ -0,0 +1,35 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.memory;
+
+/**
+ * A {@link MemoryProvider} that can also create memory for primitive values. Numeric processors should not test
+ * for this interface themselves, but use {@link MemoryProviders}, which falls back to heap memory for providers
+ * that do not implement it.
+ */
+public interface PrimitiveMemoryProvider extends MemoryProvider {
+
+    /**
+     * Creates a circular buffer that keeps the last <code>maximumSize</code> doubles added to it.
+     *
+     * @param maximumSize of buffer
+     * @return new buffer
+     */
+    DoubleMemory createDoubleCircularBuffer(int maximumSize);
+
+    /**
+     * Creates a circular buffer that keeps the last <code>maximumSize</code> longs added to it.
+     *
+     * @param maximumSize of buffer
+     * @return new buffer
+     */
+    LongMemory createLongCircularBuffer(int maximumSize);
+}
@@ -0,0 +1,74 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.memory.aggregate;
+
+/**
+ * Deque of the values of a sliding window that can still become the minimum, or maximum, of the window. Every value
+ * that is added removes the values at the back that it beats, so the values in the deque stay ordered and the first
+ * one is always the minimum, or maximum, of the window. Each value is added and removed at most once, which makes
+ * both operations O(1) amortized.
+ */
+class MonotonicDeque {
+
+    private final boolean minimum;
+    private final double[] values;
+    private final long[] sequences;
+    /**
+     * Index of the first entry
+     */
+    private int head;
+    private int size;
+
+    MonotonicDeque(int capacity, boolean minimum) {
+        this.minimum = minimum;
+        this.values = new double[capacity];
+        this.sequences = new long[capacity];
+    }
+
+    void add(double value, long sequence) {
+        while (size > 0 && !beats(values[indexOf(size - 1)], value)) {
+            size--;
+        }
+
+        int index = indexOf(size);
+        values[index] = value;
+        sequences[index] = sequence;
+        size++;
+    }
+
+    /**
+     * Removes the first entry if it is the value with the specified sequence number.
+     *
+     * @param sequence of the value that is leaving the window
+     */
+    void evict(long sequence) {
+        if (size > 0 && sequences[head] == sequence) {
+            head = indexOf(1);
+            size--;
+        }
+    }
+
+    double first() {
+        return values[head];
+    }
+
+    /**
+     * Returns true if the existing value stays in front of the new one. Ties go to the new value since it will
+     * stay in the window longer.
+     */
+    private boolean beats(double existing, double value) {
+        return minimum ? existing < value : existing > value;
+    }
+
+    private int indexOf(int offset) {
+        return (head + offset) % values.length;
+    }
+}
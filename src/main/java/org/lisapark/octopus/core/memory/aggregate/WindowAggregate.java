@@ -0,0 +1,184 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.memory.aggregate;
+
+import org.lisapark.octopus.core.memory.DoubleMemory;
+import org.lisapark.octopus.core.memory.MemoryMark;
+
+import java.util.Collection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A {@link WindowAggregate} is a {@link DoubleMemory} that keeps the count, sum, mean, variance, min and max of its
+ * window up to date as values are added and the oldest values are evicted, so reading any of them is O(1) no matter
+ * how long the window is. The values themselves are kept in the wrapped window, which can come from any
+ * {@link org.lisapark.octopus.core.memory.PrimitiveMemoryProvider}.
+ * <p/>
+ * The sum and variance are updated with floating point arithmetic, so they would slowly drift from the exact values
+ * of the window, and a NaN or infinite value would stay in them after it was evicted. To prevent both, they are
+ * recomputed from the window every time the window has been completely replaced, which is still O(1) amortized.
+ */
+public class WindowAggregate implements DoubleMemory {
+
+    private final DoubleMemory window;
+    private final MonotonicDeque minimums;
+    private final MonotonicDeque maximums;
+
+    /**
+     * Sequence number of the next value, the oldest value in the window has sequence number
+     * <code>nextSequence - size()</code>
+     */
+    private long nextSequence;
+    private int evictionsSinceRecompute;
+
+    private double mean;
+    /**
+     * Sum of the squared differences from the mean
+     */
+    private double squaredDeviations;
+
+    public WindowAggregate(DoubleMemory window) {
+        checkArgument(window != null, "window cannot be null");
+        checkArgument(window.size() == 0, "window has to be empty");
+        this.window = window;
+        this.minimums = new MonotonicDeque(window.capacity(), true);
+        this.maximums = new MonotonicDeque(window.capacity(), false);
+    }
+
+    @Override
+    public void add(double value) {
+        int size = window.size();
+        if (size == window.capacity()) {
+            evict(window.get(0), size);
+            size--;
+        }
+
+        window.add(value);
+        minimums.add(value, nextSequence);
+        maximums.add(value, nextSequence);
+        nextSequence++;
+
+        double delta = value - mean;
+        mean += delta / (size + 1);
+        squaredDeviations += delta * (value - mean);
+
+        if (evictionsSinceRecompute >= window.capacity()) {
+            recompute();
+        }
+    }
+
+    private void evict(double value, int size) {
+        long oldestSequence = nextSequence - size;
+        minimums.evict(oldestSequence);
+        maximums.evict(oldestSequence);
+
+        if (size == 1) {
+            mean = 0;
+            squaredDeviations = 0;
+        } else {
+            double delta = value - mean;
+            mean -= delta / (size - 1);
+            squaredDeviations -= delta * (value - mean);
+        }
+        evictionsSinceRecompute++;
+    }
+
+    private void recompute() {
+        int size = window.size();
+        double sum = 0;
+        for (int i = 0; i < size; ++i) {
+            sum += window.get(i);
+        }
+        mean = sum / size;
+
+        squaredDeviations = 0;
+        for (int i = 0; i < size; ++i) {
+            double delta = window.get(i) - mean;
+            squaredDeviations += delta * delta;
+        }
+        evictionsSinceRecompute = 0;
+    }
+
+    @Override
+    public void add(Double value) {
+        add(value.doubleValue());
+    }
+
+    /**
+     * Marks the values of the window, the aggregates are recomputed from them when a snapshot is restored.
+     */
+    @Override
+    public MemoryMark<Double> mark() {
+        return window.mark();
+    }
+
+    @Override
+    public boolean remove(Double value) {
+        throw new UnsupportedOperationException("Remove not supported");
+    }
+
+    @Override
+    public double get(int index) {
+        return window.get(index);
+    }
+
+    @Override
+    public int size() {
+        return window.size();
+    }
+
+    @Override
+    public int capacity() {
+        return window.capacity();
+    }
+
+    @Override
+    public double sum() {
+        return mean * window.size();
+    }
+
+    @Override
+    public double mean() {
+        return window.size() > 0 ? mean : Double.NaN;
+    }
+
+    /**
+     * Returns the sample variance of the values, or NaN if there are fewer than two values in the memory.
+     *
+     * @return variance
+     */
+    public double variance() {
+        int size = window.size();
+
+        // rounding can leave a tiny negative number when all values are equal
+        return size > 1 ? Math.max(squaredDeviations, 0) / (size - 1) : Double.NaN;
+    }
+
+    public double standardDeviation() {
+        return Math.sqrt(variance());
+    }
+
+    @Override
+    public double min() {
+        return window.size() > 0 ? minimums.first() : Double.NaN;
+    }
+
+    @Override
+    public double max() {
+        return window.size() > 0 ? maximums.first() : Double.NaN;
+    }
+
+    @Override
+    public Collection<Double> values() {
+        return window.values();
+    }
+}
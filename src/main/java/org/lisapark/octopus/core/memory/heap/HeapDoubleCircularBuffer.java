@@ -0,0 +1,151 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.memory.heap;
+
+import com.google.common.collect.Lists;
+import org.lisapark.octopus.core.memory.DoubleMemory;
+import org.lisapark.octopus.core.memory.MemoryMark;
+
+import java.util.Collection;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * {@link DoubleMemory} backed by a <code>double[]</code>. Once the buffer is full every new value overwrites the
+ * oldest one.
+ */
+class HeapDoubleCircularBuffer implements DoubleMemory {
+
+    private final double[] buffer;
+    /**
+     * Index the next value will be written to
+     */
+    private int currentIndex;
+    private int size;
+    private MemoryMark<Double> mark;
+
+    HeapDoubleCircularBuffer(int maximumSize) {
+        checkArgument(maximumSize > 0, "maximumSize has to be greater than zero");
+        this.buffer = new double[maximumSize];
+    }
+
+    @Override
+    public void add(double value) {
+        copyMarkedValues();
+        buffer[currentIndex] = value;
+        currentIndex = (currentIndex + 1) % buffer.length;
+        if (size < buffer.length) {
+            size++;
+        }
+    }
+
+    @Override
+    public void add(Double value) {
+        add(value.doubleValue());
+    }
+
+    @Override
+    public MemoryMark<Double> mark() {
+        mark = new MemoryMark<Double>(this);
+        return mark;
+    }
+
+    private void copyMarkedValues() {
+        if (mark != null) {
+            mark.copy();
+            mark = null;
+        }
+    }
+
+    @Override
+    public boolean remove(Double value) {
+        throw new UnsupportedOperationException("Remove not supported");
+    }
+
+    @Override
+    public double get(int index) {
+        checkElementIndex(index, size);
+        // the oldest value is at the current index once the buffer has wrapped, and at 0 before that
+        int oldestIndex = size < buffer.length ? 0 : currentIndex;
+
+        return buffer[(oldestIndex + index) % buffer.length];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int capacity() {
+        return buffer.length;
+    }
+
+    @Override
+    public double sum() {
+        double sum = 0;
+        for (int i = 0; i < size; ++i) {
+            sum += buffer[i];
+        }
+
+        return sum;
+    }
+
+    @Override
+    public double mean() {
+        return size > 0 ? sum() / size : Double.NaN;
+    }
+
+    @Override
+    public double min() {
+        if (size == 0) {
+            return Double.NaN;
+        }
+
+        double min = buffer[0];
+        for (int i = 1; i < size; ++i) {
+            min = Math.min(min, buffer[i]);
+        }
+
+        return min;
+    }
+
+    @Override
+    public double max() {
+        if (size == 0) {
+            return Double.NaN;
+        }
+
+        double max = buffer[0];
+        for (int i = 1; i < size; ++i) {
+            max = Math.max(max, buffer[i]);
+        }
+
+        return max;
+    }
+
+    /**
+     * Returns the values boxed, oldest first.
+     *
+     * @return new collection of the values
+     */
+    @Override
+    public Collection<Double> values() {
+        List<Double> values = Lists.newArrayListWithCapacity(size);
+        for (int i = 0; i < size; ++i) {
+            values.add(get(i));
+        }
+
+        return values;
+    }
+}
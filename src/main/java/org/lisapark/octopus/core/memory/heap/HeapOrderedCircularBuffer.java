@@ -0,0 +1,98 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.memory.heap;
+
+import com.google.common.collect.Lists;
+import org.lisapark.octopus.core.memory.MemoryMark;
+import org.lisapark.octopus.core.memory.OrderedMemory;
+
+import java.util.Collection;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Circular buffer that works exactly like the one {@link HeapMemoryProvider} creates, including the order of
+ * {@link #values()}, which is the order of the slots of the buffer. Processors that aggregate over the values
+ * therefore give the same results, to the last bit, with both. It also knows which slot holds the oldest value, so
+ * it can return the values in the order they were added for snapshots.
+ */
+class HeapOrderedCircularBuffer<T> implements OrderedMemory<T> {
+
+    private final T[] buffer;
+    /**
+     * Index the next value will be written to
+     */
+    private int currentIndex;
+    private boolean wrapped;
+    private MemoryMark<T> mark;
+
+    @SuppressWarnings("unchecked")
+    HeapOrderedCircularBuffer(int maximumSize) {
+        checkArgument(maximumSize > 0, "maximumSize has to be greater than zero");
+        this.buffer = (T[]) new Object[maximumSize];
+    }
+
+    @Override
+    public void add(T value) {
+        copyMarkedValues();
+        buffer[currentIndex] = value;
+        currentIndex = (currentIndex + 1) % buffer.length;
+        if (currentIndex == 0) {
+            wrapped = true;
+        }
+    }
+
+    @Override
+    public MemoryMark<T> mark() {
+        mark = new MemoryMark<T>(this);
+        return mark;
+    }
+
+    private void copyMarkedValues() {
+        if (mark != null) {
+            mark.copy();
+            mark = null;
+        }
+    }
+
+    @Override
+    public boolean remove(T value) {
+        throw new UnsupportedOperationException("Remove not supported");
+    }
+
+    @Override
+    public Collection<T> values() {
+        List<T> values = Lists.newArrayListWithCapacity(buffer.length);
+        for (T value : buffer) {
+            if (value != null) {
+                values.add(value);
+            }
+        }
+
+        return values;
+    }
+
+    @Override
+    public List<T> valuesOldestFirst() {
+        List<T> values = Lists.newArrayListWithCapacity(buffer.length);
+        // the oldest value is at the current index once the buffer has wrapped, and at 0 before that
+        int oldestIndex = wrapped ? currentIndex : 0;
+        for (int i = 0; i < buffer.length; ++i) {
+            T value = buffer[(oldestIndex + i) % buffer.length];
+            if (value != null) {
+                values.add(value);
+            }
+        }
+
+        return values;
+    }
+}
@@ -0,0 +1,39 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.memory.heap;
+
+import org.lisapark.octopus.core.memory.DoubleMemory;
+import org.lisapark.octopus.core.memory.LongMemory;
+import org.lisapark.octopus.core.memory.Memory;
+import org.lisapark.octopus.core.memory.PrimitiveMemoryProvider;
+
+/**
+ * {@link HeapMemoryProvider} that also creates primitive circular buffers backed by plain arrays. Its object circular
+ * buffers behave like the ones of the {@link HeapMemoryProvider}, but can also return their values oldest first, see
+ * {@link HeapOrderedCircularBuffer}.
+ */
+public class HeapPrimitiveMemoryProvider extends HeapMemoryProvider implements PrimitiveMemoryProvider {
+
+    @Override
+    public <T> Memory<T> createCircularBuffer(int maximumSize) {
+        return new HeapOrderedCircularBuffer<T>(maximumSize);
+    }
+
+    @Override
+    public DoubleMemory createDoubleCircularBuffer(int maximumSize) {
+        return new HeapDoubleCircularBuffer(maximumSize);
+    }
+
+    @Override
+    public LongMemory createLongCircularBuffer(int maximumSize) {
+        return new HeapLongCircularBuffer(maximumSize);
+    }
+}
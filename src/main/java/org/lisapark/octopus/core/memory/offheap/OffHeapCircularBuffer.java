@@ -0,0 +1,144 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.memory.offheap;
+
+import com.google.common.collect.Lists;
+import org.lisapark.octopus.core.memory.MarkableMemory;
+import org.lisapark.octopus.core.memory.MemoryMark;
+import org.lisapark.octopus.core.memory.OrderedMemory;
+import org.lisapark.octopus.core.memory.heap.HeapPrimitiveMemoryProvider;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Circular buffer for boxed values that stores them off heap using the {@link RecordCodec} for their type. The type
+ * is not known until the first value is added, so the buffer is allocated at that point. If that value is of a type
+ * that has no fixed width layout, like the pairs kept by some processors, the buffer falls back to heap memory.
+ * Nulls take up a slot like any other value, also the ones added before the buffer is allocated.
+ */
+class OffHeapCircularBuffer<T> implements MarkableMemory<T> {
+
+    private final OffHeapStorage storage;
+    private final int maximumSize;
+    private final int maximumStringLength;
+
+    private RecordCodec<T> codec;
+    private ByteBuffer buffer;
+    private OrderedMemory<T> heapFallback;
+
+    /**
+     * Index the next value will be written to
+     */
+    private int currentIndex;
+    private int size;
+    private MemoryMark<T> mark;
+
+    OffHeapCircularBuffer(OffHeapStorage storage, int maximumSize, int maximumStringLength) {
+        this.storage = storage;
+        this.maximumSize = maximumSize;
+        this.maximumStringLength = maximumStringLength;
+    }
+
+    @Override
+    public void add(T value) {
+        copyMarkedValues();
+        if (heapFallback != null) {
+            heapFallback.add(value);
+            return;
+        }
+
+        if (codec == null) {
+            if (value == null) {
+                // nothing to base the layout on yet, so only the slot is taken
+                advance();
+                return;
+            }
+            allocateFor(value.getClass());
+            if (heapFallback != null) {
+                heapFallback.add(value);
+                return;
+            }
+        }
+
+        codec.write(buffer, currentIndex * codec.getRecordWidth(), value);
+        advance();
+    }
+
+    private void advance() {
+        currentIndex = (currentIndex + 1) % maximumSize;
+        if (size < maximumSize) {
+            size++;
+        }
+    }
+
+    /**
+     * Allocates the buffer for values of the type, with the slots taken by the nulls added so far still null.
+     */
+    private void allocateFor(Class<?> type) {
+        codec = RecordCodec.forType(type, maximumStringLength);
+
+        if (codec == null) {
+            // the primitive provider's buffer can return its values oldest first, like this one
+            heapFallback = (OrderedMemory<T>) new HeapPrimitiveMemoryProvider().<T>createCircularBuffer(maximumSize);
+            for (int i = 0; i < size; ++i) {
+                heapFallback.add(null);
+            }
+        } else {
+            buffer = storage.allocate(maximumSize, codec.getRecordWidth());
+            for (int i = 0; i < size; ++i) {
+                codec.write(buffer, i * codec.getRecordWidth(), null);
+            }
+        }
+    }
+
+    @Override
+    public MemoryMark<T> mark() {
+        mark = new MemoryMark<T>(this);
+        return mark;
+    }
+
+    private void copyMarkedValues() {
+        if (mark != null) {
+            mark.copy();
+            mark = null;
+        }
+    }
+
+    @Override
+    public boolean remove(T value) {
+        throw new UnsupportedOperationException("Remove not supported");
+    }
+
+    /**
+     * Returns the non null values, oldest first.
+     *
+     * @return new collection of the values
+     */
+    @Override
+    public Collection<T> values() {
+        if (heapFallback != null) {
+            return heapFallback.valuesOldestFirst();
+        }
+
+        List<T> values = Lists.newArrayListWithCapacity(size);
+        int oldestIndex = size < maximumSize ? 0 : currentIndex;
+        for (int i = 0; i < size; ++i) {
+            T value = codec.read(buffer, ((oldestIndex + i) % maximumSize) * codec.getRecordWidth());
+            if (value != null) {
+                values.add(value);
+            }
+        }
+
+        return values;
+    }
+}
@@ -0,0 +1,152 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.memory.offheap;
+
+import com.google.common.collect.Lists;
+import org.lisapark.octopus.core.memory.DoubleMemory;
+import org.lisapark.octopus.core.memory.MemoryMark;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * {@link DoubleMemory} stored in an off heap {@link ByteBuffer}, eight bytes per value.
+ */
+class OffHeapDoubleCircularBuffer implements DoubleMemory {
+
+    private static final int WIDTH = 8;
+
+    private final ByteBuffer buffer;
+    private final int maximumSize;
+    /**
+     * Index the next value will be written to
+     */
+    private int currentIndex;
+    private int size;
+    private MemoryMark<Double> mark;
+
+    OffHeapDoubleCircularBuffer(OffHeapStorage storage, int maximumSize) {
+        this.buffer = storage.allocate(maximumSize, WIDTH);
+        this.maximumSize = maximumSize;
+    }
+
+    @Override
+    public void add(double value) {
+        copyMarkedValues();
+        buffer.putDouble(currentIndex * WIDTH, value);
+        currentIndex = (currentIndex + 1) % maximumSize;
+        if (size < maximumSize) {
+            size++;
+        }
+    }
+
+    @Override
+    public void add(Double value) {
+        add(value.doubleValue());
+    }
+
+    @Override
+    public MemoryMark<Double> mark() {
+        mark = new MemoryMark<Double>(this);
+        return mark;
+    }
+
+    private void copyMarkedValues() {
+        if (mark != null) {
+            mark.copy();
+            mark = null;
+        }
+    }
+
+    @Override
+    public boolean remove(Double value) {
+        throw new UnsupportedOperationException("Remove not supported");
+    }
+
+    @Override
+    public double get(int index) {
+        checkElementIndex(index, size);
+        int oldestIndex = size < maximumSize ? 0 : currentIndex;
+
+        return buffer.getDouble(((oldestIndex + index) % maximumSize) * WIDTH);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int capacity() {
+        return maximumSize;
+    }
+
+    @Override
+    public double sum() {
+        double sum = 0;
+        for (int i = 0; i < size; ++i) {
+            sum += buffer.getDouble(i * WIDTH);
+        }
+
+        return sum;
+    }
+
+    @Override
+    public double mean() {
+        return size > 0 ? sum() / size : Double.NaN;
+    }
+
+    @Override
+    public double min() {
+        if (size == 0) {
+            return Double.NaN;
+        }
+
+        double min = buffer.getDouble(0);
+        for (int i = 1; i < size; ++i) {
+            min = Math.min(min, buffer.getDouble(i * WIDTH));
+        }
+
+        return min;
+    }
+
+    @Override
+    public double max() {
+        if (size == 0) {
+            return Double.NaN;
+        }
+
+        double max = buffer.getDouble(0);
+        for (int i = 1; i < size; ++i) {
+            max = Math.max(max, buffer.getDouble(i * WIDTH));
+        }
+
+        return max;
+    }
+
+    /**
+     * Returns the values boxed, oldest first.
+     *
+     * @return new collection of the values
+     */
+    @Override
+    public Collection<Double> values() {
+        List<Double> values = Lists.newArrayListWithCapacity(size);
+        for (int i = 0; i < size; ++i) {
+            values.add(get(i));
+        }
+
+        return values;
+    }
+}
@@ -0,0 +1,93 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.memory.offheap;
+
+import org.lisapark.octopus.core.memory.DoubleMemory;
+import org.lisapark.octopus.core.memory.LongMemory;
+import org.lisapark.octopus.core.memory.Memory;
+import org.lisapark.octopus.core.memory.PrimitiveMemoryProvider;
+
+import java.io.File;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * {@link PrimitiveMemoryProvider} that keeps the contents of processor memory outside of the java heap, so that very
+ * large windows do not add to garbage collection pauses. The values are stored in fixed width records, one per
+ * value, in either direct byte buffers or in buffers mapped from temporary files. Mapped files let windows grow
+ * beyond the physical memory reserved for the vm, with the operating system paging them in and out.
+ * <p/>
+ * Values of the {@link org.lisapark.octopus.core.event.Attribute} types are supported. Strings take a fixed
+ * number of characters, see {@link #setMaximumStringLength(int)}. Memory for any other type of value is kept on the
+ * heap as usual.
+ * <p/>
+ * Use it for a compile with {@link org.lisapark.octopus.core.compiler.Compiler#setMemoryProvider}. Note that direct
+ * buffers are only released when the garbage collector finds the buffer object itself, so the vm's
+ * <code>-XX:MaxDirectMemorySize</code> has to leave room for the memory of a couple of runs.
+ */
+public class OffHeapMemoryProvider implements PrimitiveMemoryProvider {
+
+    public static final int DEFAULT_MAXIMUM_STRING_LENGTH = 64;
+
+    private final OffHeapStorage storage;
+    private volatile int maximumStringLength = DEFAULT_MAXIMUM_STRING_LENGTH;
+
+    /**
+     * Creates a provider that allocates direct byte buffers.
+     */
+    public OffHeapMemoryProvider() {
+        this.storage = new OffHeapStorage(null);
+    }
+
+    /**
+     * Creates a provider that maps temporary files in the specified directory.
+     *
+     * @param mappedDirectory to create the files in
+     */
+    public OffHeapMemoryProvider(File mappedDirectory) {
+        checkArgument(mappedDirectory != null, "mappedDirectory cannot be null");
+        checkArgument(mappedDirectory.isDirectory(), "%s is not a directory", mappedDirectory);
+        this.storage = new OffHeapStorage(mappedDirectory);
+    }
+
+    /**
+     * Sets the number of characters reserved for every string value. Adding a longer string to the memory is an
+     * error.
+     *
+     * @param maximumStringLength in characters
+     */
+    public void setMaximumStringLength(int maximumStringLength) {
+        checkArgument(maximumStringLength > 0, "maximumStringLength has to be greater than zero");
+        this.maximumStringLength = maximumStringLength;
+    }
+
+    public int getMaximumStringLength() {
+        return maximumStringLength;
+    }
+
+    @Override
+    public <T> Memory<T> createCircularBuffer(int maximumSize) {
+        checkArgument(maximumSize > 0, "maximumSize has to be greater than zero");
+        return new OffHeapCircularBuffer<T>(storage, maximumSize, maximumStringLength);
+    }
+
+    @Override
+    public DoubleMemory createDoubleCircularBuffer(int maximumSize) {
+        checkArgument(maximumSize > 0, "maximumSize has to be greater than zero");
+        return new OffHeapDoubleCircularBuffer(storage, maximumSize);
+    }
+
+    @Override
+    public LongMemory createLongCircularBuffer(int maximumSize) {
+        checkArgument(maximumSize > 0, "maximumSize has to be greater than zero");
+        return new OffHeapLongCircularBuffer(storage, maximumSize);
+    }
+}
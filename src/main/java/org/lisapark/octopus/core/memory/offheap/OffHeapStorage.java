@@ -0,0 +1,81 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.memory.offheap;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Allocates the {@link ByteBuffer}s behind the off heap memory, either as direct buffers or as buffers mapped
+ * from temporary files. Either way the contents are outside of the java heap and are never looked at by the
+ * garbage collector.
+ */
+class OffHeapStorage {
+
+    private static final String FILE_PREFIX = "octopus-memory";
+
+    /**
+     * Directory for mapped files, or null for direct buffers
+     */
+    private final File mappedDirectory;
+
+    OffHeapStorage(File mappedDirectory) {
+        this.mappedDirectory = mappedDirectory;
+    }
+
+    /**
+     * Allocates a zeroed buffer with room for the specified number of records.
+     *
+     * @param numberOfRecords to make room for
+     * @param recordWidth     in bytes
+     * @return new buffer
+     * @throws IllegalArgumentException if the buffer would be larger than 2GB, the limit of a single byte buffer
+     */
+    ByteBuffer allocate(int numberOfRecords, int recordWidth) {
+        long size = (long) numberOfRecords * recordWidth;
+        checkArgument(size <= Integer.MAX_VALUE,
+                "%s records of %s bytes do not fit in a single off heap buffer", numberOfRecords, recordWidth);
+
+        return mappedDirectory == null ? ByteBuffer.allocateDirect((int) size) : map((int) size);
+    }
+
+    private ByteBuffer map(int size) {
+        RandomAccessFile file = null;
+        try {
+            File mappedFile = File.createTempFile(FILE_PREFIX, ".mem", mappedDirectory);
+            file = new RandomAccessFile(mappedFile, "rw");
+            file.setLength(size);
+            ByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+            // the mapping stays valid after the file is closed. Some platforms will not delete a mapped file, those
+            // are cleaned up when the vm exits
+            IOUtils.closeQuietly(file);
+            file = null;
+            if (!mappedFile.delete()) {
+                mappedFile.deleteOnExit();
+            }
+
+            return buffer;
+
+        } catch (IOException e) {
+            throw new IllegalStateException(String.format("Could not map off heap memory in %s", mappedDirectory), e);
+        } finally {
+            IOUtils.closeQuietly(file);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.memory.offheap;
+
+import java.nio.ByteBuffer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Fixed width binary layout for the values of one of the supported
+ * {@link org.lisapark.octopus.core.event.Attribute} types. Every record starts with a byte that tells if the value
+ * is null, followed by the value itself.
+ */
+abstract class RecordCodec<T> {
+
+    private static final byte NULL = 0;
+    private static final byte NOT_NULL = 1;
+
+    private final int valueWidth;
+
+    RecordCodec(int valueWidth) {
+        this.valueWidth = valueWidth;
+    }
+
+    /**
+     * Returns the width of a record in bytes, including the null flag.
+     *
+     * @return record width
+     */
+    int getRecordWidth() {
+        return valueWidth + 1;
+    }
+
+    void write(ByteBuffer buffer, int offset, T value) {
+        if (value == null) {
+            buffer.put(offset, NULL);
+        } else {
+            buffer.put(offset, NOT_NULL);
+            writeValue(buffer, offset + 1, value);
+        }
+    }
+
+    T read(ByteBuffer buffer, int offset) {
+        return buffer.get(offset) == NULL ? null : readValue(buffer, offset + 1);
+    }
+
+    abstract void writeValue(ByteBuffer buffer, int offset, T value);
+
+    abstract T readValue(ByteBuffer buffer, int offset);
+
+    /**
+     * Returns the codec for values of the specified type.
+     *
+     * @param type                of the values
+     * @param maximumStringLength number of characters reserved for strings
+     * @return codec, or null if values of the type cannot be stored off heap
+     */
+    @SuppressWarnings("unchecked")
+    static <T> RecordCodec<T> forType(Class<?> type, int maximumStringLength) {
+        RecordCodec<?> codec = null;
+
+        if (type == Double.class) {
+            codec = new DoubleCodec();
+        } else if (type == Long.class) {
+            codec = new LongCodec();
+        } else if (type == Integer.class) {
+            codec = new IntegerCodec();
+        } else if (type == Short.class) {
+            codec = new ShortCodec();
+        } else if (type == Float.class) {
+            codec = new FloatCodec();
+        } else if (type == Boolean.class) {
+            codec = new BooleanCodec();
+        } else if (type == String.class) {
+            codec = new StringCodec(maximumStringLength);
+        }
+
+        return (RecordCodec<T>) codec;
+    }
+
+    static class DoubleCodec extends RecordCodec<Double> {
+        DoubleCodec() {
+            super(8);
+        }
+
+        @Override
+        void writeValue(ByteBuffer buffer, int offset, Double value) {
+            buffer.putDouble(offset, value);
+        }
+
+        @Override
+        Double readValue(ByteBuffer buffer, int offset) {
+            return buffer.getDouble(offset);
+        }
+    }
+
+    static class LongCodec extends RecordCodec<Long> {
+        LongCodec() {
+            super(8);
+        }
+
+        @Override
+        void writeValue(ByteBuffer buffer, int offset, Long value) {
+            buffer.putLong(offset, value);
+        }
+
+        @Override
+        Long readValue(ByteBuffer buffer, int offset) {
+            return buffer.getLong(offset);
+        }
+    }
+
+    static class IntegerCodec extends RecordCodec<Integer> {
+        IntegerCodec() {
+            super(4);
+        }
+
+        @Override
+        void writeValue(ByteBuffer buffer, int offset, Integer value) {
+            buffer.putInt(offset, value);
+        }
+
+        @Override
+        Integer readValue(ByteBuffer buffer, int offset) {
+            return buffer.getInt(offset);
+        }
+    }
+
+    static class ShortCodec extends RecordCodec<Short> {
+        ShortCodec() {
+            super(2);
+        }
+
+        @Override
+        void writeValue(ByteBuffer buffer, int offset, Short value) {
+            buffer.putShort(offset, value);
+        }
+
+        @Override
+        Short readValue(ByteBuffer buffer, int offset) {
+            return buffer.getShort(offset);
+        }
+    }
+
+    static class FloatCodec extends RecordCodec<Float> {
+        FloatCodec() {
+            super(4);
+        }
+
+        @Override
+        void writeValue(ByteBuffer buffer, int offset, Float value) {
+            buffer.putFloat(offset, value);
+        }
+
+        @Override
+        Float readValue(ByteBuffer buffer, int offset) {
+            return buffer.getFloat(offset);
+        }
+    }
+
+    static class BooleanCodec extends RecordCodec<Boolean> {
+        BooleanCodec() {
+            super(1);
+        }
+
+        @Override
+        void writeValue(ByteBuffer buffer, int offset, Boolean value) {
+            buffer.put(offset, value ? (byte) 1 : (byte) 0);
+        }
+
+        @Override
+        Boolean readValue(ByteBuffer buffer, int offset) {
+            return buffer.get(offset) != 0;
+        }
+    }
+
+    /**
+     * Strings are stored as a length followed by a fixed number of chars. Longer strings are rejected rather than
+     * silently truncated.
+     */
+    static class StringCodec extends RecordCodec<String> {
+        private final int maximumLength;
+
+        StringCodec(int maximumLength) {
+            super(4 + maximumLength * 2);
+            this.maximumLength = maximumLength;
+        }
+
+        @Override
+        void writeValue(ByteBuffer buffer, int offset, String value) {
+            checkArgument(value.length() <= maximumLength,
+                    "String of length %s is longer than the off heap maximum of %s", value.length(), maximumLength);
+
+            buffer.putInt(offset, value.length());
+            for (int i = 0; i < value.length(); ++i) {
+                buffer.putChar(offset + 4 + i * 2, value.charAt(i));
+            }
+        }
+
+        @Override
+        String readValue(ByteBuffer buffer, int offset) {
+            int length = buffer.getInt(offset);
+
+            char[] chars = new char[length];
+            for (int i = 0; i < length; ++i) {
+                chars[i] = buffer.getChar(offset + 4 + i * 2);
+            }
+
+            return new String(chars);
+        }
+    }
+}
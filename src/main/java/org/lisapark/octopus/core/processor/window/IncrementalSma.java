@@ -0,0 +1,97 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.processor.window;
+
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.event.EventSchema;
+import org.lisapark.octopus.core.event.IndexedEvent;
+import org.lisapark.octopus.core.memory.Memory;
+import org.lisapark.octopus.core.memory.MemoryProviders;
+import org.lisapark.octopus.core.memory.MemoryProvider;
+import org.lisapark.octopus.core.memory.aggregate.WindowAggregate;
+import org.lisapark.octopus.core.processor.CompiledProcessor;
+import org.lisapark.octopus.core.processor.Sma;
+import org.lisapark.octopus.core.runtime.ProcessorContext;
+
+import java.util.Map;
+
+/**
+ * Compiled form of a {@link Sma} that keeps its window in a {@link WindowAggregate}, so the average is updated in
+ * constant time instead of being summed over the whole window for every event. The running sum rounds differently
+ * from that sum, so the averages can differ from those of the compiled processor that {@link Sma#compile()} returns
+ * in the last bits, see {@link WindowAggregate#mean()}. The compilers only use it when incremental aggregates are
+ * turned on.
+ */
+class IncrementalSma extends CompiledProcessor<Double> {
+
+    private final String inputAttributeName;
+
+    /**
+     * Slot of the input attribute in the last {@link IndexedEvent} schema we saw, the adaptor uses the same schema
+     * for every event so this is only resolved once
+     */
+    private EventSchema inputSchema;
+    private int inputIndex;
+
+    IncrementalSma(Sma sma) {
+        super(sma);
+        this.inputAttributeName = sma.getInput().getSourceAttributeName();
+    }
+
+    static Memory<Double> createMemoryForProcessor(Sma sma, MemoryProvider memoryProvider) {
+        return new WindowAggregate(MemoryProviders.createDoubleCircularBuffer(memoryProvider, sma.getWindowLength()));
+    }
+
+    @Override
+    public Object processEvent(ProcessorContext<Double> ctx, Map<Integer, Event> eventsByInputId) {
+        Event event = eventsByInputId.get(1);
+
+        Memory<Double> processorMemory = ctx.getProcessorMemory();
+        if (processorMemory instanceof WindowAggregate) {
+            WindowAggregate aggregate = (WindowAggregate) processorMemory;
+            aggregate.add(valueOf(event));
+
+            return aggregate.mean();
+        }
+
+        Double newItem = event.getAttributeAsDouble(inputAttributeName);
+        if (newItem == null) {
+            newItem = 0D;
+        }
+
+        // the memory was not created by us, so all we can do is average the whole window
+        processorMemory.add(newItem);
+        double total = 0;
+        long numberItems = 0;
+        for (Double item : processorMemory.values()) {
+            total += item;
+            numberItems++;
+        }
+
+        return total / numberItems;
+    }
+
+    private double valueOf(Event event) {
+        if (event instanceof IndexedEvent) {
+            IndexedEvent indexedEvent = (IndexedEvent) event;
+            if (indexedEvent.getSchema() != inputSchema) {
+                inputSchema = indexedEvent.getSchema();
+                inputIndex = inputSchema.indexOf(inputAttributeName);
+            }
+
+            return inputIndex >= 0 ? indexedEvent.getDouble(inputIndex, 0) : 0;
+        }
+
+        Double value = event.getAttributeAsDouble(inputAttributeName);
+
+        return value != null ? value : 0;
+    }
+}
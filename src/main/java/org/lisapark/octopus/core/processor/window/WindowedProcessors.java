@@ -0,0 +1,67 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.processor.window;
+
+import org.lisapark.octopus.core.ValidationException;
+import org.lisapark.octopus.core.memory.Memory;
+import org.lisapark.octopus.core.memory.MemoryProvider;
+import org.lisapark.octopus.core.processor.CompiledProcessor;
+import org.lisapark.octopus.core.processor.Processor;
+import org.lisapark.octopus.core.processor.Sma;
+
+/**
+ * Static helpers used by the compilers in place of {@link Processor#compile()} and
+ * {@link Processor#createMemoryForProcessor(MemoryProvider)}. When incremental aggregates are asked for, processors
+ * that aggregate over a window, currently only the {@link Sma}, are compiled to versions that keep their aggregates
+ * up to date with a {@link org.lisapark.octopus.core.memory.aggregate.WindowAggregate}. Those round differently from
+ * summing the whole window, so their results can differ from the original processors in the last bits, which is why
+ * they are only used when a compiler is told to. All other processors are always compiled as usual.
+ */
+public abstract class WindowedProcessors {
+
+    /**
+     * Validates and compiles the processor. The memory of a processor compiled with this method must be created
+     * with {@link #createMemoryForProcessor(Processor, MemoryProvider, boolean)}, with the same value for
+     * <code>incrementalAggregates</code>.
+     *
+     * @param processor             to compile
+     * @param incrementalAggregates true to compile windowed processors to their incremental versions
+     * @return compiled processor
+     * @throws ValidationException if the processor is not valid
+     */
+    public static CompiledProcessor<?> compile(Processor<?> processor, boolean incrementalAggregates)
+            throws ValidationException {
+        if (incrementalAggregates && processor instanceof Sma) {
+            processor.validate();
+
+            return new IncrementalSma(((Sma) processor).copyOf());
+        }
+
+        return processor.compile();
+    }
+
+    /**
+     * Creates the memory for a processor compiled with {@link #compile(Processor, boolean)}.
+     *
+     * @param processor             to create the memory for
+     * @param memoryProvider        to create the memory with
+     * @param incrementalAggregates true if the processor was compiled to its incremental version
+     * @return memory, or null if the processor does not need any
+     */
+    public static Memory<?> createMemoryForProcessor(Processor<?> processor, MemoryProvider memoryProvider,
+                                                     boolean incrementalAggregates) {
+        if (incrementalAggregates && processor instanceof Sma) {
+            return IncrementalSma.createMemoryForProcessor((Sma) processor, memoryProvider);
+        }
+
+        return processor.createMemoryForProcessor(memoryProvider);
+    }
+}
@@ -0,0 +1,36 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime;
+
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.source.Source;
+
+import java.util.List;
+
+/**
+ * A {@link ProcessingRuntime} that can accept a whole batch of events from a source at once. Sending a batch has
+ * the same effect as sending each of its events in order with {@link #sendEventFromSource(Event, Source)}, but the
+ * per event overhead of checking the runtime state and looking up the event type is only paid once per batch.
+ * <p/>
+ * Sources should not test for this interface themselves, but use
+ * {@link ProcessingRuntimes#sendEventsFromSource(ProcessingRuntime, List, Source)} which falls back to sending the
+ * events one by one.
+ */
+public interface BatchProcessingRuntime extends ProcessingRuntime {
+
+    /**
+     * Sends all of the events, in order, as if they were produced by the specified source.
+     *
+     * @param events to send
+     * @param source that produced the events
+     */
+    void sendEventsFromSource(List<Event> events, Source source);
+}
@@ -0,0 +1,46 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime;
+
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.source.Source;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Static helpers for sending events to a {@link ProcessingRuntime}.
+ */
+public abstract class ProcessingRuntimes {
+
+    /**
+     * Sends the events to the runtime as a single batch if it is a {@link BatchProcessingRuntime}, otherwise they
+     * are sent one at a time.
+     *
+     * @param runtime to send the events to
+     * @param events  to send
+     * @param source  that produced the events
+     */
+    public static void sendEventsFromSource(ProcessingRuntime runtime, List<Event> events, Source source) {
+        if (runtime instanceof BatchProcessingRuntime) {
+            ((BatchProcessingRuntime) runtime).sendEventsFromSource(events, source);
+
+        } else {
+            for (Event event : events) {
+                runtime.sendEventFromSource(event, source);
+            }
+        }
+    }
+
+    public static void sendEventsFromSource(ProcessingRuntime runtime, Event[] events, Source source) {
+        sendEventsFromSource(runtime, Arrays.asList(events), source);
+    }
+}
@@ -0,0 +1,402 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.async;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.event.IndexedEvent;
+import org.lisapark.octopus.core.runtime.SinkContext;
+import org.lisapark.octopus.core.sink.Sink;
+import org.lisapark.octopus.core.sink.external.CompiledExternalSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Decorator for a {@link CompiledExternalSink} that takes the events off the engine thread. Events are put on a
+ * bounded queue, and a worker thread of its own hands them to the delegate in micro batches. A batch is sent once it
+ * has <code>batchSize</code> events, or once <code>maxDelayMillis</code> have passed since its first event, whichever
+ * comes first. Delegates that implement {@link BatchSink} get the whole batch in one call.
+ * <p/>
+ * When the delegate falls behind and the queue is full, the {@link Backpressure} decides what happens to new events.
+ * With {@link Backpressure#SPILL} they go to a {@link SpillFile} until the worker has read every spilled event, so
+ * the delegate still sees the events in the order they were produced. If an event cannot be written to the spill
+ * file, the sink waits for the worker to read the events that were spilled before it, and then queues it, blocking
+ * like {@link Backpressure#BLOCK}.
+ * <p/>
+ * {@link #close()} must be called once the runtime has shutdown, it sends the events that are still queued and ends
+ * the worker.
+ */
+public class AsyncCompiledSink extends CompiledExternalSink {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncCompiledSink.class);
+
+    /**
+     * Put on the queue by {@link #close()} to tell the worker that no more events will follow
+     */
+    private static final Map<Integer, Event> END_OF_EVENTS = Maps.newHashMap();
+
+    private final String name;
+    private final CompiledExternalSink delegate;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final Backpressure backpressure;
+    private final BlockingQueue<Map<Integer, Event>> queue;
+    private final SpillFile spillFile;
+    private final Thread worker;
+
+    private volatile SinkContext context;
+    private volatile boolean closed;
+
+    private final AtomicLong eventCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong spilledCount = new AtomicLong();
+
+    /**
+     * @param sink           the compiled sink belongs to
+     * @param delegate       compiled sink the events are sent to
+     * @param batchSize      largest number of events in a batch
+     * @param maxDelayMillis longest time the first event of a batch waits for more events
+     * @param queueCapacity  number of events that can be queued before the backpressure applies
+     * @param backpressure   what to do with events while the queue is full
+     * @param spillFile      file events are spilled to, only needed for {@link Backpressure#SPILL}
+     */
+    public AsyncCompiledSink(Sink sink, CompiledExternalSink delegate, int batchSize, long maxDelayMillis,
+                             int queueCapacity, Backpressure backpressure, File spillFile) {
+        super(sink);
+        checkArgument(batchSize > 0, "batchSize has to be greater than zero");
+        checkArgument(maxDelayMillis >= 0, "maxDelayMillis cannot be negative");
+        checkArgument(backpressure != Backpressure.SPILL || spillFile != null, "spillFile is needed to spill events");
+
+        this.name = sink.getName();
+        this.delegate = delegate;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.backpressure = backpressure;
+        this.queue = new ArrayBlockingQueue<Map<Integer, Event>>(queueCapacity);
+        this.spillFile = backpressure == Backpressure.SPILL ? new SpillFile(spillFile) : null;
+
+        this.worker = new Thread(new SinkWorker(), "async-sink-" + name);
+        // a run that is abandoned without closing its sinks should not keep the vm alive
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    @Override
+    public void processEvent(SinkContext ctx, Map<Integer, Event> eventsByInputId) {
+        checkState(!closed, "Cannot process events after the sink has been closed");
+        context = ctx;
+        Map<Integer, Event> events = copyOf(eventsByInputId);
+
+        switch (backpressure) {
+            case BLOCK:
+                putUninterruptibly(events);
+                break;
+
+            case DROP_OLDEST:
+                while (!queue.offer(events)) {
+                    if (queue.poll() != null) {
+                        droppedCount.incrementAndGet();
+                    }
+                }
+                break;
+
+            case SPILL:
+                spill(events);
+                break;
+        }
+    }
+
+    /**
+     * Queues the events, unless the queue is full or older events are still in the spill file, in which case they
+     * are appended to the spill file so the order is kept. If they cannot be appended, they are only queued once
+     * the worker has read all of the older events from the spill file.
+     */
+    private void spill(Map<Integer, Event> eventsByInputId) {
+        synchronized (spillFile) {
+            if (spillFile.isEmpty() && queue.offer(eventsByInputId)) {
+                return;
+            }
+
+            try {
+                spillFile.append(eventsByInputId);
+                spilledCount.incrementAndGet();
+                return;
+            } catch (IOException e) {
+                LOG.error("Could not spill events of sink " + name + ", waiting for the queue instead", e);
+            }
+
+            awaitEmptySpillFile();
+        }
+
+        putUninterruptibly(eventsByInputId);
+    }
+
+    /**
+     * Waits until the worker has read every spilled event, must be called holding the lock of the spill file.
+     */
+    private void awaitEmptySpillFile() {
+        boolean interrupted = false;
+        while (!spillFile.isEmpty()) {
+            try {
+                spillFile.wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sends all of the events that are still queued or spilled to the delegate and waits for the worker to end. This
+     * must only be called once no more events are sent to this sink.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        putUninterruptibly(END_OF_EVENTS);
+
+        boolean interrupted = false;
+        while (worker.isAlive()) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (spillFile != null) {
+            spillFile.close();
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of events that the delegate has processed so far.
+     */
+    public long getEventCount() {
+        return eventCount.get();
+    }
+
+    /**
+     * Returns the number of events that the delegate threw an exception for. With a {@link BatchSink} every event of
+     * a failed batch counts.
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * Returns the number of events that were discarded because the queue was full, only with
+     * {@link Backpressure#DROP_OLDEST}.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Returns the number of events that were written to the spill file because the queue was full, only with
+     * {@link Backpressure#SPILL}.
+     */
+    public long getSpilledCount() {
+        return spilledCount.get();
+    }
+
+    /**
+     * Returns a copy of the events that can be kept after the call that handed them to this sink. The compiled
+     * models reuse the map, and the {@link IndexedEvent} in it, for the next event that is dispatched on a thread.
+     */
+    private static Map<Integer, Event> copyOf(Map<Integer, Event> eventsByInputId) {
+        Map<Integer, Event> copy = Maps.newHashMapWithExpectedSize(eventsByInputId.size());
+
+        for (Map.Entry<Integer, Event> entry : eventsByInputId.entrySet()) {
+            Event event = entry.getValue();
+            if (event instanceof IndexedEvent) {
+                IndexedEvent indexedEvent = new IndexedEvent(((IndexedEvent) event).getSchema());
+                indexedEvent.copyFrom(event.getData());
+                event = indexedEvent;
+            }
+            copy.put(entry.getKey(), event);
+        }
+
+        return copy;
+    }
+
+    private void putUninterruptibly(Map<Integer, Event> eventsByInputId) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(eventsByInputId);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Collects batches from the queue and the spill file and sends them to the delegate until the end of the events
+     */
+    private class SinkWorker implements Runnable {
+        private final List<Map<Integer, Event>> batch = Lists.newArrayListWithCapacity(batchSize);
+        private boolean endOfEvents;
+        private boolean ended;
+
+        @Override
+        public void run() {
+            while (!ended) {
+                try {
+                    fillBatch();
+                } catch (InterruptedException e) {
+                    // only close ends the worker, otherwise events would be lost
+                }
+
+                if (!batch.isEmpty()) {
+                    sendBatch();
+                }
+            }
+        }
+
+        /**
+         * Waits for the first event of a batch and then adds events until the batch is full, its delay has passed or
+         * the end of the events has been reached. Events that were spilled before the end still belong to the run,
+         * so the worker only ends once the spill file is empty as well.
+         */
+        private void fillBatch() throws InterruptedException {
+            long deadline = 0;
+
+            while (batch.size() < batchSize) {
+                Map<Integer, Event> eventsByInputId = nextEvents();
+
+                if (eventsByInputId == null) {
+                    if (endOfEvents) {
+                        ended = true;
+                        break;
+                    }
+
+                    if (batch.isEmpty()) {
+                        eventsByInputId = queue.take();
+                    } else {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        eventsByInputId = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (eventsByInputId == null) {
+                            break;
+                        }
+                    }
+                }
+
+                if (eventsByInputId == END_OF_EVENTS) {
+                    endOfEvents = true;
+                } else {
+                    batch.add(eventsByInputId);
+                    if (batch.size() == 1) {
+                        deadline = System.nanoTime() + maxDelayNanos;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the next queued event without waiting, or the oldest spilled event once the queue is empty. The
+         * queue only holds events that are older than the spilled ones, since nothing is queued while the spill
+         * file has events.
+         */
+        private Map<Integer, Event> nextEvents() {
+            Map<Integer, Event> eventsByInputId = queue.poll();
+
+            if (eventsByInputId == null && spillFile != null) {
+                // events are only queued while holding the lock, so once the queue is empty under the lock, every
+                // event in the spill file is newer than the ones already taken
+                synchronized (spillFile) {
+                    eventsByInputId = queue.poll();
+                    if (eventsByInputId == null) {
+                        try {
+                            eventsByInputId = spillFile.poll();
+                        } catch (IOException e) {
+                            LOG.error("Could not read spilled events of sink " + name + ", the rest of them are lost", e);
+                            spillFile.close();
+                        }
+                    }
+
+                    if (spillFile.isEmpty()) {
+                        // wakes up the engine threads that could not spill and wait to queue their events
+                        spillFile.notifyAll();
+                    }
+                }
+            }
+
+            return eventsByInputId;
+        }
+
+        private void sendBatch() {
+            if (delegate instanceof BatchSink) {
+                try {
+                    ((BatchSink) delegate).processEvents(context, batch);
+                    eventCount.addAndGet(batch.size());
+                } catch (RuntimeException e) {
+                    LOG.error("Problem processing a batch of " + batch.size() + " events in sink " + name, e);
+                    failedCount.addAndGet(batch.size());
+                }
+            } else {
+                for (Map<Integer, Event> eventsByInputId : batch) {
+                    try {
+                        delegate.processEvent(context, eventsByInputId);
+                        eventCount.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        LOG.error("Problem processing an event in sink " + name, e);
+                        failedCount.incrementAndGet();
+                    }
+                }
+            }
+
+            batchCount.incrementAndGet();
+            batch.clear();
+        }
+    }
+}
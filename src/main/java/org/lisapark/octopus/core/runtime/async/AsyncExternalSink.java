@@ -0,0 +1,132 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.async;
+
+import org.lisapark.octopus.core.Input;
+import org.lisapark.octopus.core.Node;
+import org.lisapark.octopus.core.ValidationException;
+import org.lisapark.octopus.core.parameter.Parameter;
+import org.lisapark.octopus.core.sink.Sink;
+import org.lisapark.octopus.core.sink.external.CompiledExternalSink;
+import org.lisapark.octopus.core.sink.external.ExternalSink;
+import org.lisapark.octopus.core.source.Source;
+
+import javax.swing.Icon;
+import java.awt.Point;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * This {@link ExternalSink} wraps another sink, keeping its id and inputs, so that the {@link CompiledExternalSink}
+ * it compiles to is decorated by an {@link AsyncCompiledSink}. Unlike sources, sinks have no base class that can be
+ * constructed from another instance, so everything else is delegated to the wrapped sink. Instances are never
+ * persisted, they only live for the duration of a single compile.
+ */
+class AsyncExternalSink implements ExternalSink {
+
+    private final ExternalSink sink;
+    private final AsyncSinks sinks;
+
+    AsyncExternalSink(ExternalSink sink, AsyncSinks sinks) {
+        this.sink = sink;
+        this.sinks = sinks;
+    }
+
+    @Override
+    public CompiledExternalSink compile() throws ValidationException {
+        return sinks.asyncSinkFor(sink, sink.compile());
+    }
+
+    @Override
+    public List<? extends Input> getInputs() {
+        return sink.getInputs();
+    }
+
+    @Override
+    public boolean isConnectedTo(Source source) {
+        return sink.isConnectedTo(source);
+    }
+
+    @Override
+    public void disconnect(Source source) {
+        sink.disconnect(source);
+    }
+
+    @Override
+    public UUID getId() {
+        return sink.getId();
+    }
+
+    @Override
+    public String getName() {
+        return sink.getName();
+    }
+
+    @Override
+    public Node setName(String name) {
+        sink.setName(name);
+        return this;
+    }
+
+    @Override
+    public String getDescription() {
+        return sink.getDescription();
+    }
+
+    @Override
+    public Node setDescription(String description) {
+        sink.setDescription(description);
+        return this;
+    }
+
+    @Override
+    public Set<Parameter> getParameters() {
+        return sink.getParameters();
+    }
+
+    @Override
+    public Point getLocation() {
+        return sink.getLocation();
+    }
+
+    @Override
+    public Node setLocation(Point location) {
+        sink.setLocation(location);
+        return this;
+    }
+
+    @Override
+    public Icon getIcon() {
+        return sink.getIcon();
+    }
+
+    @Override
+    public Node setIcon(Icon icon) {
+        sink.setIcon(icon);
+        return this;
+    }
+
+    @Override
+    public void validate() throws ValidationException {
+        sink.validate();
+    }
+
+    @Override
+    public Sink newInstance() {
+        return (Sink) sink.newInstance();
+    }
+
+    @Override
+    public Sink copyOf() {
+        return new AsyncExternalSink((ExternalSink) sink.copyOf(), sinks);
+    }
+}
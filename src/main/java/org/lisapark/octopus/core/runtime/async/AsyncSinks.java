@@ -0,0 +1,126 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.async;
+
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.processor.Processor;
+import org.lisapark.octopus.core.sink.Sink;
+import org.lisapark.octopus.core.sink.external.CompiledExternalSink;
+import org.lisapark.octopus.core.sink.external.ExternalSink;
+import org.lisapark.octopus.core.source.external.ExternalSource;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * {@link AsyncSinks} run the {@link ExternalSink}s of a single run of a {@link ProcessingModel} on threads of their
+ * own, so a slow sink no longer holds up the engine thread that produces its events. Every sink of the model
+ * compiles to an {@link AsyncCompiledSink}, see {@link #asyncCopyOf(ProcessingModel)}, which all share the same
+ * batching and {@link Backpressure} settings.
+ * <p/>
+ * The runtime does not know about the threads of the sinks, so {@link #close()} has to be called after the runtime
+ * has shutdown to send the events that are still queued.
+ */
+public class AsyncSinks {
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 100;
+    public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+    private final int batchSize;
+    private final long maxDelayMillis;
+    private final int queueCapacity;
+    private final Backpressure backpressure;
+    private final File spillDirectory;
+
+    private final List<AsyncCompiledSink> compiledSinks = new CopyOnWriteArrayList<AsyncCompiledSink>();
+
+    /**
+     * @param batchSize      largest number of events handed to a sink at once
+     * @param maxDelayMillis longest time the first event of a batch waits for more events
+     * @param queueCapacity  number of events queued per sink before the backpressure applies
+     * @param backpressure   what to do with events while the queue of a sink is full
+     * @param spillDirectory directory for the spill files, only needed for {@link Backpressure#SPILL}
+     */
+    public AsyncSinks(int batchSize, long maxDelayMillis, int queueCapacity, Backpressure backpressure, File spillDirectory) {
+        checkArgument(batchSize > 0, "batchSize has to be greater than zero");
+        checkArgument(queueCapacity > 0, "queueCapacity has to be greater than zero");
+        checkArgument(backpressure != null, "backpressure cannot be null");
+        checkArgument(backpressure != Backpressure.SPILL || spillDirectory != null, "spillDirectory is needed to spill events");
+
+        this.batchSize = batchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.queueCapacity = queueCapacity;
+        this.backpressure = backpressure;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Returns a new {@link ProcessingModel} that has the same {@link ExternalSource}s and {@link Processor}s as the
+     * specified model, but where every {@link ExternalSink} has been wrapped so that it compiles to an
+     * {@link AsyncCompiledSink}. The wrapped sinks keep the ids and inputs of the originals.
+     *
+     * @param model to copy
+     * @return copy of the model with asynchronous sinks
+     */
+    public ProcessingModel asyncCopyOf(ProcessingModel model) {
+        checkArgument(model != null, "model cannot be null");
+
+        ProcessingModel copy = new ProcessingModel(model.getModelName());
+
+        for (ExternalSource externalSource : model.getExternalSources()) {
+            copy.addExternalEventSource(externalSource);
+        }
+
+        for (Processor processor : model.getProcessors()) {
+            copy.addProcessor(processor);
+        }
+
+        for (ExternalSink externalSink : model.getExternalSinks()) {
+            copy.addExternalSink(new AsyncExternalSink(externalSink, this));
+        }
+
+        return copy;
+    }
+
+    /**
+     * Returns the compiled sinks created so far, for reporting their counts.
+     *
+     * @return compiled sinks
+     */
+    public List<AsyncCompiledSink> getCompiledSinks() {
+        return Collections.unmodifiableList(compiledSinks);
+    }
+
+    /**
+     * Sends the events that are still queued by any of the sinks and ends their threads. This waits for the slowest
+     * sink, and must only be called once the runtime has shutdown.
+     */
+    public void close() {
+        for (AsyncCompiledSink compiledSink : compiledSinks) {
+            compiledSink.close();
+        }
+    }
+
+    AsyncCompiledSink asyncSinkFor(Sink sink, CompiledExternalSink compiledSink) {
+        File spillFile = spillDirectory != null ? new File(spillDirectory, sink.getId() + ".spill") : null;
+
+        AsyncCompiledSink asyncSink = new AsyncCompiledSink(sink, compiledSink, batchSize, maxDelayMillis,
+                queueCapacity, backpressure, spillFile);
+        compiledSinks.add(asyncSink);
+
+        return asyncSink;
+    }
+}
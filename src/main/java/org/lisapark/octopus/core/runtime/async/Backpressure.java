@@ -0,0 +1,31 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.async;
+
+/**
+ * What an {@link AsyncCompiledSink} does with a new event when its queue is full because the sink it delegates to
+ * has fallen behind.
+ */
+public enum Backpressure {
+    /**
+     * The engine thread waits until the sink has taken events off the queue, no events are lost
+     */
+    BLOCK,
+    /**
+     * The oldest event in the queue is discarded to make room, the engine thread never waits
+     */
+    DROP_OLDEST,
+    /**
+     * The event is written to a spill file and read back once the sink has caught up with the queue, no events are
+     * lost and the engine thread only waits for the disk
+     */
+    SPILL
+}
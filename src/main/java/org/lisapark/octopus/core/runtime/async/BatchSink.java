@@ -0,0 +1,34 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.async;
+
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.runtime.SinkContext;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implemented by a {@link org.lisapark.octopus.core.sink.external.CompiledExternalSink} that can handle several
+ * events in one call, for instance to write them in a single batch statement. An {@link AsyncCompiledSink} hands a
+ * sink like this whole batches, other sinks get the events of a batch one at a time.
+ */
+public interface BatchSink {
+
+    /**
+     * Processes a batch of events in the order they were produced. The list is reused for the next batch, so it must
+     * not be kept after this method returns.
+     *
+     * @param ctx             context of the sink
+     * @param eventsByInputId events of the batch, each keyed by the id of the input it arrived on
+     */
+    void processEvents(SinkContext ctx, List<Map<Integer, Event>> eventsByInputId);
+}
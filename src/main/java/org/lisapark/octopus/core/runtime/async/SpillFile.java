@@ -0,0 +1,131 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.async;
+
+import com.google.common.collect.Maps;
+import org.apache.commons.io.IOUtils;
+import org.lisapark.octopus.core.event.Event;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Map;
+
+/**
+ * A first in, first out file of the events an {@link AsyncCompiledSink} could not queue. Events are appended at the
+ * end and polled from the front, and once every event has been polled the file is deleted, so it only grows while
+ * the sink is behind.
+ * <p/>
+ * The data of the events is written with java serialization, which handles every value type a source can produce.
+ * The stream is reset after each event so that it does not keep references to the events it has written.
+ */
+class SpillFile {
+
+    private final File file;
+
+    private ObjectOutputStream out;
+    private ObjectInputStream in;
+
+    private long writeCount;
+    private long flushCount;
+    private long readCount;
+
+    SpillFile(File file) {
+        this.file = file;
+    }
+
+    synchronized boolean isEmpty() {
+        return readCount == writeCount;
+    }
+
+    synchronized long size() {
+        return writeCount - readCount;
+    }
+
+    synchronized void append(Map<Integer, Event> eventsByInputId) throws IOException {
+        if (out == null) {
+            File directory = file.getParentFile();
+            if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Could not create spill directory " + directory);
+            }
+            out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        }
+
+        out.writeInt(eventsByInputId.size());
+        for (Map.Entry<Integer, Event> entry : eventsByInputId.entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeObject(Maps.newHashMap(entry.getValue().getData()));
+        }
+        out.reset();
+        writeCount++;
+    }
+
+    /**
+     * Returns the oldest event in the file, or null if the file is empty.
+     */
+    synchronized Map<Integer, Event> poll() throws IOException {
+        if (readCount == writeCount) {
+            return null;
+        }
+
+        if (readCount == flushCount) {
+            out.flush();
+            flushCount = writeCount;
+        }
+        if (in == null) {
+            in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+        }
+
+        int inputCount = in.readInt();
+        Map<Integer, Event> eventsByInputId = Maps.newHashMapWithExpectedSize(inputCount);
+        for (int i = 0; i < inputCount; ++i) {
+            int inputId = in.readInt();
+            eventsByInputId.put(inputId, new Event(readData()));
+        }
+        readCount++;
+
+        if (readCount == writeCount) {
+            // caught up with the writer, start over with an empty file
+            close();
+        }
+
+        return eventsByInputId;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> readData() throws IOException {
+        try {
+            return (Map<String, Object>) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Could not read spilled event from " + file, e);
+        }
+    }
+
+    /**
+     * Closes and deletes the file, any events that have not been polled are lost.
+     */
+    synchronized void close() {
+        IOUtils.closeQuietly(in);
+        IOUtils.closeQuietly(out);
+        in = null;
+        out = null;
+        readCount = writeCount = flushCount = 0;
+
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+}
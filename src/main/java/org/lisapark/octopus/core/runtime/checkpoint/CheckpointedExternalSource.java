@@ -0,0 +1,62 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.checkpoint;
+
+import org.lisapark.octopus.core.ProcessingException;
+import org.lisapark.octopus.core.ValidationException;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.source.Source;
+import org.lisapark.octopus.core.source.external.CompiledExternalSource;
+import org.lisapark.octopus.core.source.external.ExternalSource;
+
+/**
+ * This {@link ExternalSource} wraps another source, keeping its id and output, so that the
+ * {@link CompiledExternalSource} it compiles to sends its events through a {@link CheckpointedProcessingRuntime}.
+ * Instances are never persisted, they only live for the duration of a single compile.
+ */
+class CheckpointedExternalSource extends ExternalSource {
+
+    private final ExternalSource source;
+    private final Checkpointer checkpointer;
+
+    CheckpointedExternalSource(ExternalSource source, Checkpointer checkpointer) {
+        super(source.getId(), source);
+        this.source = source;
+        this.checkpointer = checkpointer;
+    }
+
+    @Override
+    public CompiledExternalSource compile() throws ValidationException {
+        final CompiledExternalSource compiledSource = source.compile();
+
+        return new CompiledExternalSource() {
+            @Override
+            public void startProcessingEvents(ProcessingRuntime runtime) throws ProcessingException {
+                compiledSource.startProcessingEvents(new CheckpointedProcessingRuntime(runtime, checkpointer));
+            }
+
+            @Override
+            public void stopProcessingEvents() {
+                compiledSource.stopProcessingEvents();
+            }
+        };
+    }
+
+    @Override
+    public Source newInstance() {
+        return source.newInstance();
+    }
+
+    @Override
+    public Source copyOf() {
+        return new CheckpointedExternalSource((ExternalSource) source.copyOf(), checkpointer);
+    }
+}
@@ -0,0 +1,65 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.checkpoint;
+
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.runtime.BatchProcessingRuntime;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.runtime.ProcessingRuntimes;
+import org.lisapark.octopus.core.source.Source;
+
+import java.util.List;
+
+/**
+ * {@link ProcessingRuntime} decorator that is handed to a single {@link CheckpointedExternalSource}. Every event,
+ * or batch of events, holds the shared lock of the {@link Checkpointer} until the real runtime is done with it, so
+ * a snapshot never sees an event that is part way through the processors.
+ */
+class CheckpointedProcessingRuntime implements BatchProcessingRuntime {
+
+    private final ProcessingRuntime runtime;
+    private final Checkpointer checkpointer;
+
+    CheckpointedProcessingRuntime(ProcessingRuntime runtime, Checkpointer checkpointer) {
+        this.runtime = runtime;
+        this.checkpointer = checkpointer;
+    }
+
+    @Override
+    public void start() {
+        runtime.start();
+    }
+
+    @Override
+    public void shutdown() {
+        runtime.shutdown();
+    }
+
+    @Override
+    public void sendEventFromSource(Event event, Source source) {
+        checkpointer.beforeEvent();
+        try {
+            runtime.sendEventFromSource(event, source);
+        } finally {
+            checkpointer.afterEvent();
+        }
+    }
+
+    @Override
+    public void sendEventsFromSource(List<Event> events, Source source) {
+        checkpointer.beforeEvent();
+        try {
+            ProcessingRuntimes.sendEventsFromSource(runtime, events, source);
+        } finally {
+            checkpointer.afterEvent();
+        }
+    }
+}
@@ -0,0 +1,382 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.checkpoint;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.compiler.cache.ModelFingerprint;
+import org.lisapark.octopus.core.memory.MarkableMemory;
+import org.lisapark.octopus.core.memory.Memory;
+import org.lisapark.octopus.core.memory.MemoryMark;
+import org.lisapark.octopus.core.processor.Processor;
+import org.lisapark.octopus.core.sink.external.ExternalSink;
+import org.lisapark.octopus.core.source.external.ExternalSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * A {@link Checkpointer} periodically takes a snapshot of the {@link Memory} of every processor of a single run of a
+ * {@link ProcessingModel} and writes it to a snapshot directory, so that a restarted run does not have to warm up
+ * the windows of its processors again.
+ * <p/>
+ * The compiler hands every processor memory it creates to {@link #register(Processor, Memory)}. If a snapshot was
+ * loaded with {@link #restoreNewestSnapshot()} before compiling, the memory is filled from the snapshot right away,
+ * as long as the processor has not changed since the snapshot was taken, see {@link ModelFingerprint#forNode}. The
+ * windows that Esper keeps for processors with more than one input are not part of the snapshot.
+ * <p/>
+ * To get a consistent snapshot across the graph, the sources of the model are wrapped, see
+ * {@link #checkpointedCopyOf(ProcessingModel)}, so that a snapshot is taken between two source events, when no
+ * event is part way through the processors. Sending an event only takes a shared lock; a snapshot holds the lock
+ * exclusively just long enough to {@link MarkableMemory#mark()} every memory, which takes constant time per
+ * processor. The values are copied after the lock is released, by the snapshot or by the memory itself right before
+ * the next event writes to it, whichever comes first, so every memory is captured as it was at the same point
+ * between two source events without holding back the sources for the length of the windows. Only memories that
+ * cannot be marked, like the ones of the core memory providers, are still copied while the lock is held.
+ * <p/>
+ * The snapshot files are named after the model, followed by the time the snapshot was taken. Characters that are
+ * not safe in file names are escaped, so that two models never share a file name, and only files that match that
+ * name exactly are read or deleted, so different models can share a snapshot directory.
+ */
+public class Checkpointer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Checkpointer.class);
+
+    private static final String SNAPSHOT_EXTENSION = ".snapshot";
+    /**
+     * Older snapshots are deleted, but we keep one more in case the newest one turns out to be unreadable
+     */
+    private static final int SNAPSHOTS_KEPT = 2;
+
+    private final File directory;
+    private final String modelName;
+    private final String filePrefix;
+    private final Pattern fileNamePattern;
+    private final long intervalMillis;
+
+    private final ReadWriteLock eventLock = new ReentrantReadWriteLock();
+
+    private final Map<UUID, RegisteredMemory> memories = Maps.newLinkedHashMap();
+    private final Set<UUID> unsupportedProcessors = Sets.newHashSet();
+    private MemorySnapshot restoredSnapshot;
+    private long lastTimestamp;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param directory      to write the snapshots to, it is created if it does not exist
+     * @param modelName      of the model that is run, the snapshots of different models can share a directory
+     * @param intervalMillis time between two snapshots
+     */
+    public Checkpointer(File directory, String modelName, long intervalMillis) {
+        checkArgument(directory != null, "directory cannot be null");
+        checkArgument(modelName != null, "modelName cannot be null");
+        checkArgument(intervalMillis > 0, "intervalMillis has to be greater than zero");
+
+        this.directory = directory;
+        this.modelName = modelName;
+        this.filePrefix = escapeFileName(modelName) + "-";
+        this.fileNamePattern =
+                Pattern.compile(Pattern.quote(filePrefix) + "\\d{20}" + Pattern.quote(SNAPSHOT_EXTENSION));
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Returns a new {@link ProcessingModel} with the same processors and sinks, where every {@link ExternalSource} is
+     * wrapped so the events it sends can be held back while a snapshot is taken. The wrapped sources keep the ids of
+     * the originals.
+     *
+     * @param model to copy
+     * @return copy of the model that should be handed to the compiler
+     */
+    public ProcessingModel checkpointedCopyOf(ProcessingModel model) {
+        checkArgument(model != null, "model cannot be null");
+
+        ProcessingModel copy = new ProcessingModel(model.getModelName());
+
+        for (ExternalSource externalSource : model.getExternalSources()) {
+            copy.addExternalEventSource(new CheckpointedExternalSource(externalSource, this));
+        }
+
+        for (Processor processor : model.getProcessors()) {
+            copy.addProcessor(processor);
+        }
+
+        for (ExternalSink externalSink : model.getExternalSinks()) {
+            copy.addExternalSink(externalSink);
+        }
+
+        return copy;
+    }
+
+    /**
+     * Loads the newest readable snapshot of the model from the directory. The memories registered from now on are
+     * restored from it.
+     *
+     * @return true if a snapshot was found
+     */
+    public synchronized boolean restoreNewestSnapshot() {
+        File[] files = snapshotFiles();
+
+        for (int i = files.length - 1; i >= 0; --i) {
+            try {
+                MemorySnapshot snapshot = MemorySnapshot.readFrom(files[i]);
+                if (modelName.equals(snapshot.getModelName())) {
+                    LOG.info("Restoring model '{}' from snapshot {}", modelName, files[i]);
+                    restoredSnapshot = snapshot;
+                    lastTimestamp = snapshot.getTimestamp();
+
+                    return true;
+                }
+            } catch (IOException e) {
+                LOG.warn("Skipping unreadable snapshot " + files[i], e);
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Registers the memory of a processor so it is part of every snapshot, and fills it from the restored snapshot,
+     * if there is one. A memory registered for the same processor before is replaced.
+     *
+     * @param processor the memory belongs to
+     * @param memory    of the processor
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void register(Processor<?> processor, Memory<?> memory) {
+        checkArgument(processor != null, "processor cannot be null");
+        checkArgument(memory != null, "memory cannot be null");
+
+        String fingerprint = ModelFingerprint.forNode(processor);
+        memories.put(processor.getId(), new RegisteredMemory(fingerprint, memory));
+
+        if (restoredSnapshot != null) {
+            List<Object> values = restoredSnapshot.valuesFor(processor.getId(), fingerprint);
+            if (values != null) {
+                for (Object value : values) {
+                    ((Memory<Object>) memory).add(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts taking a snapshot every interval on a background thread.
+     */
+    public synchronized void start() {
+        checkState(scheduler == null, "Checkpointer has already been started");
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "checkpointer-" + modelName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    takeSnapshot();
+                } catch (IOException e) {
+                    LOG.warn("Could not write snapshot of model '" + modelName + "'", e);
+                }
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops taking snapshots, waiting for a snapshot that is being written to finish.
+     */
+    public void stop() {
+        ScheduledExecutorService schedulerToStop;
+        synchronized (this) {
+            schedulerToStop = scheduler;
+            scheduler = null;
+        }
+
+        if (schedulerToStop != null) {
+            schedulerToStop.shutdown();
+            try {
+                schedulerToStop.awaitTermination(intervalMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Takes a snapshot now, holding back the events of all sources while the memories are marked.
+     *
+     * @return the snapshot file
+     * @throws IOException if the snapshot could not be written
+     */
+    public File takeSnapshot() throws IOException {
+        MemorySnapshot snapshot = captureSnapshot();
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException(String.format("Could not create snapshot directory %s", directory));
+        }
+
+        // the timestamp is zero padded so that the file names sort in the order the snapshots were taken
+        File file = new File(directory, String.format("%s%020d%s", filePrefix, snapshot.getTimestamp(), SNAPSHOT_EXTENSION));
+        snapshot.writeTo(file);
+        LOG.debug("Wrote snapshot of {} processors to {}", snapshot.size(), file);
+
+        deleteOldSnapshots();
+
+        return file;
+    }
+
+    private synchronized MemorySnapshot captureSnapshot() {
+        // timestamps have to be unique, they are part of the file name
+        lastTimestamp = Math.max(lastTimestamp + 1, System.currentTimeMillis());
+        MemorySnapshot snapshot = new MemorySnapshot(modelName, lastTimestamp);
+
+        // only the marking is done while the sources are held back, see the class comment
+        List<MemoryMark<Object>> marks = Lists.newArrayListWithCapacity(memories.size());
+        long start = System.nanoTime();
+        eventLock.writeLock().lock();
+        try {
+            for (RegisteredMemory registeredMemory : memories.values()) {
+                marks.add(mark(registeredMemory.memory));
+            }
+        } finally {
+            eventLock.writeLock().unlock();
+        }
+        LOG.debug("Held back the sources for {} microseconds to mark {} memories",
+                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start), marks.size());
+
+        int index = 0;
+        for (Map.Entry<UUID, RegisteredMemory> entry : memories.entrySet()) {
+            List<Object> values = marks.get(index++).values();
+
+            if (isSupported(entry.getKey(), values)) {
+                snapshot.put(entry.getKey(), entry.getValue().fingerprint, values);
+            }
+        }
+
+        return snapshot;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MemoryMark<Object> mark(Memory<?> memory) {
+        if (memory instanceof MarkableMemory) {
+            return ((MarkableMemory<Object>) memory).mark();
+        }
+
+        MemoryMark<Object> mark = new MemoryMark<Object>((Memory<Object>) memory);
+        mark.copy();
+        return mark;
+    }
+
+    private boolean isSupported(UUID processorId, List<Object> values) {
+        for (Object value : values) {
+            if (!MemorySnapshot.isSupported(value)) {
+                if (unsupportedProcessors.add(processorId)) {
+                    LOG.warn("The memory of processor {} holds values of type {}, it will not be part of snapshots",
+                            processorId, value.getClass().getName());
+                }
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void deleteOldSnapshots() {
+        File[] files = snapshotFiles();
+
+        for (int i = 0; i < files.length - SNAPSHOTS_KEPT; ++i) {
+            if (!files[i].delete()) {
+                LOG.warn("Could not delete old snapshot {}", files[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the snapshots of the model, oldest first.
+     */
+    private File[] snapshotFiles() {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return fileNamePattern.matcher(name).matches();
+            }
+        });
+
+        if (files == null) {
+            return new File[0];
+        }
+
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * Escapes every character that is not a letter, a digit, '.' or '-' as '_' followed by its four hex digits, so
+     * that different model names are never escaped to the same file name.
+     */
+    static String escapeFileName(String modelName) {
+        StringBuilder escaped = new StringBuilder(modelName.length());
+        for (int i = 0; i < modelName.length(); ++i) {
+            char c = modelName.charAt(i);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '.' || c == '-') {
+                escaped.append(c);
+            } else {
+                escaped.append('_').append(String.format("%04x", (int) c));
+            }
+        }
+
+        return escaped.toString();
+    }
+
+    void beforeEvent() {
+        eventLock.readLock().lock();
+    }
+
+    void afterEvent() {
+        eventLock.readLock().unlock();
+    }
+
+    private static class RegisteredMemory {
+        final String fingerprint;
+        final Memory<?> memory;
+
+        RegisteredMemory(String fingerprint, Memory<?> memory) {
+            this.fingerprint = fingerprint;
+            this.memory = memory;
+        }
+    }
+}
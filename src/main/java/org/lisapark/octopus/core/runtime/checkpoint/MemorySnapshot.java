@@ -0,0 +1,237 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.checkpoint;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.lisapark.octopus.util.Pair;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The contents of the memory of every processor in a model at one point in time. The values of a memory are
+ * kept oldest first, so adding them to an empty memory in order restores it.
+ * <p/>
+ * Snapshots are written in a small binary format of their own instead of using java serialization, since the values
+ * kept by processors, like {@link Pair}s, are not serializable. Only the value types in {@link #isSupported(Object)}
+ * can be written.
+ */
+class MemorySnapshot {
+
+    private static final int MAGIC = 0x4f435053;
+    private static final int VERSION = 1;
+
+    private static final byte NULL = 0;
+    private static final byte DOUBLE = 1;
+    private static final byte LONG = 2;
+    private static final byte INTEGER = 3;
+    private static final byte SHORT = 4;
+    private static final byte FLOAT = 5;
+    private static final byte BOOLEAN = 6;
+    private static final byte STRING = 7;
+    private static final byte PAIR = 8;
+
+    private final String modelName;
+    private final long timestamp;
+
+    private final Map<UUID, String> fingerprints = Maps.newLinkedHashMap();
+    private final Map<UUID, List<Object>> values = Maps.newLinkedHashMap();
+
+    MemorySnapshot(String modelName, long timestamp) {
+        this.modelName = modelName;
+        this.timestamp = timestamp;
+    }
+
+    String getModelName() {
+        return modelName;
+    }
+
+    long getTimestamp() {
+        return timestamp;
+    }
+
+    void put(UUID processorId, String fingerprint, List<Object> processorValues) {
+        fingerprints.put(processorId, fingerprint);
+        values.put(processorId, processorValues);
+    }
+
+    int size() {
+        return values.size();
+    }
+
+    /**
+     * Returns the values of the processor, or null if the snapshot has none for it or the processor has changed
+     * since the snapshot was taken.
+     *
+     * @param processorId of the processor
+     * @param fingerprint the processor has now
+     * @return values oldest first, or null
+     */
+    List<Object> valuesFor(UUID processorId, String fingerprint) {
+        return fingerprint.equals(fingerprints.get(processorId)) ? values.get(processorId) : null;
+    }
+
+    /**
+     * Writes the snapshot to a temporary file first and renames it to the specified file once it is complete, so
+     * a crash while writing never leaves a partial snapshot behind.
+     *
+     * @param file to write to
+     * @throws IOException if the snapshot could not be written
+     */
+    void writeTo(File file) throws IOException {
+        File temporaryFile = new File(file.getPath() + ".tmp");
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(modelName);
+            out.writeLong(timestamp);
+
+            out.writeInt(values.size());
+            for (Map.Entry<UUID, List<Object>> entry : values.entrySet()) {
+                out.writeLong(entry.getKey().getMostSignificantBits());
+                out.writeLong(entry.getKey().getLeastSignificantBits());
+                out.writeUTF(fingerprints.get(entry.getKey()));
+
+                out.writeInt(entry.getValue().size());
+                for (Object value : entry.getValue()) {
+                    writeValue(out, value);
+                }
+            }
+        } finally {
+            out.close();
+        }
+
+        if (!temporaryFile.renameTo(file)) {
+            temporaryFile.delete();
+            throw new IOException(String.format("Could not rename %s to %s", temporaryFile, file));
+        }
+    }
+
+    static MemorySnapshot readFrom(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(String.format("%s is not a snapshot this version can read", file));
+            }
+
+            MemorySnapshot snapshot = new MemorySnapshot(in.readUTF(), in.readLong());
+
+            int processorCount = in.readInt();
+            for (int i = 0; i < processorCount; ++i) {
+                UUID processorId = new UUID(in.readLong(), in.readLong());
+                String fingerprint = in.readUTF();
+
+                int valueCount = in.readInt();
+                List<Object> processorValues = Lists.newArrayListWithCapacity(valueCount);
+                for (int j = 0; j < valueCount; ++j) {
+                    processorValues.add(readValue(in));
+                }
+
+                snapshot.put(processorId, fingerprint, processorValues);
+            }
+
+            return snapshot;
+
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns true if the value can be written to a snapshot.
+     *
+     * @param value to check
+     * @return true if supported
+     */
+    static boolean isSupported(Object value) {
+        if (value instanceof Pair) {
+            Pair pair = (Pair) value;
+            return isSupported(pair.getFirst()) && isSupported(pair.getSecond());
+        }
+
+        return value == null || value instanceof Double || value instanceof Long || value instanceof Integer ||
+                value instanceof Short || value instanceof Float || value instanceof Boolean || value instanceof String;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeUTF((String) value);
+        } else if (value instanceof Pair) {
+            out.writeByte(PAIR);
+            writeValue(out, ((Pair) value).getFirst());
+            writeValue(out, ((Pair) value).getSecond());
+        } else {
+            throw new IllegalArgumentException(String.format("Values of type %s cannot be written to a snapshot",
+                    value.getClass().getName()));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+
+        switch (type) {
+            case NULL:
+                return null;
+            case DOUBLE:
+                return in.readDouble();
+            case LONG:
+                return in.readLong();
+            case INTEGER:
+                return in.readInt();
+            case SHORT:
+                return in.readShort();
+            case FLOAT:
+                return in.readFloat();
+            case BOOLEAN:
+                return in.readBoolean();
+            case STRING:
+                return in.readUTF();
+            case PAIR:
+                return new Pair(readValue(in), readValue(in));
+            default:
+                throw new IOException("Unknown value type " + type + " in snapshot");
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.control;
+
+import org.lisapark.octopus.core.ProcessingException;
+import org.lisapark.octopus.core.ValidationException;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.source.Source;
+import org.lisapark.octopus.core.source.external.CompiledExternalSource;
+import org.lisapark.octopus.core.source.external.ExternalSource;
+
+/**
+ * This {@link ExternalSource} wraps another source, keeping its id and output, so that the
+ * {@link CompiledExternalSource} it compiles to sends its events through a {@link ControlledProcessingRuntime}.
+ * Instances are never persisted, they only live for the duration of a single compile.
+ */
+class ControlledExternalSource extends ExternalSource {
+
+    private final ExternalSource source;
+    private final RunControl control;
+
+    ControlledExternalSource(ExternalSource source, RunControl control) {
+        super(source.getId(), source);
+        this.source = source;
+        this.control = control;
+    }
+
+    @Override
+    public CompiledExternalSource compile() throws ValidationException {
+        final CompiledExternalSource compiledSource = source.compile();
+        control.registerCompiledSource(compiledSource);
+
+        return new CompiledExternalSource() {
+            @Override
+            public void startProcessingEvents(ProcessingRuntime runtime) throws ProcessingException {
+                compiledSource.startProcessingEvents(new ControlledProcessingRuntime(runtime, control));
+            }
+
+            @Override
+            public void stopProcessingEvents() {
+                compiledSource.stopProcessingEvents();
+            }
+        };
+    }
+
+    @Override
+    public Source newInstance() {
+        return source.newInstance();
+    }
+
+    @Override
+    public Source copyOf() {
+        return new ControlledExternalSource((ExternalSource) source.copyOf(), control);
+    }
+}
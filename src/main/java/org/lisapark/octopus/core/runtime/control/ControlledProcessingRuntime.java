@@ -0,0 +1,61 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.control;
+
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.runtime.BatchProcessingRuntime;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.runtime.ProcessingRuntimes;
+import org.lisapark.octopus.core.source.Source;
+
+import java.util.List;
+
+/**
+ * {@link ProcessingRuntime} decorator that is handed to a single {@link ControlledExternalSource}. Every event
+ * is checked against the {@link RunControl} before it is passed along to the real runtime. Batches are checked as a
+ * whole, so a paused or stopped run takes effect at the next batch.
+ */
+class ControlledProcessingRuntime implements BatchProcessingRuntime {
+
+    private final ProcessingRuntime runtime;
+    private final RunControl control;
+
+    ControlledProcessingRuntime(ProcessingRuntime runtime, RunControl control) {
+        this.runtime = runtime;
+        this.control = control;
+    }
+
+    @Override
+    public void start() {
+        runtime.start();
+    }
+
+    @Override
+    public void shutdown() {
+        runtime.shutdown();
+    }
+
+    @Override
+    public void sendEventFromSource(Event event, Source source) {
+        if (control.beforeEvent()) {
+            runtime.sendEventFromSource(event, source);
+            control.eventSent();
+        }
+    }
+
+    @Override
+    public void sendEventsFromSource(List<Event> events, Source source) {
+        if (control.beforeEvent()) {
+            ProcessingRuntimes.sendEventsFromSource(runtime, events, source);
+            control.eventsSent(events.size());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.control;
+
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.processor.Processor;
+import org.lisapark.octopus.core.sink.external.ExternalSink;
+import org.lisapark.octopus.core.source.external.CompiledExternalSource;
+import org.lisapark.octopus.core.source.external.ExternalSource;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A {@link RunControl} is used to pause, resume and stop a single run of a {@link ProcessingModel}, and to
+ * count the number of events that have entered the runtime from the model's {@link ExternalSource}s.
+ * <p/>
+ * The core {@link org.lisapark.octopus.core.runtime.ProcessingRuntime} has no notion of pausing, and its
+ * <code>shutdown</code> waits for every source to drain. The control gets around this by interposing itself
+ * between each {@link CompiledExternalSource} and the runtime, see {@link #controlledCopyOf(ProcessingModel)}.
+ */
+public class RunControl {
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition resumed = lock.newCondition();
+
+    private volatile boolean paused;
+    private volatile boolean stopped;
+
+    private final AtomicLong eventCount = new AtomicLong();
+    private final List<CompiledExternalSource> compiledSources = new CopyOnWriteArrayList<CompiledExternalSource>();
+
+    /**
+     * Returns a new {@link ProcessingModel} that has the same {@link Processor}s and {@link ExternalSink}s as the
+     * specified model, but where every {@link ExternalSource} has been wrapped so that the events it produces go
+     * through this control. The wrapped sources keep the ids of the originals, so the graph compiles exactly the
+     * same as the original model.
+     *
+     * @param model to copy
+     * @return controlled copy of the model that should be handed to the compiler
+     */
+    public ProcessingModel controlledCopyOf(ProcessingModel model) {
+        checkArgument(model != null, "model cannot be null");
+
+        ProcessingModel copy = new ProcessingModel(model.getModelName());
+
+        for (ExternalSource externalSource : model.getExternalSources()) {
+            copy.addExternalEventSource(new ControlledExternalSource(externalSource, this));
+        }
+
+        for (Processor processor : model.getProcessors()) {
+            copy.addProcessor(processor);
+        }
+
+        for (ExternalSink externalSink : model.getExternalSinks()) {
+            copy.addExternalSink(externalSink);
+        }
+
+        return copy;
+    }
+
+    /**
+     * Pauses the run. Any source thread that tries to send an event will block until {@link #resume()} or
+     * {@link #stop()} is called.
+     */
+    public void pause() {
+        lock.lock();
+        try {
+            paused = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void resume() {
+        lock.lock();
+        try {
+            paused = false;
+            resumed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the run by asking every compiled source to stop processing events. Events that are still being produced
+     * by sources that do not honor the request are discarded, so the runtime will drain quickly.
+     */
+    public void stop() {
+        lock.lock();
+        try {
+            stopped = true;
+            paused = false;
+            resumed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        for (CompiledExternalSource compiledSource : compiledSources) {
+            compiledSource.stopProcessingEvents();
+        }
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Returns the number of events that have been sent to the runtime so far.
+     *
+     * @return event count
+     */
+    public long getEventCount() {
+        return eventCount.get();
+    }
+
+    void registerCompiledSource(CompiledExternalSource compiledSource) {
+        compiledSources.add(compiledSource);
+    }
+
+    /**
+     * Called by a source thread before an event is sent. This method will block while the control is paused.
+     *
+     * @return true if the event should be sent to the runtime, false if the run has been stopped
+     */
+    boolean beforeEvent() {
+        if (paused) {
+            lock.lock();
+            try {
+                while (paused) {
+                    resumed.awaitUninterruptibly();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        return !stopped;
+    }
+
+    void eventSent() {
+        eventCount.incrementAndGet();
+    }
+
+    void eventsSent(int count) {
+        eventCount.addAndGet(count);
+    }
+}
@@ -0,0 +1,97 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.esper;
+
+import com.espertech.esper.client.EPRuntime;
+import com.espertech.esper.client.EPServiceProvider;
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.runtime.BatchProcessingRuntime;
+import org.lisapark.octopus.core.source.Source;
+import org.lisapark.octopus.core.source.external.CompiledExternalSource;
+import org.lisapark.octopus.util.esper.EsperUtils;
+
+import java.io.PrintStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * {@link EsperRuntime} that also accepts batches of events. For a batch the runtime state is checked and the
+ * esper event name of the source is created once, after which the events go straight into the esper runtime one
+ * after the other.
+ * <p/>
+ * The lock of {@link EsperRuntime} is private to it, so this class has a lock of its own. Every batch holds the
+ * read lock from the state check to the last event, so batches from several sources still go in side by side. Once
+ * the sources have been drained, {@link #shutdown()} takes the write lock, so it does not return while a batch is
+ * half sent, and any later batch is refused.
+ */
+public class BatchEsperRuntime extends EsperRuntime implements BatchProcessingRuntime {
+
+    private final EPServiceProvider epService;
+
+    private final ReadWriteLock batchLock = new ReentrantReadWriteLock();
+    private final Lock batchReadLock = batchLock.readLock();
+    private final Lock batchWriteLock = batchLock.writeLock();
+
+    /**
+     * Set once the runtime has shut down, guarded by the batch lock
+     */
+    private boolean shutDown;
+
+    public BatchEsperRuntime(EPServiceProvider epService, Collection<CompiledExternalSource> externalSources,
+                             PrintStream standardOut, PrintStream standardError) {
+        super(epService, externalSources, standardOut, standardError);
+        this.epService = epService;
+    }
+
+    @Override
+    public void sendEventsFromSource(List<Event> events, Source source) {
+        checkArgument(events != null, "events cannot be null");
+
+        batchReadLock.lock();
+        try {
+            // getCurrentState reads the state under the lock of the esper runtime
+            checkState(!shutDown && getCurrentState() == State.RUNNING,
+                    "Cannot send events unless the runtime is running");
+
+            if (events.isEmpty()) {
+                return;
+            }
+
+            EPRuntime epRuntime = epService.getEPRuntime();
+            String eventName = EsperUtils.getEventNameForSource(source);
+
+            for (Event event : events) {
+                epRuntime.sendEvent(event.getData(), eventName);
+            }
+        } finally {
+            batchReadLock.unlock();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        // not under the batch lock, the sources keep sending batches until they have been drained
+        super.shutdown();
+
+        batchWriteLock.lock();
+        try {
+            shutDown = true;
+        } finally {
+            batchWriteLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.metrics;
+
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.processor.CompiledProcessor;
+import org.lisapark.octopus.core.processor.Processor;
+import org.lisapark.octopus.core.runtime.ProcessorContext;
+
+import java.util.Map;
+
+/**
+ * Decorator for a {@link CompiledProcessor} that records every event it processes in a {@link NodeMetrics}.
+ */
+public class InstrumentedCompiledProcessor<MEMORY_TYPE> extends CompiledProcessor<MEMORY_TYPE> {
+
+    private final CompiledProcessor<MEMORY_TYPE> delegate;
+    private final NodeMetrics metrics;
+
+    public InstrumentedCompiledProcessor(Processor<MEMORY_TYPE> processor, CompiledProcessor<MEMORY_TYPE> delegate, NodeMetrics metrics) {
+        super(processor);
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object processEvent(ProcessorContext<MEMORY_TYPE> ctx, Map<Integer, Event> eventsByInputId) {
+        long startTime = metrics.eventStarted();
+        Object result = null;
+        try {
+            result = delegate.processEvent(ctx, eventsByInputId);
+            return result;
+        } finally {
+            metrics.eventFinished(startTime, result != null);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.metrics;
+
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.runtime.SinkContext;
+import org.lisapark.octopus.core.sink.Sink;
+import org.lisapark.octopus.core.sink.external.CompiledExternalSink;
+
+import java.util.Map;
+
+/**
+ * Decorator for a {@link CompiledExternalSink} that records every event it processes in a {@link NodeMetrics}.
+ */
+public class InstrumentedCompiledSink extends CompiledExternalSink {
+
+    private final CompiledExternalSink delegate;
+    private final NodeMetrics metrics;
+
+    public InstrumentedCompiledSink(Sink sink, CompiledExternalSink delegate, NodeMetrics metrics) {
+        super(sink);
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void processEvent(SinkContext ctx, Map<Integer, Event> eventsByInputId) {
+        long startTime = metrics.eventStarted();
+        try {
+            delegate.processEvent(ctx, eventsByInputId);
+        } finally {
+            metrics.eventFinished(startTime, false);
+        }
+    }
+}
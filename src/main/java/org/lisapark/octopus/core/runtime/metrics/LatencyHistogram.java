@@ -0,0 +1,92 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Histogram of processing times with a bucket for every power of two nanoseconds. Recording a time is a single
+ * atomic increment and the histogram never grows, so it can be left on for runs of any length. The price is that
+ * percentiles are only accurate to within a factor of two.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Bucket i holds the times in [2^(i-1), 2^i) nanos, bucket 0 holds times of zero
+     */
+    private static final int NUMBER_OF_BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(NUMBER_OF_BUCKETS);
+
+    public void record(long nanos) {
+        buckets.incrementAndGet(bucketFor(nanos));
+    }
+
+    static int bucketFor(long nanos) {
+        // the clock is not guaranteed to be monotonic across cores, negative times are counted as zero
+        return nanos > 0 ? Math.min(64 - Long.numberOfLeadingZeros(nanos), NUMBER_OF_BUCKETS - 1) : 0;
+    }
+
+    public int getNumberOfBuckets() {
+        return NUMBER_OF_BUCKETS;
+    }
+
+    public long getCount(int bucket) {
+        return buckets.get(bucket);
+    }
+
+    /**
+     * Returns the exclusive upper bound of the times in the specified bucket.
+     *
+     * @param bucket index
+     * @return upper bound in nanos
+     */
+    public long getUpperBoundNanos(int bucket) {
+        return bucket < NUMBER_OF_BUCKETS - 1 ? 1L << bucket : Long.MAX_VALUE;
+    }
+
+    public long getTotalCount() {
+        long total = 0;
+        for (int i = 0; i < NUMBER_OF_BUCKETS; ++i) {
+            total += buckets.get(i);
+        }
+
+        return total;
+    }
+
+    /**
+     * Returns the upper bound of the bucket that contains the specified percentile of the recorded times.
+     *
+     * @param percentile between 0 and 100
+     * @return upper bound in nanos, or 0 if nothing has been recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        checkArgument(percentile >= 0 && percentile <= 100, "percentile has to be between 0 and 100");
+
+        long total = getTotalCount();
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max((long) Math.ceil(percentile / 100 * total), 1);
+        long seen = 0;
+        for (int i = 0; i < NUMBER_OF_BUCKETS; ++i) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return getUpperBoundNanos(i);
+            }
+        }
+
+        return getUpperBoundNanos(NUMBER_OF_BUCKETS - 1);
+    }
+}
@@ -0,0 +1,71 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.metrics;
+
+import com.google.common.collect.Maps;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The {@link NodeMetrics} of every node in a single compiled {@link org.lisapark.octopus.core.ProcessingModel},
+ * keyed by node id.
+ */
+public class ModelMetrics {
+
+    private final ConcurrentMap<UUID, NodeMetrics> nodeMetrics = Maps.newConcurrentMap();
+    private volatile boolean profiling;
+
+    /**
+     * Returns the metrics for the node with the specified id, creating them if this is the first time the node is
+     * seen.
+     *
+     * @param nodeId of node
+     * @return metrics for node
+     */
+    public NodeMetrics metricsForNode(UUID nodeId) {
+        NodeMetrics metrics = nodeMetrics.get(nodeId);
+
+        if (metrics == null) {
+            NodeMetrics newMetrics = new NodeMetrics();
+            metrics = nodeMetrics.putIfAbsent(nodeId, newMetrics);
+            if (metrics == null) {
+                metrics = newMetrics;
+            }
+            if (profiling) {
+                metrics.enableHistogram();
+            }
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Starts recording a {@link LatencyHistogram} for every node, see {@link NodeMetrics#getHistogram()}. This should
+     * be called before the model starts running, otherwise the histograms will miss the events processed so far.
+     */
+    public void enableProfiling() {
+        profiling = true;
+        for (NodeMetrics metrics : nodeMetrics.values()) {
+            metrics.enableHistogram();
+        }
+    }
+
+    public boolean isProfiling() {
+        return profiling;
+    }
+
+    public Map<UUID, NodeMetrics> getNodeMetrics() {
+        return Collections.unmodifiableMap(nodeMetrics);
+    }
+}
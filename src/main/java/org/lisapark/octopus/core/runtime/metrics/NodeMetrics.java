@@ -0,0 +1,106 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for a single compiled node. The counters are updated on the source threads for every event, so all that
+ * happens here is a few atomic increments. Reading the counters while a model runs is always safe, but a set of reads
+ * is not an atomic snapshot.
+ */
+public class NodeMetrics {
+
+    private final AtomicLong eventsIn = new AtomicLong();
+    private final AtomicLong eventsOut = new AtomicLong();
+    private final AtomicLong processingNanos = new AtomicLong();
+    private final AtomicInteger eventsInFlight = new AtomicInteger();
+    /**
+     * Only set while the model is being profiled
+     */
+    private volatile LatencyHistogram histogram;
+
+    /**
+     * Called before the node processes an event.
+     *
+     * @return start time that has to be passed to {@link #eventFinished(long, boolean)}
+     */
+    public long eventStarted() {
+        eventsInFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Called after the node processed an event.
+     *
+     * @param startTime returned by {@link #eventStarted()}
+     * @param produced  true if the node produced an output event
+     */
+    public void eventFinished(long startTime, boolean produced) {
+        long nanos = System.nanoTime() - startTime;
+        processingNanos.addAndGet(nanos);
+
+        LatencyHistogram currentHistogram = histogram;
+        if (currentHistogram != null) {
+            currentHistogram.record(nanos);
+        }
+        eventsInFlight.decrementAndGet();
+        eventsIn.incrementAndGet();
+        if (produced) {
+            eventsOut.incrementAndGet();
+        }
+    }
+
+    synchronized void enableHistogram() {
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Returns the histogram of the time spent processing each event.
+     *
+     * @return histogram, or null if the model is not being profiled
+     */
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    public long getEventsIn() {
+        return eventsIn.get();
+    }
+
+    public long getEventsOut() {
+        return eventsOut.get();
+    }
+
+    /**
+     * Returns the total time spent inside of the node's own processing, not including the time spent in the nodes
+     * downstream of it.
+     *
+     * @return processing time in nanos
+     */
+    public long getProcessingNanos() {
+        return processingNanos.get();
+    }
+
+    /**
+     * Returns the number of events the node is processing right now. Esper dispatches events synchronously on the
+     * source threads, so there is no queue in front of a node; a value greater than one means several sources are
+     * waiting on the node at the same time.
+     *
+     * @return events in flight
+     */
+    public int getEventsInFlight() {
+        return eventsInFlight.get();
+    }
+}
@@ -0,0 +1,310 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.partition;
+
+import com.google.common.collect.Lists;
+import org.lisapark.octopus.core.ProcessingException;
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.runtime.BatchProcessingRuntime;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.source.Source;
+import org.lisapark.octopus.core.source.external.CompiledExternalSource;
+import org.lisapark.octopus.core.source.external.ExternalSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * A {@link ProcessingRuntime} that spreads the events of its sources over a number of replica runtimes, each
+ * compiled from the same model. Every replica has a worker thread of its own that takes events from a bounded queue,
+ * so the replicas run in parallel while each of them still sees its events one at a time.
+ * <p/>
+ * The replica for an event is picked by hashing the value of the partition key attribute of its source. Events
+ * without a key, either because the source has no partition key or because the value is null, go to the first
+ * replica. Since a source thread puts the events for a key on the same queue in the order it sends them, the events
+ * for a key are processed, and reach the sinks, in that order. No order is guaranteed between different keys.
+ * <p/>
+ * Each replica keeps its own processor memories and join windows, which only hold the events of that replica. The
+ * {@link org.lisapark.octopus.core.compiler.incremental.PartitionedEsperCompiler} therefore only accepts models whose
+ * memories are fed by sources that are not partitioned, and whose joins of partitioned events are on the partition
+ * key.
+ * <p/>
+ * A full queue blocks the source that sends to it, so a slow replica slows the sources down rather than letting the
+ * queues grow without bound.
+ */
+public class PartitionedProcessingRuntime implements BatchProcessingRuntime {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PartitionedProcessingRuntime.class);
+
+    static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    /**
+     * Put on every queue by {@link #shutdown()} to tell the workers that no more events will follow
+     */
+    private static final PartitionedEvent END_OF_EVENTS = new PartitionedEvent(null, null);
+
+    private enum State {
+        NOT_STARTED, RUNNING, SHUTDOWN
+    }
+
+    private final List<ProcessingRuntime> replicas;
+    private final List<ExternalSource> sources;
+    private final List<CompiledExternalSource> compiledSources;
+    private final Map<UUID, String> partitionKeys;
+    private final PrintStream standardError;
+    private final List<BlockingQueue<PartitionedEvent>> queues;
+    private final List<Thread> workers;
+
+    private volatile State currentState = State.NOT_STARTED;
+    private ExecutorService sourceExecutor;
+
+    /**
+     * Creates the runtime.
+     *
+     * @param replicas        to spread the events over, the sources of the replicas should not produce events themselves
+     * @param sources         of the model, in the same order as the compiled sources
+     * @param compiledSources that produce the events
+     * @param partitionKeys   name of the partition key attribute by source id
+     * @param standardError   to print failures of the sources to
+     */
+    public PartitionedProcessingRuntime(List<ProcessingRuntime> replicas, List<ExternalSource> sources,
+                                        List<CompiledExternalSource> compiledSources, Map<UUID, String> partitionKeys,
+                                        PrintStream standardError) {
+        this(replicas, sources, compiledSources, partitionKeys, standardError, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    PartitionedProcessingRuntime(List<ProcessingRuntime> replicas, List<ExternalSource> sources,
+                                 List<CompiledExternalSource> compiledSources, Map<UUID, String> partitionKeys,
+                                 PrintStream standardError, int queueCapacity) {
+        checkArgument(replicas != null && !replicas.isEmpty(), "replicas cannot be empty");
+        checkArgument(sources.size() == compiledSources.size(), "There has to be a compiled source for every source");
+        checkArgument(queueCapacity > 0, "queueCapacity has to be greater than zero");
+
+        this.replicas = Lists.newArrayList(replicas);
+        this.sources = Lists.newArrayList(sources);
+        this.compiledSources = Lists.newArrayList(compiledSources);
+        this.partitionKeys = partitionKeys;
+        this.standardError = standardError;
+
+        this.queues = Lists.newArrayListWithCapacity(replicas.size());
+        this.workers = Lists.newArrayListWithCapacity(replicas.size());
+        for (int partition = 0; partition < replicas.size(); ++partition) {
+            BlockingQueue<PartitionedEvent> queue = new ArrayBlockingQueue<PartitionedEvent>(queueCapacity);
+            queues.add(queue);
+            workers.add(new Thread(new PartitionWorker(this.replicas.get(partition), queue), "partition-" + partition));
+        }
+    }
+
+    public int getNumberOfPartitions() {
+        return replicas.size();
+    }
+
+    @Override
+    public synchronized void start() {
+        checkState(currentState == State.NOT_STARTED, "Runtime has already been started");
+
+        for (ProcessingRuntime replica : replicas) {
+            replica.start();
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        currentState = State.RUNNING;
+
+        sourceExecutor = Executors.newFixedThreadPool(Math.max(1, compiledSources.size()));
+        for (int i = 0; i < compiledSources.size(); ++i) {
+            sourceExecutor.submit(new SourceDrainer(sources.get(i), compiledSources.get(i)));
+        }
+    }
+
+    /**
+     * Waits for all of the sources to be drained and for the replicas to process the events that are still
+     * queued, then shuts down the replicas.
+     */
+    @Override
+    public synchronized void shutdown() {
+        if (currentState != State.RUNNING) {
+            currentState = State.SHUTDOWN;
+            return;
+        }
+
+        sourceExecutor.shutdown();
+        boolean interrupted = false;
+        try {
+            while (!sourceExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS)) {
+                // keep waiting
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+        currentState = State.SHUTDOWN;
+
+        for (BlockingQueue<PartitionedEvent> queue : queues) {
+            putUninterruptibly(queue, END_OF_EVENTS);
+        }
+        for (Thread worker : workers) {
+            while (worker.isAlive()) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+
+        for (ProcessingRuntime replica : replicas) {
+            replica.shutdown();
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void sendEventFromSource(Event event, Source source) {
+        checkState(currentState == State.RUNNING, "Cannot send events unless the runtime has been started");
+
+        int partition = partitionFor(event, partitionKeys.get(source.getId()));
+        putUninterruptibly(queues.get(partition), new PartitionedEvent(event, source));
+    }
+
+    @Override
+    public void sendEventsFromSource(List<Event> events, Source source) {
+        checkArgument(events != null, "events cannot be null");
+        checkState(currentState == State.RUNNING, "Cannot send events unless the runtime has been started");
+
+        String partitionKey = partitionKeys.get(source.getId());
+        for (Event event : events) {
+            putUninterruptibly(queues.get(partitionFor(event, partitionKey)), new PartitionedEvent(event, source));
+        }
+    }
+
+    /**
+     * Returns the replica that processes the specified event.
+     *
+     * @param event        to partition
+     * @param partitionKey name of the key attribute, or null if the source is not partitioned
+     * @return index of the replica
+     */
+    int partitionFor(Event event, String partitionKey) {
+        if (partitionKey == null) {
+            return 0;
+        }
+
+        Object key = event.getData().get(partitionKey);
+        if (key == null) {
+            return 0;
+        }
+
+        // spread the high bits, keys like small integers or doubles differ mostly there
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+
+        return (hash & 0x7fffffff) % replicas.size();
+    }
+
+    private static void putUninterruptibly(BlockingQueue<PartitionedEvent> queue, PartitionedEvent event) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(event);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class PartitionedEvent {
+        final Event event;
+        final Source source;
+
+        PartitionedEvent(Event event, Source source) {
+            this.event = event;
+            this.source = source;
+        }
+    }
+
+    /**
+     * Sends the events of a single queue to its replica until the end of the events
+     */
+    private static class PartitionWorker implements Runnable {
+        private final ProcessingRuntime replica;
+        private final BlockingQueue<PartitionedEvent> queue;
+
+        PartitionWorker(ProcessingRuntime replica, BlockingQueue<PartitionedEvent> queue) {
+            this.replica = replica;
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                PartitionedEvent partitionedEvent;
+                try {
+                    partitionedEvent = queue.take();
+                } catch (InterruptedException e) {
+                    // only shutdown ends a worker, otherwise events would be lost
+                    continue;
+                }
+
+                if (partitionedEvent == END_OF_EVENTS) {
+                    break;
+                }
+
+                try {
+                    replica.sendEventFromSource(partitionedEvent.event, partitionedEvent.source);
+                } catch (RuntimeException e) {
+                    LOG.error("Problem processing event " + partitionedEvent.event, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a single compiled source against this runtime
+     */
+    private class SourceDrainer implements Runnable {
+        private final ExternalSource source;
+        private final CompiledExternalSource compiledSource;
+
+        SourceDrainer(ExternalSource source, CompiledExternalSource compiledSource) {
+            this.source = source;
+            this.compiledSource = compiledSource;
+        }
+
+        @Override
+        public void run() {
+            try {
+                compiledSource.startProcessingEvents(PartitionedProcessingRuntime.this);
+            } catch (ProcessingException e) {
+                standardError.printf("Source %s failed: %s%n", source.getName(), e.getLocalizedMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.replay;
+
+import com.google.common.collect.Maps;
+import org.lisapark.octopus.core.event.Event;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Reads the {@link Event}s of an event log written by an {@link EventLogWriter}, oldest first. The segments are
+ * memory mapped as they are reached. Usage:
+ * <pre>
+ *     EventLogReader reader = new EventLogReader(directory);
+ *     reader.seek(from);
+ *     while (reader.next()) {
+ *         Event event = reader.getEvent();
+ *         ...
+ *     }
+ *     reader.close();
+ * </pre>
+ */
+public class EventLogReader {
+
+    private final File directory;
+    private final String[] attributeNames;
+
+    private final long[] indexTimestamps;
+    private final int[] indexSegments;
+    private final int[] indexPositions;
+
+    private ByteBuffer segment;
+    private int segmentNumber = -1;
+    private int endPosition;
+
+    private int recordPosition = -1;
+    private long timestamp;
+
+    public EventLogReader(File directory) throws IOException {
+        checkArgument(directory != null, "directory cannot be null");
+
+        this.directory = directory;
+        List<String> names = LogFormat.readSchema(directory);
+        this.attributeNames = names.toArray(new String[names.size()]);
+
+        File indexFile = new File(directory, LogFormat.INDEX_FILE);
+        int entryCount = (int) (indexFile.length() / LogFormat.INDEX_ENTRY_SIZE);
+        this.indexTimestamps = new long[entryCount];
+        this.indexSegments = new int[entryCount];
+        this.indexPositions = new int[entryCount];
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+        try {
+            for (int i = 0; i < entryCount; ++i) {
+                indexTimestamps[i] = in.readLong();
+                indexSegments[i] = in.readInt();
+                indexPositions[i] = in.readInt();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the names of the attributes the log was written with.
+     *
+     * @return attribute names
+     */
+    public String[] getAttributeNames() {
+        return attributeNames.clone();
+    }
+
+    /**
+     * Moves the reader so that the next call to {@link #next()} returns the first event with a timestamp at or
+     * after the specified one. The index is used to skip to the right neighbourhood, only the records after the
+     * index entry are scanned.
+     *
+     * @param from timestamp in milliseconds
+     * @throws IOException if a segment could not be mapped
+     */
+    public void seek(long from) throws IOException {
+        // the last entry that is strictly before the timestamp, the events at the timestamp may start in its block
+        int low = 0;
+        int high = indexTimestamps.length - 1;
+        int entry = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (indexTimestamps[middle] < from) {
+                entry = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        if (entry < 0) {
+            openSegment(0);
+            recordPosition = -1;
+            return;
+        }
+
+        openSegment(indexSegments[entry]);
+        segment.position(indexPositions[entry]);
+        recordPosition = -1;
+
+        while (segment.position() < endPosition || openNextSegment()) {
+            int position = segment.position();
+            long recordTimestamp = segment.getLong(position + 4);
+            if (recordTimestamp >= from) {
+                return;
+            }
+            segment.position(position + 4 + segment.getInt(position));
+        }
+    }
+
+    /**
+     * Advances to the next event.
+     *
+     * @return false if there are no more events
+     * @throws IOException if a segment could not be mapped
+     */
+    public boolean next() throws IOException {
+        if (segment == null) {
+            openSegment(0);
+        } else if (recordPosition >= 0) {
+            segment.position(recordPosition + 4 + segment.getInt(recordPosition));
+        }
+
+        if (segment == null || (segment.position() >= endPosition && !openNextSegment())) {
+            recordPosition = -1;
+            return false;
+        }
+
+        recordPosition = segment.position();
+        timestamp = segment.getLong(recordPosition + 4);
+
+        return true;
+    }
+
+    /**
+     * Returns the timestamp of the current event.
+     *
+     * @return timestamp in milliseconds
+     */
+    public long getTimestamp() {
+        checkState(recordPosition >= 0, "There is no current event");
+        return timestamp;
+    }
+
+    /**
+     * Decodes the current event. Every call returns a new {@link Event}.
+     *
+     * @return event
+     */
+    public Event getEvent() {
+        checkState(recordPosition >= 0, "There is no current event");
+
+        Map<String, Object> data = Maps.newHashMapWithExpectedSize(attributeNames.length);
+        segment.position(recordPosition + LogFormat.RECORD_HEADER_SIZE);
+        LogFormat.readValues(segment, attributeNames, data);
+        segment.position(recordPosition);
+
+        return new Event(data);
+    }
+
+    public void close() {
+        segment = null;
+        recordPosition = -1;
+    }
+
+    private boolean openNextSegment() throws IOException {
+        if (!LogFormat.segmentFile(directory, segmentNumber + 1).exists()) {
+            return false;
+        }
+
+        openSegment(segmentNumber + 1);
+        return segment.position() < endPosition;
+    }
+
+    private void openSegment(int number) throws IOException {
+        File file = LogFormat.segmentFile(directory, number);
+        if (!file.exists()) {
+            segment = null;
+            return;
+        }
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            MappedByteBuffer mappedSegment = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+            if (mappedSegment.getInt(0) != LogFormat.MAGIC || mappedSegment.getInt(4) != LogFormat.VERSION) {
+                throw new IOException(String.format("%s is not a segment this version can read", file));
+            }
+
+            segment = mappedSegment;
+            segmentNumber = number;
+            endPosition = (int) mappedSegment.getLong(LogFormat.END_POSITION_OFFSET);
+            segment.position(LogFormat.HEADER_SIZE);
+
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.replay;
+
+import org.lisapark.octopus.core.event.Event;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Appends {@link Event}s to an event log in a directory of its own, see {@link LogFormat}. The log is split into
+ * segments of a fixed size that are memory mapped, so appending an event is a copy into the page cache; a new segment
+ * is started when an event does not fit into the current one.
+ * <p/>
+ * Every {@link #INDEX_INTERVAL} records, and at the start of each segment, the timestamp and position of the record
+ * is added to the index, so an {@link EventLogReader} can start reading at a point in time without scanning the
+ * whole log.
+ */
+public class EventLogWriter {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    static final int INDEX_INTERVAL = 4096;
+
+    private static final int INITIAL_RECORD_SIZE = 1024;
+
+    private final File directory;
+    private final String[] attributeNames;
+    private final int segmentSize;
+
+    private final DataOutputStream index;
+
+    private MappedByteBuffer segment;
+    private int segmentNumber = -1;
+    private long recordCount;
+    private long lastTimestamp;
+
+    /**
+     * Record that is encoded here first, so we know whether it fits into the current segment
+     */
+    private ByteBuffer record = ByteBuffer.allocate(INITIAL_RECORD_SIZE);
+
+    private boolean closed;
+
+    /**
+     * Creates a new log in the specified directory, deleting a log that was there before.
+     *
+     * @param directory      for the log, it is created if it does not exist
+     * @param attributeNames of the events, in the order they are written
+     * @param segmentSize    size of a segment in bytes
+     * @throws IOException if the log could not be created
+     */
+    public EventLogWriter(File directory, List<String> attributeNames, int segmentSize) throws IOException {
+        checkArgument(directory != null, "directory cannot be null");
+        checkArgument(attributeNames != null, "attributeNames cannot be null");
+        checkArgument(segmentSize > LogFormat.HEADER_SIZE, "segmentSize is too small");
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException(String.format("Could not create event log directory %s", directory));
+        }
+        for (int i = 0; LogFormat.segmentFile(directory, i).exists(); ++i) {
+            LogFormat.segmentFile(directory, i).delete();
+        }
+
+        this.directory = directory;
+        this.attributeNames = attributeNames.toArray(new String[attributeNames.size()]);
+        this.segmentSize = segmentSize;
+
+        LogFormat.writeSchema(directory, attributeNames);
+        this.index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(directory, LogFormat.INDEX_FILE))));
+    }
+
+    /**
+     * Appends the event with the current time as its timestamp.
+     *
+     * @param event to append
+     * @throws IOException if a new segment could not be created
+     */
+    public void append(Event event) throws IOException {
+        append(System.currentTimeMillis(), event);
+    }
+
+    /**
+     * Appends the event. Timestamps are kept in order, an event with a timestamp before the last one gets the last
+     * timestamp instead.
+     *
+     * @param timestamp of the event in milliseconds
+     * @param event     to append
+     * @throws IOException if a new segment could not be created
+     */
+    public synchronized void append(long timestamp, Event event) throws IOException {
+        checkState(!closed, "Event log has been closed");
+
+        timestamp = Math.max(timestamp, lastTimestamp);
+        encode(timestamp, event);
+
+        boolean newSegment = segment == null || segment.remaining() < record.remaining();
+        if (newSegment) {
+            checkArgument(record.remaining() <= segmentSize - LogFormat.HEADER_SIZE,
+                    "Event of %s bytes does not fit into a segment", record.remaining());
+            startSegment();
+        }
+
+        if (newSegment || recordCount % INDEX_INTERVAL == 0) {
+            index.writeLong(timestamp);
+            index.writeInt(segmentNumber);
+            index.writeInt(segment.position());
+        }
+
+        segment.put(record);
+        segment.putLong(LogFormat.END_POSITION_OFFSET, segment.position());
+
+        lastTimestamp = timestamp;
+        recordCount++;
+    }
+
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Writes the index and the current segment to disk.
+     *
+     * @throws IOException if the index could not be written
+     */
+    public synchronized void flush() throws IOException {
+        index.flush();
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            flush();
+            index.close();
+            segment = null;
+            closed = true;
+        }
+    }
+
+    private void encode(long timestamp, Event event) {
+        while (true) {
+            record.clear();
+            try {
+                record.position(LogFormat.RECORD_HEADER_SIZE);
+                LogFormat.writeValues(record, attributeNames, event.getData());
+
+                record.putInt(0, record.position() - 4);
+                record.putLong(4, timestamp);
+                record.flip();
+                return;
+
+            } catch (BufferOverflowException e) {
+                record = ByteBuffer.allocate(record.capacity() * 2);
+            }
+        }
+    }
+
+    private void startSegment() throws IOException {
+        if (segment != null) {
+            segment.force();
+        }
+
+        segmentNumber++;
+        RandomAccessFile file = new RandomAccessFile(LogFormat.segmentFile(directory, segmentNumber), "rw");
+        try {
+            // the mapping stays valid after the file is closed
+            segment = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } finally {
+            file.close();
+        }
+
+        segment.putInt(LogFormat.MAGIC);
+        segment.putInt(LogFormat.VERSION);
+        segment.putLong(LogFormat.HEADER_SIZE);
+    }
+}
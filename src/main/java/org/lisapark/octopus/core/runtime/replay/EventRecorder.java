@@ -0,0 +1,135 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.replay;
+
+import com.google.common.collect.Lists;
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.event.Attribute;
+import org.lisapark.octopus.core.processor.Processor;
+import org.lisapark.octopus.core.sink.external.ExternalSink;
+import org.lisapark.octopus.core.source.external.ExternalSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * An {@link EventRecorder} records every event the {@link ExternalSource}s of a model send to the runtime, so the
+ * run can be replayed later with {@link ReplaySource}s, without the systems the sources read from.
+ * <p/>
+ * The events of each source go to an event log of their own, in a directory named after the id of the source, see
+ * {@link #logDirectoryFor(File, ExternalSource)}. An event is appended to the log before it is passed to the runtime.
+ */
+public class EventRecorder {
+
+    private final File directory;
+    private final int segmentSize;
+
+    private final List<EventLogWriter> writers = Lists.newArrayList();
+
+    public EventRecorder(File directory) {
+        this(directory, EventLogWriter.DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param directory   the logs of the sources are written to, the logs of a previous recording are replaced
+     * @param segmentSize size of the segments of the logs in bytes
+     */
+    public EventRecorder(File directory, int segmentSize) {
+        checkArgument(directory != null, "directory cannot be null");
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Returns the directory of the event log of the source.
+     *
+     * @param directory the logs were recorded to
+     * @param source    to get the log of
+     * @return log directory
+     */
+    public static File logDirectoryFor(File directory, ExternalSource source) {
+        return new File(directory, source.getId().toString());
+    }
+
+    /**
+     * Returns a new {@link ProcessingModel} with the same processors and sinks, where every {@link ExternalSource} is
+     * wrapped so the events it sends are recorded. The wrapped sources keep the ids of the originals.
+     *
+     * @param model to copy
+     * @return copy of the model that should be handed to the compiler
+     * @throws IOException if the log of a source could not be created
+     */
+    public synchronized ProcessingModel recordingCopyOf(ProcessingModel model) throws IOException {
+        checkArgument(model != null, "model cannot be null");
+
+        ProcessingModel copy = new ProcessingModel(model.getModelName());
+
+        for (ExternalSource externalSource : model.getExternalSources()) {
+            List<String> attributeNames = Lists.newArrayList();
+            for (Attribute attribute : externalSource.getOutput().getAttributes()) {
+                attributeNames.add(attribute.getName());
+            }
+
+            EventLogWriter writer = new EventLogWriter(logDirectoryFor(directory, externalSource), attributeNames, segmentSize);
+            writers.add(writer);
+
+            copy.addExternalEventSource(new RecordingExternalSource(externalSource, writer));
+        }
+
+        for (Processor processor : model.getProcessors()) {
+            copy.addProcessor(processor);
+        }
+
+        for (ExternalSink externalSink : model.getExternalSinks()) {
+            copy.addExternalSink(externalSink);
+        }
+
+        return copy;
+    }
+
+    /**
+     * Returns the number of events recorded so far, over all sources.
+     *
+     * @return event count
+     */
+    public synchronized long getRecordCount() {
+        long recordCount = 0;
+        for (EventLogWriter writer : writers) {
+            recordCount += writer.getRecordCount();
+        }
+
+        return recordCount;
+    }
+
+    /**
+     * Closes the logs, this should be called once the runtime has been shut down.
+     *
+     * @throws IOException if a log could not be written
+     */
+    public synchronized void close() throws IOException {
+        IOException failure = null;
+        for (EventLogWriter writer : writers) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        writers.clear();
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
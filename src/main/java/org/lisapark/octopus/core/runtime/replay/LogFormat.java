@@ -0,0 +1,221 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.replay;
+
+import com.google.common.collect.Lists;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Layout of the files in the directory of an event log, shared by the {@link EventLogWriter} and the
+ * {@link EventLogReader}.
+ * <p/>
+ * The directory holds a schema file with the names of the attributes of the source, the segments, and a sparse
+ * index of timestamps. A segment starts with a header that has the position just after its last record, followed by
+ * the records. A record is its length, the timestamp, the value of every attribute of the schema in order, and then
+ * the attributes of the event that are not part of the schema, by name. Each value starts with a byte for its type,
+ * so values that do not have the type of their attribute are recorded as they are.
+ */
+abstract class LogFormat {
+
+    static final String SCHEMA_FILE = "schema";
+    static final String INDEX_FILE = "timestamps.idx";
+
+    static final int MAGIC = 0x4f43504c;
+    static final int VERSION = 1;
+
+    static final int END_POSITION_OFFSET = 8;
+    static final int HEADER_SIZE = 16;
+    /**
+     * Length and timestamp of a record
+     */
+    static final int RECORD_HEADER_SIZE = 12;
+    /**
+     * Timestamp, segment and position of an index entry
+     */
+    static final int INDEX_ENTRY_SIZE = 16;
+
+    private static final byte ABSENT = 0;
+    private static final byte NULL = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte LONG = 3;
+    private static final byte INTEGER = 4;
+    private static final byte SHORT = 5;
+    private static final byte FLOAT = 6;
+    private static final byte BOOLEAN = 7;
+    private static final byte STRING = 8;
+
+    static File segmentFile(File directory, int segment) {
+        return new File(directory, String.format("segment-%010d.log", segment));
+    }
+
+    static void writeSchema(File directory, List<String> attributeNames) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(directory, SCHEMA_FILE))));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(attributeNames.size());
+            for (String attributeName : attributeNames) {
+                out.writeUTF(attributeName);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    static List<String> readSchema(File directory) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(new File(directory, SCHEMA_FILE))));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(String.format("%s does not hold an event log this version can read", directory));
+            }
+
+            int attributeCount = in.readInt();
+            List<String> attributeNames = Lists.newArrayListWithCapacity(attributeCount);
+            for (int i = 0; i < attributeCount; ++i) {
+                attributeNames.add(in.readUTF());
+            }
+
+            return attributeNames;
+
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the values of the event after the record header.
+     *
+     * @throws BufferOverflowException if the buffer is too small for the event
+     */
+    static void writeValues(ByteBuffer buffer, String[] attributeNames, Map<String, Object> data) {
+        int schemaValueCount = 0;
+        for (String attributeName : attributeNames) {
+            Object value = data.get(attributeName);
+
+            if (value == null && !data.containsKey(attributeName)) {
+                buffer.put(ABSENT);
+            } else {
+                writeValue(buffer, value);
+                schemaValueCount++;
+            }
+        }
+
+        buffer.putShort((short) (data.size() - schemaValueCount));
+        if (data.size() > schemaValueCount) {
+            for (Map.Entry<String, Object> entry : data.entrySet()) {
+                if (!contains(attributeNames, entry.getKey())) {
+                    writeString(buffer, entry.getKey());
+                    writeValue(buffer, entry.getValue());
+                }
+            }
+        }
+    }
+
+    static void readValues(ByteBuffer buffer, String[] attributeNames, Map<String, Object> data) {
+        for (String attributeName : attributeNames) {
+            byte type = buffer.get();
+            if (type != ABSENT) {
+                data.put(attributeName, readValue(buffer, type));
+            }
+        }
+
+        int otherCount = buffer.getShort();
+        for (int i = 0; i < otherCount; ++i) {
+            String attributeName = readString(buffer);
+            data.put(attributeName, readValue(buffer, buffer.get()));
+        }
+    }
+
+    private static boolean contains(String[] attributeNames, String attributeName) {
+        for (String name : attributeNames) {
+            if (name.equals(attributeName)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static void writeValue(ByteBuffer buffer, Object value) {
+        if (value == null) {
+            buffer.put(NULL);
+        } else if (value instanceof Double) {
+            buffer.put(DOUBLE).putDouble((Double) value);
+        } else if (value instanceof Long) {
+            buffer.put(LONG).putLong((Long) value);
+        } else if (value instanceof Integer) {
+            buffer.put(INTEGER).putInt((Integer) value);
+        } else if (value instanceof Short) {
+            buffer.put(SHORT).putShort((Short) value);
+        } else if (value instanceof Float) {
+            buffer.put(FLOAT).putFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            buffer.put(BOOLEAN).put((Boolean) value ? (byte) 1 : (byte) 0);
+        } else if (value instanceof String) {
+            buffer.put(STRING);
+            writeString(buffer, (String) value);
+        } else {
+            throw new IllegalArgumentException(String.format("Values of type %s cannot be recorded",
+                    value.getClass().getName()));
+        }
+    }
+
+    private static Object readValue(ByteBuffer buffer, byte type) {
+        switch (type) {
+            case NULL:
+                return null;
+            case DOUBLE:
+                return buffer.getDouble();
+            case LONG:
+                return buffer.getLong();
+            case INTEGER:
+                return buffer.getInt();
+            case SHORT:
+                return buffer.getShort();
+            case FLOAT:
+                return buffer.getFloat();
+            case BOOLEAN:
+                return buffer.get() != 0;
+            case STRING:
+                return readString(buffer);
+            default:
+                throw new IllegalStateException("Unknown value type " + type + " in event log");
+        }
+    }
+
+    private static void writeString(ByteBuffer buffer, String value) {
+        buffer.putInt(value.length());
+        for (int i = 0; i < value.length(); ++i) {
+            buffer.putChar(value.charAt(i));
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        char[] chars = new char[buffer.getInt()];
+        for (int i = 0; i < chars.length; ++i) {
+            chars[i] = buffer.getChar();
+        }
+
+        return new String(chars);
+    }
+}
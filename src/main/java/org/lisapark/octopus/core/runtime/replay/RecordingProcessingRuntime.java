@@ -0,0 +1,82 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.replay;
+
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.runtime.BatchProcessingRuntime;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.runtime.ProcessingRuntimes;
+import org.lisapark.octopus.core.source.Source;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * {@link ProcessingRuntime} decorator that is handed to a single {@link RecordingExternalSource}. Every event is
+ * appended to the event log of the source before it is passed along to the real runtime. If the log cannot be
+ * written, recording stops but the run goes on.
+ */
+class RecordingProcessingRuntime implements BatchProcessingRuntime {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RecordingProcessingRuntime.class);
+
+    private final ProcessingRuntime runtime;
+    private final EventLogWriter writer;
+
+    private boolean failed;
+
+    RecordingProcessingRuntime(ProcessingRuntime runtime, EventLogWriter writer) {
+        this.runtime = runtime;
+        this.writer = writer;
+    }
+
+    @Override
+    public void start() {
+        runtime.start();
+    }
+
+    @Override
+    public void shutdown() {
+        runtime.shutdown();
+    }
+
+    @Override
+    public void sendEventFromSource(Event event, Source source) {
+        record(event);
+        runtime.sendEventFromSource(event, source);
+    }
+
+    @Override
+    public void sendEventsFromSource(List<Event> events, Source source) {
+        for (Event event : events) {
+            record(event);
+        }
+        ProcessingRuntimes.sendEventsFromSource(runtime, events, source);
+    }
+
+    private void record(Event event) {
+        if (failed) {
+            return;
+        }
+
+        try {
+            writer.append(event);
+        } catch (IOException e) {
+            LOG.error("Could not record event, recording of this source has stopped", e);
+            failed = true;
+        } catch (RuntimeException e) {
+            LOG.error("Could not record event, recording of this source has stopped", e);
+            failed = true;
+        }
+    }
+}
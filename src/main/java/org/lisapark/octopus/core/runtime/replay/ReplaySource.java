@@ -0,0 +1,196 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.replay;
+
+import com.google.common.collect.Lists;
+import org.lisapark.octopus.core.ProcessingException;
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.processor.Processor;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.runtime.ProcessingRuntimes;
+import org.lisapark.octopus.core.sink.external.ExternalSink;
+import org.lisapark.octopus.core.source.Source;
+import org.lisapark.octopus.core.source.external.CompiledExternalSource;
+import org.lisapark.octopus.core.source.external.ExternalSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * An {@link ExternalSource} that replays the events an {@link EventRecorder} recorded for another source. It keeps
+ * the id and output of the recorded source, so it can take the place of that source in the model, see
+ * {@link #replayingCopyOf(ProcessingModel, File, double, long)}.
+ * <p/>
+ * The events are replayed as fast as possible if the speed is zero, and otherwise paced by their timestamps, where a
+ * speed of 1 is the pace they were recorded at and 10 is ten times as fast. Events that are due are sent to the
+ * runtime in batches.
+ */
+public class ReplaySource extends ExternalSource {
+
+    public static final double AS_FAST_AS_POSSIBLE = 0;
+
+    private static final int BATCH_SIZE = 256;
+
+    private final ExternalSource source;
+    private final File logDirectory;
+    private final double speed;
+    private final long from;
+
+    /**
+     * @param source       that was recorded
+     * @param logDirectory of the event log of the source
+     * @param speed        multiple of the recorded pace, or {@link #AS_FAST_AS_POSSIBLE}
+     * @param from         timestamp of the first event to replay, in milliseconds
+     */
+    public ReplaySource(ExternalSource source, File logDirectory, double speed, long from) {
+        super(source.getId(), source);
+        checkArgument(speed >= 0, "speed cannot be negative");
+
+        this.source = source;
+        this.logDirectory = logDirectory;
+        this.speed = speed;
+        this.from = from;
+    }
+
+    /**
+     * Returns a new {@link ProcessingModel} with the same processors and sinks, where every {@link ExternalSource} that
+     * has been recorded to the directory is replaced by a {@link ReplaySource}. Sources that were not recorded are
+     * kept as they are.
+     *
+     * @param model     to copy
+     * @param directory the sources were recorded to by an {@link EventRecorder}
+     * @param speed     multiple of the recorded pace, or {@link #AS_FAST_AS_POSSIBLE}
+     * @param from      timestamp of the first event to replay, in milliseconds
+     * @return copy of the model that should be handed to the compiler
+     */
+    public static ProcessingModel replayingCopyOf(ProcessingModel model, File directory, double speed, long from) {
+        checkArgument(model != null, "model cannot be null");
+
+        ProcessingModel copy = new ProcessingModel(model.getModelName());
+
+        for (ExternalSource externalSource : model.getExternalSources()) {
+            File logDirectory = EventRecorder.logDirectoryFor(directory, externalSource);
+
+            if (new File(logDirectory, LogFormat.SCHEMA_FILE).exists()) {
+                copy.addExternalEventSource(new ReplaySource(externalSource, logDirectory, speed, from));
+            } else {
+                copy.addExternalEventSource(externalSource);
+            }
+        }
+
+        for (Processor processor : model.getProcessors()) {
+            copy.addProcessor(processor);
+        }
+
+        for (ExternalSink externalSink : model.getExternalSinks()) {
+            copy.addExternalSink(externalSink);
+        }
+
+        return copy;
+    }
+
+    @Override
+    public CompiledExternalSource compile() {
+        return new CompiledReplaySource(this);
+    }
+
+    @Override
+    public Source newInstance() {
+        return source.newInstance();
+    }
+
+    @Override
+    public Source copyOf() {
+        return new ReplaySource((ExternalSource) source.copyOf(), logDirectory, speed, from);
+    }
+
+    static class CompiledReplaySource implements CompiledExternalSource {
+        private final ReplaySource source;
+
+        private volatile boolean running;
+
+        CompiledReplaySource(ReplaySource source) {
+            this.source = source;
+        }
+
+        @Override
+        public void startProcessingEvents(ProcessingRuntime runtime) throws ProcessingException {
+            running = true;
+
+            try {
+                EventLogReader reader = new EventLogReader(source.logDirectory);
+                try {
+                    replay(reader, runtime);
+                } finally {
+                    reader.close();
+                }
+
+            } catch (IOException e) {
+                throw new ProcessingException(String.format("Could not replay the events of %s", source.getName()), e);
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void replay(EventLogReader reader, ProcessingRuntime runtime) throws IOException, InterruptedException {
+            List<Event> batch = Lists.newArrayListWithCapacity(BATCH_SIZE);
+
+            reader.seek(source.from);
+
+            long firstTimestamp = 0;
+            long startNanos = 0;
+            boolean first = true;
+
+            while (running && reader.next()) {
+                if (source.speed > 0) {
+                    if (first) {
+                        firstTimestamp = reader.getTimestamp();
+                        startNanos = System.nanoTime();
+                        first = false;
+                    }
+
+                    long dueNanos = (long) (TimeUnit.MILLISECONDS.toNanos(reader.getTimestamp() - firstTimestamp) / source.speed);
+                    long waitNanos = dueNanos - (System.nanoTime() - startNanos);
+                    if (waitNanos > 0) {
+                        // everything that is due goes out before we wait for the next event
+                        send(batch, runtime);
+                        TimeUnit.NANOSECONDS.sleep(waitNanos);
+                    }
+                }
+
+                batch.add(reader.getEvent());
+                if (batch.size() == BATCH_SIZE) {
+                    send(batch, runtime);
+                }
+            }
+
+            send(batch, runtime);
+        }
+
+        private void send(List<Event> batch, ProcessingRuntime runtime) {
+            if (!batch.isEmpty()) {
+                ProcessingRuntimes.sendEventsFromSource(runtime, batch, source);
+                batch.clear();
+            }
+        }
+
+        @Override
+        public void stopProcessingEvents() {
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.source.jdbc;
+
+import com.google.common.collect.Lists;
+import org.lisapark.octopus.core.ProcessingException;
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.runtime.ProcessingRuntimes;
+import org.lisapark.octopus.core.source.external.CompiledExternalSource;
+import org.lisapark.octopus.util.jdbc.Connections;
+import org.lisapark.octopus.util.jdbc.ResultSets;
+import org.lisapark.octopus.util.jdbc.Statements;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Compiled form of a {@link PollingSqlQuerySource}. The polls run on the thread of the source over a single
+ * connection, with the statement after the watermark prepared once. Every poll ends its transaction, so it sees the
+ * rows committed since the one before.
+ */
+class CompiledPollingSqlQuerySource implements CompiledExternalSource {
+
+    private static final int BATCH_SIZE = 256;
+
+    private final PollingSqlQuerySource source;
+
+    private volatile boolean running;
+    private volatile CountDownLatch stopped = new CountDownLatch(1);
+
+    CompiledPollingSqlQuerySource(PollingSqlQuerySource source) {
+        this.source = source;
+    }
+
+    @Override
+    public void startProcessingEvents(ProcessingRuntime runtime) throws ProcessingException {
+        checkState(!running, "Source is already processing events. Cannot call processEvents again");
+        stopped = new CountDownLatch(1);
+        running = true;
+
+        Watermark watermark = readWatermark();
+        PollInterval interval = new PollInterval(source.getMinIntervalMillis(), source.getMaxIntervalMillis());
+
+        Connection connection = null;
+        PreparedStatement afterWatermark = null;
+        try {
+            connection = CompiledStreamingSqlQuerySource.openConnection(source.getSqlQuerySource(),
+                    source.getConnectionPools());
+
+            while (running) {
+                int rowCount;
+                if (watermark.isSet()) {
+                    if (afterWatermark == null) {
+                        afterWatermark = prepare(connection, true);
+                    }
+                    watermark.bind(afterWatermark, 1);
+                    rowCount = poll(afterWatermark, watermark, runtime);
+
+                } else {
+                    PreparedStatement fromStart = prepare(connection, false);
+                    try {
+                        rowCount = poll(fromStart, watermark, runtime);
+                    } finally {
+                        Statements.closeQuietly(fromStart);
+                    }
+                }
+                connection.commit();
+
+                if (rowCount > 0 && watermark.isSet()) {
+                    storeWatermark(watermark);
+                }
+
+                long waitMillis = interval.next(rowCount, source.getRowLimit());
+                if (waitMillis > 0 && stopped.await(waitMillis, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            }
+
+        } catch (SQLException e) {
+            throw new ProcessingException("Problem processing result set from database. Please check your settings.", e);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+        } finally {
+            running = false;
+            Statements.closeQuietly(afterWatermark);
+            Connections.closeQuietly(connection);
+        }
+    }
+
+    @Override
+    public void stopProcessingEvents() {
+        running = false;
+        stopped.countDown();
+    }
+
+    private PreparedStatement prepare(Connection connection, boolean afterWatermark) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(PollingSqlQuerySource.pollQuery(
+                source.getSqlQuerySource().getQuery(), source.getWatermarkColumn(), afterWatermark),
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(source.getFetchSize());
+        statement.setMaxRows(source.getRowLimit());
+
+        return statement;
+    }
+
+    /**
+     * Sends the rows found by the statement to the runtime and moves the watermark along with them. Rows that share
+     * their watermark value with rows the row limit cut off are held back for the next poll, see {@link PollPage}.
+     *
+     * @return number of rows found
+     */
+    private int poll(PreparedStatement statement, Watermark watermark, ProcessingRuntime runtime) throws SQLException {
+        PollPage page = new PollPage(watermark, source.getRowLimit());
+
+        ResultSet rs = statement.executeQuery();
+        try {
+            int watermarkColumn = rs.findColumn(source.getWatermarkColumn());
+            EventRowMapper mapper = new EventRowMapper(source.getOutput().getAttributes());
+
+            // a stopped source still finishes the rows it has started, so the watermark matches what was sent
+            while (rs.next()) {
+                page.add(mapper.eventFromRow(rs), rs.getObject(watermarkColumn));
+
+                if (page.getReleasedEvents().size() >= BATCH_SIZE) {
+                    send(page.getReleasedEvents(), runtime);
+                }
+            }
+            page.finish();
+            send(page.getReleasedEvents(), runtime);
+
+        } finally {
+            ResultSets.closeQuietly(rs);
+        }
+
+        Object cutOffValue = page.getCutOffValue();
+        if (cutOffValue != null) {
+            sendTies(statement.getConnection(), cutOffValue, watermark, runtime);
+        }
+
+        return page.getRowCount();
+    }
+
+    /**
+     * Sends all of the rows with the value of the watermark column the row limit cut off in, and moves the watermark
+     * to that value. This reads as many rows as there are, however many that are above the limit.
+     */
+    private void sendTies(Connection connection, Object value, Watermark watermark, ProcessingRuntime runtime)
+            throws SQLException {
+        Watermark tie = new Watermark();
+        tie.advance(value);
+
+        PreparedStatement statement = connection.prepareStatement(PollingSqlQuerySource.tieQuery(
+                source.getSqlQuerySource().getQuery(), source.getWatermarkColumn()),
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ResultSet rs = null;
+        try {
+            statement.setFetchSize(source.getFetchSize());
+            tie.bind(statement, 1);
+            rs = statement.executeQuery();
+
+            EventRowMapper mapper = new EventRowMapper(source.getOutput().getAttributes());
+            List<Event> batch = Lists.newArrayListWithCapacity(BATCH_SIZE);
+            while (rs.next()) {
+                batch.add(mapper.eventFromRow(rs));
+                if (batch.size() == BATCH_SIZE) {
+                    send(batch, runtime);
+                }
+            }
+            send(batch, runtime);
+            watermark.advance(value);
+
+        } finally {
+            ResultSets.closeQuietly(rs);
+            Statements.closeQuietly(statement);
+        }
+    }
+
+    private void send(List<Event> events, ProcessingRuntime runtime) {
+        if (!events.isEmpty()) {
+            ProcessingRuntimes.sendEventsFromSource(runtime, events, source);
+            events.clear();
+        }
+    }
+
+    private Watermark readWatermark() throws ProcessingException {
+        try {
+            return Watermark.readFrom(source.getWatermarkFile());
+        } catch (IOException e) {
+            throw new ProcessingException("Could not read the watermark of source " + source.getName(), e);
+        }
+    }
+
+    private void storeWatermark(Watermark watermark) throws ProcessingException {
+        try {
+            watermark.storeTo(source.getWatermarkFile());
+        } catch (IOException e) {
+            throw new ProcessingException("Could not store the watermark of source " + source.getName(), e);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.source.jdbc;
+
+import com.google.common.collect.Lists;
+import org.lisapark.octopus.core.ProcessingException;
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.runtime.ProcessingRuntimes;
+import org.lisapark.octopus.core.source.external.CompiledExternalSource;
+import org.lisapark.octopus.core.source.external.SqlQuerySource;
+import org.lisapark.octopus.util.jdbc.ConnectionPools;
+import org.lisapark.octopus.util.jdbc.Connections;
+import org.lisapark.octopus.util.jdbc.ResultSets;
+import org.lisapark.octopus.util.jdbc.Statements;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Compiled form of a {@link StreamingSqlQuerySource}. With a single reader the rows are read on the thread of the
+ * source, otherwise every range of keys is read by a thread of its own and the events are handed to the thread of the
+ * source through a bounded queue of batches, so a slow runtime holds the readers back.
+ */
+class CompiledStreamingSqlQuerySource implements CompiledExternalSource {
+
+    private static final int BATCH_SIZE = 256;
+    private static final int BATCHES_PER_READER = 4;
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * Put on the queue by a reader when it is done
+     */
+    private static final List<Event> END_OF_RANGE = Lists.newArrayListWithCapacity(0);
+
+    private final StreamingSqlQuerySource source;
+
+    private volatile boolean running;
+
+    CompiledStreamingSqlQuerySource(StreamingSqlQuerySource source) {
+        this.source = source;
+    }
+
+    @Override
+    public void startProcessingEvents(ProcessingRuntime runtime) throws ProcessingException {
+        checkState(!running, "Source is already processing events. Cannot call processEvents again");
+        running = true;
+
+        try {
+            if (source.getKeyColumn() == null) {
+                readAll(runtime);
+            } else {
+                readRanges(runtime);
+            }
+        } finally {
+            running = false;
+        }
+    }
+
+    @Override
+    public void stopProcessingEvents() {
+        running = false;
+    }
+
+    private void readAll(ProcessingRuntime runtime) throws ProcessingException {
+        Connection connection = openConnection(source.getSqlQuerySource(), source.getConnectionPools());
+        Statement statement = null;
+        ResultSet rs = null;
+
+        try {
+            statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(source.getFetchSize());
+            rs = statement.executeQuery(source.getSqlQuerySource().getQuery());
+
+            EventRowMapper mapper = new EventRowMapper(source.getOutput().getAttributes());
+            List<Event> batch = Lists.newArrayListWithCapacity(BATCH_SIZE);
+
+            Thread thread = Thread.currentThread();
+            while (!thread.isInterrupted() && running && rs.next()) {
+                batch.add(mapper.eventFromRow(rs));
+
+                if (batch.size() == BATCH_SIZE) {
+                    ProcessingRuntimes.sendEventsFromSource(runtime, batch, source);
+                    batch.clear();
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                ProcessingRuntimes.sendEventsFromSource(runtime, batch, source);
+            }
+
+        } catch (SQLException e) {
+            throw new ProcessingException("Problem processing result set from database. Please check your settings.", e);
+
+        } finally {
+            ResultSets.closeQuietly(rs);
+            Statements.closeQuietly(statement);
+            Connections.closeQuietly(connection);
+        }
+    }
+
+    private void readRanges(ProcessingRuntime runtime) throws ProcessingException {
+        long[] lowerBounds = lowerBounds();
+        if (lowerBounds == null) {
+            // no rows with a key, so there is nothing to split
+            readAll(runtime);
+            return;
+        }
+
+        BlockingQueue<List<Event>> batches = new ArrayBlockingQueue<List<Event>>(lowerBounds.length * BATCHES_PER_READER);
+        AtomicReference<Exception> failure = new AtomicReference<Exception>();
+        CountDownLatch readersDone = new CountDownLatch(lowerBounds.length);
+
+        for (int i = 0; i < lowerBounds.length; ++i) {
+            Thread reader = new Thread(new RangeReader(i, lowerBounds, batches, failure, readersDone),
+                    String.format("%s-reader-%d", source.getName(), i));
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        int rangesLeft = lowerBounds.length;
+        try {
+            while (running && rangesLeft > 0) {
+                List<Event> batch = batches.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+
+                if (batch == END_OF_RANGE) {
+                    rangesLeft--;
+                } else if (batch != null) {
+                    ProcessingRuntimes.sendEventsFromSource(runtime, batch, source);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+        } finally {
+            // readers that are still going notice this the next time they hand over a batch
+            running = false;
+            try {
+                readersDone.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (failure.get() != null) {
+            throw new ProcessingException("Problem processing result set from database. Please check your settings.", failure.get());
+        }
+    }
+
+    /**
+     * Returns the lower bounds of the ranges of keys, or null if no row has a key.
+     */
+    private long[] lowerBounds() throws ProcessingException {
+        Connection connection = openConnection(source.getSqlQuerySource(), source.getConnectionPools());
+        Statement statement = null;
+        ResultSet rs = null;
+
+        try {
+            statement = connection.createStatement();
+            rs = statement.executeQuery(KeyRanges.boundsQuery(source.getSqlQuerySource().getQuery(), source.getKeyColumn()));
+
+            if (!rs.next()) {
+                return null;
+            }
+
+            long min = rs.getLong(1);
+            boolean empty = rs.wasNull();
+            long max = rs.getLong(2);
+
+            return empty ? null : KeyRanges.lowerBounds(min, max, source.getReaderCount());
+
+        } catch (SQLException e) {
+            throw new ProcessingException("Problem finding the range of the key column. Please check your settings.", e);
+
+        } finally {
+            ResultSets.closeQuietly(rs);
+            Statements.closeQuietly(statement);
+            Connections.closeQuietly(connection);
+        }
+    }
+
+    /**
+     * Opens a connection the same way the {@link SqlQuerySource} does, or borrows one from the pools if there are
+     * any, with auto commit off so drivers that need a transaction to use a cursor, like PostgreSQL's, stream the rows.
+     */
+    static Connection openConnection(SqlQuerySource sqlSource, ConnectionPools pools) throws ProcessingException {
+        try {
+            Class.forName(sqlSource.getDriverClass());
+        } catch (ClassNotFoundException e) {
+            throw new ProcessingException("Could not find JDBC Driver Class " + sqlSource.getDriverClass(), e);
+        }
+
+        Connection connection;
+        try {
+            if (pools != null) {
+                connection = pools.getConnection(sqlSource.getUrl(), sqlSource.getUsername(), sqlSource.getPassword());
+            } else if (sqlSource.getUsername() == null && sqlSource.getPassword() == null) {
+                connection = DriverManager.getConnection(sqlSource.getUrl());
+            } else {
+                connection = DriverManager.getConnection(sqlSource.getUrl(), sqlSource.getUsername(), sqlSource.getPassword());
+            }
+        } catch (SQLException e) {
+            throw new ProcessingException("Could not connect to database. Please check your settings.", e);
+        }
+
+        try {
+            connection.setAutoCommit(false);
+        } catch (SQLException e) {
+            Connections.closeQuietly(connection);
+            throw new ProcessingException("Could not connect to database. Please check your settings.", e);
+        }
+
+        return connection;
+    }
+
+    /**
+     * Reads the rows of one range of keys and hands them to the thread of the source in batches.
+     */
+    private class RangeReader implements Runnable {
+        private final int range;
+        private final long[] lowerBounds;
+        private final BlockingQueue<List<Event>> batches;
+        private final AtomicReference<Exception> failure;
+        private final CountDownLatch readersDone;
+
+        RangeReader(int range, long[] lowerBounds, BlockingQueue<List<Event>> batches,
+                    AtomicReference<Exception> failure, CountDownLatch readersDone) {
+            this.range = range;
+            this.lowerBounds = lowerBounds;
+            this.batches = batches;
+            this.failure = failure;
+            this.readersDone = readersDone;
+        }
+
+        @Override
+        public void run() {
+            Connection connection = null;
+            PreparedStatement statement = null;
+            ResultSet rs = null;
+
+            try {
+                connection = openConnection(source.getSqlQuerySource(), source.getConnectionPools());
+                statement = connection.prepareStatement(KeyRanges.rangeQuery(source.getSqlQuerySource().getQuery(),
+                        source.getKeyColumn(), range, lowerBounds.length), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(source.getFetchSize());
+                bindRange(statement);
+                rs = statement.executeQuery();
+
+                EventRowMapper mapper = new EventRowMapper(source.getOutput().getAttributes());
+                List<Event> batch = Lists.newArrayListWithCapacity(BATCH_SIZE);
+
+                while (running && rs.next()) {
+                    batch.add(mapper.eventFromRow(rs));
+
+                    if (batch.size() == BATCH_SIZE) {
+                        handOver(batch);
+                        batch = Lists.newArrayListWithCapacity(BATCH_SIZE);
+                    }
+                }
+
+                if (!batch.isEmpty()) {
+                    handOver(batch);
+                }
+
+            } catch (Exception e) {
+                failure.compareAndSet(null, e);
+                running = false;
+
+            } finally {
+                ResultSets.closeQuietly(rs);
+                Statements.closeQuietly(statement);
+                Connections.closeQuietly(connection);
+
+                try {
+                    handOver(END_OF_RANGE);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                readersDone.countDown();
+            }
+        }
+
+        private void bindRange(PreparedStatement statement) throws SQLException {
+            int rangeCount = lowerBounds.length;
+
+            if (rangeCount == 1) {
+                return;
+            }
+
+            if (range == 0) {
+                statement.setLong(1, lowerBounds[1]);
+            } else if (range == rangeCount - 1) {
+                statement.setLong(1, lowerBounds[range]);
+            } else {
+                statement.setLong(1, lowerBounds[range]);
+                statement.setLong(2, lowerBounds[range + 1]);
+            }
+        }
+
+        /**
+         * Waits for room on the queue, giving up once the source has been stopped.
+         */
+        private void handOver(List<Event> batch) throws InterruptedException {
+            while (running && !batches.offer(batch, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                // keep trying while the source is running
+            }
+        }
+    }
+}
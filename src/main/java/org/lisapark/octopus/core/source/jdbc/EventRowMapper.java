@@ -0,0 +1,83 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.source.jdbc;
+
+import com.google.common.collect.Maps;
+import org.lisapark.octopus.core.event.Attribute;
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.util.Booleans;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns the rows of a {@link ResultSet} into {@link Event}s with the attributes of a source, the same way the
+ * {@link org.lisapark.octopus.core.source.external.SqlQuerySource} does. The columns of the attributes are looked up
+ * once, on the first row, instead of by name for every value.
+ */
+class EventRowMapper {
+
+    private final Attribute[] attributes;
+    private final String[] attributeNames;
+    private final Class[] attributeTypes;
+
+    private ResultSet resultSet;
+    private final int[] columns;
+
+    EventRowMapper(List<Attribute> attributes) {
+        this.attributes = attributes.toArray(new Attribute[attributes.size()]);
+        this.attributeNames = new String[this.attributes.length];
+        this.attributeTypes = new Class[this.attributes.length];
+        this.columns = new int[this.attributes.length];
+
+        for (int i = 0; i < this.attributes.length; ++i) {
+            attributeNames[i] = this.attributes[i].getName();
+            attributeTypes[i] = this.attributes[i].getType();
+        }
+    }
+
+    Event eventFromRow(ResultSet rs) throws SQLException {
+        if (rs != resultSet) {
+            for (int i = 0; i < attributeNames.length; ++i) {
+                columns[i] = rs.findColumn(attributeNames[i]);
+            }
+            resultSet = rs;
+        }
+
+        Map<String, Object> data = Maps.newHashMapWithExpectedSize(attributes.length);
+        for (int i = 0; i < attributes.length; ++i) {
+            Class type = attributeTypes[i];
+            int column = columns[i];
+
+            if (type == String.class) {
+                data.put(attributeNames[i], rs.getString(column));
+            } else if (type == Integer.class) {
+                data.put(attributeNames[i], rs.getInt(column));
+            } else if (type == Short.class) {
+                data.put(attributeNames[i], rs.getShort(column));
+            } else if (type == Long.class) {
+                data.put(attributeNames[i], rs.getLong(column));
+            } else if (type == Double.class) {
+                data.put(attributeNames[i], rs.getDouble(column));
+            } else if (type == Float.class) {
+                data.put(attributeNames[i], rs.getFloat(column));
+            } else if (type == Boolean.class) {
+                data.put(attributeNames[i], Booleans.parseBoolean(rs.getString(column)));
+            } else {
+                throw new IllegalArgumentException(String.format("Unknown attribute type %s", type));
+            }
+        }
+
+        return new Event(data);
+    }
+}
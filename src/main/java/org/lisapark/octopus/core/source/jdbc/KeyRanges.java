@@ -0,0 +1,101 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.source.jdbc;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Splits a query into queries over consecutive ranges of a numeric key column, so each range can be read by a
+ * reader of its own. Together the ranges cover every row of the original query: the first range has no lower bound
+ * and also takes the rows where the key is null, and the last range has no upper bound.
+ */
+abstract class KeyRanges {
+
+    private static final String ALIAS = "octopus_range";
+
+    /**
+     * Returns the query for the smallest and largest key of the rows of the query.
+     *
+     * @param query     to split
+     * @param keyColumn name of the key column
+     * @return SQL
+     */
+    static String boundsQuery(String query, String keyColumn) {
+        return String.format("SELECT MIN(%s), MAX(%s) FROM (%s) %s", keyColumn, keyColumn, stripTerminator(query), ALIAS);
+    }
+
+    /**
+     * Returns the lower bounds of the ranges, starting with the smallest key. There are fewer ranges than requested
+     * if the keys span fewer values than that.
+     *
+     * @param min        smallest key
+     * @param max        largest key
+     * @param rangeCount number of ranges wanted
+     * @return lower bound of every range
+     */
+    static long[] lowerBounds(long min, long max, int rangeCount) {
+        checkArgument(min <= max, "min cannot be greater than max");
+        checkArgument(rangeCount > 0, "rangeCount has to be greater than zero");
+
+        // doubles so the span of keys near the ends of the long range cannot overflow, which means bounds beyond
+        // 2^53 are rounded and may collapse, those ranges are dropped
+        double span = (double) max - (double) min + 1;
+        int count = (int) Math.min(rangeCount, span);
+
+        long[] bounds = new long[count];
+        bounds[0] = min;
+        int boundCount = 1;
+        for (int i = 1; i < count; ++i) {
+            long bound = (long) ((double) min + span * i / count);
+            if (bound > bounds[boundCount - 1]) {
+                bounds[boundCount++] = bound;
+            }
+        }
+
+        return boundCount == count ? bounds : Arrays.copyOf(bounds, boundCount);
+    }
+
+    /**
+     * Returns the query for one of the ranges. The bounds of the range are parameters: the upper bound for the first
+     * range, the lower bound for the last range, and the lower followed by the upper bound for the ones in between.
+     *
+     * @param query      to split
+     * @param keyColumn  name of the key column
+     * @param range      index of the range
+     * @param rangeCount number of ranges
+     * @return SQL
+     */
+    static String rangeQuery(String query, String keyColumn, int range, int rangeCount) {
+        String predicate;
+        if (rangeCount == 1) {
+            return stripTerminator(query);
+        } else if (range == 0) {
+            predicate = String.format("%s < ? OR %s IS NULL", keyColumn, keyColumn);
+        } else if (range == rangeCount - 1) {
+            predicate = String.format("%s >= ?", keyColumn);
+        } else {
+            predicate = String.format("%s >= ? AND %s < ?", keyColumn, keyColumn);
+        }
+
+        return String.format("SELECT * FROM (%s) %s WHERE %s", stripTerminator(query), ALIAS, predicate);
+    }
+
+    static String stripTerminator(String query) {
+        String trimmed = query.trim();
+        while (trimmed.endsWith(";")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1).trim();
+        }
+
+        return trimmed;
+    }
+}
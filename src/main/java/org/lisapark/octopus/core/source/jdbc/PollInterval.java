@@ -0,0 +1,58 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.source.jdbc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Adapts the time a {@link PollingSqlQuerySource} waits between two polls to how many rows the polls find. A poll
+ * that finds nothing doubles the wait, up to the maximum, so an idle table is hardly queried. A poll that finds rows
+ * halves it, down to the minimum, and a poll that hit the row limit is followed by the next one right away, since
+ * there are more rows waiting.
+ */
+class PollInterval {
+
+    private final long minMillis;
+    private final long maxMillis;
+
+    private long currentMillis;
+
+    PollInterval(long minMillis, long maxMillis) {
+        checkArgument(minMillis > 0, "minMillis has to be greater than zero");
+        checkArgument(maxMillis >= minMillis, "maxMillis cannot be less than minMillis");
+
+        this.minMillis = minMillis;
+        this.maxMillis = maxMillis;
+        this.currentMillis = minMillis;
+    }
+
+    /**
+     * Returns the number of milliseconds to wait before the next poll.
+     *
+     * @param rowCount number of rows the last poll found
+     * @param rowLimit maximum number of rows a poll reads
+     * @return millis to wait, 0 to poll again right away
+     */
+    long next(int rowCount, int rowLimit) {
+        if (rowCount >= rowLimit) {
+            currentMillis = minMillis;
+            return 0;
+        }
+
+        if (rowCount > 0) {
+            currentMillis = Math.max(minMillis, currentMillis / 2);
+        } else {
+            currentMillis = Math.min(maxMillis, currentMillis * 2);
+        }
+
+        return currentMillis;
+    }
+}
@@ -0,0 +1,98 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.source.jdbc;
+
+import com.google.common.collect.Lists;
+import org.lisapark.octopus.core.event.Event;
+
+import java.util.List;
+
+/**
+ * The rows read by a single poll of a {@link PollingSqlQuerySource}, grouped by the value of the watermark column.
+ * A group is only released, and the {@link Watermark} only moved to its value, once a row with a larger value shows
+ * that every row of the group has been read.
+ * <p/>
+ * The row limit of a poll can cut off a run of rows that share a value. If that happens, the last group of the page
+ * is held back and read again by the next poll, since moving the watermark to its value would skip the rows the
+ * limit cut off. If the page holds nothing but that one group, there is no smaller value to stop at, so
+ * {@link #getCutOffValue()} tells the source to read all rows with that value by themselves.
+ */
+class PollPage {
+
+    private final Watermark watermark;
+    private final int rowLimit;
+
+    private final List<Event> releasedEvents = Lists.newArrayList();
+    private final List<Event> group = Lists.newArrayList();
+    private Object groupValue;
+
+    private int rowCount;
+    private boolean released;
+
+    PollPage(Watermark watermark, int rowLimit) {
+        this.watermark = watermark;
+        this.rowLimit = rowLimit;
+    }
+
+    /**
+     * Adds the event of a row, rows have to be added in order of the watermark column.
+     *
+     * @param event          of the row
+     * @param watermarkValue value of the watermark column of the row, never null
+     */
+    void add(Event event, Object watermarkValue) {
+        if (!group.isEmpty() && !watermarkValue.equals(groupValue)) {
+            releaseGroup();
+        }
+
+        group.add(event);
+        groupValue = watermarkValue;
+        rowCount++;
+    }
+
+    /**
+     * Called once the poll has read all of its rows. The last group is released if the poll read fewer rows than its
+     * limit, since then nothing can have been cut off.
+     */
+    void finish() {
+        if (rowCount < rowLimit && !group.isEmpty()) {
+            releaseGroup();
+        }
+    }
+
+    /**
+     * Returns the events that can be sent, the caller sends and clears them as it sees fit.
+     */
+    List<Event> getReleasedEvents() {
+        return releasedEvents;
+    }
+
+    /**
+     * Returns the value of the watermark column the page was cut off in, if the page holds no other value. All rows
+     * with that value have to be read before the watermark can move past it.
+     *
+     * @return value, or null if the watermark can move on with the next poll
+     */
+    Object getCutOffValue() {
+        return rowCount >= rowLimit && !released && !group.isEmpty() ? groupValue : null;
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    private void releaseGroup() {
+        releasedEvents.addAll(group);
+        watermark.advance(groupValue);
+        released = true;
+        group.clear();
+    }
+}
@@ -0,0 +1,224 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.source.jdbc;
+
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.ValidationException;
+import org.lisapark.octopus.core.processor.Processor;
+import org.lisapark.octopus.core.sink.external.ExternalSink;
+import org.lisapark.octopus.core.source.Source;
+import org.lisapark.octopus.core.source.external.CompiledExternalSource;
+import org.lisapark.octopus.core.source.external.ExternalSource;
+import org.lisapark.octopus.core.source.external.SqlQuerySource;
+import org.lisapark.octopus.util.jdbc.ConnectionPools;
+
+import java.io.File;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Turns the query of a {@link SqlQuerySource} into a live stream. Instead of running the query once, the source
+ * polls it until it is stopped, and every poll only reads the rows whose watermark column, typically an increasing
+ * id or a modified at timestamp, is greater than the largest value sent so far. It keeps the id and output of the
+ * {@link SqlQuerySource}, and takes its place in the model, see
+ * {@link #pollingCopyOf(ProcessingModel, Map, File, int, int, long, long, ConnectionPools)}.
+ * <p/>
+ * The watermark is stored in a file after the rows of a poll have been sent, so a restarted model carries on where
+ * it stopped; a crash between sending and storing sends the rows of that poll again. Rows that show up later with a
+ * value below the watermark, like ones from transactions that commit out of order, are never read, and neither are
+ * rows where the column is null. Rows that share a value of the column are always sent together, even when the row
+ * limit of a poll falls among them, see {@link PollPage}.
+ * <p/>
+ * The wait between polls adapts to the load of the table, see {@link PollInterval}. The source holds on to its
+ * connection for as long as it runs, which counts against the size of shared {@link ConnectionPools}.
+ */
+public class PollingSqlQuerySource extends ExternalSource {
+
+    public static final int DEFAULT_ROW_LIMIT = 10000;
+    public static final long DEFAULT_MIN_INTERVAL_MILLIS = 1000;
+    public static final long DEFAULT_MAX_INTERVAL_MILLIS = 60000;
+
+    private static final String ALIAS = "octopus_poll";
+
+    private final SqlQuerySource source;
+    private final String watermarkColumn;
+    private final File watermarkFile;
+    private final int fetchSize;
+    private final int rowLimit;
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+    private final ConnectionPools connectionPools;
+
+    /**
+     * @param source            the settings and output are taken from
+     * @param watermarkColumn   column the rows are read in order of
+     * @param watermarkFile     file the watermark is kept in
+     * @param fetchSize         number of rows fetched per round trip
+     * @param rowLimit          maximum number of rows read by a single poll
+     * @param minIntervalMillis shortest wait between two polls
+     * @param maxIntervalMillis longest wait between two polls
+     * @param connectionPools   to borrow the connection from, or null to open it directly
+     */
+    public PollingSqlQuerySource(SqlQuerySource source, String watermarkColumn, File watermarkFile, int fetchSize,
+                                 int rowLimit, long minIntervalMillis, long maxIntervalMillis,
+                                 ConnectionPools connectionPools) {
+        super(source.getId(), source);
+        checkArgument(watermarkColumn != null, "watermarkColumn cannot be null");
+        checkArgument(watermarkFile != null, "watermarkFile cannot be null");
+        checkArgument(rowLimit > 0, "rowLimit has to be greater than zero");
+        checkArgument(minIntervalMillis > 0, "minIntervalMillis has to be greater than zero");
+        checkArgument(maxIntervalMillis >= minIntervalMillis, "maxIntervalMillis cannot be less than minIntervalMillis");
+
+        this.source = source;
+        this.watermarkColumn = watermarkColumn;
+        this.watermarkFile = watermarkFile;
+        this.fetchSize = fetchSize;
+        this.rowLimit = rowLimit;
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxIntervalMillis = maxIntervalMillis;
+        this.connectionPools = connectionPools;
+    }
+
+    /**
+     * Returns a new {@link ProcessingModel} with the same processors and sinks, where every {@link SqlQuerySource}
+     * that has a watermark column is replaced by a {@link PollingSqlQuerySource}. Other sources are kept as they are.
+     *
+     * @param model              to copy
+     * @param watermarkColumns   name of the watermark column by the name of the source
+     * @param watermarkDirectory directory the watermarks are kept in, see {@link #watermarkFileFor(File, Source)}
+     * @param fetchSize          number of rows fetched per round trip
+     * @param rowLimit           maximum number of rows read by a single poll
+     * @param minIntervalMillis  shortest wait between two polls
+     * @param maxIntervalMillis  longest wait between two polls
+     * @param connectionPools    to borrow the connections from, or null to open them directly
+     * @return copy of the model that should be handed to the compiler
+     */
+    public static ProcessingModel pollingCopyOf(ProcessingModel model, Map<String, String> watermarkColumns,
+                                                File watermarkDirectory, int fetchSize, int rowLimit,
+                                                long minIntervalMillis, long maxIntervalMillis,
+                                                ConnectionPools connectionPools) {
+        checkArgument(model != null, "model cannot be null");
+
+        ProcessingModel copy = new ProcessingModel(model.getModelName());
+
+        for (ExternalSource externalSource : model.getExternalSources()) {
+            String watermarkColumn = watermarkColumns.get(externalSource.getName());
+
+            if (externalSource instanceof SqlQuerySource && watermarkColumn != null) {
+                copy.addExternalEventSource(new PollingSqlQuerySource((SqlQuerySource) externalSource, watermarkColumn,
+                        watermarkFileFor(watermarkDirectory, externalSource), fetchSize, rowLimit,
+                        minIntervalMillis, maxIntervalMillis, connectionPools));
+            } else {
+                copy.addExternalEventSource(externalSource);
+            }
+        }
+
+        for (Processor processor : model.getProcessors()) {
+            copy.addProcessor(processor);
+        }
+
+        for (ExternalSink externalSink : model.getExternalSinks()) {
+            copy.addExternalSink(externalSink);
+        }
+
+        return copy;
+    }
+
+    /**
+     * Returns the file the watermark of the specified source is kept in, which is named after the id of the source
+     * so renaming the source does not lose it.
+     */
+    public static File watermarkFileFor(File watermarkDirectory, Source source) {
+        return new File(watermarkDirectory, source.getId() + ".watermark");
+    }
+
+    /**
+     * Returns the query of a poll. Without a watermark it reads the rows from the start, otherwise it has the
+     * watermark as its only parameter.
+     *
+     * @param query           of the source
+     * @param watermarkColumn column the rows are read in order of
+     * @param afterWatermark  true if the rows have to be after a watermark
+     * @return SQL
+     */
+    static String pollQuery(String query, String watermarkColumn, boolean afterWatermark) {
+        String predicate = afterWatermark ?
+                String.format("%s > ?", watermarkColumn) : String.format("%s IS NOT NULL", watermarkColumn);
+
+        return String.format("SELECT * FROM (%s) %s WHERE %s ORDER BY %s",
+                KeyRanges.stripTerminator(query), ALIAS, predicate, watermarkColumn);
+    }
+
+    /**
+     * Returns the query for all of the rows with a single value of the watermark column, which is its only
+     * parameter. It is used when the row limit of a poll cuts off a run of rows that share a value, see
+     * {@link PollPage}.
+     *
+     * @param query           of the source
+     * @param watermarkColumn column the rows are read in order of
+     * @return SQL
+     */
+    static String tieQuery(String query, String watermarkColumn) {
+        return String.format("SELECT * FROM (%s) %s WHERE %s = ?",
+                KeyRanges.stripTerminator(query), ALIAS, watermarkColumn);
+    }
+
+    public SqlQuerySource getSqlQuerySource() {
+        return source;
+    }
+
+    public String getWatermarkColumn() {
+        return watermarkColumn;
+    }
+
+    public File getWatermarkFile() {
+        return watermarkFile;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public int getRowLimit() {
+        return rowLimit;
+    }
+
+    public long getMinIntervalMillis() {
+        return minIntervalMillis;
+    }
+
+    public long getMaxIntervalMillis() {
+        return maxIntervalMillis;
+    }
+
+    public ConnectionPools getConnectionPools() {
+        return connectionPools;
+    }
+
+    @Override
+    public CompiledExternalSource compile() throws ValidationException {
+        source.validate();
+
+        return new CompiledPollingSqlQuerySource(this);
+    }
+
+    @Override
+    public Source newInstance() {
+        return source.newInstance();
+    }
+
+    @Override
+    public Source copyOf() {
+        return new PollingSqlQuerySource(source.copyOf(), watermarkColumn, watermarkFile, fetchSize, rowLimit,
+                minIntervalMillis, maxIntervalMillis, connectionPools);
+    }
+}
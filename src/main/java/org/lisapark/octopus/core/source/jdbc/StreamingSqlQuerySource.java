@@ -0,0 +1,146 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.source.jdbc;
+
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.ValidationException;
+import org.lisapark.octopus.core.processor.Processor;
+import org.lisapark.octopus.core.sink.external.ExternalSink;
+import org.lisapark.octopus.core.source.Source;
+import org.lisapark.octopus.core.source.external.CompiledExternalSource;
+import org.lisapark.octopus.core.source.external.ExternalSource;
+import org.lisapark.octopus.core.source.external.SqlQuerySource;
+import org.lisapark.octopus.util.jdbc.ConnectionPools;
+
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Reads the rows of a {@link SqlQuerySource} the way large tables need to be read. It keeps the id and output of the
+ * {@link SqlQuerySource}, and takes its place in the model, see
+ * {@link #streamingCopyOf(ProcessingModel, int, int, Map, ConnectionPools)}.
+ * <p/>
+ * The query runs on a forward only, read only cursor with the configured fetch size, and auto commit off, which
+ * is what most drivers need to stream rows instead of loading the whole result. MySQL only streams with a fetch size
+ * of {@link Integer#MIN_VALUE}.
+ * <p/>
+ * If a numeric key column is set, the rows are split into ranges of the key, see {@link KeyRanges}, and every range
+ * is read on a connection and thread of its own. The readers hand the events over in batches to the thread of the
+ * source, which sends them to the runtime, so the runtime still sees the events of the source on a single thread;
+ * the events of different ranges are interleaved in no particular order.
+ * <p/>
+ * Connections are borrowed from shared {@link ConnectionPools} if there are any, the pools have to allow a connection
+ * for every reader.
+ */
+public class StreamingSqlQuerySource extends ExternalSource {
+
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    private final SqlQuerySource source;
+    private final int fetchSize;
+    private final int readerCount;
+    private final String keyColumn;
+    private final ConnectionPools connectionPools;
+
+    /**
+     * @param source          the settings and output are taken from
+     * @param fetchSize       number of rows fetched per round trip
+     * @param readerCount     number of parallel readers, only used if there is a key column
+     * @param keyColumn       numeric column to split the rows on, or null to read them with a single reader
+     * @param connectionPools to borrow the connections from, or null to open them directly
+     */
+    public StreamingSqlQuerySource(SqlQuerySource source, int fetchSize, int readerCount, String keyColumn,
+                                   ConnectionPools connectionPools) {
+        super(source.getId(), source);
+        checkArgument(readerCount > 0, "readerCount has to be greater than zero");
+
+        this.source = source;
+        this.fetchSize = fetchSize;
+        this.readerCount = keyColumn != null ? readerCount : 1;
+        this.keyColumn = keyColumn;
+        this.connectionPools = connectionPools;
+    }
+
+    /**
+     * Returns a new {@link ProcessingModel} with the same processors and sinks, where every {@link SqlQuerySource} is
+     * replaced by a {@link StreamingSqlQuerySource}. Other sources are kept as they are.
+     *
+     * @param model           to copy
+     * @param fetchSize       number of rows fetched per round trip
+     * @param readerCount     number of parallel readers for the sources that have a key column
+     * @param keyColumns      name of the key column by the name of the source, sources without one use a single reader
+     * @param connectionPools to borrow the connections from, or null to open them directly
+     * @return copy of the model that should be handed to the compiler
+     */
+    public static ProcessingModel streamingCopyOf(ProcessingModel model, int fetchSize, int readerCount,
+                                                  Map<String, String> keyColumns, ConnectionPools connectionPools) {
+        checkArgument(model != null, "model cannot be null");
+
+        ProcessingModel copy = new ProcessingModel(model.getModelName());
+
+        for (ExternalSource externalSource : model.getExternalSources()) {
+            if (externalSource instanceof SqlQuerySource) {
+                copy.addExternalEventSource(new StreamingSqlQuerySource((SqlQuerySource) externalSource, fetchSize,
+                        readerCount, keyColumns.get(externalSource.getName()), connectionPools));
+            } else {
+                copy.addExternalEventSource(externalSource);
+            }
+        }
+
+        for (Processor processor : model.getProcessors()) {
+            copy.addProcessor(processor);
+        }
+
+        for (ExternalSink externalSink : model.getExternalSinks()) {
+            copy.addExternalSink(externalSink);
+        }
+
+        return copy;
+    }
+
+    public SqlQuerySource getSqlQuerySource() {
+        return source;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public int getReaderCount() {
+        return readerCount;
+    }
+
+    public String getKeyColumn() {
+        return keyColumn;
+    }
+
+    public ConnectionPools getConnectionPools() {
+        return connectionPools;
+    }
+
+    @Override
+    public CompiledExternalSource compile() throws ValidationException {
+        source.validate();
+
+        return new CompiledStreamingSqlQuerySource(this);
+    }
+
+    @Override
+    public Source newInstance() {
+        return source.newInstance();
+    }
+
+    @Override
+    public Source copyOf() {
+        return new StreamingSqlQuerySource(source.copyOf(), fetchSize, readerCount, keyColumn, connectionPools);
+    }
+}
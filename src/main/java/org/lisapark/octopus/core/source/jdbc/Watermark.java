@@ -0,0 +1,233 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.source.jdbc;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.Properties;
+
+/**
+ * The largest value of the watermark column a {@link PollingSqlQuerySource} has sent the rows up to. Whole numbers,
+ * decimals, floating point numbers, timestamps and strings are supported, which covers the usual id and modified at
+ * columns.
+ * <p/>
+ * The watermark is kept in a small property file, and replaced as a whole every time it is stored. Where a file
+ * cannot be renamed over an existing one, the old file is first moved aside and only deleted once the new one is in
+ * place, so a crash leaves either the old or the new value behind.
+ */
+class Watermark {
+
+    private static final String TYPE = "type";
+    private static final String VALUE = "value";
+    private static final String NANOS = "nanos";
+    private static final String OLD_SUFFIX = ".old";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    enum Type {
+        LONG, DECIMAL, DOUBLE, TIMESTAMP, STRING
+    }
+
+    private Type type;
+    private Object value;
+
+    boolean isSet() {
+        return value != null;
+    }
+
+    Type getType() {
+        return type;
+    }
+
+    Object getValue() {
+        return value;
+    }
+
+    /**
+     * Moves the watermark to the value of the watermark column of a row. Rows are read in order of the column, so
+     * the value is never smaller than the current one. Nulls are skipped.
+     *
+     * @param columnValue as returned by {@link java.sql.ResultSet#getObject(int)}
+     */
+    void advance(Object columnValue) {
+        if (columnValue == null) {
+            return;
+        }
+
+        if (columnValue instanceof Long || columnValue instanceof Integer || columnValue instanceof Short
+                || columnValue instanceof Byte || columnValue instanceof BigInteger) {
+            type = Type.LONG;
+            value = ((Number) columnValue).longValue();
+        } else if (columnValue instanceof BigDecimal) {
+            type = Type.DECIMAL;
+            value = columnValue;
+        } else if (columnValue instanceof Double || columnValue instanceof Float) {
+            type = Type.DOUBLE;
+            value = ((Number) columnValue).doubleValue();
+        } else if (columnValue instanceof Timestamp) {
+            type = Type.TIMESTAMP;
+            value = columnValue;
+        } else if (columnValue instanceof Date) {
+            type = Type.TIMESTAMP;
+            value = new Timestamp(((Date) columnValue).getTime());
+        } else {
+            type = Type.STRING;
+            value = columnValue.toString();
+        }
+    }
+
+    /**
+     * Binds the watermark to a parameter of a statement.
+     */
+    void bind(PreparedStatement statement, int parameterIndex) throws SQLException {
+        switch (type) {
+            case LONG:
+                statement.setLong(parameterIndex, (Long) value);
+                break;
+            case DECIMAL:
+                statement.setBigDecimal(parameterIndex, (BigDecimal) value);
+                break;
+            case DOUBLE:
+                statement.setDouble(parameterIndex, (Double) value);
+                break;
+            case TIMESTAMP:
+                statement.setTimestamp(parameterIndex, (Timestamp) value);
+                break;
+            default:
+                statement.setString(parameterIndex, (String) value);
+        }
+    }
+
+    /**
+     * Writes the watermark to a temporary file first and renames it to the specified file once it is complete.
+     *
+     * @param file to store the watermark in
+     * @throws IOException if the file could not be written
+     */
+    void storeTo(File file) throws IOException {
+        if (!isSet()) {
+            return;
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty(TYPE, type.name());
+        if (type == Type.TIMESTAMP) {
+            Timestamp timestamp = (Timestamp) value;
+            properties.setProperty(VALUE, Long.toString(timestamp.getTime()));
+            properties.setProperty(NANOS, Integer.toString(timestamp.getNanos()));
+        } else {
+            properties.setProperty(VALUE, value.toString());
+        }
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException(String.format("Could not create directory %s", directory));
+        }
+
+        File temporaryFile = new File(file.getPath() + TEMPORARY_SUFFIX);
+        OutputStream out = new FileOutputStream(temporaryFile);
+        try {
+            properties.store(out, null);
+            out.flush();
+        } finally {
+            out.close();
+        }
+
+        if (temporaryFile.renameTo(file)) {
+            return;
+        }
+
+        // renaming over an existing file is not possible everywhere, so the old file is moved aside until the new
+        // one is in place, readFrom falls back to it if there is a crash in between
+        File oldFile = new File(file.getPath() + OLD_SUFFIX);
+        if (file.exists()) {
+            oldFile.delete();
+            if (!file.renameTo(oldFile)) {
+                temporaryFile.delete();
+                throw new IOException(String.format("Could not rename %s to %s", file, oldFile));
+            }
+        }
+        if (!temporaryFile.renameTo(file)) {
+            throw new IOException(String.format("Could not rename %s to %s", temporaryFile, file));
+        }
+        oldFile.delete();
+    }
+
+    /**
+     * Reads the watermark from the specified file, or from the old file that was moved aside if a crash happened
+     * while it was replaced. The watermark is not set if neither file exists, which means the source starts with all
+     * of the rows of its query.
+     *
+     * @param file the watermark was stored in
+     * @return watermark
+     * @throws IOException if the file could not be read
+     */
+    static Watermark readFrom(File file) throws IOException {
+        Watermark watermark = new Watermark();
+        if (!file.exists()) {
+            file = new File(file.getPath() + OLD_SUFFIX);
+            if (!file.exists()) {
+                return watermark;
+            }
+        }
+
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+
+        String value = properties.getProperty(VALUE);
+        try {
+            Type type = Type.valueOf(properties.getProperty(TYPE));
+            switch (type) {
+                case LONG:
+                    watermark.value = Long.parseLong(value);
+                    break;
+                case DECIMAL:
+                    watermark.value = new BigDecimal(value);
+                    break;
+                case DOUBLE:
+                    watermark.value = Double.parseDouble(value);
+                    break;
+                case TIMESTAMP:
+                    Timestamp timestamp = new Timestamp(Long.parseLong(value));
+                    timestamp.setNanos(Integer.parseInt(properties.getProperty(NANOS)));
+                    watermark.value = timestamp;
+                    break;
+                default:
+                    watermark.value = value;
+            }
+            watermark.type = type;
+
+        } catch (RuntimeException e) {
+            throw new IOException(String.format("%s is not a watermark file", file), e);
+        }
+
+        return watermark;
+    }
+
+    @Override
+    public String toString() {
+        return isSet() ? type + ":" + value : "none";
+    }
+}
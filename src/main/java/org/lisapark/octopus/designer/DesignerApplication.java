@@ -11,18 +11,15 @@
 package org.lisapark.octopus.designer;
 
 import com.jidesoft.plaf.LookAndFeelFactory;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.Properties;
 import javax.swing.*;
-import org.apache.commons.io.IOUtils;
 import org.lisapark.octopus.repository.OctopusRepository;
 import org.lisapark.octopus.repository.RepositoryException;
-import org.lisapark.octopus.repository.db4o.OctopusDb4oRepository;
 
 /**
+ * Main entry point for the Octopus Designer. Use the {@link HeadlessRunner} to run a saved model without the ui.
+ *
  * @author dave sinclair(david.sinclair@lisa-park.com)
  */
 public class DesignerApplication {
@@ -36,23 +33,14 @@ public class DesignerApplication {
             System.exit(-1);
         }
 
-        Properties properties = parseProperties(args[0]);
-        String repositoryFile = properties.getProperty("octopus.repository.file");
-        if (repositoryFile == null || repositoryFile.length() == 0) {
-            System.err.printf("The property file %s is missing the octopus.repository.file property", args[0]);
-            System.exit(-1);
-        }
-        
-        Integer port = Integer.parseInt(properties.getProperty("db4o.server.port"));
-        String uid = properties.getProperty("db4o.server.uid");
-        String psw = properties.getProperty("db4o.server.psw");
-
-        OctopusRepository repository = new OctopusDb4oRepository(repositoryFile, port, uid, psw);
+        Properties properties = OctopusProperties.parseProperties(args[0]);
+        OctopusRepository repository = OctopusProperties.openRepository(properties, args[0]);
         
         LookAndFeelFactory.installJideExtension(5);
         
 //        .installDefaultLookAndFeelAndExtension();
         final DesignerFrame designerFrame = new DesignerFrame(repository);
+        designerFrame.setMemoryProvider(OctopusProperties.createMemoryProvider(properties));
         try {
             designerFrame.loadInitialDataFromRepository();
 
@@ -66,20 +54,4 @@ public class DesignerApplication {
             ErrorDialog.showErrorDialog(null, e, "Problem loading initial data from repository");
         }
     }
-
-    private static Properties parseProperties(String propertyFileName) throws IOException {
-        InputStream fin = null;
-        Properties properties = null;
-        try {
-            fin = new FileInputStream(new File(propertyFileName));
-
-            properties = new Properties();
-            properties.load(fin);
-
-        } finally {
-            IOUtils.closeQuietly(fin);
-        }
-
-        return properties;
-    }
 }
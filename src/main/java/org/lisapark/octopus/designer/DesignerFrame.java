@@ -22,6 +22,7 @@ import com.jidesoft.docking.DockableFrame;
 import com.jidesoft.docking.DockingManager;
 import com.jidesoft.status.LabelStatusBarItem;
 import com.jidesoft.status.MemoryStatusBarItem;
+import com.jidesoft.status.ProgressStatusBarItem;
 import com.jidesoft.status.StatusBar;
 import com.jidesoft.status.TimeStatusBarItem;
 import com.jidesoft.swing.JideBoxLayout;
@@ -30,15 +31,27 @@ import com.jidesoft.swing.JideScrollPane;
 import org.lisapark.octopus.core.Node;
 import org.lisapark.octopus.core.ProcessingModel;
 import org.lisapark.octopus.core.ValidationException;
-import org.lisapark.octopus.core.compiler.esper.EsperCompiler;
+import org.lisapark.octopus.core.compiler.cache.CompiledRuntimeCache;
+import org.lisapark.octopus.core.memory.MemoryProvider;
 import org.lisapark.octopus.core.processor.Processor;
-import org.lisapark.octopus.core.runtime.ProcessingRuntime;
 import org.lisapark.octopus.core.sink.external.ExternalSink;
 import org.lisapark.octopus.core.source.external.ExternalSource;
 import org.lisapark.octopus.designer.canvas.CanvasPanel;
+import org.lisapark.octopus.designer.canvas.ModelChangeListener;
 import org.lisapark.octopus.designer.canvas.NodeSelectionListener;
+import org.lisapark.octopus.designer.output.OutputConsole;
+import org.lisapark.octopus.designer.output.OutputLog;
+import org.lisapark.octopus.designer.output.OutputView;
 import org.lisapark.octopus.designer.palette.PalettePanel;
 import org.lisapark.octopus.designer.properties.PropertiesPanel;
+import org.lisapark.octopus.designer.run.MetricsListener;
+import org.lisapark.octopus.designer.run.MetricsSampler;
+import org.lisapark.octopus.designer.run.NodeStatistics;
+import org.lisapark.octopus.designer.run.ProfileDialog;
+import org.lisapark.octopus.designer.run.ProfileReport;
+import org.lisapark.octopus.designer.run.RunListener;
+import org.lisapark.octopus.designer.run.RunManager;
+import org.lisapark.octopus.designer.run.RunState;
 import org.lisapark.octopus.repository.OctopusRepository;
 import org.lisapark.octopus.repository.RepositoryException;
 import org.lisapark.octopus.swing.BaseStyledButton;
@@ -47,20 +60,25 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
-import javax.swing.text.BadLocationException;
-import javax.swing.text.Document;
 import java.awt.*;
-import java.awt.datatransfer.Clipboard;
-import java.awt.datatransfer.StringSelection;
+import java.awt.datatransfer.Transferable;
 import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
 
 /**
  * This is the main {@link JFrame} for the Octopus Designer application.
@@ -85,6 +103,10 @@ public class DesignerFrame extends DefaultDockableBarDockableHolder {
     private static final String PROPERTIES_KEY = "Properties";
     private static final String OUTPUT_KEY = "Output";
     private static final String PALETTE_KEY = "Palette";
+    /**
+     * How often the progress of a run is refreshed in the status bar
+     */
+    private static final int RUN_PROGRESS_REFRESH_MILLIS = 250;
     /**
      * This is the current {@link ProcessingModel} we are working on
      */
@@ -115,14 +137,55 @@ public class DesignerFrame extends DefaultDockableBarDockableHolder {
             "Compile", DesignerIconsFactory.getImageIcon(DesignerIconsFactory.COMPILE), "Compile model");
     private RunAction runAction = new RunAction(
             "Run", DesignerIconsFactory.getImageIcon(DesignerIconsFactory.RUN), "Run model");
+    private ProfileAction profileAction = new ProfileAction("Profile", "Run model and report the time spent in each node");
+    private PauseAction pauseAction = new PauseAction("Pause", "Pause or resume the running model");
+    private StopAction stopAction = new StopAction("Stop", "Stop the running model");
     private ClearOutputAction clearOutputAction = new ClearOutputAction("Clear");
     private CopyAllAction copyAllAction = new CopyAllAction("Copy All");
+    private FindAction findAction = new FindAction("Find...");
+    private FindNextAction findNextAction = new FindNextAction("Find Next");
+    private ExportOutputAction exportOutputAction = new ExportOutputAction("Export...");
     /**
      * This status bar label will contain the name of the
      * {@link #currentProcessingModel}
      */
     private LabelStatusBarItem modelNameStatusItem;
-    private JTextArea outputTxt;
+    /**
+     * This status bar item shows the progress of the model that is currently running
+     */
+    private ProgressStatusBarItem runStatusItem;
+    /**
+     * Shows the whole output of the session, which is kept in a temporary file rather than in memory
+     */
+    private OutputView outputView;
+    /**
+     * Everything shown in the {@link #outputView} goes through the console, so output from the run threads is appended
+     * in batches on the event dispatch thread
+     */
+    private OutputConsole console;
+    /**
+     * Text that was last searched for in the output
+     */
+    private String findText;
+    /**
+     * Compiled models are cached until the model changes on the canvas. Since the compiled runtimes are bound to
+     * the stream they were compiled with, every compile and run shares the same {@link #outputStream}.
+     */
+    private PrintStream outputStream;
+    private CompiledRuntimeCache runtimeCache;
+    /**
+     * The run manager runs models off of the event dispatch thread, the timer periodically polls it for progress
+     */
+    private RunManager runManager;
+    /**
+     * The model of the current profile run, the report is created from it when the run completes
+     */
+    private volatile ProcessingModel profiledModel;
+    private final Timer runProgressTimer = new Timer(RUN_PROGRESS_REFRESH_MILLIS, new RunProgressUpdater());
+    /**
+     * Samples the per node metrics of the current run off of the event dispatch thread for the canvas overlay
+     */
+    private final MetricsSampler metricsSampler = new MetricsSampler(new CanvasMetricsListener());
 
     public DesignerFrame(OctopusRepository repository) {
         super("Octopus");
@@ -185,9 +248,18 @@ public class DesignerFrame extends DefaultDockableBarDockableHolder {
         TimeStatusBarItem time = ComponentFactory.createTimeStatusBarItem();
         MemoryStatusBarItem gc = ComponentFactory.createMemoryStatusBarItem();
         modelNameStatusItem = ComponentFactory.createLabelStatusBarItem();
+        runStatusItem = ComponentFactory.createProgressStatusBarItem();
+        runStatusItem.setDefaultStatus("Ready");
+        runStatusItem.setCancelCallback(new ProgressStatusBarItem.CancelCallback() {
+            @Override
+            public void cancelPerformed() {
+                runManager.stop();
+            }
+        });
 
         statusBar.add(time, JideBoxLayout.FLEXIBLE);
         statusBar.add(modelNameStatusItem, JideBoxLayout.VARY);
+        statusBar.add(runStatusItem, JideBoxLayout.FLEXIBLE);
         statusBar.add(gc, JideBoxLayout.FIX);
 
         getContentPane().add(statusBar, BorderLayout.AFTER_LAST_LINE);
@@ -230,6 +302,12 @@ public class DesignerFrame extends DefaultDockableBarDockableHolder {
             }
         };
         canvasPanel.setNodeSelectionListener(nodeSelectionListener);
+        canvasPanel.setModelChangeListener(new ModelChangeListener() {
+            @Override
+            public void modelChanged(ProcessingModel model) {
+                runtimeCache.invalidate(model.getModelName());
+            }
+        });
 
         DockableFrame propertiesFrame = ComponentFactory.createDockableFrameWithName(PROPERTIES_KEY);
         propertiesFrame.getContext().setInitMode(DockContext.STATE_FRAMEDOCKED);
@@ -246,23 +324,36 @@ public class DesignerFrame extends DefaultDockableBarDockableHolder {
         logFrame.getContext().setInitMode(DockContext.STATE_FRAMEDOCKED);
         logFrame.getContext().setInitSide(DockContext.DOCK_SIDE_SOUTH);
 
-        outputTxt = new JTextArea();
-        outputTxt.setEditable(false);
+        try {
+            outputView = new OutputView(OutputLog.createTemporary());
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create the temporary files for the output", e);
+        }
 
         final JidePopupMenu popupMenu = new JidePopupMenu();
         popupMenu.add(clearOutputAction);
         popupMenu.add(copyAllAction);
+        popupMenu.add(findAction);
+        popupMenu.add(findNextAction);
+        popupMenu.add(exportOutputAction);
 
-        outputTxt.addMouseListener(new MouseAdapter() {
+        outputView.addMouseListener(new MouseAdapter() {
             @Override
             public void mouseReleased(MouseEvent e) {
                 if (e.isPopupTrigger()) {
-                    popupMenu.show(outputTxt, e.getX(), e.getY());
+                    popupMenu.show(outputView, e.getX(), e.getY());
                 }
             }
         });
 
-        logFrame.add(createScrollPaneForComponent(outputTxt));
+        logFrame.add(createScrollPaneForComponent(outputView));
+
+        console = new OutputConsole(outputView);
+        console.start();
+
+        outputStream = new PrintStream(console.newOutputStream());
+        runtimeCache = new CompiledRuntimeCache(outputStream, outputStream);
+        runManager = new RunManager(new RunStatusListener(), runtimeCache);
 
         return logFrame;
     }
@@ -316,6 +407,11 @@ public class DesignerFrame extends DefaultDockableBarDockableHolder {
         runBtn.setText(null);
         toolBar.add(runBtn);
 
+        // there are no icons for profile, pause and stop, so these keep their text
+        toolBar.add(ComponentFactory.createToolbarButtonWithAction(profileAction));
+        toolBar.add(ComponentFactory.createToolbarButtonWithAction(pauseAction));
+        toolBar.add(ComponentFactory.createToolbarButtonWithAction(stopAction));
+
         return toolBar;
     }
 
@@ -406,6 +502,15 @@ public class DesignerFrame extends DefaultDockableBarDockableHolder {
         return viewMenu;
     }
 
+    /**
+     * Sets the provider of the memory of the processors in every model compiled from now on.
+     *
+     * @param memoryProvider to use
+     */
+    public void setMemoryProvider(MemoryProvider memoryProvider) {
+        runtimeCache.setMemoryProvider(memoryProvider);
+    }
+
     /**
      * This method will load all the initial data from the {@link #repository}.
      * This includes all the template {@link Processor}s,
@@ -424,6 +529,9 @@ public class DesignerFrame extends DefaultDockableBarDockableHolder {
     }
 
     private void setCurrentProcessingModel(ProcessingModel currentProcessingModel) {
+        if (this.currentProcessingModel != null) {
+            runtimeCache.invalidate(this.currentProcessingModel.getModelName());
+        }
         this.currentProcessingModel = currentProcessingModel;
         modelNameStatusItem.setText(currentProcessingModel.getModelName());
 
@@ -436,6 +544,12 @@ public class DesignerFrame extends DefaultDockableBarDockableHolder {
      * frame
      */
     private void shutdown() {
+        runProgressTimer.stop();
+        metricsSampler.stop();
+        console.stop();
+        outputView.getLog().close();
+        runManager.stop();
+
         DockingManager dockingManager = getDockingManager();
 
         if (dockingManager != null) {
@@ -532,11 +646,16 @@ public class DesignerFrame extends DefaultDockableBarDockableHolder {
         @Override
         public void actionPerformed(ActionEvent e) {
             if (currentProcessingModel != null) {
-                org.lisapark.octopus.core.compiler.Compiler compiler = new EsperCompiler();
                 try {
-                    compiler.compile(currentProcessingModel);
-
-                    outputTxt.append(currentProcessingModel.getModelName() + " compiled successfully.\n");
+                    boolean unchanged = runtimeCache.contains(currentProcessingModel);
+                    runtimeCache.compile(currentProcessingModel);
+
+                    if (unchanged) {
+                        console.append(currentProcessingModel.getModelName() + " is unchanged since it was last compiled.\n");
+                    } else {
+                        console.append(String.format("%s compiled successfully, %d nodes recompiled.%n",
+                                currentProcessingModel.getModelName(), runtimeCache.getLastRecompiledNodeCount()));
+                    }
                     
                     String modelJson        = currentProcessingModel.toJson();                    
                     JsonParser parser       = new JsonParser();
@@ -545,10 +664,10 @@ public class DesignerFrame extends DefaultDockableBarDockableHolder {
                     Gson gson   = new GsonBuilder().setPrettyPrinting().create();
                     String json = gson.toJson(jsonElement);
                     
-                    outputTxt.append("Model JSON:\n" + json);
+                    console.append("Model JSON:\n" + json);
 
                 } catch (ValidationException ex) {
-                    outputTxt.append(ex.getLocalizedMessage() + "\n");
+                    console.append(ex.getLocalizedMessage() + "\n");
                 }
             }
         }
@@ -563,25 +682,164 @@ public class DesignerFrame extends DefaultDockableBarDockableHolder {
 
         @Override
         public void actionPerformed(ActionEvent e) {
-            if (currentProcessingModel != null) {
-                TextAreaOutStreamAdaptor writer = new TextAreaOutStreamAdaptor(outputTxt);
+            if (currentProcessingModel != null && !runManager.isActive()) {
+                canvasPanel.clearNodeStatistics();
+                console.append("Running model '" + currentProcessingModel.getModelName() + "'. Please wait...\n");
+                profiledModel = null;
+                runManager.start(currentProcessingModel);
+            }
+        }
+    }
 
-                org.lisapark.octopus.core.compiler.Compiler compiler = new EsperCompiler();
-                PrintStream stream = new PrintStream(writer);
-                compiler.setStandardOut(stream);
-                compiler.setStandardError(stream);
-                try {
-                    outputTxt.append("Running model '" + currentProcessingModel.getModelName() + "'. Please wait...\n");
-                    ProcessingRuntime runtime = compiler.compile(currentProcessingModel);
-                    // todo do we need a stop button and lock out ui?
-                    runtime.start();
-                    runtime.shutdown();
-
-                    outputTxt.append("Model '" + currentProcessingModel.getModelName() + "' completed running.\n");
-                } catch (ValidationException e1) {
-                    outputTxt.append(e1.getLocalizedMessage() + "\n");
-                }
+    private class ProfileAction extends AbstractAction {
+
+        private ProfileAction(String text, String description) {
+            super(text);
+            putValue(SHORT_DESCRIPTION, description);
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            if (currentProcessingModel != null && !runManager.isActive()) {
+                canvasPanel.clearNodeStatistics();
+                console.append("Profiling model '" + currentProcessingModel.getModelName() + "'. Please wait...\n");
+                profiledModel = currentProcessingModel;
+                runManager.start(currentProcessingModel, true);
+            }
+        }
+    }
+
+    private class PauseAction extends AbstractAction {
+
+        private PauseAction(String text, String description) {
+            super(text);
+            putValue(SHORT_DESCRIPTION, description);
+            setEnabled(false);
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            if (runManager.getState() == RunState.PAUSED) {
+                runManager.resume();
+            } else {
+                runManager.pause();
+            }
+        }
+    }
+
+    private class StopAction extends AbstractAction {
+
+        private StopAction(String text, String description) {
+            super(text);
+            putValue(SHORT_DESCRIPTION, description);
+            setEnabled(false);
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            runManager.stop();
+        }
+    }
+
+    /**
+     * This listener receives the notifications from the {@link #runManager} on the worker thread and updates the
+     * ui on the event dispatch thread.
+     */
+    private class RunStatusListener implements RunListener {
+
+        @Override
+        public void stateChanged(final RunState newState) {
+            if (newState == RunState.RUNNING) {
+                metricsSampler.start(runManager.getModelMetrics());
+            } else if (newState == RunState.IDLE) {
+                metricsSampler.stop();
             }
+
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    boolean active = newState != RunState.IDLE;
+
+                    runAction.setEnabled(!active);
+                    profileAction.setEnabled(!active);
+                    compileAction.setEnabled(!active);
+                    pauseAction.setEnabled(newState == RunState.RUNNING || newState == RunState.PAUSED);
+                    pauseAction.putValue(Action.NAME, newState == RunState.PAUSED ? "Resume" : "Pause");
+                    stopAction.setEnabled(active && newState != RunState.STOPPING);
+
+                    if (active) {
+                        runStatusItem.setIndeterminate(newState != RunState.PAUSED);
+                        runStatusItem.setProgressStatus(newState.toString());
+                        runStatusItem.showProgress();
+                        runProgressTimer.start();
+                    } else {
+                        runProgressTimer.stop();
+                        runStatusItem.showStatus();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void runCompleted(final String modelName, final long eventCount, final long elapsedMillis,
+                                 final boolean stopped) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    String verb = stopped ? "was stopped" : "completed running";
+                    console.append(String.format("Model '%s' %s. %d events in %d ms.%n", modelName, verb, eventCount,
+                            elapsedMillis));
+
+                    ProcessingModel model = profiledModel;
+                    if (model != null && runManager.isProfiling()) {
+                        ProfileReport report = ProfileReport.createReport(model, runManager.getModelMetrics());
+                        report.printTo(outputStream);
+                        ProfileDialog.showProfile(DesignerFrame.this, report);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void runFailed(final String modelName, final Throwable cause) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    console.append(String.format("Model '%s' failed: %s%n", modelName, cause.getLocalizedMessage()));
+                }
+            });
+        }
+    }
+
+    /**
+     * Receives the samples of the {@link #metricsSampler} and shows them on the canvas
+     */
+    private class CanvasMetricsListener implements MetricsListener {
+
+        @Override
+        public void metricsSampled(final Map<UUID, NodeStatistics> statisticsByNodeId) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    canvasPanel.showNodeStatistics(statisticsByNodeId);
+                }
+            });
+        }
+    }
+
+    /**
+     * Called by the {@link #runProgressTimer} on the event dispatch thread to show the progress of the current run
+     */
+    private class RunProgressUpdater implements ActionListener {
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            RunState state = runManager.getState();
+            long eventCount = runManager.getEventCount();
+            long elapsedMillis = runManager.getElapsedMillis();
+            long eventsPerSecond = elapsedMillis > 0 ? (eventCount * 1000) / elapsedMillis : 0;
+
+            runStatusItem.setProgressStatus(String.format("%s: %,d events (%,d/sec)", state, eventCount, eventsPerSecond));
         }
     }
 
@@ -593,7 +851,7 @@ public class DesignerFrame extends DefaultDockableBarDockableHolder {
 
         @Override
         public void actionPerformed(ActionEvent e) {
-            outputTxt.setText(null);
+            console.clear();
         }
     }
 
@@ -605,18 +863,125 @@ public class DesignerFrame extends DefaultDockableBarDockableHolder {
 
         @Override
         public void actionPerformed(ActionEvent e) {
-            Document document = outputTxt.getDocument();
-            try {
-                String srcData = document.getText(0, document.getLength());
-                StringSelection contents = new StringSelection(srcData);
-                Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
-                clipboard.setContents(contents, null);
-            } catch (BadLocationException ex) {
-                // should never happen
+            // the text is only read from the output log when it is pasted
+            Transferable contents = outputView.getAll();
+            if (contents != null) {
+                Toolkit.getDefaultToolkit().getSystemClipboard().setContents(contents, null);
+            }
+        }
+    }
+
+    private class FindAction extends AbstractAction {
+
+        private FindAction(String text) {
+            super(text, null);
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            String text = (String) JOptionPane.showInputDialog(DesignerFrame.this, "Find:", "Find",
+                    JOptionPane.PLAIN_MESSAGE, null, null, findText);
+
+            if (text != null && text.length() > 0) {
+                findText = text;
+                findNextAction.actionPerformed(e);
             }
         }
     }
 
+    /**
+     * Searches the output log for the {@link #findText} after the selected line, wrapping around at the end. The search
+     * goes through the whole log, so it runs on a background thread.
+     */
+    private class FindNextAction extends AbstractAction {
+
+        private FindNextAction(String text) {
+            super(text, null);
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            if (findText == null) {
+                findAction.actionPerformed(e);
+                return;
+            }
+
+            final String text = findText;
+            final int fromLine = outputView.getSelectionEnd() + 1;
+            final OutputLog log = outputView.getLog();
+
+            new SwingWorker<Integer, Void>() {
+                @Override
+                protected Integer doInBackground() {
+                    int line = log.find(text, fromLine);
+                    return line < 0 && fromLine > 0 ? log.find(text, 0) : line;
+                }
+
+                @Override
+                protected void done() {
+                    try {
+                        int line = get();
+                        if (line >= 0 && line < log.getLineCount()) {
+                            outputView.selectLine(line);
+                        } else {
+                            Toolkit.getDefaultToolkit().beep();
+                        }
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    } catch (ExecutionException ex) {
+                        LOG.error("Problem searching the output", ex.getCause());
+                    }
+                }
+            }.execute();
+        }
+    }
+
+    /**
+     * Writes the whole output to a file on a background thread, streaming it from the output log.
+     */
+    private class ExportOutputAction extends AbstractAction {
+
+        private ExportOutputAction(String text) {
+            super(text, null);
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setSelectedFile(new File("output.txt"));
+            if (chooser.showSaveDialog(DesignerFrame.this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+
+            final File file = chooser.getSelectedFile();
+            final OutputLog log = outputView.getLog();
+
+            new SwingWorker<Void, Void>() {
+                @Override
+                protected Void doInBackground() throws IOException {
+                    OutputStream out = new FileOutputStream(file);
+                    try {
+                        log.writeTo(out);
+                    } finally {
+                        out.close();
+                    }
+                    return null;
+                }
+
+                @Override
+                protected void done() {
+                    try {
+                        get();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    } catch (ExecutionException ex) {
+                        ErrorDialog.showErrorDialog(DesignerFrame.this, ex.getCause(), "Problem exporting the output");
+                    }
+                }
+            }.execute();
+        }
+    }
+
     /**
      * This listener will respond to the user closing the frame. It will save
      * the layout data for the
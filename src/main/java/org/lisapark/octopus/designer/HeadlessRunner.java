@@ -0,0 +1,223 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.designer;
+
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.ValidationException;
+import org.lisapark.octopus.core.compiler.Compiler;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.runtime.async.AsyncCompiledSink;
+import org.lisapark.octopus.core.runtime.async.AsyncSinks;
+import org.lisapark.octopus.core.runtime.checkpoint.Checkpointer;
+import org.lisapark.octopus.core.runtime.replay.EventRecorder;
+import org.lisapark.octopus.core.runtime.control.RunControl;
+import org.lisapark.octopus.repository.OctopusRepository;
+import org.lisapark.octopus.repository.RepositoryException;
+import org.lisapark.octopus.util.jdbc.ConnectionPool;
+import org.lisapark.octopus.util.jdbc.ConnectionPools;
+import org.lisapark.octopus.util.jdbc.PoolMetrics;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Entry point for running a saved {@link ProcessingModel} to completion without building the designer ui. This is
+ * meant for scheduled runs on servers without a display, so nothing in here may touch AWT or Swing.
+ * <p/>
+ * Usage: <code>HeadlessRunner propertyFile modelName</code>
+ */
+public class HeadlessRunner {
+
+    public static void main(String[] args) {
+        // make sure that nothing we load along the way tries to connect to a display
+        System.setProperty("java.awt.headless", "true");
+
+        if (args.length != 2) {
+            System.err.printf("Usage: HeadlessRunner propertyFile modelName\n");
+            System.exit(-1);
+        }
+
+        String modelName = args[1];
+
+        // every failure has to end in the System.exit of the finally block, otherwise the non-daemon threads keep
+        // the vm alive
+        int exitCode = -1;
+        ConnectionPools connectionPools = null;
+        AsyncSinks asyncSinks = null;
+        try {
+            Properties properties = OctopusProperties.parseProperties(args[0]);
+            OctopusRepository repository = OctopusProperties.openRepository(properties, args[0]);
+            connectionPools = OctopusProperties.createConnectionPools(properties);
+            asyncSinks = OctopusProperties.createAsyncSinks(properties);
+
+            ProcessingModel model = findModelByName(repository, modelName);
+
+            if (model == null) {
+                System.err.printf("Could not find model '%s' in the repository\n", modelName);
+            } else {
+                model = OctopusProperties.replayingCopyOf(properties, model);
+                model = OctopusProperties.pollingCopyOf(properties, model, connectionPools);
+                model = OctopusProperties.streamingCopyOf(properties, model, connectionPools);
+                if (asyncSinks != null) {
+                    model = asyncSinks.asyncCopyOf(model);
+                }
+
+                Checkpointer checkpointer = OctopusProperties.createCheckpointer(properties, model);
+                Compiler compiler = OctopusProperties.createCompiler(properties, model, checkpointer);
+                compiler.setMemoryProvider(OctopusProperties.createMemoryProvider(properties));
+
+                runModel(model, compiler, checkpointer, OctopusProperties.createEventRecorder(properties));
+                if (asyncSinks != null) {
+                    // the runtime is done, but the sinks may still have queued events
+                    asyncSinks.close();
+                    printSinkMetrics(asyncSinks);
+                }
+                if (connectionPools != null) {
+                    printPoolMetrics(connectionPools);
+                }
+                exitCode = 0;
+            }
+        } catch (IOException e) {
+            System.err.printf("Problem running model '%s': %s\n", modelName, e.getLocalizedMessage());
+
+        } catch (RepositoryException e) {
+            System.err.printf("Problem loading model '%s' from the repository: %s\n", modelName, e.getLocalizedMessage());
+
+        } catch (ValidationException e) {
+            System.err.printf("Model '%s' failed to compile: %s\n", modelName, e.getLocalizedMessage());
+
+        } catch (Throwable e) {
+            // also errors, like a driver class that cannot be loaded or running out of memory
+            System.err.printf("Model '%s' failed: %s\n", modelName, e);
+            e.printStackTrace();
+
+        } finally {
+            try {
+                close(asyncSinks, connectionPools);
+            } finally {
+                // the repository may have started non-daemon threads, so we exit explicitly
+                System.exit(exitCode);
+            }
+        }
+    }
+
+    private static void close(AsyncSinks asyncSinks, ConnectionPools connectionPools) {
+        try {
+            if (asyncSinks != null) {
+                asyncSinks.close();
+            }
+        } catch (RuntimeException e) {
+            System.err.printf("Could not close the sinks: %s\n", e);
+        }
+
+        try {
+            if (connectionPools != null) {
+                connectionPools.close();
+            }
+        } catch (RuntimeException e) {
+            System.err.printf("Could not close the connection pools: %s\n", e);
+        }
+    }
+
+    /**
+     * Returns the model with exactly the specified name. The repository does a like search, so if there is no exact
+     * match, but only a single result, that model will be returned.
+     */
+    static ProcessingModel findModelByName(OctopusRepository repository, String modelName) throws RepositoryException {
+        List<ProcessingModel> models = repository.getProcessingModelsByName(modelName);
+
+        for (ProcessingModel model : models) {
+            if (modelName.equals(model.getModelName())) {
+                return model;
+            }
+        }
+
+        return models.size() == 1 ? models.get(0) : null;
+    }
+
+    /**
+     * Runs the model to completion. If there is a checkpointer, the memory of the processors is restored from its
+     * newest snapshot before the run, snapshots are taken while the model runs and a last one once it is done. If
+     * there is a recorder, the events of the sources are recorded.
+     */
+    static void runModel(ProcessingModel model, Compiler compiler, Checkpointer checkpointer, EventRecorder recorder)
+            throws ValidationException, IOException {
+        compiler.setStandardOut(System.out);
+        compiler.setStandardError(System.err);
+
+        RunControl control = new RunControl();
+        ProcessingModel modelToCompile = control.controlledCopyOf(model);
+        if (recorder != null) {
+            modelToCompile = recorder.recordingCopyOf(modelToCompile);
+        }
+        if (checkpointer != null) {
+            checkpointer.restoreNewestSnapshot();
+            modelToCompile = checkpointer.checkpointedCopyOf(modelToCompile);
+        }
+
+        long compileStart = System.nanoTime();
+        ProcessingRuntime runtime = compiler.compile(modelToCompile);
+        long compileMillis = (System.nanoTime() - compileStart) / 1000000;
+
+        long runStart = System.nanoTime();
+        runtime.start();
+        if (checkpointer != null) {
+            checkpointer.start();
+        }
+        // shutdown will wait for all of the sources to be drained
+        runtime.shutdown();
+        long runMillis = (System.nanoTime() - runStart) / 1000000;
+
+        if (recorder != null) {
+            recorder.close();
+        }
+
+        if (checkpointer != null) {
+            checkpointer.stop();
+            try {
+                checkpointer.takeSnapshot();
+            } catch (IOException e) {
+                System.err.printf("Could not write the last snapshot of model '%s': %s\n", model.getModelName(), e.getLocalizedMessage());
+            }
+        }
+
+        long eventCount = control.getEventCount();
+        double eventsPerSecond = runMillis > 0 ? (eventCount * 1000.0) / runMillis : 0;
+
+        System.out.printf("Model '%s' completed running.\n", model.getModelName());
+        System.out.printf("  compile time: %,d ms\n", compileMillis);
+        System.out.printf("  elapsed time: %,d ms\n", runMillis);
+        System.out.printf("  events      : %,d\n", eventCount);
+        System.out.printf("  throughput  : %,.1f events/sec\n", eventsPerSecond);
+    }
+
+    static void printSinkMetrics(AsyncSinks asyncSinks) {
+        for (AsyncCompiledSink sink : asyncSinks.getCompiledSinks()) {
+            System.out.printf("  sink %s\n", sink.getName());
+            System.out.printf("    events    : %,d in %,d batches, %,d failed\n", sink.getEventCount(), sink.getBatchCount(),
+                    sink.getFailedCount());
+            System.out.printf("    overflow  : %,d dropped, %,d spilled\n", sink.getDroppedCount(), sink.getSpilledCount());
+        }
+    }
+
+    static void printPoolMetrics(ConnectionPools connectionPools) {
+        for (ConnectionPool pool : connectionPools.getPools()) {
+            PoolMetrics metrics = pool.getMetrics();
+
+            System.out.printf("  connections to %s\n", pool.getName());
+            System.out.printf("    opened    : %,d (%,d failed validation)\n", metrics.getConnectionsOpened(), metrics.getValidationFailures());
+            System.out.printf("    borrowed  : %,d (%,d timed out, %,d ms waiting)\n", metrics.getConnectionsBorrowed(),
+                    metrics.getBorrowTimeouts(), metrics.getWaitNanos() / 1000000);
+            System.out.printf("    statements: %,d cached, %,d prepared\n", metrics.getStatementCacheHits(), metrics.getStatementCacheMisses());
+        }
+    }
+}
@@ -0,0 +1,466 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.designer;
+
+import com.google.common.collect.Maps;
+import org.apache.commons.io.IOUtils;
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.compiler.Compiler;
+import org.lisapark.octopus.core.compiler.dataflow.DataflowCompiler;
+import org.lisapark.octopus.core.compiler.incremental.IncrementalEsperCompiler;
+import org.lisapark.octopus.core.compiler.incremental.PartitionedEsperCompiler;
+import org.lisapark.octopus.core.event.Attribute;
+import org.lisapark.octopus.core.memory.MemoryProvider;
+import org.lisapark.octopus.core.memory.heap.HeapPrimitiveMemoryProvider;
+import org.lisapark.octopus.core.memory.offheap.OffHeapMemoryProvider;
+import org.lisapark.octopus.core.runtime.async.AsyncSinks;
+import org.lisapark.octopus.core.runtime.async.Backpressure;
+import org.lisapark.octopus.core.runtime.checkpoint.Checkpointer;
+import org.lisapark.octopus.core.runtime.replay.EventRecorder;
+import org.lisapark.octopus.core.runtime.replay.ReplaySource;
+import org.lisapark.octopus.core.source.external.ExternalSource;
+import org.lisapark.octopus.core.source.jdbc.PollingSqlQuerySource;
+import org.lisapark.octopus.core.source.jdbc.StreamingSqlQuerySource;
+import org.lisapark.octopus.repository.OctopusRepository;
+import org.lisapark.octopus.repository.db4o.OctopusDb4oRepository;
+import org.lisapark.octopus.util.jdbc.ConnectionPools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Helper for reading the Octopus property file and opening the {@link OctopusRepository} it describes. This class
+ * is shared between the {@link DesignerApplication} and the {@link HeadlessRunner}, so it must not reference any
+ * AWT or Swing classes.
+ */
+class OctopusProperties {
+
+    static final String REPOSITORY_FILE = "octopus.repository.file";
+    static final String SERVER_PORT = "db4o.server.port";
+    static final String SERVER_UID = "db4o.server.uid";
+    static final String SERVER_PSW = "db4o.server.psw";
+    /**
+     * Either heap, the default, or offheap for keeping the memory of processors outside of the java heap
+     */
+    static final String MEMORY_PROVIDER = "octopus.memory.provider";
+    /**
+     * Optional directory for memory mapped files when the offheap memory provider is used, without it direct
+     * buffers are used
+     */
+    static final String MEMORY_DIRECTORY = "octopus.memory.directory";
+    /**
+     * Number of engine replicas a model is run on, more than one partitions the events of the sources over them
+     */
+    static final String PARTITION_COUNT = "octopus.partition.count";
+    /**
+     * Prefix of the properties that name the partition key attribute of a source, the rest of the property name is
+     * the name of the source
+     */
+    static final String PARTITION_KEY_PREFIX = "octopus.partition.key.";
+    /**
+     * Either esper, the default, or dataflow for running models without the Esper engine
+     */
+    static final String COMPILER = "octopus.compiler";
+    /**
+     * True to keep the aggregates of windowed processors up to date incrementally instead of recomputing them over
+     * the window for every event, which is faster for long windows but can change the results in the last bits
+     */
+    static final String INCREMENTAL_AGGREGATES = "octopus.processor.incremental";
+    /**
+     * Optional directory the memory of processors is saved to during a headless run, and restored from when the
+     * model is run again
+     */
+    static final String CHECKPOINT_DIRECTORY = "octopus.checkpoint.directory";
+    /**
+     * Seconds between two snapshots of the memory of the processors, defaults to 60
+     */
+    static final String CHECKPOINT_INTERVAL = "octopus.checkpoint.interval";
+    /**
+     * Optional directory the events of the sources are recorded to during a headless run
+     */
+    static final String RECORD_DIRECTORY = "octopus.record.directory";
+    /**
+     * Optional directory with recorded events that a headless run replays in place of the live sources
+     */
+    static final String REPLAY_DIRECTORY = "octopus.replay.directory";
+    /**
+     * Multiple of the recorded pace the events are replayed at, 0, the default, replays as fast as possible
+     */
+    static final String REPLAY_SPEED = "octopus.replay.speed";
+    /**
+     * Number of rows the sql query sources fetch per round trip, setting it makes them stream their rows
+     */
+    static final String SQL_FETCH_SIZE = "octopus.sql.fetch.size";
+    /**
+     * Number of parallel readers of a sql query source that has a key column, defaults to 1
+     */
+    static final String SQL_READERS = "octopus.sql.readers";
+    /**
+     * Prefix of the properties that name the numeric key column a sql query source is split on, the rest of the
+     * property name is the name of the source
+     */
+    static final String SQL_KEY_PREFIX = "octopus.sql.key.";
+    /**
+     * Prefix of the properties that name the watermark column of a sql query source, which makes the source poll
+     * for new rows until the run is stopped. The rest of the property name is the name of the source
+     */
+    static final String SQL_WATERMARK_PREFIX = "octopus.sql.watermark.";
+    /**
+     * Directory the watermarks of the polling sql query sources are kept in, defaults to watermarks
+     */
+    static final String SQL_POLL_DIRECTORY = "octopus.sql.poll.directory";
+    /**
+     * Maximum number of rows read by a single poll
+     */
+    static final String SQL_POLL_LIMIT = "octopus.sql.poll.limit";
+    /**
+     * Shortest and longest number of milliseconds between two polls
+     */
+    static final String SQL_POLL_MIN_INTERVAL = "octopus.sql.poll.interval.min";
+    static final String SQL_POLL_MAX_INTERVAL = "octopus.sql.poll.interval.max";
+    /**
+     * Maximum number of connections per database url and user, setting it makes the sql query sources share pooled
+     * connections
+     */
+    static final String SQL_POOL_SIZE = "octopus.sql.pool.size";
+    /**
+     * Number of prepared statements cached per pooled connection, defaults to 32
+     */
+    static final String SQL_POOL_STATEMENTS = "octopus.sql.pool.statements";
+    /**
+     * Largest number of events handed to a sink at once, setting it runs the sinks on threads of their own
+     */
+    static final String SINK_BATCH_SIZE = "octopus.sink.batch.size";
+    /**
+     * Milliseconds the first event of a batch waits for more events before the batch is handed to the sink
+     */
+    static final String SINK_BATCH_DELAY = "octopus.sink.batch.delay";
+    /**
+     * Number of events queued per sink before the backpressure applies
+     */
+    static final String SINK_QUEUE_SIZE = "octopus.sink.queue.size";
+    /**
+     * Either block, the default, drop_oldest or spill
+     */
+    static final String SINK_BACKPRESSURE = "octopus.sink.backpressure";
+    /**
+     * Directory the events of the sinks are spilled to while their queues are full, only used with spill
+     */
+    static final String SINK_SPILL_DIRECTORY = "octopus.sink.spill.directory";
+
+    private static final String OFF_HEAP = "offheap";
+    private static final String DATAFLOW = "dataflow";
+    private static final long DEFAULT_CHECKPOINT_INTERVAL_SECONDS = 60;
+    private static final String DEFAULT_POLL_DIRECTORY = "watermarks";
+    private static final String DEFAULT_SPILL_DIRECTORY = "spill";
+
+    private OctopusProperties() {
+    }
+
+    static Properties parseProperties(String propertyFileName) throws IOException {
+        InputStream fin = null;
+        Properties properties = null;
+        try {
+            fin = new FileInputStream(new File(propertyFileName));
+
+            properties = new Properties();
+            properties.load(fin);
+
+        } finally {
+            IOUtils.closeQuietly(fin);
+        }
+
+        return properties;
+    }
+
+    /**
+     * Opens the repository described by the specified properties. If the properties are missing the
+     * {@link #REPOSITORY_FILE} a message is printed to standard error and the VM exits.
+     *
+     * @param properties       to read the repository settings from
+     * @param propertyFileName name of the property file, used for the error message
+     * @return opened repository
+     */
+    static OctopusRepository openRepository(Properties properties, String propertyFileName) {
+        String repositoryFile = properties.getProperty(REPOSITORY_FILE);
+        if (repositoryFile == null || repositoryFile.length() == 0) {
+            System.err.printf("The property file %s is missing the %s property", propertyFileName, REPOSITORY_FILE);
+            System.exit(-1);
+        }
+
+        Integer port = Integer.parseInt(properties.getProperty(SERVER_PORT));
+        String uid = properties.getProperty(SERVER_UID);
+        String psw = properties.getProperty(SERVER_PSW);
+
+        return new OctopusDb4oRepository(repositoryFile, port, uid, psw);
+    }
+
+    /**
+     * Creates the {@link MemoryProvider} described by the {@link #MEMORY_PROVIDER} and {@link #MEMORY_DIRECTORY}
+     * properties.
+     *
+     * @param properties to read the memory settings from
+     * @return memory provider for compiling models
+     */
+    static MemoryProvider createMemoryProvider(Properties properties) {
+        String provider = properties.getProperty(MEMORY_PROVIDER);
+
+        if (OFF_HEAP.equalsIgnoreCase(provider)) {
+            String directory = properties.getProperty(MEMORY_DIRECTORY);
+
+            return directory == null || directory.length() == 0 ?
+                    new OffHeapMemoryProvider() : new OffHeapMemoryProvider(new File(directory));
+        }
+
+        return new HeapPrimitiveMemoryProvider();
+    }
+
+    /**
+     * Creates the {@link Checkpointer} for the specified model, or returns null if {@link #CHECKPOINT_DIRECTORY} is
+     * not set.
+     *
+     * @param properties to read the checkpoint settings from
+     * @param model      that will be run
+     * @return checkpointer, or null
+     */
+    static Checkpointer createCheckpointer(Properties properties, ProcessingModel model) {
+        String directory = properties.getProperty(CHECKPOINT_DIRECTORY);
+        if (directory == null || directory.length() == 0) {
+            return null;
+        }
+
+        String interval = properties.getProperty(CHECKPOINT_INTERVAL);
+        long intervalSeconds = interval == null || interval.length() == 0 ?
+                DEFAULT_CHECKPOINT_INTERVAL_SECONDS : Long.parseLong(interval.trim());
+
+        return new Checkpointer(new File(directory), model.getModelName(), intervalSeconds * 1000);
+    }
+
+    /**
+     * Creates the {@link EventRecorder} for a run, or returns null if {@link #RECORD_DIRECTORY} is not set.
+     *
+     * @param properties to read the record settings from
+     * @return recorder, or null
+     */
+    static EventRecorder createEventRecorder(Properties properties) {
+        String directory = properties.getProperty(RECORD_DIRECTORY);
+
+        return directory == null || directory.length() == 0 ? null : new EventRecorder(new File(directory));
+    }
+
+    /**
+     * Returns a copy of the model where the sources that were recorded to the {@link #REPLAY_DIRECTORY} are replaced
+     * by {@link ReplaySource}s, or the model itself if the property is not set.
+     *
+     * @param properties to read the replay settings from
+     * @param model      that will be run
+     * @return model to run
+     */
+    static ProcessingModel replayingCopyOf(Properties properties, ProcessingModel model) {
+        String directory = properties.getProperty(REPLAY_DIRECTORY);
+        if (directory == null || directory.length() == 0) {
+            return model;
+        }
+
+        String speed = properties.getProperty(REPLAY_SPEED);
+        double replaySpeed = speed == null || speed.length() == 0 ?
+                ReplaySource.AS_FAST_AS_POSSIBLE : Double.parseDouble(speed.trim());
+
+        return ReplaySource.replayingCopyOf(model, new File(directory), replaySpeed, Long.MIN_VALUE);
+    }
+
+    /**
+     * Creates the {@link ConnectionPools} shared by the sql query sources of a run, or returns null if
+     * {@link #SQL_POOL_SIZE} is not set.
+     *
+     * @param properties to read the pool settings from
+     * @return pools, or null
+     */
+    static ConnectionPools createConnectionPools(Properties properties) {
+        String size = properties.getProperty(SQL_POOL_SIZE);
+        if (size == null || size.length() == 0) {
+            return null;
+        }
+
+        String statements = properties.getProperty(SQL_POOL_STATEMENTS);
+        int statementCacheSize = statements == null || statements.length() == 0 ?
+                ConnectionPools.DEFAULT_STATEMENT_CACHE_SIZE : Integer.parseInt(statements.trim());
+
+        return new ConnectionPools(Integer.parseInt(size.trim()), statementCacheSize,
+                ConnectionPools.DEFAULT_BORROW_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Returns a copy of the model where the sql query sources are replaced by {@link StreamingSqlQuerySource}s, or the
+     * model itself if none of the sql properties are set and there are no connection pools.
+     *
+     * @param properties      to read the sql settings from
+     * @param model           that will be run
+     * @param connectionPools shared by the sources, or null
+     * @return model to run
+     */
+    static ProcessingModel streamingCopyOf(Properties properties, ProcessingModel model, ConnectionPools connectionPools) {
+        String fetchSize = properties.getProperty(SQL_FETCH_SIZE);
+        String readers = properties.getProperty(SQL_READERS);
+
+        Map<String, String> keyColumns = valuesBySourceName(properties, SQL_KEY_PREFIX);
+
+        if (fetchSize == null && readers == null && keyColumns.isEmpty() && connectionPools == null) {
+            return model;
+        }
+
+        int rowsPerFetch = fetchSize == null || fetchSize.length() == 0 ?
+                StreamingSqlQuerySource.DEFAULT_FETCH_SIZE : Integer.parseInt(fetchSize.trim());
+        int readerCount = readers == null || readers.length() == 0 ? 1 : Integer.parseInt(readers.trim());
+
+        return StreamingSqlQuerySource.streamingCopyOf(model, rowsPerFetch, readerCount, keyColumns, connectionPools);
+    }
+
+    /**
+     * Creates the {@link AsyncSinks} that run the sinks of a model on threads of their own, or returns null if
+     * {@link #SINK_BATCH_SIZE} is not set.
+     *
+     * @param properties to read the sink settings from
+     * @return async sinks, or null
+     */
+    static AsyncSinks createAsyncSinks(Properties properties) {
+        String size = properties.getProperty(SINK_BATCH_SIZE);
+        if (size == null || size.length() == 0) {
+            return null;
+        }
+
+        String delay = properties.getProperty(SINK_BATCH_DELAY);
+        String queueSize = properties.getProperty(SINK_QUEUE_SIZE);
+        String backpressure = properties.getProperty(SINK_BACKPRESSURE);
+
+        long maxDelayMillis = delay == null || delay.length() == 0 ?
+                AsyncSinks.DEFAULT_MAX_DELAY_MILLIS : Long.parseLong(delay.trim());
+        int queueCapacity = queueSize == null || queueSize.length() == 0 ?
+                AsyncSinks.DEFAULT_QUEUE_CAPACITY : Integer.parseInt(queueSize.trim());
+        Backpressure mode = backpressure == null || backpressure.length() == 0 ?
+                Backpressure.BLOCK : Backpressure.valueOf(backpressure.trim().toUpperCase());
+        File spillDirectory = new File(properties.getProperty(SINK_SPILL_DIRECTORY, DEFAULT_SPILL_DIRECTORY).trim());
+
+        return new AsyncSinks(Integer.parseInt(size.trim()), maxDelayMillis, queueCapacity, mode, spillDirectory);
+    }
+
+    /**
+     * Returns a copy of the model where the sql query sources with a {@link #SQL_WATERMARK_PREFIX} property are
+     * replaced by {@link PollingSqlQuerySource}s, or the model itself if there are none.
+     *
+     * @param properties      to read the sql settings from
+     * @param model           that will be run
+     * @param connectionPools shared by the sources, or null
+     * @return model to run
+     */
+    static ProcessingModel pollingCopyOf(Properties properties, ProcessingModel model, ConnectionPools connectionPools) {
+        Map<String, String> watermarkColumns = valuesBySourceName(properties, SQL_WATERMARK_PREFIX);
+        if (watermarkColumns.isEmpty()) {
+            return model;
+        }
+
+        String directory = properties.getProperty(SQL_POLL_DIRECTORY, DEFAULT_POLL_DIRECTORY).trim();
+        String fetchSize = properties.getProperty(SQL_FETCH_SIZE);
+        String limit = properties.getProperty(SQL_POLL_LIMIT);
+        String minInterval = properties.getProperty(SQL_POLL_MIN_INTERVAL);
+        String maxInterval = properties.getProperty(SQL_POLL_MAX_INTERVAL);
+
+        int rowsPerFetch = fetchSize == null || fetchSize.length() == 0 ?
+                StreamingSqlQuerySource.DEFAULT_FETCH_SIZE : Integer.parseInt(fetchSize.trim());
+        int rowLimit = limit == null || limit.length() == 0 ?
+                PollingSqlQuerySource.DEFAULT_ROW_LIMIT : Integer.parseInt(limit.trim());
+        long minMillis = minInterval == null || minInterval.length() == 0 ?
+                PollingSqlQuerySource.DEFAULT_MIN_INTERVAL_MILLIS : Long.parseLong(minInterval.trim());
+        long maxMillis = maxInterval == null || maxInterval.length() == 0 ?
+                Math.max(minMillis, PollingSqlQuerySource.DEFAULT_MAX_INTERVAL_MILLIS) : Long.parseLong(maxInterval.trim());
+
+        return PollingSqlQuerySource.pollingCopyOf(model, watermarkColumns, new File(directory), rowsPerFetch,
+                rowLimit, minMillis, maxMillis, connectionPools);
+    }
+
+    /**
+     * Returns the non empty values of the properties that start with the specified prefix, by the rest of their
+     * name, which is the name of a source.
+     */
+    private static Map<String, String> valuesBySourceName(Properties properties, String prefix) {
+        Map<String, String> values = Maps.newHashMap();
+        for (String propertyName : properties.stringPropertyNames()) {
+            String value = properties.getProperty(propertyName).trim();
+            if (propertyName.startsWith(prefix) && value.length() > 0) {
+                values.put(propertyName.substring(prefix.length()), value);
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Creates the {@link Compiler} for running the specified model. The {@link #COMPILER} property selects the
+     * {@link DataflowCompiler}, which is not partitioned. Otherwise, when {@link #PARTITION_COUNT} is more than one
+     * the compiler partitions the model over that many engines, using the {@link #PARTITION_KEY_PREFIX} properties
+     * of the model's sources as their partition keys.
+     *
+     * <p/>
+     * The memory of the processors is registered with the checkpointer, if there is one. Partitioned runs keep a
+     * memory per partition for every processor, so they cannot be checkpointed.
+     *
+     * @param properties   to read the partition settings from
+     * @param model        that will be compiled
+     * @param checkpointer to register the memory of the processors with, or null
+     * @return compiler for the model
+     */
+    static Compiler createCompiler(Properties properties, ProcessingModel model, Checkpointer checkpointer) {
+        String compilerName = properties.getProperty(COMPILER);
+        boolean incrementalAggregates =
+                Boolean.parseBoolean(properties.getProperty(INCREMENTAL_AGGREGATES, "false").trim());
+        if (compilerName != null && DATAFLOW.equalsIgnoreCase(compilerName.trim())) {
+            DataflowCompiler compiler = new DataflowCompiler();
+            compiler.setCheckpointer(checkpointer);
+            compiler.setIncrementalAggregates(incrementalAggregates);
+            return compiler;
+        }
+
+        String partitionCount = properties.getProperty(PARTITION_COUNT);
+        int numberOfPartitions = partitionCount == null || partitionCount.length() == 0 ?
+                1 : Integer.parseInt(partitionCount.trim());
+
+        if (numberOfPartitions <= 1) {
+            IncrementalEsperCompiler compiler = new IncrementalEsperCompiler();
+            compiler.setCheckpointer(checkpointer);
+            compiler.setIncrementalAggregates(incrementalAggregates);
+            return compiler;
+        }
+
+        if (checkpointer != null) {
+            throw new IllegalArgumentException("Partitioned runs cannot be checkpointed");
+        }
+
+        PartitionedEsperCompiler compiler = new PartitionedEsperCompiler(numberOfPartitions);
+        for (ExternalSource source : model.getExternalSources()) {
+            String attributeName = properties.getProperty(PARTITION_KEY_PREFIX + source.getName());
+
+            if (attributeName != null && attributeName.length() > 0) {
+                Attribute attribute = source.getOutput().getAttributeByName(attributeName.trim());
+                if (attribute == null) {
+                    throw new IllegalArgumentException(String.format("Source %s does not have an attribute named %s",
+                            source.getName(), attributeName));
+                }
+                compiler.setPartitionKey(source, attribute);
+            }
+        }
+
+        return compiler;
+    }
+}
@@ -14,6 +14,7 @@ import com.google.common.base.Objects;
 import com.google.common.collect.Sets;
 import org.lisapark.octopus.core.Node;
 import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.designer.run.NodeStatistics;
 import org.lisapark.octopus.swing.LayoutConstants;
 import org.netbeans.api.visual.model.ObjectSceneEvent;
 import org.netbeans.api.visual.model.ObjectSceneEventType;
@@ -22,7 +23,9 @@ import org.netbeans.api.visual.model.ObjectState;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
@@ -34,6 +37,7 @@ public class CanvasPanel extends JPanel {
     private ProcessingScene scene;
     private JComponent sceneView;
     private ObjectSceneListenerProxy listenerProxy = new ObjectSceneListenerProxy();
+    private ProcessingModel model;
 
     public CanvasPanel() {
         super(new BorderLayout(LayoutConstants.COMPONENT_HORIZONTAL_GAP, LayoutConstants.COMPONENT_VERTICAL_GAP));
@@ -50,8 +54,13 @@ public class CanvasPanel extends JPanel {
 
     }
 
+    public void setModelChangeListener(ModelChangeListener modelChangeListener) {
+        listenerProxy.setModelChangeListener(modelChangeListener);
+    }
+
     public void setProcessingModel(ProcessingModel model) {
         checkArgument(model != null, "model cannot be null");
+        this.model = model;
 
         if (this.scene != null) {
             remove(sceneView);
@@ -66,24 +75,53 @@ public class CanvasPanel extends JPanel {
         add(sceneView);
     }
 
+    /**
+     * Shows the statistics of a running model on the canvas, see {@link ProcessingScene#showNodeStatistics(Map)}.
+     *
+     * @param statisticsByNodeId statistics of the nodes to update
+     */
+    public void showNodeStatistics(Map<UUID, NodeStatistics> statisticsByNodeId) {
+        if (scene != null) {
+            scene.showNodeStatistics(statisticsByNodeId);
+        }
+    }
+
+    public void clearNodeStatistics() {
+        if (scene != null) {
+            scene.clearNodeStatistics();
+        }
+    }
+
     private class ObjectSceneListenerProxy implements ObjectSceneListener {
         private NodeSelectionListener nodeSelectionListener;
+        private ModelChangeListener modelChangeListener;
 
         public void setNodeListener(NodeSelectionListener nodeSelectionListener) {
             this.nodeSelectionListener = nodeSelectionListener;
         }
 
+        public void setModelChangeListener(ModelChangeListener modelChangeListener) {
+            this.modelChangeListener = modelChangeListener;
+        }
+
         @Override
         public void objectAdded(ObjectSceneEvent event, Object addedObject) {
             // if a new node is added to the scene, we want to select it
             if (addedObject instanceof Node) {
                 scene.setSelectedObjects(Sets.newHashSet(addedObject));
             }
+            fireModelChanged();
         }
 
         @Override
         public void objectRemoved(ObjectSceneEvent event, Object removedObject) {
+            fireModelChanged();
+        }
 
+        private void fireModelChanged() {
+            if (modelChangeListener != null && model != null) {
+                modelChangeListener.modelChanged(model);
+            }
         }
 
         @Override
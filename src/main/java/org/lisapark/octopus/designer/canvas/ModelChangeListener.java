@@ -0,0 +1,21 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.designer.canvas;
+
+import org.lisapark.octopus.core.ProcessingModel;
+
+/**
+ * Listener that is notified whenever nodes or connections are added to, or removed from, the model on the canvas.
+ */
+public interface ModelChangeListener {
+
+    void modelChanged(ProcessingModel model);
+}
@@ -11,6 +11,7 @@
 package org.lisapark.octopus.designer.canvas;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.lisapark.octopus.core.Input;
 import org.lisapark.octopus.core.Node;
 import org.lisapark.octopus.core.ProcessingModel;
@@ -26,10 +27,12 @@ import org.lisapark.octopus.designer.canvas.actions.RemoveProcessorAction;
 import org.lisapark.octopus.designer.canvas.providers.NodeMoveProvider;
 import org.lisapark.octopus.designer.canvas.providers.ProcessingSceneConnectProvider;
 import org.lisapark.octopus.designer.dnd.NodeAcceptProvider;
+import org.lisapark.octopus.designer.run.NodeStatistics;
 import org.netbeans.api.visual.action.ActionFactory;
 import org.netbeans.api.visual.action.WidgetAction;
 import org.netbeans.api.visual.anchor.Anchor;
 import org.netbeans.api.visual.anchor.AnchorFactory;
+import org.netbeans.api.visual.border.BorderFactory;
 import org.netbeans.api.visual.graph.GraphPinScene;
 import org.netbeans.api.visual.graph.layout.GridGraphLayout;
 import org.netbeans.api.visual.layout.LayoutFactory;
@@ -40,6 +43,7 @@ import org.netbeans.api.visual.vmd.VMDNodeWidget;
 import org.netbeans.api.visual.vmd.VMDPinWidget;
 import org.netbeans.api.visual.widget.ConnectionWidget;
 import org.netbeans.api.visual.widget.EventProcessingType;
+import org.netbeans.api.visual.widget.LabelWidget;
 import org.netbeans.api.visual.widget.LayerWidget;
 import org.netbeans.api.visual.widget.Widget;
 import org.openide.util.Utilities;
@@ -49,7 +53,9 @@ import org.slf4j.LoggerFactory;
 import java.awt.*;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 
 /**
  * @author dave sinclair(david.sinclair@lisa-park.com)
@@ -57,6 +63,15 @@ import java.util.Set;
 public class ProcessingScene extends GraphPinScene<Node, Connection, Pin> {
     private static final Logger LOG = LoggerFactory.getLogger(ProcessingScene.class);
 
+    /**
+     * Nodes taking at least this share of the total processing time are shown as hot or warm
+     */
+    private static final double HOT_LOAD = 0.5;
+    private static final double WARM_LOAD = 0.2;
+    private static final Color HOT_COLOR = new Color(0xF4A09C);
+    private static final Color WARM_COLOR = new Color(0xF8DC8C);
+    private static final Color COOL_COLOR = new Color(0xC4E4BC);
+
     private final LayerWidget mainLayer = new LayerWidget(this);
     private final LayerWidget connectionLayer = new LayerWidget(this);
     private final LayerWidget interactionLayer = new LayerWidget(this);
@@ -76,6 +91,11 @@ public class ProcessingScene extends GraphPinScene<Node, Connection, Pin> {
 
     private ProcessingModel model;
 
+    /**
+     * Badges showing the statistics of a running model, created the first time a node has statistics
+     */
+    private final Map<UUID, LabelWidget> statisticsBadges = Maps.newHashMap();
+
     public ProcessingScene(ProcessingModel model) {
         this.model = model;
         setKeyEventProcessingType(EventProcessingType.FOCUSED_WIDGET_AND_ITS_PARENTS);
@@ -217,6 +237,7 @@ public class ProcessingScene extends GraphPinScene<Node, Connection, Pin> {
         // make sure it is a valid source
         if (findStoredObject(externalSource) != null) {
             model.removeExternalEventSource(externalSource);
+            statisticsBadges.remove(externalSource.getId());
 
             removeNodeWithEdges(externalSource);
         }
@@ -246,6 +267,7 @@ public class ProcessingScene extends GraphPinScene<Node, Connection, Pin> {
         // make sure it is a valid sink
         if (findStoredObject(externalSink) != null) {
             model.removeExternalEventSink(externalSink);
+            statisticsBadges.remove(externalSink.getId());
 
             removeNodeWithEdges(externalSink);
         }
@@ -282,11 +304,61 @@ public class ProcessingScene extends GraphPinScene<Node, Connection, Pin> {
         // make sure it is a valid processor
         if (findStoredObject(processor) != null) {
             model.removeProcessor(processor);
+            statisticsBadges.remove(processor.getId());
 
             removeNodeWithEdges(processor);
         }
     }
 
+    /**
+     * Shows the statistics as a badge in the header of each node, colour coded by the share of the processing
+     * time spent in the node. This has to be called on the event dispatch thread.
+     *
+     * @param statisticsByNodeId statistics of the nodes to update
+     */
+    public void showNodeStatistics(Map<UUID, NodeStatistics> statisticsByNodeId) {
+        for (Node node : getNodes()) {
+            NodeStatistics statistics = statisticsByNodeId.get(node.getId());
+
+            if (statistics != null) {
+                LabelWidget badge = statisticsBadges.get(node.getId());
+                if (badge == null) {
+                    badge = new LabelWidget(this);
+                    badge.setOpaque(true);
+                    badge.setBorder(BorderFactory.createEmptyBorder(1, 4));
+                    ((VMDNodeWidget) findWidget(node)).getHeader().addChild(badge);
+                    statisticsBadges.put(node.getId(), badge);
+                }
+
+                badge.setLabel(String.format("%,.0f/s  %,.1f us", statistics.getEventsPerSecond(), statistics.getAverageNanos() / 1000));
+                badge.setToolTipText(String.format("in: %,d  out: %,d  in flight: %d  load: %.0f%%",
+                        statistics.getEventsIn(), statistics.getEventsOut(), statistics.getEventsInFlight(), statistics.getLoad() * 100));
+                badge.setBackground(colorForLoad(statistics.getLoad()));
+            }
+        }
+
+        validate();
+    }
+
+    public void clearNodeStatistics() {
+        for (LabelWidget badge : statisticsBadges.values()) {
+            badge.removeFromParent();
+        }
+        statisticsBadges.clear();
+
+        validate();
+    }
+
+    private static Color colorForLoad(double load) {
+        if (load >= HOT_LOAD) {
+            return HOT_COLOR;
+        } else if (load >= WARM_LOAD) {
+            return WARM_COLOR;
+        } else {
+            return COOL_COLOR;
+        }
+    }
+
     public void connectOutputPinToInputPin(OutputPin sourcePin, InputPin destinationPin) {
         // todo verify the pin
         Connection connection = Connection.connectSourceToSinkInput(sourcePin.getSource(), destinationPin.getInput());
@@ -0,0 +1,67 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.designer.output;
+
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A range of lines of an {@link OutputLog} on the clipboard. The text is only read from the log when it is pasted,
+ * and preferably as a stream, so copying a large log does not build a string of it. Receivers that only take
+ * strings still get the whole text as one. Pasting fails once the lines have been dropped from the log.
+ */
+class LogSelection implements Transferable {
+
+    private static final DataFlavor STREAM_FLAVOR =
+            new DataFlavor("text/plain; charset=UTF-8; class=java.io.InputStream", "Plain Text");
+    private static final DataFlavor[] FLAVORS = {STREAM_FLAVOR, DataFlavor.stringFlavor};
+    private static final int INITIAL_STRING_SIZE = 1024 * 1024;
+
+    private final OutputLog.LineRange lines;
+
+    LogSelection(OutputLog.LineRange lines) {
+        this.lines = lines;
+    }
+
+    @Override
+    public DataFlavor[] getTransferDataFlavors() {
+        return FLAVORS.clone();
+    }
+
+    @Override
+    public boolean isDataFlavorSupported(DataFlavor flavor) {
+        return STREAM_FLAVOR.equals(flavor) || DataFlavor.stringFlavor.equals(flavor);
+    }
+
+    @Override
+    public Object getTransferData(DataFlavor flavor) throws UnsupportedFlavorException, IOException {
+        if (STREAM_FLAVOR.equals(flavor)) {
+            return lines.openStream();
+
+        } else if (DataFlavor.stringFlavor.equals(flavor)) {
+            InputStream in = lines.openStream();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(in.available(), INITIAL_STRING_SIZE));
+
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        }
+
+        throw new UnsupportedFlavorException(flavor);
+    }
+}
@@ -0,0 +1,169 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.designer.output;
+
+import com.google.common.collect.Lists;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A file that is appended to at the end and read from anywhere, through memory mapped chunks of a fixed size. The
+ * chunks stay mapped until the file is closed, so reading a position that was written before is a copy out of the
+ * page cache, and the operating system decides how much of the file is in memory.
+ * <p/>
+ * The file never grows beyond a maximum number of chunks. Once they are all written, appending starts over in the
+ * first chunk, so positions keep counting up but only the last {@link #getCapacity()} bytes can be read.
+ * <p/>
+ * This class is not thread safe, callers have to guard it.
+ */
+class MappedFile {
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final int chunkSize;
+    private final int maximumChunks;
+
+    private final List<MappedByteBuffer> chunks = Lists.newArrayList();
+    private final byte[] longBytes = new byte[8];
+    private long length;
+
+    /**
+     * Creates the file, replacing one that was there before.
+     *
+     * @param file          to create
+     * @param chunkSize     number of bytes mapped at a time
+     * @param maximumChunks number of chunks after which the oldest one is written over
+     * @throws IOException if the file could not be created
+     */
+    MappedFile(File file, int chunkSize, int maximumChunks) throws IOException {
+        checkArgument(chunkSize > 0, "chunkSize has to be greater than zero");
+        checkArgument(maximumChunks > 0, "maximumChunks has to be greater than zero");
+
+        this.file = file;
+        this.chunkSize = chunkSize;
+        this.maximumChunks = maximumChunks;
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        this.randomAccessFile.setLength(0);
+        this.channel = randomAccessFile.getChannel();
+    }
+
+    long length() {
+        return length;
+    }
+
+    /**
+     * Returns the number of bytes before the end of the file that can be read.
+     *
+     * @return capacity in bytes
+     */
+    long getCapacity() {
+        return (long) chunkSize * maximumChunks;
+    }
+
+    void append(byte[] bytes, int offset, int count) throws IOException {
+        while (count > 0) {
+            int position = (int) (length % chunkSize);
+            int written = Math.min(count, chunkSize - position);
+
+            ByteBuffer chunk = chunk(chunkIndex(length)).duplicate();
+            chunk.position(position);
+            chunk.put(bytes, offset, written);
+
+            offset += written;
+            count -= written;
+            length += written;
+        }
+    }
+
+    void appendLong(long value) throws IOException {
+        for (int i = 7; i >= 0; --i) {
+            longBytes[i] = (byte) value;
+            value >>>= 8;
+        }
+        append(longBytes, 0, 8);
+    }
+
+    /**
+     * Reads bytes that have been appended before, and have not been written over since.
+     */
+    void read(long position, byte[] bytes, int offset, int count) {
+        checkArgument(position >= 0 && position + count <= length, "Cannot read past the end of the file");
+        checkArgument(position >= length - getCapacity(), "Cannot read bytes that have been written over");
+
+        while (count > 0) {
+            int chunkPosition = (int) (position % chunkSize);
+            int read = Math.min(count, chunkSize - chunkPosition);
+
+            ByteBuffer chunk = chunks.get(chunkIndex(position)).duplicate();
+            chunk.position(chunkPosition);
+            chunk.get(bytes, offset, read);
+
+            offset += read;
+            count -= read;
+            position += read;
+        }
+    }
+
+    long readLong(long position) {
+        read(position, longBytes, 0, 8);
+
+        long value = 0;
+        for (int i = 0; i < 8; ++i) {
+            value = (value << 8) | (longBytes[i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * Starts over at the beginning of the file, keeping the chunks that are mapped.
+     */
+    void truncate() {
+        length = 0;
+    }
+
+    /**
+     * Closes and deletes the file. The chunks are unmapped once they are garbage collected, which is why the file may
+     * only go away when the virtual machine exits on some platforms.
+     */
+    void close() {
+        chunks.clear();
+        try {
+            randomAccessFile.close();
+        } catch (IOException e) {
+            // nothing left to do with the file
+        }
+
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    private int chunkIndex(long position) {
+        return (int) ((position / chunkSize) % maximumChunks);
+    }
+
+    private MappedByteBuffer chunk(int index) throws IOException {
+        while (chunks.size() <= index) {
+            chunks.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) chunks.size() * chunkSize, chunkSize));
+        }
+
+        return chunks.get(index);
+    }
+}
@@ -0,0 +1,282 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.designer.output;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Collects the output of compiles and runs for an {@link OutputView} without flooding the event dispatch thread. Any
+ * thread can write to the console, through {@link #append(String)} or the {@link #newOutputStream() stream} the
+ * compiled models print to; the text is put on a lock free queue and a timer on the event dispatch thread appends
+ * everything that was queued to the {@link OutputLog} of the view in one go, a fixed number of times per second.
+ * <p/>
+ * If the output arrives faster than it can be appended, the oldest queued text is dropped, and a line in the log
+ * tells how many lines were lost.
+ */
+public class OutputConsole {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OutputConsole.class);
+
+    /**
+     * 25 frames per second is smooth enough for output that scrolls by
+     */
+    private static final int FLUSH_INTERVAL_MILLIS = 40;
+    /**
+     * Queued text beyond this many characters is dropped, oldest first, until the log catches up
+     */
+    private static final long MAX_QUEUED_CHARS = 4 * 1024 * 1024;
+
+    private final OutputView view;
+    private final Timer flushTimer;
+
+    private final Queue<String> queue = new ConcurrentLinkedQueue<String>();
+    private final AtomicLong queuedChars = new AtomicLong();
+    private final AtomicLong droppedLines = new AtomicLong();
+
+    /**
+     * Number of dropped lines the log has been told about, only touched on the event dispatch thread
+     */
+    private long reportedDroppedLines;
+
+    public OutputConsole(OutputView view) {
+        checkArgument(view != null, "view cannot be null");
+
+        this.view = view;
+        this.flushTimer = new Timer(FLUSH_INTERVAL_MILLIS, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                flush();
+            }
+        });
+    }
+
+    public void start() {
+        flushTimer.start();
+    }
+
+    public void stop() {
+        flushTimer.stop();
+    }
+
+    /**
+     * Queues the text to be appended to the {@link OutputLog} of the view. This can be called from any thread.
+     *
+     * @param text to append
+     */
+    public void append(String text) {
+        if (text == null || text.length() == 0) {
+            return;
+        }
+
+        queue.offer(text);
+        long chars = queuedChars.addAndGet(text.length());
+
+        while (chars > MAX_QUEUED_CHARS) {
+            String dropped = queue.poll();
+            if (dropped == null) {
+                break;
+            }
+            droppedLines.addAndGet(countLines(dropped, 0, dropped.length()));
+            chars = queuedChars.addAndGet(-dropped.length());
+        }
+    }
+
+    /**
+     * Returns a stream that decodes the bytes written to it with the default charset and appends them to the
+     * console a line at a time. The stream is safe to use from several threads.
+     *
+     * @return output stream
+     */
+    public OutputStream newOutputStream() {
+        return newOutputStream(Charset.defaultCharset());
+    }
+
+    OutputStream newOutputStream(Charset charset) {
+        return new ConsoleOutputStream(charset);
+    }
+
+    /**
+     * Returns the number of lines that have been dropped since the console was last cleared.
+     *
+     * @return dropped line count
+     */
+    public long getDroppedLineCount() {
+        return droppedLines.get();
+    }
+
+    /**
+     * Removes all of the text, including the text that is still queued. Must be called on the event dispatch thread.
+     */
+    public void clear() {
+        String queued;
+        while ((queued = queue.poll()) != null) {
+            queuedChars.addAndGet(-queued.length());
+        }
+
+        view.clear();
+        droppedLines.set(0);
+        reportedDroppedLines = 0;
+    }
+
+    /**
+     * Appends everything that has been queued since the last flush. Called by the timer on the event dispatch thread.
+     */
+    void flush() {
+        if (queue.isEmpty()) {
+            return;
+        }
+
+        StringBuilder chunk = new StringBuilder();
+        String text;
+        while ((text = queue.poll()) != null) {
+            queuedChars.addAndGet(-text.length());
+            chunk.append(text);
+        }
+
+        long dropped = droppedLines.get();
+        if (dropped != reportedDroppedLines) {
+            chunk.insert(0, String.format("... %,d lines of output dropped ...%n", dropped - reportedDroppedLines));
+            reportedDroppedLines = dropped;
+        }
+
+        try {
+            view.getLog().append(chunk.toString());
+        } catch (IOException e) {
+            LOG.error("Could not append to the output log", e);
+        }
+        view.linesAppended();
+    }
+
+    private static long countLines(CharSequence text, int start, int end) {
+        long lines = 0;
+        for (int i = start; i < end; ++i) {
+            if (text.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+
+        return lines;
+    }
+
+    /**
+     * Collects the bytes written to it and hands the complete lines to the console, so single byte writes cost no
+     * more than an array store. Lines that are too long to buffer, and whatever is left on a flush, are handed over
+     * in pieces; the decoder only consumes whole characters, so the bytes of a character that is cut off stay in the
+     * buffer until the rest of it is written.
+     */
+    private class ConsoleOutputStream extends OutputStream {
+        private static final int INITIAL_BUFFER_SIZE = 256;
+        private static final int MAX_BUFFERED_BYTES = 8192;
+
+        private final CharsetDecoder decoder;
+        private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+        private int count;
+
+        ConsoleOutputStream(Charset charset) {
+            this.decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            if (count == buffer.length) {
+                grow(count + 1);
+            }
+            buffer[count++] = (byte) b;
+
+            if (b == '\n' || count >= MAX_BUFFERED_BYTES) {
+                handOver(count, false);
+            }
+        }
+
+        @Override
+        public synchronized void write(byte[] bytes, int off, int len) {
+            if (count + len > buffer.length) {
+                grow(count + len);
+            }
+            System.arraycopy(bytes, off, buffer, count, len);
+            int written = count;
+            count += len;
+
+            if (count >= MAX_BUFFERED_BYTES) {
+                // a line this long is handed over in pieces
+                handOver(count, false);
+                return;
+            }
+
+            for (int i = count - 1; i >= written; --i) {
+                if (buffer[i] == '\n') {
+                    handOver(i + 1, false);
+                    break;
+                }
+            }
+        }
+
+        @Override
+        public synchronized void flush() {
+            handOver(count, false);
+        }
+
+        @Override
+        public synchronized void close() {
+            // nothing more will complete a character that is cut off, so it is decoded as malformed
+            handOver(count, true);
+        }
+
+        private void grow(int minCapacity) {
+            byte[] newBuffer = new byte[Math.max(buffer.length * 2, minCapacity)];
+            System.arraycopy(buffer, 0, newBuffer, 0, count);
+            buffer = newBuffer;
+        }
+
+        /**
+         * Appends the whole characters in the first bytes of the buffer to the console and keeps the rest.
+         */
+        private void handOver(int length, boolean endOfInput) {
+            if (length > 0) {
+                ByteBuffer in = ByteBuffer.wrap(buffer, 0, length);
+                CharBuffer out = CharBuffer.allocate((int) (length * decoder.maxCharsPerByte()) + 1);
+                decoder.decode(in, out, endOfInput);
+                out.flip();
+                append(out.toString());
+
+                int decoded = in.position();
+                System.arraycopy(buffer, decoded, buffer, 0, count - decoded);
+                count -= decoded;
+            }
+
+            if (buffer.length > MAX_BUFFERED_BYTES * 2 && count < INITIAL_BUFFER_SIZE) {
+                // a single huge write should not keep its buffer around
+                byte[] newBuffer = new byte[INITIAL_BUFFER_SIZE];
+                System.arraycopy(buffer, 0, newBuffer, 0, count);
+                buffer = newBuffer;
+            }
+        }
+    }
+}
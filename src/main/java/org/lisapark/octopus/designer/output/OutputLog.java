@@ -0,0 +1,424 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.designer.output;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * All of the output of the designer, kept in a memory mapped temporary file instead of on the heap, with a second
+ * file that holds the byte offset of the start of every line. Looking up any line costs the same no matter how long
+ * the log is, which is what lets the {@link OutputView} show only the lines that are visible.
+ * <p/>
+ * Both files are rings of a fixed size. Once the text or the line offsets do not fit anymore, the oldest lines are
+ * dropped, and the first line of the log then says how many lines were dropped. A single line is cut off at a quarter
+ * of the text file, so it can never push out all of the others.
+ * <p/>
+ * The text is stored as UTF-8. The methods are thread safe, so the log can be searched or copied on a background
+ * thread while more output is appended on the event dispatch thread.
+ */
+public class OutputLog {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The text is kept to 256 MB
+     */
+    private static final int DATA_CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final int DATA_CHUNKS = 16;
+    /**
+     * A chunk of the index holds the offsets of a million lines, so the log is kept to four million lines
+     */
+    private static final int INDEX_CHUNK_SIZE = 8 * 1024 * 1024;
+    private static final int INDEX_CHUNKS = 4;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] LINE_BREAK = {'\n'};
+
+    private final MappedFile data;
+    private final MappedFile index;
+    private final long maxLines;
+    private final long maxLineBytes;
+
+    /**
+     * Number of the oldest line that is still kept, counting every line appended since the log was cleared
+     */
+    private long firstLine;
+    /**
+     * Offset of the oldest line that is still kept
+     */
+    private long firstLineStart;
+    /**
+     * Number of lines in the index, the last one is the line that is still being written to
+     */
+    private long lineStarts;
+    private long droppedLines;
+    private int longestLineBytes;
+    /**
+     * Incremented every time the log is cleared, so streams over the old text notice that it is gone
+     */
+    private int generation;
+
+    OutputLog(File dataFile, File indexFile, int dataChunkSize, int dataChunks, int indexChunkSize, int indexChunks)
+            throws IOException {
+        checkArgument((long) indexChunkSize * indexChunks >= 16, "The index has to hold at least two lines");
+
+        this.data = new MappedFile(dataFile, dataChunkSize, dataChunks);
+        this.index = new MappedFile(indexFile, indexChunkSize, indexChunks);
+        this.maxLines = index.getCapacity() / 8;
+        this.maxLineBytes = data.getCapacity() / 4;
+
+        startFirstLine();
+    }
+
+    /**
+     * Creates a log in two new temporary files, which are deleted when the log is closed.
+     *
+     * @return empty log
+     * @throws IOException if the files could not be created
+     */
+    public static OutputLog createTemporary() throws IOException {
+        File dataFile = File.createTempFile("octopus-output", ".log");
+        File indexFile = File.createTempFile("octopus-output", ".idx");
+        dataFile.deleteOnExit();
+        indexFile.deleteOnExit();
+
+        return new OutputLog(dataFile, indexFile, DATA_CHUNK_SIZE, DATA_CHUNKS, INDEX_CHUNK_SIZE, INDEX_CHUNKS);
+    }
+
+    public synchronized void append(String text) throws IOException {
+        byte[] bytes = text.getBytes(UTF_8);
+
+        int offset = 0;
+        while (offset < bytes.length) {
+            int end = offset;
+            while (end < bytes.length && bytes[end] != '\n') {
+                end++;
+            }
+
+            appendToLine(bytes, offset, end - offset, end < bytes.length);
+            offset = end + 1;
+        }
+    }
+
+    /**
+     * Returns the number of lines, including a last line that does not end with a line break yet, and the line that
+     * reports the dropped lines.
+     *
+     * @return line count
+     */
+    public synchronized int getLineCount() {
+        long lines = lineStarts - firstLine;
+        if (lineStart(lineStarts - 1) == data.length()) {
+            lines--;
+        }
+
+        return (int) lines + headerLines();
+    }
+
+    /**
+     * Returns the number of lines that were dropped to make room for newer ones since the log was cleared.
+     *
+     * @return dropped line count
+     */
+    public synchronized long getDroppedLineCount() {
+        return droppedLines;
+    }
+
+    /**
+     * Returns the length in bytes of the longest line appended since the log was cleared, which is at least as long
+     * as its number of characters.
+     *
+     * @return byte count
+     */
+    public synchronized int getLongestLineLength() {
+        return longestLineBytes;
+    }
+
+    /**
+     * Returns a line without its line break.
+     *
+     * @param line     index of the line
+     * @param maxBytes the line is cut off after this many bytes
+     * @return text of the line
+     */
+    public synchronized String getLine(int line, int maxBytes) {
+        checkArgument(line >= 0 && line < getLineCount(), "line is out of range");
+
+        if (line < headerLines()) {
+            return headerLine();
+        }
+
+        long logLine = firstLine + line - headerLines();
+        long start = lineStart(logLine);
+        long end = lineEnd(logLine);
+        int length = (int) Math.min(end - start, maxBytes);
+
+        byte[] bytes = new byte[length];
+        data.read(start, bytes, 0, length);
+
+        if (length > 0 && length == end - start && bytes[length - 1] == '\r') {
+            length--;
+        }
+
+        return new String(bytes, 0, length, UTF_8);
+    }
+
+    /**
+     * Returns the first line at or after the specified one that contains the text, ignoring case.
+     *
+     * @param text     to look for
+     * @param fromLine first line to look at
+     * @return index of the line, or -1 if no line contains the text or the thread was interrupted
+     */
+    public int find(String text, int fromLine) {
+        String lowerCaseText = text.toLowerCase(Locale.ENGLISH);
+
+        int lineCount = getLineCount();
+        for (int line = fromLine; line < lineCount; ++line) {
+            if (getLine(line, Integer.MAX_VALUE).toLowerCase(Locale.ENGLISH).contains(lowerCaseText)) {
+                return line;
+            }
+            if ((line & 0xFFF) == 0 && Thread.currentThread().isInterrupted()) {
+                return -1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns a stream over the text of a range of lines, including their line breaks. The text is read from the log
+     * as the stream is read, so the stream fails if the log is cleared or the lines are dropped in the mean time.
+     *
+     * @param fromLine first line
+     * @param toLine   last line, inclusive
+     * @return stream of UTF-8 bytes
+     * @throws IOException if the log does not have the lines anymore, because it was cleared
+     */
+    public InputStream openStream(int fromLine, int toLine) throws IOException {
+        return selectLines(fromLine, toLine).openStream();
+    }
+
+    /**
+     * Marks a range of lines, so they can be read later even if lines are dropped before them in the mean time.
+     *
+     * @param fromLine first line
+     * @param toLine   last line, inclusive
+     * @return the lines
+     * @throws IOException if the log does not have the lines anymore, because it was cleared
+     */
+    synchronized LineRange selectLines(int fromLine, int toLine) throws IOException {
+        checkArgument(fromLine >= 0 && fromLine <= toLine, "fromLine has to be between 0 and toLine");
+        if (toLine >= getLineCount()) {
+            throw new IOException("The output has been cleared");
+        }
+
+        int headerLines = headerLines();
+        byte[] prefix = fromLine < headerLines ? (headerLine() + "\n").getBytes(UTF_8) : new byte[0];
+
+        long fromLogLine = firstLine + Math.max(fromLine - headerLines, 0);
+        long toLogLine = firstLine + toLine - headerLines;
+        long end = toLogLine + 1 < lineStarts ? lineStart(toLogLine + 1) : data.length();
+
+        return new LineRange(prefix, lineStart(fromLogLine), end, generation);
+    }
+
+    /**
+     * Writes the whole log to the stream, a piece at a time.
+     *
+     * @param out to write to
+     * @throws IOException if the log could not be read, or the stream could not be written
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        int lineCount = getLineCount();
+        if (lineCount == 0) {
+            return;
+        }
+
+        InputStream in = openStream(0, lineCount - 1);
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+    }
+
+    public synchronized void clear() throws IOException {
+        data.truncate();
+        index.truncate();
+        longestLineBytes = 0;
+        droppedLines = 0;
+        generation++;
+
+        startFirstLine();
+    }
+
+    public synchronized void close() {
+        data.close();
+        index.close();
+    }
+
+    /**
+     * Appends a piece of the line that is being written to, and a line break after it if it ends the line. Whatever
+     * goes beyond the longest line that is kept is skipped, but never the line break.
+     */
+    private void appendToLine(byte[] bytes, int offset, int count, boolean endsLine) throws IOException {
+        long lineStart = lineStart(lineStarts - 1);
+        int kept = (int) Math.max(0, Math.min(count, maxLineBytes - (data.length() - lineStart)));
+        // a character that does not fit is left out as a whole
+        while (kept > 0 && kept < count && (bytes[offset + kept] & 0xC0) == 0x80) {
+            kept--;
+        }
+
+        makeRoom(endsLine ? kept + 1 : kept);
+        data.append(bytes, offset, kept);
+        if (endsLine) {
+            data.append(LINE_BREAK, 0, 1);
+        }
+
+        long lineLength = data.length() - lineStart;
+        longestLineBytes = (int) Math.max(longestLineBytes, Math.min(lineLength, Integer.MAX_VALUE));
+
+        if (endsLine) {
+            if (lineStarts - firstLine == maxLines) {
+                dropFirstLine();
+            }
+            index.appendLong(data.length());
+            lineStarts++;
+        }
+    }
+
+    /**
+     * Drops the oldest lines until the bytes fit into the data file, keeping at least the line being written to.
+     */
+    private void makeRoom(int bytes) {
+        while (data.length() + bytes - firstLineStart > data.getCapacity() && firstLine + 1 < lineStarts) {
+            dropFirstLine();
+        }
+    }
+
+    private void dropFirstLine() {
+        firstLine++;
+        firstLineStart = lineStart(firstLine);
+        droppedLines++;
+    }
+
+    private void startFirstLine() throws IOException {
+        index.appendLong(0);
+        lineStarts = 1;
+        firstLine = 0;
+        firstLineStart = 0;
+    }
+
+    private int headerLines() {
+        return droppedLines > 0 ? 1 : 0;
+    }
+
+    private String headerLine() {
+        return String.format(Locale.ENGLISH, "... %,d earlier lines of output dropped ...", droppedLines);
+    }
+
+    private long lineStart(long line) {
+        return index.readLong(line * 8);
+    }
+
+    /**
+     * Returns the offset of the end of a line, not counting its line break.
+     */
+    private long lineEnd(long line) {
+        if (line + 1 == lineStarts) {
+            return data.length();
+        }
+
+        return lineStart(line + 1) - 1;
+    }
+
+    /**
+     * A range of lines that is read from the log when a stream over it is opened.
+     */
+    class LineRange {
+        private final byte[] prefix;
+        private final long start;
+        private final long end;
+        private final int rangeGeneration;
+
+        private LineRange(byte[] prefix, long start, long end, int rangeGeneration) {
+            this.prefix = prefix;
+            this.start = start;
+            this.end = end;
+            this.rangeGeneration = rangeGeneration;
+        }
+
+        InputStream openStream() {
+            return new LogInputStream(prefix, start, end, rangeGeneration);
+        }
+    }
+
+    private class LogInputStream extends InputStream {
+        private final byte[] prefix;
+        private final long end;
+        private final int streamGeneration;
+        private int prefixPosition;
+        private long position;
+
+        LogInputStream(byte[] prefix, long start, long end, int streamGeneration) {
+            this.prefix = prefix;
+            this.position = start;
+            this.end = end;
+            this.streamGeneration = streamGeneration;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == 1 ? single[0] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int count) throws IOException {
+            if (prefixPosition < prefix.length) {
+                int read = Math.min(count, prefix.length - prefixPosition);
+                System.arraycopy(prefix, prefixPosition, bytes, offset, read);
+                prefixPosition += read;
+
+                return read;
+            }
+            if (position == end) {
+                return -1;
+            }
+
+            int read = (int) Math.min(count, end - position);
+            synchronized (OutputLog.this) {
+                if (generation != streamGeneration) {
+                    throw new IOException("The output has been cleared");
+                }
+                if (position < firstLineStart) {
+                    throw new IOException("The output has been dropped to make room for newer output");
+                }
+                data.read(position, bytes, offset, read);
+            }
+            position += read;
+
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(prefix.length - prefixPosition + end - position, Integer.MAX_VALUE);
+        }
+    }
+}
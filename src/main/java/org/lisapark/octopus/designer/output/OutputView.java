@@ -0,0 +1,334 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.designer.output;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.datatransfer.Transferable;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.IOException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Shows an {@link OutputLog} of any length. Instead of holding the text in a document, the view is as tall as all of
+ * the lines together and only reads and paints the lines that intersect the area being repainted, so scrolling
+ * through millions of lines is as fast as scrolling through a few.
+ * <p/>
+ * Whole lines can be selected with the mouse and copied, and the view follows new output as long as it is scrolled
+ * to the end. When the log drops its oldest lines, the selection and the scroll position move up with the lines that
+ * are left.
+ */
+public class OutputView extends JComponent implements Scrollable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OutputView.class);
+
+    /**
+     * Longer lines are cut off, both when painting and when sizing the view
+     */
+    private static final int MAX_PAINTED_BYTES = 2048;
+    private static final int MARGIN = 4;
+    private static final String COPY_KEY = "copy";
+
+    private final OutputLog log;
+    private final int lineHeight;
+    private final int ascent;
+    private final int charWidth;
+
+    /**
+     * Number of lines and the longest line of the log the last time the view was told about new lines
+     */
+    private int lineCount;
+    private int longestLine;
+    private long droppedLines;
+
+    private int anchorLine = -1;
+    private int leadLine = -1;
+
+    public OutputView(OutputLog log) {
+        checkArgument(log != null, "log cannot be null");
+        this.log = log;
+
+        Font font = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+        setFont(font);
+        FontMetrics metrics = getFontMetrics(font);
+        lineHeight = metrics.getHeight();
+        ascent = metrics.getAscent();
+        charWidth = metrics.charWidth('m');
+
+        setOpaque(true);
+        setFocusable(true);
+        setBackground(uiColor("TextArea.background", Color.WHITE));
+        setForeground(uiColor("TextArea.foreground", Color.BLACK));
+
+        LineSelector selector = new LineSelector();
+        addMouseListener(selector);
+        addMouseMotionListener(selector);
+
+        getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_C, InputEvent.CTRL_DOWN_MASK), COPY_KEY);
+        getActionMap().put(COPY_KEY, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                Transferable selection = getSelection();
+                if (selection != null) {
+                    Toolkit.getDefaultToolkit().getSystemClipboard().setContents(selection, null);
+                }
+            }
+        });
+    }
+
+    public OutputLog getLog() {
+        return log;
+    }
+
+    /**
+     * Picks up the lines that were appended to the log. If the view was scrolled to the end, it scrolls along.
+     */
+    public void linesAppended() {
+        boolean followOutput = isScrolledToEnd();
+
+        lineCount = log.getLineCount();
+        longestLine = Math.min(log.getLongestLineLength(), MAX_PAINTED_BYTES);
+        linesDropped(log.getDroppedLineCount(), followOutput);
+        revalidate();
+        repaint();
+
+        if (followOutput) {
+            // the new size is only known once the view has been laid out again
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    Rectangle visible = getVisibleRect();
+                    scrollRectToVisible(new Rectangle(visible.x, getHeight() - 1, 1, 1));
+                }
+            });
+        }
+    }
+
+    public void clear() {
+        try {
+            log.clear();
+        } catch (IOException e) {
+            LOG.error("Could not clear the output log", e);
+        }
+
+        lineCount = 0;
+        longestLine = 0;
+        droppedLines = 0;
+        anchorLine = -1;
+        leadLine = -1;
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Selects a single line and scrolls it into view.
+     *
+     * @param line to select
+     */
+    public void selectLine(int line) {
+        checkArgument(line >= 0 && line < lineCount, "line is out of range");
+
+        anchorLine = line;
+        leadLine = line;
+        scrollRectToVisible(new Rectangle(0, MARGIN + line * lineHeight, 1, lineHeight));
+        repaint();
+    }
+
+    /**
+     * Returns the last selected line, or -1 if nothing is selected.
+     *
+     * @return line
+     */
+    public int getSelectionEnd() {
+        return Math.max(anchorLine, leadLine);
+    }
+
+    /**
+     * Returns the selected lines for the clipboard.
+     *
+     * @return selection, or null if nothing is selected
+     */
+    public Transferable getSelection() {
+        if (anchorLine < 0) {
+            return null;
+        }
+
+        return selectLines(Math.min(anchorLine, leadLine), Math.max(anchorLine, leadLine));
+    }
+
+    /**
+     * Returns all of the lines for the clipboard.
+     *
+     * @return selection, or null if there is no output
+     */
+    public Transferable getAll() {
+        return lineCount > 0 ? selectLines(0, lineCount - 1) : null;
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(MARGIN * 2 + longestLine * charWidth, MARGIN * 2 + lineCount * lineHeight);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        if (lineCount == 0) {
+            return;
+        }
+
+        int firstLine = Math.max(0, (clip.y - MARGIN) / lineHeight);
+        int lastLine = Math.min(lineCount - 1, (clip.y + clip.height - MARGIN) / lineHeight);
+        int selectionStart = Math.min(anchorLine, leadLine);
+        int selectionEnd = Math.max(anchorLine, leadLine);
+
+        Color foreground = getForeground();
+        Color selectionBackground = uiColor("TextArea.selectionBackground", Color.LIGHT_GRAY);
+        Color selectionForeground = uiColor("TextArea.selectionForeground", foreground);
+
+        g.setFont(getFont());
+        for (int line = firstLine; line <= lastLine; ++line) {
+            int y = MARGIN + line * lineHeight;
+
+            if (line >= selectionStart && line <= selectionEnd) {
+                g.setColor(selectionBackground);
+                g.fillRect(clip.x, y, clip.width, lineHeight);
+                g.setColor(selectionForeground);
+            } else {
+                g.setColor(foreground);
+            }
+
+            g.drawString(log.getLine(line, MAX_PAINTED_BYTES).replace('\t', ' '), MARGIN, y + ascent);
+        }
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? lineHeight : charWidth;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? visibleRect.height - lineHeight : visibleRect.width - charWidth;
+    }
+
+    /**
+     * The view fills the viewport when it is smaller
+     */
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return getParent() instanceof JViewport && getParent().getWidth() > getPreferredSize().width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return getParent() instanceof JViewport && getParent().getHeight() > getPreferredSize().height;
+    }
+
+    private Transferable selectLines(int fromLine, int toLine) {
+        try {
+            return new LogSelection(log.selectLines(fromLine, toLine));
+        } catch (IOException e) {
+            LOG.error("Could not select the output", e);
+            return null;
+        }
+    }
+
+    /**
+     * Moves the selection and the scroll position by the lines that were dropped since the last time, and by the line
+     * that reports them when it first shows up. A selection that reaches back to lines that are gone is cleared.
+     */
+    private void linesDropped(long dropped, boolean followOutput) {
+        long shift = (dropped > 0 ? 1 : 0) - (droppedLines > 0 ? 1 : 0) - (dropped - droppedLines);
+        droppedLines = dropped;
+        if (shift == 0) {
+            return;
+        }
+
+        int firstLogLine = dropped > 0 ? 1 : 0;
+        if (anchorLine >= 0 && Math.min(anchorLine, leadLine) + shift < firstLogLine) {
+            anchorLine = -1;
+            leadLine = -1;
+        } else if (anchorLine >= 0) {
+            anchorLine += shift;
+            leadLine += shift;
+        }
+
+        if (!followOutput && getParent() instanceof JViewport) {
+            JViewport viewport = (JViewport) getParent();
+            Point position = viewport.getViewPosition();
+            position.y = (int) Math.max(0, position.y + shift * lineHeight);
+            viewport.setViewPosition(position);
+        }
+    }
+
+    private boolean isScrolledToEnd() {
+        Rectangle visible = getVisibleRect();
+        return visible.y + visible.height >= getHeight() - lineHeight;
+    }
+
+    private int lineAt(int y) {
+        return Math.max(0, Math.min(lineCount - 1, (y - MARGIN) / lineHeight));
+    }
+
+    private static Color uiColor(String key, Color defaultColor) {
+        Color color = UIManager.getColor(key);
+        return color != null ? color : defaultColor;
+    }
+
+    /**
+     * Selects whole lines by pressing and dragging the mouse, extending the selection when shift is held down.
+     */
+    private class LineSelector extends MouseAdapter {
+
+        @Override
+        public void mousePressed(MouseEvent e) {
+            if (!SwingUtilities.isLeftMouseButton(e) || lineCount == 0) {
+                return;
+            }
+            requestFocusInWindow();
+
+            int line = lineAt(e.getY());
+            if (!e.isShiftDown() || anchorLine < 0) {
+                anchorLine = line;
+            }
+            leadLine = line;
+            repaint();
+        }
+
+        @Override
+        public void mouseDragged(MouseEvent e) {
+            if (!SwingUtilities.isLeftMouseButton(e) || anchorLine < 0) {
+                return;
+            }
+
+            leadLine = lineAt(e.getY());
+            scrollRectToVisible(new Rectangle(e.getX(), e.getY(), 1, 1));
+            repaint();
+        }
+    }
+}
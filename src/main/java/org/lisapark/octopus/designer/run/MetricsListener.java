@@ -0,0 +1,23 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.designer.run;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Listener that receives the samples of a {@link MetricsSampler}. Note that the samples are delivered on the
+ * sampler's thread, <b>not</b> the event dispatch thread.
+ */
+public interface MetricsListener {
+
+    void metricsSampled(Map<UUID, NodeStatistics> statisticsByNodeId);
+}
@@ -0,0 +1,151 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.designer.run;
+
+import com.google.common.collect.Maps;
+import org.lisapark.octopus.core.runtime.metrics.ModelMetrics;
+import org.lisapark.octopus.core.runtime.metrics.NodeMetrics;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The {@link MetricsSampler} periodically reads the {@link ModelMetrics} of a running model on its own thread, turns
+ * the raw counters into per interval {@link NodeStatistics} and hands them to a {@link MetricsListener}.
+ */
+public class MetricsSampler {
+
+    public static final long DEFAULT_INTERVAL_MILLIS = 500;
+
+    private final MetricsListener listener;
+    private final long intervalMillis;
+
+    private ScheduledExecutorService executor;
+    private ModelMetrics metrics;
+
+    /**
+     * Counters from the previous sample, indexed by the same positions as {@link #counters(NodeMetrics)}
+     */
+    private final Map<UUID, long[]> previousCounters = Maps.newHashMap();
+    private long previousSampleTime;
+
+    public MetricsSampler(MetricsListener listener) {
+        this(listener, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    public MetricsSampler(MetricsListener listener, long intervalMillis) {
+        checkArgument(listener != null, "listener cannot be null");
+        checkArgument(intervalMillis > 0, "intervalMillis has to be greater than zero");
+        this.listener = listener;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Starts sampling the specified metrics. Calling this again with the same metrics has no effect.
+     *
+     * @param modelMetrics to sample
+     */
+    public synchronized void start(ModelMetrics modelMetrics) {
+        checkArgument(modelMetrics != null, "modelMetrics cannot be null");
+
+        if (executor != null && metrics == modelMetrics) {
+            return;
+        }
+        stop();
+
+        metrics = modelMetrics;
+        previousCounters.clear();
+        previousSampleTime = System.nanoTime();
+
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "octopus-metrics-sampler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                sampleIfRunning();
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops sampling. A last sample is taken so the listener sees the final counts of the run.
+     */
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+            sample();
+        }
+    }
+
+    private synchronized void sampleIfRunning() {
+        // a scheduled sample may have been waiting on the lock while we were stopped
+        if (executor != null) {
+            sample();
+        }
+    }
+
+    private synchronized void sample() {
+        long now = System.nanoTime();
+        double intervalSeconds = Math.max(now - previousSampleTime, 1) / 1e9;
+        previousSampleTime = now;
+
+        Map<UUID, long[]> deltas = Maps.newHashMap();
+        long totalNanos = 0;
+
+        for (Map.Entry<UUID, NodeMetrics> entry : metrics.getNodeMetrics().entrySet()) {
+            long[] current = counters(entry.getValue());
+            long[] previous = previousCounters.put(entry.getKey(), current);
+
+            long[] delta = new long[current.length];
+            for (int i = 0; i < current.length; ++i) {
+                delta[i] = previous != null ? current[i] - previous[i] : current[i];
+            }
+            deltas.put(entry.getKey(), delta);
+            totalNanos += delta[2];
+        }
+
+        Map<UUID, NodeStatistics> statistics = Maps.newHashMap();
+        for (Map.Entry<UUID, long[]> entry : deltas.entrySet()) {
+            long[] current = previousCounters.get(entry.getKey());
+            long[] delta = entry.getValue();
+
+            double averageNanos = delta[0] > 0 ? (double) delta[2] / delta[0] : 0;
+            double load = totalNanos > 0 ? (double) delta[2] / totalNanos : 0;
+
+            statistics.put(entry.getKey(), new NodeStatistics(current[0], current[1], delta[0] / intervalSeconds,
+                    averageNanos, (int) current[3], load));
+        }
+
+        listener.metricsSampled(statistics);
+    }
+
+    private static long[] counters(NodeMetrics nodeMetrics) {
+        return new long[]{
+                nodeMetrics.getEventsIn(),
+                nodeMetrics.getEventsOut(),
+                nodeMetrics.getProcessingNanos(),
+                nodeMetrics.getEventsInFlight()
+        };
+    }
+}
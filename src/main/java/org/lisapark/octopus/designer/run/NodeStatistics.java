@@ -0,0 +1,73 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.designer.run;
+
+/**
+ * Statistics of a single node over one sampling interval of a {@link MetricsSampler}.
+ */
+public class NodeStatistics {
+
+    private final long eventsIn;
+    private final long eventsOut;
+    private final double eventsPerSecond;
+    private final double averageNanos;
+    private final int eventsInFlight;
+    private final double load;
+
+    NodeStatistics(long eventsIn, long eventsOut, double eventsPerSecond, double averageNanos, int eventsInFlight, double load) {
+        this.eventsIn = eventsIn;
+        this.eventsOut = eventsOut;
+        this.eventsPerSecond = eventsPerSecond;
+        this.averageNanos = averageNanos;
+        this.eventsInFlight = eventsInFlight;
+        this.load = load;
+    }
+
+    /**
+     * Returns the total number of events the node has processed since the run started.
+     *
+     * @return events in
+     */
+    public long getEventsIn() {
+        return eventsIn;
+    }
+
+    public long getEventsOut() {
+        return eventsOut;
+    }
+
+    public double getEventsPerSecond() {
+        return eventsPerSecond;
+    }
+
+    /**
+     * Returns the average time the node spent processing a single event during the interval.
+     *
+     * @return average nanos per event
+     */
+    public double getAverageNanos() {
+        return averageNanos;
+    }
+
+    public int getEventsInFlight() {
+        return eventsInFlight;
+    }
+
+    /**
+     * Returns the share of the processing time of all nodes during the interval that was spent in this node,
+     * between 0 and 1.
+     *
+     * @return load
+     */
+    public double getLoad() {
+        return load;
+    }
+}
@@ -0,0 +1,116 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.designer.run;
+
+import com.jidesoft.dialog.BannerPanel;
+import com.jidesoft.dialog.ButtonPanel;
+import com.jidesoft.dialog.StandardDialog;
+import com.jidesoft.plaf.UIDefaultsLookup;
+import org.lisapark.octopus.designer.DesignerIconsFactory;
+import org.lisapark.octopus.swing.Borders;
+import org.lisapark.octopus.swing.ComponentFactory;
+
+import javax.swing.*;
+import javax.swing.border.BevelBorder;
+import javax.swing.table.TableRowSorter;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.util.Collections;
+
+/**
+ * Dialog that shows the self time of every node of a {@link ProfileReport} in a table that can be sorted by any
+ * column. It initially is sorted by self time, highest first.
+ */
+public class ProfileDialog extends StandardDialog {
+
+    private final ProfileReport report;
+
+    private ProfileDialog(Frame frame, ProfileReport report) {
+        super(frame, String.format("Profile of '%s'", report.getModelName()), false);
+        this.report = report;
+    }
+
+    @Override
+    public JComponent createBannerPanel() {
+        BannerPanel bannerPanel = new BannerPanel("Profile",
+                "Self time is the time a node spent processing events, not including the nodes downstream of it. " +
+                        "The histograms of the processing times are in the output window.",
+                DesignerIconsFactory.getImageIcon(DesignerIconsFactory.OCTOPUS_LARGE));
+        bannerPanel.setBackground(Color.WHITE);
+        bannerPanel.setBorder(BorderFactory.createBevelBorder(BevelBorder.LOWERED));
+        return bannerPanel;
+    }
+
+    @Override
+    public JComponent createContentPanel() {
+        JPanel contentPanel = ComponentFactory.createPanel();
+        contentPanel.setLayout(new BorderLayout());
+        contentPanel.setBorder(Borders.PADDING_BORDER);
+
+        ProfileTableModel tableModel = new ProfileTableModel(report);
+        JTable table = new JTable(tableModel);
+        table.setFillsViewportHeight(true);
+
+        TableRowSorter<ProfileTableModel> sorter = new TableRowSorter<ProfileTableModel>(tableModel);
+        sorter.setSortKeys(Collections.singletonList(
+                new RowSorter.SortKey(ProfileTableModel.SELF_TIME_COLUMN, SortOrder.DESCENDING)));
+        table.setRowSorter(sorter);
+
+        JScrollPane scrollPane = ComponentFactory.createScrollPaneWithComponent(table);
+        scrollPane.setPreferredSize(new Dimension(700, 250));
+        contentPanel.add(scrollPane, BorderLayout.CENTER);
+
+        return contentPanel;
+    }
+
+    @Override
+    public ButtonPanel createButtonPanel() {
+        ButtonPanel buttonPanel = new ButtonPanel();
+        // note that these padding numbers coincide with what Jide recommends for StandardDialog button panels
+        buttonPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        JButton closeButton = ComponentFactory.createButton();
+        closeButton.setName(CLOSE);
+        closeButton.setAction(new AbstractAction(UIDefaultsLookup.getString("OptionPane.okButtonText")) {
+            public void actionPerformed(ActionEvent e) {
+                setDialogResult(RESULT_AFFIRMED);
+                setVisible(false);
+                dispose();
+            }
+        });
+
+        buttonPanel.addButton(closeButton, ButtonPanel.AFFIRMATIVE_BUTTON);
+
+        setDefaultCancelAction(closeButton.getAction());
+        setDefaultAction(closeButton.getAction());
+        getRootPane().setDefaultButton(closeButton);
+
+        return buttonPanel;
+    }
+
+    /**
+     * Shows the report in a non modal dialog.
+     *
+     * @param parent component the dialog is shown over
+     * @param report to show
+     */
+    public static void showProfile(Component parent, ProfileReport report) {
+        JFrame frame = (JFrame) SwingUtilities.getAncestorOfClass(JFrame.class, parent);
+        if (frame == null && parent instanceof JFrame) {
+            frame = (JFrame) parent;
+        }
+
+        ProfileDialog dialog = new ProfileDialog(frame, report);
+        dialog.pack();
+        dialog.setLocationRelativeTo(frame);
+        dialog.setVisible(true);
+    }
+}
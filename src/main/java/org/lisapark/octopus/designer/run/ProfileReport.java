@@ -0,0 +1,221 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.designer.run;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.lisapark.octopus.core.Node;
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.processor.Processor;
+import org.lisapark.octopus.core.runtime.metrics.LatencyHistogram;
+import org.lisapark.octopus.core.runtime.metrics.ModelMetrics;
+import org.lisapark.octopus.core.runtime.metrics.NodeMetrics;
+import org.lisapark.octopus.core.sink.external.ExternalSink;
+
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The result of profiling a run of a {@link ProcessingModel}: the self time of every processor and sink, that is the
+ * time spent in its own <code>processEvent</code> not including the nodes downstream of it, and the histogram of
+ * those times.
+ */
+public class ProfileReport {
+
+    /**
+     * Width of the longest bar of a printed histogram
+     */
+    private static final int MAX_BAR_LENGTH = 40;
+
+    private static final Comparator<Entry> SELF_TIME_DESCENDING = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry entry1, Entry entry2) {
+            return entry1.selfNanos < entry2.selfNanos ? 1 : (entry1.selfNanos > entry2.selfNanos ? -1 : 0);
+        }
+    };
+
+    private final String modelName;
+    private final List<Entry> entries;
+    private final long totalSelfNanos;
+
+    private ProfileReport(String modelName, List<Entry> entries, long totalSelfNanos) {
+        this.modelName = modelName;
+        this.entries = ImmutableList.copyOf(entries);
+        this.totalSelfNanos = totalSelfNanos;
+    }
+
+    /**
+     * Creates the report for the specified model from the metrics of a profiled run.
+     *
+     * @param model   that was run
+     * @param metrics of the run, profiling has to have been enabled on these
+     * @return report with the entries sorted by self time, highest first
+     */
+    public static ProfileReport createReport(ProcessingModel model, ModelMetrics metrics) {
+        checkArgument(model != null, "model cannot be null");
+        checkArgument(metrics != null, "metrics cannot be null");
+
+        List<Node> nodes = Lists.newArrayList();
+        nodes.addAll(model.getProcessors());
+        nodes.addAll(model.getExternalSinks());
+
+        List<Entry> entries = Lists.newArrayList();
+        long totalSelfNanos = 0;
+        for (Node node : nodes) {
+            NodeMetrics nodeMetrics = metrics.getNodeMetrics().get(node.getId());
+            if (nodeMetrics != null) {
+                String type = node instanceof Processor ? "Processor" : (node instanceof ExternalSink ? "Sink" : "");
+                Entry entry = new Entry(node.getName(), type, nodeMetrics);
+                entries.add(entry);
+                totalSelfNanos += entry.selfNanos;
+            }
+        }
+        Collections.sort(entries, SELF_TIME_DESCENDING);
+
+        return new ProfileReport(model.getModelName(), entries, totalSelfNanos);
+    }
+
+    public String getModelName() {
+        return modelName;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public long getTotalSelfNanos() {
+        return totalSelfNanos;
+    }
+
+    /**
+     * Prints the histogram of every node followed by a summary of the self times.
+     *
+     * @param out to print to
+     */
+    public void printTo(PrintStream out) {
+        out.printf("Profile of model '%s'%n", modelName);
+
+        for (Entry entry : entries) {
+            out.printf("%n%s (%s): %,d events%n", entry.nodeName, entry.nodeType, entry.events);
+            printHistogram(entry.histogram, out);
+        }
+
+        out.printf("%n%-30s %-10s %12s %12s %8s %10s %10s%n", "Node", "Type", "Events", "Self ms", "Share", "p50 us", "p99 us");
+        for (Entry entry : entries) {
+            out.printf("%-30s %-10s %,12d %,12.1f %7.1f%% %,10.1f %,10.1f%n", entry.nodeName, entry.nodeType,
+                    entry.events, entry.getSelfMillis(), getShare(entry) * 100, entry.getP50Micros(), entry.getP99Micros());
+        }
+    }
+
+    private static void printHistogram(LatencyHistogram histogram, PrintStream out) {
+        if (histogram == null || histogram.getTotalCount() == 0) {
+            out.printf("  no events%n");
+            return;
+        }
+
+        // only print the range of buckets that have any counts
+        int first = -1;
+        int last = -1;
+        long maxCount = 0;
+        for (int i = 0; i < histogram.getNumberOfBuckets(); ++i) {
+            long count = histogram.getCount(i);
+            if (count > 0) {
+                first = first < 0 ? i : first;
+                last = i;
+                maxCount = Math.max(maxCount, count);
+            }
+        }
+
+        for (int i = first; i <= last; ++i) {
+            long count = histogram.getCount(i);
+            int barLength = (int) Math.ceil((double) count * MAX_BAR_LENGTH / maxCount);
+
+            StringBuilder bar = new StringBuilder();
+            for (int j = 0; j < barLength; ++j) {
+                bar.append('#');
+            }
+            out.printf("  < %12s %,14d %s%n", formatNanos(histogram.getUpperBoundNanos(i)), count, bar);
+        }
+    }
+
+    static String formatNanos(long nanos) {
+        if (nanos == Long.MAX_VALUE) {
+            return "max";
+        } else if (nanos < 1000) {
+            return nanos + " ns";
+        } else if (nanos < 1000000) {
+            return String.format("%.1f us", nanos / 1000.0);
+        } else {
+            return String.format("%.1f ms", nanos / 1000000.0);
+        }
+    }
+
+    /**
+     * Returns the share of the total self time of all nodes that was spent in the specified entry, between 0 and 1.
+     *
+     * @param entry of this report
+     * @return share
+     */
+    public double getShare(Entry entry) {
+        return totalSelfNanos > 0 ? (double) entry.selfNanos / totalSelfNanos : 0;
+    }
+
+    /**
+     * The profile of a single node
+     */
+    public static class Entry {
+        private final String nodeName;
+        private final String nodeType;
+        private final long events;
+        private final long selfNanos;
+        private final LatencyHistogram histogram;
+
+        private Entry(String nodeName, String nodeType, NodeMetrics metrics) {
+            this.nodeName = nodeName;
+            this.nodeType = nodeType;
+            this.events = metrics.getEventsIn();
+            this.selfNanos = metrics.getProcessingNanos();
+            this.histogram = metrics.getHistogram();
+        }
+
+        public String getNodeName() {
+            return nodeName;
+        }
+
+        public String getNodeType() {
+            return nodeType;
+        }
+
+        public long getEvents() {
+            return events;
+        }
+
+        public double getSelfMillis() {
+            return selfNanos / 1000000.0;
+        }
+
+        public double getMeanMicros() {
+            return events > 0 ? selfNanos / 1000.0 / events : 0;
+        }
+
+        public double getP50Micros() {
+            return histogram != null ? histogram.getPercentileNanos(50) / 1000.0 : 0;
+        }
+
+        public double getP99Micros() {
+            return histogram != null ? histogram.getPercentileNanos(99) / 1000.0 : 0;
+        }
+    }
+}
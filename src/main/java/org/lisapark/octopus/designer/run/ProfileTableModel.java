@@ -0,0 +1,81 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.designer.run;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Table model that shows the entries of a {@link ProfileReport}. The numeric columns have numeric classes so that
+ * a {@link javax.swing.table.TableRowSorter} sorts them by value.
+ */
+public class ProfileTableModel extends AbstractTableModel {
+
+    public static final int SELF_TIME_COLUMN = 3;
+
+    private static final String[] COLUMN_NAMES = {
+            "Node", "Type", "Events", "Self Time (ms)", "Share (%)", "Mean (us)", "p50 (us)", "p99 (us)"
+    };
+    private static final Class<?>[] COLUMN_CLASSES = {
+            String.class, String.class, Long.class, Double.class, Double.class, Double.class, Double.class, Double.class
+    };
+
+    private final ProfileReport report;
+
+    public ProfileTableModel(ProfileReport report) {
+        this.report = report;
+    }
+
+    @Override
+    public int getRowCount() {
+        return report.getEntries().size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return COLUMN_CLASSES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        ProfileReport.Entry entry = report.getEntries().get(row);
+
+        switch (column) {
+            case 0:
+                return entry.getNodeName();
+            case 1:
+                return entry.getNodeType();
+            case 2:
+                return entry.getEvents();
+            case SELF_TIME_COLUMN:
+                return entry.getSelfMillis();
+            case 4:
+                return report.getShare(entry) * 100;
+            case 5:
+                return entry.getMeanMicros();
+            case 6:
+                return entry.getP50Micros();
+            case 7:
+                return entry.getP99Micros();
+            default:
+                throw new IndexOutOfBoundsException("No column " + column);
+        }
+    }
+}
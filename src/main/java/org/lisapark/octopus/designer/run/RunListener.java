@@ -0,0 +1,32 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.designer.run;
+
+/**
+ * Listener that is notified by a {@link RunManager} about the progress of a run. Note that all of the methods are
+ * called from the worker thread of the run, <b>not</b> the event dispatch thread.
+ */
+public interface RunListener {
+
+    void stateChanged(RunState newState);
+
+    /**
+     * Called when the model finished running, either because all sources were drained or because it was stopped.
+     *
+     * @param modelName     of the model that was run
+     * @param eventCount    number of events sent from the sources
+     * @param elapsedMillis time taken by the run, excluding compilation
+     * @param stopped       true if the run was stopped before the sources were drained
+     */
+    void runCompleted(String modelName, long eventCount, long elapsedMillis, boolean stopped);
+
+    void runFailed(String modelName, Throwable cause);
+}
@@ -0,0 +1,240 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.designer.run;
+
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.compiler.cache.CompiledModel;
+import org.lisapark.octopus.core.compiler.cache.CompiledRuntimeCache;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.runtime.control.RunControl;
+import org.lisapark.octopus.core.runtime.metrics.ModelMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * The {@link RunManager} is responsible for compiling and running a {@link ProcessingModel} off of the event
+ * dispatch thread. Every run gets its own single threaded worker executor that is discarded when the run
+ * finishes. Only one run can be active at a time.
+ * <p/>
+ * Models are compiled through a {@link CompiledRuntimeCache}, so running a model that was just compiled and not
+ * changed since does not compile it a second time.
+ */
+public class RunManager {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RunManager.class);
+
+    private final RunListener listener;
+    private final CompiledRuntimeCache runtimeCache;
+
+    private volatile RunState state = RunState.IDLE;
+    private volatile RunControl control;
+    private volatile ModelMetrics metrics;
+    private volatile boolean profiling;
+    private volatile long runStartTime;
+
+    public RunManager(RunListener listener, CompiledRuntimeCache runtimeCache) {
+        checkArgument(listener != null, "listener cannot be null");
+        checkArgument(runtimeCache != null, "runtimeCache cannot be null");
+        this.listener = listener;
+        this.runtimeCache = runtimeCache;
+    }
+
+    /**
+     * Starts running the specified model in the background. The method returns immediately.
+     *
+     * @param model to run
+     * @throws IllegalStateException if there is already a run active
+     */
+    public synchronized void start(ProcessingModel model) {
+        start(model, false);
+    }
+
+    /**
+     * Starts running the specified model in the background, optionally recording a histogram of the processing
+     * time of every node in the {@link ModelMetrics} of the run. The method returns immediately.
+     *
+     * @param model   to run
+     * @param profile true to profile the run
+     * @throws IllegalStateException if there is already a run active
+     */
+    public synchronized void start(ProcessingModel model, boolean profile) {
+        checkArgument(model != null, "model cannot be null");
+        checkState(state == RunState.IDLE, "Cannot start a run while another run is active");
+
+        control = null;
+        metrics = null;
+        profiling = profile;
+        runStartTime = 0;
+        setState(RunState.COMPILING);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor(new RunThreadFactory(model.getModelName()));
+        executor.submit(new ModelRunner(model));
+        // the executor will terminate as soon as the model runner is finished
+        executor.shutdown();
+    }
+
+    public synchronized void pause() {
+        if (state == RunState.RUNNING) {
+            control.pause();
+            setState(RunState.PAUSED);
+        }
+    }
+
+    public synchronized void resume() {
+        if (state == RunState.PAUSED) {
+            control.resume();
+            setState(RunState.RUNNING);
+        }
+    }
+
+    public synchronized void stop() {
+        if (state == RunState.COMPILING) {
+            // there is nothing to stop yet, the runner will check the state once compilation is done
+            setState(RunState.STOPPING);
+
+        } else if (state == RunState.RUNNING || state == RunState.PAUSED) {
+            setState(RunState.STOPPING);
+            control.stop();
+        }
+    }
+
+    public RunState getState() {
+        return state;
+    }
+
+    public boolean isActive() {
+        return state != RunState.IDLE;
+    }
+
+    /**
+     * Returns the number of events that have been sent from the sources of the current, or last, run.
+     *
+     * @return event count
+     */
+    public long getEventCount() {
+        RunControl currentControl = control;
+        return currentControl != null ? currentControl.getEventCount() : 0;
+    }
+
+    /**
+     * Returns the per node metrics of the current, or last, run.
+     *
+     * @return metrics, or null if no run has been started yet
+     */
+    public ModelMetrics getModelMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns true if the current, or last, run is being profiled.
+     *
+     * @return true if profiling
+     */
+    public boolean isProfiling() {
+        return profiling;
+    }
+
+    /**
+     * Returns the number of milliseconds the current run has been running, not including compilation.
+     *
+     * @return elapsed time in millis
+     */
+    public long getElapsedMillis() {
+        long startTime = runStartTime;
+        return startTime > 0 ? System.currentTimeMillis() - startTime : 0;
+    }
+
+    private synchronized void setState(RunState newState) {
+        this.state = newState;
+        listener.stateChanged(newState);
+    }
+
+    /**
+     * Called by the runner once the model is compiled.
+     *
+     * @param compiledModel that is about to be started
+     * @return false if the user stopped the run while it was still compiling
+     */
+    private synchronized boolean runStarted(CompiledModel compiledModel) {
+        RunControl runControl = compiledModel.getControl();
+        control = runControl;
+        metrics = compiledModel.getMetrics();
+        if (profiling) {
+            metrics.enableProfiling();
+        }
+        runStartTime = System.currentTimeMillis();
+
+        if (state == RunState.COMPILING) {
+            setState(RunState.RUNNING);
+            return true;
+        }
+        runControl.stop();
+        return false;
+    }
+
+    /**
+     * This {@link Runnable} compiles and runs the model on the worker thread.
+     */
+    private class ModelRunner implements Runnable {
+        private final ProcessingModel model;
+
+        private ModelRunner(ProcessingModel model) {
+            this.model = model;
+        }
+
+        @Override
+        public void run() {
+            String modelName = model.getModelName();
+            try {
+                CompiledModel compiledModel = runtimeCache.takeForRun(model);
+                RunControl runControl = compiledModel.getControl();
+
+                if (runStarted(compiledModel)) {
+                    ProcessingRuntime runtime = compiledModel.getRuntime();
+                    runtime.start();
+                    // shutdown will wait for all of the sources to be drained
+                    runtime.shutdown();
+                }
+
+                listener.runCompleted(modelName, runControl.getEventCount(), getElapsedMillis(), runControl.isStopped());
+
+            } catch (Throwable e) {
+                LOG.error(String.format("Problem running model [%s]", modelName), e);
+                listener.runFailed(modelName, e);
+
+            } finally {
+                setState(RunState.IDLE);
+            }
+        }
+    }
+
+    private static class RunThreadFactory implements ThreadFactory {
+        private final String modelName;
+
+        private RunThreadFactory(String modelName) {
+            this.modelName = modelName;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "octopus-run-" + modelName);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -18,6 +18,7 @@ import com.jidesoft.grid.PropertyPane;
 import com.jidesoft.grid.PropertyTable;
 import com.jidesoft.status.LabelStatusBarItem;
 import com.jidesoft.status.MemoryStatusBarItem;
+import com.jidesoft.status.ProgressStatusBarItem;
 import com.jidesoft.status.StatusBar;
 import com.jidesoft.status.TimeStatusBarItem;
 import com.jidesoft.swing.JideMenu;
@@ -150,6 +151,10 @@ public abstract class ComponentFactory {
         return new LabelStatusBarItem();
     }
 
+    public static ProgressStatusBarItem createProgressStatusBarItem() {
+        return new ProgressStatusBarItem();
+    }
+
     public static PropertyPane createPropertyPaneWithTable(PropertyTable table) {
         return new BasePropertyPane(table);
     }
@@ -0,0 +1,417 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.util.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A bounded pool of connections to a single database url with a single set of credentials. The connections handed
+ * out are proxies: closing one returns the physical connection to the pool instead of closing it.
+ * <p/>
+ * An idle connection is validated when it is borrowed, and replaced by a new one if it turns out to be broken. When
+ * a connection is returned, an open transaction is rolled back and auto commit is switched back on, other settings,
+ * like the isolation level, are kept.
+ * <p/>
+ * Every physical connection keeps a cache of the statements prepared on it, keyed by the SQL and the type and
+ * concurrency of their result sets. Closing a cached statement only clears its parameters, so preparing the same
+ * SQL again, even after the connection went back to the pool, reuses it.
+ */
+public class ConnectionPool {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int statementCacheSize;
+    private final long borrowTimeoutMillis;
+
+    private final Semaphore permits;
+    private final BlockingDeque<PhysicalConnection> idleConnections = new LinkedBlockingDeque<PhysicalConnection>();
+    private final PoolMetrics metrics = new PoolMetrics();
+
+    private volatile boolean closed;
+
+    /**
+     * @param url                 of the database
+     * @param username            to connect with, or null
+     * @param password            to connect with, or null
+     * @param maxSize             maximum number of connections that are open at the same time
+     * @param statementCacheSize  number of prepared statements cached per connection, 0 to not cache them
+     * @param borrowTimeoutMillis how long to wait for a connection when all of them are in use
+     */
+    public ConnectionPool(String url, String username, String password, int maxSize, int statementCacheSize,
+                          long borrowTimeoutMillis) {
+        checkArgument(url != null, "url cannot be null");
+        checkArgument(maxSize > 0, "maxSize has to be greater than zero");
+        checkArgument(statementCacheSize >= 0, "statementCacheSize cannot be negative");
+
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.statementCacheSize = statementCacheSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Returns the name of the pool, which is the url and the username, but never the password.
+     */
+    public String getName() {
+        return username != null ? username + "@" + url : url;
+    }
+
+    public PoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Borrows a connection from the pool, waiting for one to be returned if all of them are in use. The connection
+     * has to be closed to return it.
+     *
+     * @return connection
+     * @throws SQLException if no connection could be opened, or none became available in time
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool for " + getName() + " has been closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                metrics.borrowTimedOut();
+                throw new SQLException(String.format("Timed out waiting for a connection to %s, all of them are in use", getName()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection to " + getName(), e);
+        }
+
+        try {
+            PhysicalConnection connection = takeValidConnection();
+            metrics.connectionBorrowed(System.nanoTime() - start);
+
+            return connection.lease();
+
+        } catch (SQLException e) {
+            permits.release();
+            throw e;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the idle connections. Connections that are in use are closed when they are returned.
+     */
+    public void close() {
+        closed = true;
+
+        PhysicalConnection connection;
+        while ((connection = idleConnections.pollFirst()) != null) {
+            metrics.idleCountChanged(-1);
+            connection.closeQuietly();
+        }
+    }
+
+    private PhysicalConnection takeValidConnection() throws SQLException {
+        // the most recently returned connection is the least likely to have timed out
+        PhysicalConnection connection;
+        while ((connection = idleConnections.pollFirst()) != null) {
+            metrics.idleCountChanged(-1);
+
+            if (connection.isValid()) {
+                return connection;
+            }
+            metrics.validationFailed();
+            connection.closeQuietly();
+        }
+
+        Connection physicalConnection;
+        if (username == null && password == null) {
+            physicalConnection = DriverManager.getConnection(url);
+        } else {
+            physicalConnection = DriverManager.getConnection(url, username, password);
+        }
+        metrics.connectionOpened();
+
+        return new PhysicalConnection(physicalConnection);
+    }
+
+    private void release(PhysicalConnection connection, boolean reusable) {
+        metrics.connectionReturned();
+
+        try {
+            if (reusable && !closed) {
+                idleConnections.offerFirst(connection);
+                metrics.idleCountChanged(1);
+
+                // the pool may have been closed while the connection was put back
+                if (closed && idleConnections.remove(connection)) {
+                    metrics.idleCountChanged(-1);
+                    connection.closeQuietly();
+                }
+            } else {
+                connection.closeQuietly();
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * A connection to the database together with its statement cache. It is only ever used by one lease at a time.
+     */
+    private class PhysicalConnection {
+        private final Connection connection;
+        private final Map<String, CachedStatement> statements;
+
+        PhysicalConnection(Connection connection) {
+            this.connection = connection;
+            this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                    if (size() > statementCacheSize) {
+                        eldest.getValue().evict();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class[]{Connection.class}, new Lease(this));
+        }
+
+        boolean isValid() {
+            try {
+                return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } catch (SQLException e) {
+                return false;
+            } catch (AbstractMethodError e) {
+                // drivers from before JDBC 4 cannot validate, so only a connection that was closed is broken
+                try {
+                    return !connection.isClosed();
+                } catch (SQLException e1) {
+                    return false;
+                }
+            }
+        }
+
+        PreparedStatement prepare(Connection owner, String sql, int resultSetType, int resultSetConcurrency)
+                throws SQLException {
+            String key = resultSetType + ":" + resultSetConcurrency + ":" + sql;
+
+            CachedStatement cached = statements.get(key);
+            if (cached != null && !cached.inUse) {
+                metrics.statementCacheHit();
+                return cached.checkOut(owner);
+            }
+            metrics.statementCacheMiss();
+
+            PreparedStatement statement = connection.prepareStatement(sql, resultSetType, resultSetConcurrency);
+            if (cached != null || statementCacheSize == 0) {
+                // the cached one is in use by the same borrower, so this one is not cached
+                return statement;
+            }
+
+            cached = new CachedStatement(statement);
+            statements.put(key, cached);
+
+            return cached.checkOut(owner);
+        }
+
+        /**
+         * Returns the statements still checked out by a lease to the cache and resets the connection for the next
+         * borrower.
+         *
+         * @return false if the connection could not be reset and should be closed
+         */
+        boolean reset() {
+            for (CachedStatement cached : statements.values()) {
+                if (cached.inUse) {
+                    cached.checkIn();
+                }
+            }
+
+            try {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                connection.clearWarnings();
+                return true;
+
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        void closeQuietly() {
+            for (Iterator<CachedStatement> i = statements.values().iterator(); i.hasNext(); ) {
+                Statements.closeQuietly(i.next().statement);
+                i.remove();
+            }
+            Connections.closeQuietly(connection);
+        }
+    }
+
+    /**
+     * Handler of the proxy a borrower gets, which returns the physical connection to the pool when it is closed.
+     */
+    private class Lease implements InvocationHandler {
+        private final PhysicalConnection connection;
+        private volatile boolean closed;
+
+        Lease(PhysicalConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            if (name.equals("close")) {
+                if (!closed) {
+                    closed = true;
+                    release(connection, connection.reset());
+                }
+                return null;
+            } else if (name.equals("isClosed")) {
+                return closed;
+            } else if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (name.equals("toString")) {
+                return "Pooled connection to " + getName();
+            }
+
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+
+            if (name.equals("prepareStatement") && args.length == 1) {
+                return connection.prepare((Connection) proxy, (String) args[0],
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            } else if (name.equals("prepareStatement") && args.length == 3) {
+                return connection.prepare((Connection) proxy, (String) args[0], (Integer) args[1], (Integer) args[2]);
+            }
+
+            return ConnectionPool.invoke(connection.connection, method, args);
+        }
+    }
+
+    /**
+     * A statement in the cache of a {@link PhysicalConnection}. The borrower gets a proxy that checks the statement
+     * back in when it is closed.
+     */
+    private static class CachedStatement implements InvocationHandler {
+        private final PreparedStatement statement;
+        private final PreparedStatement proxy;
+
+        private Connection owner;
+        private boolean inUse;
+        private boolean evicted;
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class[]{PreparedStatement.class}, this);
+        }
+
+        PreparedStatement checkOut(Connection owner) {
+            this.owner = owner;
+            this.inUse = true;
+
+            return proxy;
+        }
+
+        void checkIn() {
+            inUse = false;
+            owner = null;
+
+            if (evicted) {
+                Statements.closeQuietly(statement);
+            } else {
+                try {
+                    statement.clearParameters();
+                } catch (SQLException e) {
+                    // the statement is broken, so the next execute will report it
+                }
+            }
+        }
+
+        void evict() {
+            evicted = true;
+            if (!inUse) {
+                Statements.closeQuietly(statement);
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            if (name.equals("close")) {
+                if (inUse) {
+                    checkIn();
+                }
+                return null;
+            } else if (name.equals("isClosed")) {
+                return !inUse;
+            } else if (name.equals("getConnection")) {
+                return owner;
+            } else if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (name.equals("toString")) {
+                return statement.toString();
+            }
+
+            if (!inUse) {
+                throw new SQLException("Statement has already been closed");
+            }
+
+            return ConnectionPool.invoke(statement, method, args);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.util.jdbc;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The {@link ConnectionPool}s shared by the nodes of a model, one for every distinct url and set of credentials.
+ * Nodes that point at the same database borrow from the same pool, so together they never hold more than the
+ * maximum number of connections of the pool.
+ */
+public class ConnectionPools {
+
+    public static final int DEFAULT_MAX_SIZE = 8;
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+    public static final long DEFAULT_BORROW_TIMEOUT_MILLIS = 30000;
+
+    private final int maxSize;
+    private final int statementCacheSize;
+    private final long borrowTimeoutMillis;
+
+    private final ConcurrentMap<String, ConnectionPool> pools = Maps.newConcurrentMap();
+    private volatile boolean closed;
+
+    /**
+     * @param maxSize             maximum number of connections of every pool
+     * @param statementCacheSize  number of prepared statements cached per connection
+     * @param borrowTimeoutMillis how long to wait for a connection when all of the connections of a pool are in use
+     */
+    public ConnectionPools(int maxSize, int statementCacheSize, long borrowTimeoutMillis) {
+        checkArgument(maxSize > 0, "maxSize has to be greater than zero");
+
+        this.maxSize = maxSize;
+        this.statementCacheSize = statementCacheSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+    }
+
+    /**
+     * Borrows a connection from the pool for the specified url and credentials, creating the pool the first time
+     * they are seen. The driver of the url has to be loaded already.
+     *
+     * @param url      of the database
+     * @param username to connect with, or null
+     * @param password to connect with, or null
+     * @return connection that has to be closed to return it to the pool
+     * @throws SQLException if no connection could be opened, or none became available in time
+     */
+    public Connection getConnection(String url, String username, String password) throws SQLException {
+        String key = String.format("%s\u0000%s\u0000%s", url, username, password);
+
+        ConnectionPool pool = pools.get(key);
+        if (pool == null) {
+            ConnectionPool newPool = new ConnectionPool(url, username, password, maxSize, statementCacheSize,
+                    borrowTimeoutMillis);
+            pool = pools.putIfAbsent(key, newPool);
+            if (pool == null) {
+                pool = newPool;
+            }
+
+            // a pool created while closing would never be closed itself
+            if (closed) {
+                pool.close();
+            }
+        }
+
+        return pool.getConnection();
+    }
+
+    /**
+     * Returns the pools that have been created so far, for reporting their {@link PoolMetrics}.
+     *
+     * @return pools
+     */
+    public List<ConnectionPool> getPools() {
+        return Lists.newArrayList(pools.values());
+    }
+
+    public void close() {
+        closed = true;
+        for (ConnectionPool pool : pools.values()) {
+            pool.close();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.util.jdbc;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for a single {@link ConnectionPool}. Like the node metrics of a run, reading them while the pool is in
+ * use is always safe, but a set of reads is not an atomic snapshot.
+ */
+public class PoolMetrics {
+
+    private final AtomicLong connectionsOpened = new AtomicLong();
+    private final AtomicLong connectionsBorrowed = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong borrowTimeouts = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+    private final AtomicInteger connectionsInUse = new AtomicInteger();
+    private final AtomicInteger connectionsIdle = new AtomicInteger();
+
+    void connectionOpened() {
+        connectionsOpened.incrementAndGet();
+    }
+
+    void connectionBorrowed(long waitedNanos) {
+        connectionsBorrowed.incrementAndGet();
+        waitNanos.addAndGet(waitedNanos);
+        connectionsInUse.incrementAndGet();
+    }
+
+    void connectionReturned() {
+        connectionsInUse.decrementAndGet();
+    }
+
+    void validationFailed() {
+        validationFailures.incrementAndGet();
+    }
+
+    void borrowTimedOut() {
+        borrowTimeouts.incrementAndGet();
+    }
+
+    void statementCacheHit() {
+        statementCacheHits.incrementAndGet();
+    }
+
+    void statementCacheMiss() {
+        statementCacheMisses.incrementAndGet();
+    }
+
+    void idleCountChanged(int delta) {
+        connectionsIdle.addAndGet(delta);
+    }
+
+    /**
+     * Returns the number of physical connections the pool has opened so far.
+     */
+    public long getConnectionsOpened() {
+        return connectionsOpened.get();
+    }
+
+    public long getConnectionsBorrowed() {
+        return connectionsBorrowed.get();
+    }
+
+    /**
+     * Returns the number of idle connections that were found broken when they were borrowed, and replaced.
+     */
+    public long getValidationFailures() {
+        return validationFailures.get();
+    }
+
+    public long getBorrowTimeouts() {
+        return borrowTimeouts.get();
+    }
+
+    /**
+     * Returns the total time borrowers have waited for a connection, including opening new ones.
+     */
+    public long getWaitNanos() {
+        return waitNanos.get();
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits.get();
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.get();
+    }
+
+    public int getConnectionsInUse() {
+        return connectionsInUse.get();
+    }
+
+    public int getConnectionsIdle() {
+        return connectionsIdle.get();
+    }
+}
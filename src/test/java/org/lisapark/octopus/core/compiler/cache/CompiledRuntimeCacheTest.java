@@ -0,0 +1,109 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.sink.external.ConsoleSink;
+import org.lisapark.octopus.core.source.external.TestSource;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class CompiledRuntimeCacheTest {
+
+    private CompiledRuntimeCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new CompiledRuntimeCache(System.out, System.err, 2);
+    }
+
+    @Test
+    public void testCompile_Unchanged() throws Exception {
+        ProcessingModel model = newModel("unchanged");
+
+        CompiledModel first = cache.compile(model);
+        CompiledModel second = cache.compile(model);
+
+        assertThat(second, is(sameInstance(first)));
+        assertThat(cache.getHitCount(), is(1L));
+        assertThat(cache.getMissCount(), is(1L));
+    }
+
+    @Test
+    public void testTakeForRun() throws Exception {
+        ProcessingModel model = newModel("take");
+
+        CompiledModel compiled = cache.compile(model);
+        CompiledModel taken = cache.takeForRun(model);
+
+        assertThat(taken, is(sameInstance(compiled)));
+        assertThat(cache.contains(model), is(false));
+        // a runtime can only be started once, so the next one has to be compiled again
+        assertThat(cache.takeForRun(model), is(not(sameInstance(taken))));
+    }
+
+    @Test
+    public void testFingerprint_ChangesWithModel() throws Exception {
+        ProcessingModel model = newModel("changed");
+        String fingerprint = ModelFingerprint.forModel(model);
+
+        assertThat(ModelFingerprint.forModel(model), is(fingerprint));
+
+        model.addExternalSink(ConsoleSink.newTemplate());
+
+        assertThat(ModelFingerprint.forModel(model), is(not(fingerprint)));
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        ProcessingModel model = newModel("invalidate");
+        cache.compile(model);
+
+        cache.invalidate("invalidate");
+
+        assertThat(cache.contains(model), is(false));
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws Exception {
+        ProcessingModel first = newModel("first");
+        ProcessingModel second = newModel("second");
+        ProcessingModel third = newModel("third");
+
+        cache.compile(first);
+        cache.compile(second);
+        cache.compile(first);
+        cache.compile(third);
+
+        assertThat(cache.size(), is(2));
+        assertThat(cache.contains(first), is(true));
+        assertThat(cache.contains(second), is(false));
+    }
+
+    private static ProcessingModel newModel(String name) {
+        ProcessingModel model = new ProcessingModel(name);
+
+        TestSource source = TestSource.newTemplate();
+        ConsoleSink sink = ConsoleSink.newTemplate();
+        sink.getInput().connectSource(source);
+
+        model.addExternalEventSource(source);
+        model.addExternalSink(sink);
+
+        return model;
+    }
+}
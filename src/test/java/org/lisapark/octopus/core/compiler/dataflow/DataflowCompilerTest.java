@@ -0,0 +1,176 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.dataflow;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.ValidationException;
+import org.lisapark.octopus.core.compiler.Compiler;
+import org.lisapark.octopus.core.compiler.esper.EsperCompiler;
+import org.lisapark.octopus.core.processor.Addition;
+import org.lisapark.octopus.core.processor.ProcessorInput;
+import org.lisapark.octopus.core.processor.ProcessorJoin;
+import org.lisapark.octopus.core.processor.Sma;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.sink.external.ConsoleSink;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class DataflowCompilerTest {
+
+    private ValuesSource source;
+    private Sma shortSma;
+    private Sma longSma;
+    private Addition addition;
+
+    private ProcessingModel model;
+
+    @Before
+    public void setUp() throws Exception {
+        double[] values = new double[300];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = (i * 7) % 5;
+        }
+        source = ValuesSource.newTemplate("value", values);
+
+        shortSma = Sma.newTemplate();
+        shortSma.getInput().connectSource(source);
+        shortSma.getInput().setSourceAttribute("value");
+        shortSma.setWindowLength(1);
+        shortSma.getOutput().setAttributeName("short");
+
+        longSma = Sma.newTemplate();
+        longSma.getInput().connectSource(source);
+        longSma.getInput().setSourceAttribute("value");
+        longSma.setWindowLength(2);
+        longSma.getOutput().setAttributeName("long");
+
+        model = new ProcessingModel("dataflow");
+        model.addExternalEventSource(source);
+        model.addProcessor(shortSma);
+        model.addProcessor(longSma);
+    }
+
+    @Test
+    public void testCompile_SmaChainSameOutputAsEsperCompiler() throws Exception {
+        Sma secondSma = Sma.newTemplate();
+        secondSma.getInput().connectSource(longSma);
+        secondSma.getInput().setSourceAttribute(longSma.getOutput().getAttributeByName("long"));
+        secondSma.getOutput().setAttributeName("second_long");
+        // short windows over whole numbers keep the averages exact, the incremental sma rounds differently otherwise
+        secondSma.setWindowLength(2);
+        model.addProcessor(secondSma);
+
+        ConsoleSink sink = ConsoleSink.newTemplate();
+        sink.getInput().connectSource(secondSma);
+        model.addExternalSink(sink);
+
+        String dataflowOutput = run(new DataflowCompiler());
+
+        assertTrue("Expected the model to produce output", dataflowOutput.length() > 0);
+        assertThat(dataflowOutput, is(run(new EsperCompiler())));
+    }
+
+    @Test
+    public void testCompile_JoinSameOutputAsEsperCompiler() throws Exception {
+        addition = Addition.newTemplate();
+        connectInput(0, shortSma, "short");
+        connectInput(1, longSma, "long");
+
+        ProcessorJoin join = (ProcessorJoin) addition.getJoins().get(0);
+        join.setJoinAttributeForInput(input(0), shortSma.getOutput().getAttributeByName("short"));
+        join.setJoinAttributeForInput(input(1), longSma.getOutput().getAttributeByName("long"));
+        model.addProcessor(addition);
+
+        // one sink on the join and one on a processor that feeds it, so the dispatch order matters
+        ConsoleSink additionSink = ConsoleSink.newTemplate();
+        additionSink.getInput().connectSource(addition);
+        model.addExternalSink(additionSink);
+
+        ConsoleSink smaSink = ConsoleSink.newTemplate();
+        smaSink.getInput().connectSource(shortSma);
+        model.addExternalSink(smaSink);
+
+        String dataflowOutput = run(new DataflowCompiler());
+
+        assertTrue("Expected the model to produce output", dataflowOutput.length() > 0);
+        assertThat(dataflowOutput, is(run(new EsperCompiler())));
+    }
+
+    @Test(expected = ValidationException.class)
+    public void testCompile_SameSourceOnBothInputs() throws Exception {
+        addition = Addition.newTemplate();
+        connectInput(0, shortSma, "short");
+        connectInput(1, shortSma, "short");
+        model.addProcessor(addition);
+
+        new DataflowCompiler().compile(model);
+    }
+
+    @Test
+    public void testCompile_NullJoinKeysNeverMatch() throws Exception {
+        ValuesSource firstSource = ValuesSource.newTemplateWithNulls("left", null, 3.0, null);
+        ValuesSource secondSource = ValuesSource.newTemplateWithNulls("right", null, null, 3.0);
+
+        addition = Addition.newTemplate();
+        input(0).connectSource(firstSource);
+        input(0).setSourceAttribute("left");
+        input(1).connectSource(secondSource);
+        input(1).setSourceAttribute("right");
+
+        ProcessorJoin join = (ProcessorJoin) addition.getJoins().get(0);
+        join.setJoinAttributeForInput(input(0), firstSource.getOutput().getAttributeByName("left"));
+        join.setJoinAttributeForInput(input(1), secondSource.getOutput().getAttributeByName("right"));
+
+        ConsoleSink additionSink = ConsoleSink.newTemplate();
+        additionSink.getInput().connectSource(addition);
+
+        model = new ProcessingModel("nulls");
+        model.addExternalEventSource(firstSource);
+        model.addExternalEventSource(secondSource);
+        model.addProcessor(addition);
+        model.addExternalSink(additionSink);
+
+        // only the two events with 3.0 join, whichever of the sources is faster
+        String dataflowOutput = run(new DataflowCompiler());
+
+        assertThat(dataflowOutput.split("\\r?\\n").length, is(1));
+        assertThat(dataflowOutput, is(run(new EsperCompiler())));
+    }
+
+    private ProcessorInput input(int index) {
+        return (ProcessorInput) addition.getInputs().get(index);
+    }
+
+    private void connectInput(int index, Sma sma, String attributeName) throws ValidationException {
+        input(index).connectSource(sma);
+        input(index).setSourceAttribute(sma.getOutput().getAttributeByName(attributeName));
+    }
+
+    private String run(Compiler compiler) throws ValidationException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream stream = new PrintStream(output, true);
+        compiler.setStandardOut(stream);
+        compiler.setStandardError(stream);
+
+        ProcessingRuntime runtime = compiler.compile(model);
+        runtime.start();
+        runtime.shutdown();
+
+        return output.toString();
+    }
+}
@@ -0,0 +1,90 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.dataflow;
+
+import org.lisapark.octopus.core.Output;
+import org.lisapark.octopus.core.ValidationException;
+import org.lisapark.octopus.core.event.Attribute;
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.source.external.CompiledExternalSource;
+import org.lisapark.octopus.core.source.external.ExternalSource;
+
+import java.util.UUID;
+
+/**
+ * Source that sends a fixed list of values for a single double attribute, so tests can choose values that make
+ * joins and crossings happen. The values can include nulls, see {@link #newTemplateWithNulls(String, Double...)}.
+ */
+public class ValuesSource extends ExternalSource {
+
+    private final Double[] values;
+
+    private ValuesSource(UUID id, Double[] values) {
+        super(id, "Values source", "Sends a fixed list of values");
+        this.values = values;
+    }
+
+    private ValuesSource(UUID id, ValuesSource copyFromSource) {
+        super(id, copyFromSource);
+        this.values = copyFromSource.values;
+    }
+
+    private ValuesSource(ValuesSource copyFromSource) {
+        super(copyFromSource);
+        this.values = copyFromSource.values;
+    }
+
+    @Override
+    public ValuesSource newInstance() {
+        return new ValuesSource(UUID.randomUUID(), this);
+    }
+
+    @Override
+    public ValuesSource copyOf() {
+        return new ValuesSource(this);
+    }
+
+    public static ValuesSource newTemplate(String attributeName, double... values) throws ValidationException {
+        Double[] boxedValues = new Double[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            boxedValues[i] = values[i];
+        }
+
+        return newTemplateWithNulls(attributeName, boxedValues);
+    }
+
+    public static ValuesSource newTemplateWithNulls(String attributeName, Double... values) throws ValidationException {
+        ValuesSource source = new ValuesSource(UUID.randomUUID(), values);
+        source.setOutput(Output.outputWithId(1).setName("Output"));
+        source.getOutput().addAttribute(Attribute.doubleAttribute(attributeName));
+
+        return source;
+    }
+
+    @Override
+    public CompiledExternalSource compile() throws ValidationException {
+        final String attributeName = getOutput().getAttributes().get(0).getName();
+
+        return new CompiledExternalSource() {
+            @Override
+            public void startProcessingEvents(ProcessingRuntime runtime) {
+                for (Double value : values) {
+                    runtime.sendEventFromSource(new Event(attributeName, value), ValuesSource.this);
+                }
+            }
+
+            @Override
+            public void stopProcessingEvents() {
+            }
+        };
+    }
+}
@@ -0,0 +1,180 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.incremental;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.compiler.esper.EsperCompiler;
+import org.lisapark.octopus.core.event.Attribute;
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.processor.Sma;
+import org.lisapark.octopus.core.runtime.BatchProcessingRuntime;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.runtime.metrics.ModelMetrics;
+import org.lisapark.octopus.core.sink.external.ConsoleSink;
+import org.lisapark.octopus.core.source.external.TestSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class IncrementalEsperCompilerTest {
+
+    private IncrementalEsperCompiler compiler;
+    private ByteArrayOutputStream output;
+
+    private ProcessingModel model;
+    private TestSource source;
+    private Sma sma;
+    private ConsoleSink sink;
+
+    @Before
+    public void setUp() throws Exception {
+        output = new ByteArrayOutputStream();
+        PrintStream stream = new PrintStream(output, true);
+
+        compiler = new IncrementalEsperCompiler();
+        compiler.setStandardOut(stream);
+        compiler.setStandardError(stream);
+
+        source = TestSource.newTemplate();
+        Attribute attribute = Attribute.doubleAttribute("value");
+        source.getOutput().addAttribute(attribute);
+
+        sma = Sma.newTemplate();
+        sma.getInput().connectSource(source);
+        sma.getInput().setSourceAttribute(attribute);
+
+        sink = ConsoleSink.newTemplate();
+        sink.getInput().connectSource(sma);
+
+        model = new ProcessingModel("incremental");
+        model.addExternalEventSource(source);
+        model.addProcessor(sma);
+        model.addExternalSink(sink);
+    }
+
+    @Test
+    public void testCompile_Unchanged() throws Exception {
+        compiler.compile(model);
+        assertThat(compiler.getLastRecompiledNodeCount(), is(2));
+
+        compiler.compile(model);
+        assertThat(compiler.getLastRecompiledNodeCount(), is(0));
+    }
+
+    @Test
+    public void testCompile_ParameterChanged() throws Exception {
+        compiler.compile(model);
+
+        sma.setWindowLength(sma.getWindowLength() + 1);
+        ProcessingRuntime runtime = compiler.compile(model);
+
+        // only the sma changed, its output event type is the same so the sink can keep its statement
+        assertThat(compiler.getLastRecompiledNodeCount(), is(1));
+
+        runtime.start();
+        runtime.shutdown();
+
+        assertTrue("Events should reach the sink after an incremental compile", output.size() > 0);
+    }
+
+    @Test
+    public void testCompile_EventTypeChanged() throws Exception {
+        compiler.compile(model);
+
+        sma.getOutput().setAttributeName("incremental_sma");
+        compiler.compile(model);
+
+        // the sink reads from the sma, so it has to be recompiled against the new event type
+        assertThat(compiler.getLastRecompiledNodeCount(), is(2));
+    }
+
+    @Test
+    public void testSendEventsFromSource() throws Exception {
+        ModelMetrics sourceOnlyMetrics = new ModelMetrics();
+        ProcessingRuntime runtime = compiler.compile(model, sourceOnlyMetrics);
+        runtime.start();
+        runtime.shutdown();
+
+        ModelMetrics batchMetrics = new ModelMetrics();
+        runtime = compiler.compile(model, batchMetrics);
+        runtime.start();
+        ((BatchProcessingRuntime) runtime).sendEventsFromSource(Arrays.asList(
+                new Event("value", 1.0), new Event("value", 2.0), new Event("value", 3.0)), source);
+        runtime.shutdown();
+
+        long sourceOnlyCount = sourceOnlyMetrics.metricsForNode(sink.getId()).getEventsIn();
+        assertThat(batchMetrics.metricsForNode(sink.getId()).getEventsIn(), is(sourceOnlyCount + 3));
+    }
+
+    @Test
+    public void testCompile_SameOutputAsEsperCompiler() throws Exception {
+        // a second sma reading the first one, so the attributes of the source have to be carried through both
+        Sma secondSma = Sma.newTemplate();
+        secondSma.getInput().connectSource(sma);
+        secondSma.getInput().setSourceAttribute(sma.getOutput().getAttributeByName("average"));
+        secondSma.getOutput().setAttributeName("second_average");
+        sink.getInput().connectSource(secondSma);
+        model.addProcessor(secondSma);
+
+        ProcessingRuntime runtime = compiler.compile(model);
+        runtime.start();
+        runtime.shutdown();
+        String incrementalOutput = output.toString();
+
+        output.reset();
+        EsperCompiler esperCompiler = new EsperCompiler();
+        PrintStream stream = new PrintStream(output, true);
+        esperCompiler.setStandardOut(stream);
+        esperCompiler.setStandardError(stream);
+        runtime = esperCompiler.compile(model);
+        runtime.start();
+        runtime.shutdown();
+
+        assertTrue("Expected the model to produce output", incrementalOutput.length() > 0);
+        assertThat(incrementalOutput, is(output.toString()));
+    }
+
+    @Test
+    public void testCompile_FusedSameOutputAsUnfused() throws Exception {
+        Sma secondSma = Sma.newTemplate();
+        secondSma.getInput().connectSource(sma);
+        secondSma.getInput().setSourceAttribute(sma.getOutput().getAttributeByName("average"));
+        secondSma.getOutput().setAttributeName("second_average");
+        sink.getInput().connectSource(secondSma);
+        model.addProcessor(secondSma);
+
+        ModelMetrics metrics = new ModelMetrics();
+        ProcessingRuntime runtime = compiler.compile(model, metrics);
+        assertThat(compiler.getLastFusedNodeCount(), is(1));
+        runtime.start();
+        runtime.shutdown();
+        String fusedOutput = output.toString();
+
+        output.reset();
+        compiler.setFusionEnabled(false);
+        runtime = compiler.compile(model);
+        assertThat(compiler.getLastFusedNodeCount(), is(0));
+        runtime.start();
+        runtime.shutdown();
+
+        assertTrue("Expected the model to produce output", fusedOutput.length() > 0);
+        assertThat(fusedOutput, is(output.toString()));
+        // the fused processor still records its own metrics
+        assertThat(metrics.metricsForNode(secondSma.getId()).getEventsIn(), is(metrics.metricsForNode(sma.getId()).getEventsIn()));
+    }
+}
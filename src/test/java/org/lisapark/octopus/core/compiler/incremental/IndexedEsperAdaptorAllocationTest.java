@@ -0,0 +1,153 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.incremental;
+
+import com.espertech.esper.client.Configuration;
+import com.espertech.esper.client.EPServiceProvider;
+import com.espertech.esper.client.EPServiceProviderManager;
+import com.espertech.esper.client.EventBean;
+import com.espertech.esper.event.map.MapEventBean;
+import com.google.common.collect.Maps;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.lisapark.octopus.core.event.Attribute;
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.event.IndexedEvent;
+import org.lisapark.octopus.core.processor.CompiledProcessor;
+import org.lisapark.octopus.core.processor.Sma;
+import org.lisapark.octopus.core.runtime.ProcessorContext;
+import org.lisapark.octopus.core.runtime.SinkContext;
+import org.lisapark.octopus.core.runtime.basic.BasicProcessorContext;
+import org.lisapark.octopus.core.runtime.basic.BasicSinkContext;
+import org.lisapark.octopus.core.sink.external.CompiledExternalSink;
+import org.lisapark.octopus.core.sink.external.ConsoleSink;
+import org.lisapark.octopus.core.source.external.TestSource;
+import org.lisapark.octopus.util.esper.EsperUtils;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that dispatching an event to a processor or sink does not allocate anything once the adaptor is warmed up.
+ */
+public class IndexedEsperAdaptorAllocationTest {
+
+    private static final int WARM_UP_EVENTS = 100000;
+    private static final int MEASURED_EVENTS = 100000;
+
+    private com.sun.management.ThreadMXBean threadBean;
+
+    private TestSource source;
+    private Sma sma;
+    private ConsoleSink sink;
+    private double total;
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        source = TestSource.newTemplate();
+        Attribute attribute = Attribute.doubleAttribute("value");
+        source.getOutput().addAttribute(attribute);
+
+        sma = Sma.newTemplate();
+        sma.getInput().connectSource(source);
+        sma.getInput().setSourceAttribute(attribute);
+
+        sink = ConsoleSink.newTemplate();
+        sink.getInput().connectSource(sma);
+    }
+
+    @After
+    public void tearDown() {
+        EPServiceProviderManager.getProvider(getClass().getName()).destroy();
+    }
+
+    @Test
+    public void testProcessorDispatch() throws Exception {
+        final int inputId = sma.getInput().getId();
+        CompiledProcessor<Double> processor = new CompiledProcessor<Double>(sma) {
+            @Override
+            public Object processEvent(ProcessorContext<Double> ctx, Map<Integer, Event> eventsByInputId) {
+                total += ((IndexedEvent) eventsByInputId.get(inputId)).getDouble(0, 0);
+                // no output, an output event has to be allocated since it is kept by the engine
+                return null;
+            }
+        };
+
+        EPServiceProvider epService = EPServiceProviderManager.getProvider(getClass().getName(), new Configuration());
+        String eventName = EsperUtils.getEventNameForSource(source);
+        epService.getEPAdministrator().getConfiguration().addEventType(eventName, source.getOutput().getEventDefinition());
+
+        Map<String, Object> data = Maps.newHashMap();
+        data.put("value", 1.0);
+        MapEventBean sourceEvent = new MapEventBean(data,
+                epService.getEPAdministrator().getConfiguration().getEventType(eventName));
+        Map<String, Object> streams = Maps.newHashMap();
+        streams.put("_0_properties", sourceEvent);
+        EventBean[] newEvents = new EventBean[]{new MapEventBean(streams, sourceEvent.getEventType())};
+
+        IndexedEsperProcessorAdaptor adaptor = new IndexedEsperProcessorAdaptor(processor,
+                new BasicProcessorContext<Double>(System.out, System.err), epService.getEPRuntime());
+
+        for (int i = 0; i < WARM_UP_EVENTS; ++i) {
+            adaptor.update(newEvents, null);
+        }
+
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < MEASURED_EVENTS; ++i) {
+            adaptor.update(newEvents, null);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;
+
+        assertTrue("Processor dispatch allocated " + allocated + " bytes", allocated < MEASURED_EVENTS);
+        assertTrue(total == WARM_UP_EVENTS + MEASURED_EVENTS);
+    }
+
+    @Test
+    public void testSinkDispatch() throws Exception {
+        final int inputId = sink.getInput().getId();
+        CompiledExternalSink compiledSink = new CompiledExternalSink(sink) {
+            @Override
+            public void processEvent(SinkContext ctx, Map<Integer, Event> eventsByInputId) {
+                total += ((IndexedEvent) eventsByInputId.get(inputId)).getDouble(0, 0);
+            }
+        };
+
+        // this is what the adaptor of the sma sends
+        IndexedEvent smaEvent = new IndexedEvent(IndexedEsperProcessorAdaptor.schemaForSource(sma));
+        smaEvent.set(0, 1.0);
+        Map<String, Object> data = smaEvent.getData();
+
+        IndexedEsperExternalSinkAdaptor adaptor = new IndexedEsperExternalSinkAdaptor(compiledSink,
+                new BasicSinkContext(System.out, System.err));
+
+        for (int i = 0; i < WARM_UP_EVENTS; ++i) {
+            adaptor.update(data);
+        }
+
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < MEASURED_EVENTS; ++i) {
+            adaptor.update(data);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;
+
+        assertTrue("Sink dispatch allocated " + allocated + " bytes", allocated < MEASURED_EVENTS);
+        assertTrue(total == WARM_UP_EVENTS + MEASURED_EVENTS);
+    }
+}
@@ -0,0 +1,89 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.incremental;
+
+import com.google.common.collect.Maps;
+import org.lisapark.octopus.core.Output;
+import org.lisapark.octopus.core.ValidationException;
+import org.lisapark.octopus.core.event.Attribute;
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.source.external.CompiledExternalSource;
+import org.lisapark.octopus.core.source.external.ExternalSource;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Source that sends a number of events with a double "key" that cycles through a few values, and a double "value"
+ * that counts the events, so tests can check the order the events of a key arrive in.
+ */
+public class KeyedSource extends ExternalSource {
+
+    private final int numberOfEvents;
+    private final int numberOfKeys;
+
+    private KeyedSource(UUID id, int numberOfEvents, int numberOfKeys) {
+        super(id, "Keyed source", "Sends events for a few keys");
+        this.numberOfEvents = numberOfEvents;
+        this.numberOfKeys = numberOfKeys;
+    }
+
+    private KeyedSource(UUID id, KeyedSource copyFromSource) {
+        super(id, copyFromSource);
+        this.numberOfEvents = copyFromSource.numberOfEvents;
+        this.numberOfKeys = copyFromSource.numberOfKeys;
+    }
+
+    private KeyedSource(KeyedSource copyFromSource) {
+        super(copyFromSource);
+        this.numberOfEvents = copyFromSource.numberOfEvents;
+        this.numberOfKeys = copyFromSource.numberOfKeys;
+    }
+
+    @Override
+    public KeyedSource newInstance() {
+        return new KeyedSource(UUID.randomUUID(), this);
+    }
+
+    @Override
+    public KeyedSource copyOf() {
+        return new KeyedSource(this);
+    }
+
+    public static KeyedSource newTemplate(int numberOfEvents, int numberOfKeys) throws ValidationException {
+        KeyedSource source = new KeyedSource(UUID.randomUUID(), numberOfEvents, numberOfKeys);
+        source.setOutput(Output.outputWithId(1).setName("Output"));
+        source.getOutput().addAttribute(Attribute.doubleAttribute("key"));
+        source.getOutput().addAttribute(Attribute.doubleAttribute("value"));
+
+        return source;
+    }
+
+    @Override
+    public CompiledExternalSource compile() throws ValidationException {
+        return new CompiledExternalSource() {
+            @Override
+            public void startProcessingEvents(ProcessingRuntime runtime) {
+                for (int i = 0; i < numberOfEvents; ++i) {
+                    Map<String, Object> data = Maps.newHashMap();
+                    data.put("key", (double) (i % numberOfKeys));
+                    data.put("value", (double) i);
+                    runtime.sendEventFromSource(new Event(data), KeyedSource.this);
+                }
+            }
+
+            @Override
+            public void stopProcessingEvents() {
+            }
+        };
+    }
+}
@@ -0,0 +1,257 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.compiler.incremental;
+
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.ValidationException;
+import org.lisapark.octopus.core.event.Attribute;
+import org.lisapark.octopus.core.processor.Addition;
+import org.lisapark.octopus.core.processor.ProcessorInput;
+import org.lisapark.octopus.core.processor.ProcessorJoin;
+import org.lisapark.octopus.core.processor.Sma;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.sink.external.ConsoleSink;
+import org.lisapark.octopus.core.source.Source;
+import org.lisapark.octopus.core.source.external.TestSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class PartitionedEsperCompilerTest {
+
+    private ByteArrayOutputStream output;
+    private PrintStream stream;
+
+    private ProcessingModel model;
+    private TestSource source;
+    private Attribute key;
+
+    @Before
+    public void setUp() throws Exception {
+        output = new ByteArrayOutputStream();
+        stream = new PrintStream(output, true);
+
+        source = TestSource.newTemplate();
+        key = Attribute.doubleAttribute("value");
+        source.getOutput().addAttribute(key);
+
+        ConsoleSink sink = ConsoleSink.newTemplate();
+        sink.getInput().connectSource(source);
+
+        model = new ProcessingModel("partitioned");
+        model.addExternalEventSource(source);
+        model.addExternalSink(sink);
+    }
+
+    @Test
+    public void testCompile_SameEventsAsSingleEngine() throws Exception {
+        IncrementalEsperCompiler singleCompiler = new IncrementalEsperCompiler();
+        singleCompiler.setStandardOut(stream);
+        singleCompiler.setStandardError(stream);
+        run(singleCompiler.compile(model));
+        List<String> singleLines = sortedLines();
+
+        output.reset();
+        PartitionedEsperCompiler compiler = new PartitionedEsperCompiler(4);
+        compiler.setStandardOut(stream);
+        compiler.setStandardError(stream);
+        compiler.setPartitionKey(source, key);
+        run(compiler.compile(model));
+
+        assertTrue("Expected the model to produce output", !singleLines.isEmpty());
+        assertThat(sortedLines(), is(singleLines));
+    }
+
+    @Test
+    public void testCompile_EventsOfAKeyInOrder() throws Exception {
+        KeyedSource keyedSource = KeyedSource.newTemplate(2000, 7);
+        ProcessingModel keyedModel = modelWithSink(keyedSource, keyedSource);
+
+        PartitionedEsperCompiler compiler = partitionedCompiler();
+        compiler.setPartitionKey(keyedSource, keyedSource.getOutput().getAttributeByName("key"));
+        run(compiler.compile(keyedModel));
+
+        assertValuesInOrderPerKey(7, 2000);
+    }
+
+    @Test
+    public void testCompile_SmaOnSourceWithoutKey_SameOrderAsSingleEngine() throws Exception {
+        KeyedSource keyedSource = KeyedSource.newTemplate(500, 7);
+        Sma sma = smaOn(keyedSource);
+        ProcessingModel smaModel = modelWithSink(keyedSource, sma);
+        smaModel.addProcessor(sma);
+
+        IncrementalEsperCompiler singleCompiler = new IncrementalEsperCompiler();
+        singleCompiler.setStandardOut(stream);
+        singleCompiler.setStandardError(stream);
+        run(singleCompiler.compile(smaModel));
+        String singleOutput = output.toString();
+
+        output.reset();
+        run(partitionedCompiler().compile(smaModel));
+
+        assertTrue("Expected the model to produce output", singleOutput.length() > 0);
+        assertThat(output.toString(), is(singleOutput));
+    }
+
+    @Test(expected = ValidationException.class)
+    public void testCompile_SmaOnPartitionedSource() throws Exception {
+        KeyedSource keyedSource = KeyedSource.newTemplate(500, 7);
+        Sma sma = smaOn(keyedSource);
+        ProcessingModel smaModel = modelWithSink(keyedSource, sma);
+        smaModel.addProcessor(sma);
+
+        PartitionedEsperCompiler compiler = partitionedCompiler();
+        compiler.setPartitionKey(keyedSource, keyedSource.getOutput().getAttributeByName("key"));
+        compiler.compile(smaModel);
+    }
+
+    @Test
+    public void testCompile_JoinOnPartitionKey() throws Exception {
+        KeyedSource first = KeyedSource.newTemplate(500, 7);
+        KeyedSource second = KeyedSource.newTemplate(500, 7);
+        ProcessingModel joinModel = joinModel(first, second, "key");
+
+        PartitionedEsperCompiler compiler = partitionedCompiler();
+        compiler.setPartitionKey(first, first.getOutput().getAttributeByName("key"));
+        compiler.setPartitionKey(second, second.getOutput().getAttributeByName("key"));
+        run(compiler.compile(joinModel));
+
+        assertTrue("Expected the join to produce output", output.size() > 0);
+    }
+
+    @Test(expected = ValidationException.class)
+    public void testCompile_JoinOfPartitionedAndUnpartitionedSource() throws Exception {
+        KeyedSource first = KeyedSource.newTemplate(500, 7);
+        KeyedSource second = KeyedSource.newTemplate(500, 7);
+        ProcessingModel joinModel = joinModel(first, second, "key");
+
+        PartitionedEsperCompiler compiler = partitionedCompiler();
+        compiler.setPartitionKey(first, first.getOutput().getAttributeByName("key"));
+        compiler.compile(joinModel);
+    }
+
+    @Test(expected = ValidationException.class)
+    public void testCompile_JoinNotOnPartitionKey() throws Exception {
+        KeyedSource first = KeyedSource.newTemplate(500, 7);
+        KeyedSource second = KeyedSource.newTemplate(500, 7);
+        ProcessingModel joinModel = joinModel(first, second, "value");
+
+        PartitionedEsperCompiler compiler = partitionedCompiler();
+        compiler.setPartitionKey(first, first.getOutput().getAttributeByName("key"));
+        compiler.setPartitionKey(second, second.getOutput().getAttributeByName("key"));
+        compiler.compile(joinModel);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetPartitionKey_UnknownAttribute() throws Exception {
+        new PartitionedEsperCompiler(2).setPartitionKey(source, Attribute.doubleAttribute("unknown"));
+    }
+
+    private PartitionedEsperCompiler partitionedCompiler() {
+        PartitionedEsperCompiler compiler = new PartitionedEsperCompiler(4);
+        compiler.setStandardOut(stream);
+        compiler.setStandardError(stream);
+
+        return compiler;
+    }
+
+    private static Sma smaOn(KeyedSource keyedSource) throws ValidationException {
+        Sma sma = Sma.newTemplate();
+        sma.setWindowLength(3);
+        sma.getInput().connectSource(keyedSource);
+        sma.getInput().setSourceAttribute("value");
+
+        return sma;
+    }
+
+    private static ProcessingModel modelWithSink(KeyedSource keyedSource, Source sinkSource) {
+        ConsoleSink sink = ConsoleSink.newTemplate();
+        sink.getInput().connectSource(sinkSource);
+
+        ProcessingModel keyedModel = new ProcessingModel("keyed");
+        keyedModel.addExternalEventSource(keyedSource);
+        keyedModel.addExternalSink(sink);
+
+        return keyedModel;
+    }
+
+    private static ProcessingModel joinModel(KeyedSource first, KeyedSource second, String joinAttributeName)
+            throws ValidationException {
+        Addition addition = Addition.newTemplate();
+        ProcessorInput firstInput = addition.getFirstInput();
+        ProcessorInput secondInput = addition.getSecondInput();
+        firstInput.connectSource(first);
+        firstInput.setSourceAttribute("value");
+        secondInput.connectSource(second);
+        secondInput.setSourceAttribute("value");
+
+        ProcessorJoin join = addition.getJoins().get(0);
+        join.setJoinAttributeForInput(firstInput, first.getOutput().getAttributeByName(joinAttributeName));
+        join.setJoinAttributeForInput(secondInput, second.getOutput().getAttributeByName(joinAttributeName));
+
+        ProcessingModel joinModel = modelWithSink(first, addition);
+        joinModel.addExternalEventSource(second);
+        joinModel.addProcessor(addition);
+
+        return joinModel;
+    }
+
+    /**
+     * Checks that the sink received every event, and the events of every key in the order they were sent
+     */
+    private void assertValuesInOrderPerKey(int numberOfKeys, int numberOfEvents) {
+        Pattern pattern = Pattern.compile("key=([0-9.]+).*value=([0-9.]+)|value=([0-9.]+).*key=([0-9.]+)");
+        double[] lastValues = new double[numberOfKeys];
+        Arrays.fill(lastValues, -1);
+        int count = 0;
+
+        for (String line : output.toString().split("\\r?\\n")) {
+            Matcher matcher = pattern.matcher(line);
+            if (!matcher.find()) {
+                continue;
+            }
+            int key = (int) Double.parseDouble(matcher.group(1) != null ? matcher.group(1) : matcher.group(4));
+            double value = Double.parseDouble(matcher.group(1) != null ? matcher.group(2) : matcher.group(3));
+
+            assertTrue("Event " + value + " of key " + key + " arrived out of order", value > lastValues[key]);
+            lastValues[key] = value;
+            count++;
+        }
+
+        assertThat(count, is(numberOfEvents));
+    }
+
+    private static void run(ProcessingRuntime runtime) {
+        runtime.start();
+        runtime.shutdown();
+    }
+
+    private List<String> sortedLines() {
+        List<String> lines = Lists.newArrayList(Arrays.asList(output.toString().split("\\r?\\n")));
+        lines.remove("");
+        Collections.sort(lines);
+
+        return lines;
+    }
+}
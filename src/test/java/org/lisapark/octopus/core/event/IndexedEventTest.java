@@ -0,0 +1,67 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.event;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class IndexedEventTest {
+
+    private final EventSchema schema = EventSchema.withAttributeNames(Arrays.asList("price", "volume", "symbol"));
+
+    @Test
+    public void testFromMap() {
+        IndexedEvent event = IndexedEvent.fromMap(schema, ImmutableMap.of("price", 1.5, "symbol", "X", "other", 1));
+
+        assertThat(event.getDouble(schema.indexOf("price"), 0), is(1.5));
+        assertThat(event.getAttributeAsDouble("price"), is(1.5));
+        assertThat(event.getAttributeAsString("symbol"), is("X"));
+        assertThat(event.getAttributeAsLong("volume"), is(nullValue()));
+        assertThat(event.getAttributeAsInteger("other"), is(nullValue()));
+    }
+
+    @Test
+    public void testGetData() {
+        IndexedEvent event = new IndexedEvent(schema);
+        Map<String, Object> data = event.getData();
+        data.put("volume", 10L);
+
+        assertThat(event.get(schema.indexOf("volume")), is((Object) 10L));
+        assertThat(data.size(), is(1));
+        assertThat(new Event(data).getData(), is((Map<String, Object>) ImmutableMap.<String, Object>of("volume", 10L)));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testGetData_UnknownAttribute() {
+        new IndexedEvent(schema).getData().put("other", 1);
+    }
+
+    @Test
+    public void testCopyTo() {
+        EventSchema wider = EventSchema.unionOf(Arrays.asList(
+                EventSchema.withAttributeNames(Arrays.asList("average")), schema));
+        IndexedEvent event = IndexedEvent.fromMap(schema, ImmutableMap.of("price", 1.5, "volume", 10L));
+
+        IndexedEvent target = new IndexedEvent(wider);
+        target.set(0, 2.0);
+        event.copyTo(target, schema.indexesIn(wider));
+
+        assertThat(target.getData(), is((Map<String, Object>) ImmutableMap.<String, Object>of(
+                "average", 2.0, "price", 1.5, "volume", 10L)));
+    }
+}
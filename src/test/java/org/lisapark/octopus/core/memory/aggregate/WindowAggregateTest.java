@@ -0,0 +1,86 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.memory.aggregate;
+
+import org.junit.Test;
+import org.lisapark.octopus.core.memory.heap.HeapPrimitiveMemoryProvider;
+
+import java.util.Random;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class WindowAggregateTest {
+
+    private static final double DELTA = 1e-9;
+
+    private static WindowAggregate newAggregate(int windowLength) {
+        return new WindowAggregate(new HeapPrimitiveMemoryProvider().createDoubleCircularBuffer(windowLength));
+    }
+
+    @Test
+    public void testAggregates_Empty() {
+        WindowAggregate aggregate = newAggregate(3);
+
+        assertThat(aggregate.sum(), is(0.0));
+        assertTrue(Double.isNaN(aggregate.mean()));
+        assertTrue(Double.isNaN(aggregate.min()));
+        assertTrue(Double.isNaN(aggregate.variance()));
+    }
+
+    @Test
+    public void testAggregates_MatchWindow() {
+        int windowLength = 7;
+        WindowAggregate aggregate = newAggregate(windowLength);
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100; ++i) {
+            aggregate.add(random.nextDouble() * 100);
+
+            double sum = 0;
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            for (int j = 0; j < aggregate.size(); ++j) {
+                sum += aggregate.get(j);
+                min = Math.min(min, aggregate.get(j));
+                max = Math.max(max, aggregate.get(j));
+            }
+            double mean = sum / aggregate.size();
+            double squaredDeviations = 0;
+            for (int j = 0; j < aggregate.size(); ++j) {
+                squaredDeviations += (aggregate.get(j) - mean) * (aggregate.get(j) - mean);
+            }
+
+            assertThat(aggregate.size(), is(Math.min(i + 1, windowLength)));
+            assertEquals(sum, aggregate.sum(), DELTA);
+            assertEquals(mean, aggregate.mean(), DELTA);
+            assertThat(aggregate.min(), is(min));
+            assertThat(aggregate.max(), is(max));
+            if (aggregate.size() > 1) {
+                assertEquals(squaredDeviations / (aggregate.size() - 1), aggregate.variance(), DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void testAggregates_NaNEvicted() {
+        WindowAggregate aggregate = newAggregate(2);
+        aggregate.add(Double.NaN);
+        aggregate.add(1.0);
+        aggregate.add(2.0);
+        aggregate.add(3.0);
+
+        assertThat(aggregate.mean(), is(2.5));
+        assertThat(aggregate.min(), is(2.0));
+    }
+}
@@ -0,0 +1,95 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.memory.heap;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.lisapark.octopus.core.memory.MemoryMark;
+
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class HeapDoubleCircularBufferTest {
+
+    @Test
+    public void testAdd_BeforeFull() {
+        HeapDoubleCircularBuffer buffer = new HeapDoubleCircularBuffer(3);
+        buffer.add(1.0);
+        buffer.add(2.0);
+
+        assertThat(buffer.size(), is(2));
+        assertThat(buffer.get(0), is(1.0));
+        assertThat(buffer.get(1), is(2.0));
+        assertThat(buffer.sum(), is(3.0));
+        assertThat(buffer.mean(), is(1.5));
+    }
+
+    @Test
+    public void testAdd_Wrapped() {
+        HeapDoubleCircularBuffer buffer = new HeapDoubleCircularBuffer(3);
+        for (double value = 1; value <= 5; ++value) {
+            buffer.add(value);
+        }
+
+        assertThat(buffer.size(), is(3));
+        assertThat(Lists.newArrayList(buffer.values()), is(Lists.newArrayList(3.0, 4.0, 5.0)));
+        assertThat(buffer.sum(), is(12.0));
+        assertThat(buffer.min(), is(3.0));
+        assertThat(buffer.max(), is(5.0));
+    }
+
+    @Test
+    public void testAggregates_Empty() {
+        HeapDoubleCircularBuffer buffer = new HeapDoubleCircularBuffer(3);
+
+        assertThat(buffer.sum(), is(0.0));
+        assertTrue(Double.isNaN(buffer.mean()));
+        assertTrue(Double.isNaN(buffer.min()));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGet_OutOfRange() {
+        HeapDoubleCircularBuffer buffer = new HeapDoubleCircularBuffer(3);
+        buffer.add(1.0);
+
+        buffer.get(1);
+    }
+
+    @Test
+    public void testMark_CopiedBeforeNextAdd() {
+        HeapDoubleCircularBuffer buffer = new HeapDoubleCircularBuffer(3);
+        buffer.add(1.0);
+        buffer.add(2.0);
+        buffer.add(3.0);
+
+        MemoryMark<Double> mark = buffer.mark();
+        buffer.add(4.0);
+        buffer.add(5.0);
+
+        assertThat(mark.values(), is((List<Double>) Lists.newArrayList(1.0, 2.0, 3.0)));
+        assertThat(Lists.newArrayList(buffer.values()), is(Lists.newArrayList(3.0, 4.0, 5.0)));
+    }
+
+    @Test
+    public void testMark_CopiedWhenRead() {
+        HeapDoubleCircularBuffer buffer = new HeapDoubleCircularBuffer(3);
+        buffer.add(1.0);
+
+        MemoryMark<Double> mark = buffer.mark();
+        assertThat(mark.values(), is((List<Double>) Lists.newArrayList(1.0)));
+
+        buffer.add(2.0);
+        assertThat(mark.values(), is((List<Double>) Lists.newArrayList(1.0)));
+    }
+}
@@ -0,0 +1,109 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.memory.offheap;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.lisapark.octopus.core.memory.DoubleMemory;
+import org.lisapark.octopus.core.memory.MarkableMemory;
+import org.lisapark.octopus.core.memory.Memory;
+import org.lisapark.octopus.core.memory.MemoryMark;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class OffHeapMemoryProviderTest {
+
+    private final OffHeapMemoryProvider provider = new OffHeapMemoryProvider();
+
+    @Test
+    public void testCircularBuffer_Wrapped() {
+        Memory<Double> memory = provider.createCircularBuffer(3);
+        for (double value = 1; value <= 5; ++value) {
+            memory.add(value);
+        }
+
+        assertThat(Lists.newArrayList(memory.values()), is(Lists.newArrayList(3.0, 4.0, 5.0)));
+    }
+
+    @Test
+    public void testCircularBuffer_Strings() {
+        Memory<String> memory = provider.createCircularBuffer(2);
+        memory.add("first");
+        memory.add(null);
+        memory.add("third");
+
+        assertThat(Lists.newArrayList(memory.values()), is(Lists.newArrayList("third")));
+    }
+
+    @Test
+    public void testCircularBuffer_LeadingNullsTakeSlots() {
+        Memory<Double> memory = provider.createCircularBuffer(3);
+        memory.add(null);
+        memory.add(null);
+        memory.add(1.0);
+        memory.add(2.0);
+
+        assertThat(Lists.newArrayList(memory.values()), is(Lists.newArrayList(1.0, 2.0)));
+
+        Memory<BigDecimal> onHeap = provider.createCircularBuffer(3);
+        onHeap.add(null);
+        onHeap.add(null);
+        onHeap.add(BigDecimal.ONE);
+        onHeap.add(BigDecimal.TEN);
+
+        assertThat(Lists.newArrayList(onHeap.values()), is(Lists.newArrayList(BigDecimal.ONE, BigDecimal.TEN)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCircularBuffer_StringTooLong() {
+        provider.setMaximumStringLength(3);
+        Memory<String> memory = provider.createCircularBuffer(2);
+        memory.add("four");
+    }
+
+    @Test
+    public void testCircularBuffer_UnsupportedTypeOnHeap() {
+        Memory<BigDecimal> memory = provider.createCircularBuffer(2);
+        memory.add(BigDecimal.ONE);
+        memory.add(BigDecimal.TEN);
+
+        assertThat(memory.values().size(), is(2));
+    }
+
+    @Test
+    public void testCircularBuffer_Mark() {
+        MarkableMemory<String> memory = (MarkableMemory<String>) provider.<String>createCircularBuffer(2);
+        memory.add("first");
+        memory.add("second");
+
+        MemoryMark<String> mark = memory.mark();
+        memory.add("third");
+
+        assertThat(mark.values(), is((List<String>) Lists.newArrayList("first", "second")));
+        assertThat(Lists.newArrayList(memory.values()), is(Lists.newArrayList("second", "third")));
+    }
+
+    @Test
+    public void testDoubleCircularBuffer_Wrapped() {
+        DoubleMemory memory = provider.createDoubleCircularBuffer(3);
+        for (double value = 1; value <= 5; ++value) {
+            memory.add(value);
+        }
+
+        assertThat(memory.get(0), is(3.0));
+        assertThat(memory.sum(), is(12.0));
+        assertThat(memory.max(), is(5.0));
+    }
+}
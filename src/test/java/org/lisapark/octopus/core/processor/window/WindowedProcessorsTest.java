@@ -0,0 +1,79 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.processor.window;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.lisapark.octopus.core.compiler.dataflow.ValuesSource;
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.memory.Memory;
+import org.lisapark.octopus.core.memory.MemoryProvider;
+import org.lisapark.octopus.core.memory.heap.HeapPrimitiveMemoryProvider;
+import org.lisapark.octopus.core.processor.CompiledProcessor;
+import org.lisapark.octopus.core.processor.Sma;
+import org.lisapark.octopus.core.runtime.basic.BasicProcessorContext;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class WindowedProcessorsTest {
+
+    private static final int EVENT_COUNT = 100000;
+
+    private final MemoryProvider memoryProvider = new HeapPrimitiveMemoryProvider();
+    private Sma sma;
+
+    @Before
+    public void setUp() throws Exception {
+        sma = Sma.newTemplate();
+        sma.getInput().connectSource(ValuesSource.newTemplate("value", 0));
+        sma.getInput().setSourceAttribute("value");
+        sma.setWindowLength(25);
+    }
+
+    @Test
+    public void testCompile_SameAveragesAsSma() throws Exception {
+        CompiledProcessor<Double> original = sma.compile();
+        BasicProcessorContext<Double> originalCtx = contextFor(sma.createMemoryForProcessor(memoryProvider));
+
+        CompiledProcessor<?> exact = WindowedProcessors.compile(sma, false);
+        BasicProcessorContext<Double> exactCtx = contextFor(WindowedProcessors.createMemoryForProcessor(sma, memoryProvider, false));
+
+        CompiledProcessor<?> incremental = WindowedProcessors.compile(sma, true);
+        BasicProcessorContext<Double> incrementalCtx = contextFor(WindowedProcessors.createMemoryForProcessor(sma, memoryProvider, true));
+
+        Random random = new Random(17);
+        for (int i = 0; i < EVENT_COUNT; ++i) {
+            Map<Integer, Event> eventsByInputId = Collections.singletonMap(1, new Event("value", random.nextDouble() * 1000));
+
+            Double expected = (Double) original.processEvent(originalCtx, eventsByInputId);
+            // without incremental aggregates the averages have to be exactly the same
+            assertThat((Double) process(exact, exactCtx, eventsByInputId), is(expected));
+            assertEquals(expected, (Double) process(incremental, incrementalCtx, eventsByInputId), 1e-9);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object process(CompiledProcessor<?> processor, BasicProcessorContext<Double> ctx,
+                                  Map<Integer, Event> eventsByInputId) {
+        return ((CompiledProcessor<Double>) processor).processEvent(ctx, eventsByInputId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BasicProcessorContext<Double> contextFor(Memory<?> memory) {
+        return new BasicProcessorContext<Double>(System.out, System.err, (Memory<Double>) memory);
+    }
+}
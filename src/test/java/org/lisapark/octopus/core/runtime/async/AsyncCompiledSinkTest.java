@@ -0,0 +1,221 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.async;
+
+import com.google.common.collect.Lists;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.compiler.Compiler;
+import org.lisapark.octopus.core.compiler.dataflow.ValuesSource;
+import org.lisapark.octopus.core.compiler.esper.EsperCompiler;
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.processor.Sma;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.runtime.SinkContext;
+import org.lisapark.octopus.core.sink.external.CompiledExternalSink;
+import org.lisapark.octopus.core.sink.external.ConsoleSink;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncCompiledSinkTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testProcessEvent_SpilledEventsKeepTheirOrder() throws Exception {
+        RecordingSink delegate = new RecordingSink(1);
+        File spillFile = new File(folder.getRoot(), "sink.spill");
+        AsyncCompiledSink sink = new AsyncCompiledSink(ConsoleSink.newTemplate(), delegate, 16, 10, 4,
+                Backpressure.SPILL, spillFile);
+
+        for (int i = 0; i < 1000; ++i) {
+            sink.processEvent(null, eventWithValue(i));
+        }
+        sink.close();
+
+        assertThat(delegate.values.size(), is(1000));
+        for (int i = 0; i < 1000; ++i) {
+            assertThat(delegate.values.get(i), is(i));
+        }
+        for (int batchSize : delegate.batchSizes) {
+            assertTrue("Expected batches of at most 16 events", batchSize <= 16);
+        }
+        assertTrue("Expected events to be spilled", sink.getSpilledCount() > 0);
+        assertThat(sink.getEventCount(), is(1000L));
+        assertThat(spillFile.exists(), is(false));
+    }
+
+    @Test
+    public void testProcessEvent_UnwritableSpillFileKeepsTheOrder() throws Exception {
+        RecordingSink delegate = new RecordingSink(1);
+        // the parent of the spill file is a file, so nothing can be spilled
+        File spillFile = new File(folder.newFile("not-a-directory"), "sink.spill");
+        AsyncCompiledSink sink = new AsyncCompiledSink(ConsoleSink.newTemplate(), delegate, 16, 10, 4,
+                Backpressure.SPILL, spillFile);
+
+        for (int i = 0; i < 200; ++i) {
+            sink.processEvent(null, eventWithValue(i));
+        }
+        sink.close();
+
+        assertThat(delegate.values.size(), is(200));
+        for (int i = 0; i < 200; ++i) {
+            assertThat(delegate.values.get(i), is(i));
+        }
+        assertThat(sink.getSpilledCount(), is(0L));
+    }
+
+    @Test
+    public void testProcessEvent_FailedBatchesAreCountedSeparately() throws Exception {
+        RecordingSink delegate = new RecordingSink(0) {
+            @Override
+            public void processEvents(SinkContext ctx, List<Map<Integer, Event>> eventsByInputId) {
+                if (eventsByInputId.get(0).get(1).getAttributeAsInteger("value") == 0) {
+                    throw new IllegalStateException("first batch fails");
+                }
+                super.processEvents(ctx, eventsByInputId);
+            }
+        };
+        AsyncCompiledSink sink = new AsyncCompiledSink(ConsoleSink.newTemplate(), delegate, 4, 1000, 100,
+                Backpressure.BLOCK, null);
+
+        for (int i = 0; i < 12; ++i) {
+            sink.processEvent(null, eventWithValue(i));
+        }
+        sink.close();
+
+        assertThat(sink.getFailedCount() + sink.getEventCount(), is(12L));
+        assertThat(sink.getEventCount(), is((long) delegate.values.size()));
+        assertTrue("Expected the first batch to fail", sink.getFailedCount() > 0);
+    }
+
+    @Test
+    public void testProcessEvent_DropOldestKeepsNewestEvents() throws Exception {
+        final CountDownLatch released = new CountDownLatch(1);
+        RecordingSink delegate = new RecordingSink(0) {
+            @Override
+            public void processEvents(SinkContext ctx, List<Map<Integer, Event>> eventsByInputId) {
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.processEvents(ctx, eventsByInputId);
+            }
+        };
+        AsyncCompiledSink sink = new AsyncCompiledSink(ConsoleSink.newTemplate(), delegate, 1, 0, 2,
+                Backpressure.DROP_OLDEST, null);
+
+        for (int i = 0; i < 10; ++i) {
+            sink.processEvent(null, eventWithValue(i));
+        }
+        released.countDown();
+        sink.close();
+
+        assertThat(delegate.values.size() + sink.getDroppedCount(), is(10L));
+        assertThat(delegate.values.get(delegate.values.size() - 1), is(9));
+        // the worker holds at most one event while it waits, the queue holds two more
+        assertTrue("Expected events to be dropped", sink.getDroppedCount() >= 7);
+    }
+
+    @Test
+    public void testAsyncCopyOf_SameOutputAsSynchronousSinks() throws Exception {
+        double[] values = new double[200];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = (i * 7) % 5;
+        }
+        ValuesSource source = ValuesSource.newTemplate("value", values);
+
+        Sma sma = Sma.newTemplate();
+        sma.getInput().connectSource(source);
+        sma.getInput().setSourceAttribute("value");
+        sma.setWindowLength(2);
+
+        ConsoleSink consoleSink = ConsoleSink.newTemplate();
+        consoleSink.getInput().connectSource(sma);
+
+        ProcessingModel model = new ProcessingModel("async");
+        model.addExternalEventSource(source);
+        model.addProcessor(sma);
+        model.addExternalSink(consoleSink);
+
+        AsyncSinks asyncSinks = new AsyncSinks(8, 5, 4, Backpressure.SPILL, folder.getRoot());
+        String asyncOutput = run(new EsperCompiler(), asyncSinks.asyncCopyOf(model), asyncSinks);
+
+        assertTrue("Expected the model to produce output", asyncOutput.length() > 0);
+        assertThat(asyncOutput, is(run(new EsperCompiler(), model, null)));
+        assertThat(asyncSinks.getCompiledSinks().size(), is(1));
+    }
+
+    private String run(Compiler compiler, ProcessingModel model, AsyncSinks asyncSinks) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream stream = new PrintStream(output, true);
+        compiler.setStandardOut(stream);
+        compiler.setStandardError(stream);
+
+        ProcessingRuntime runtime = compiler.compile(model);
+        runtime.start();
+        runtime.shutdown();
+        if (asyncSinks != null) {
+            asyncSinks.close();
+        }
+
+        return output.toString();
+    }
+
+    private static Map<Integer, Event> eventWithValue(int value) {
+        return Collections.singletonMap(1, new Event("value", value));
+    }
+
+    private static class RecordingSink extends CompiledExternalSink implements BatchSink {
+        final List<Integer> values = Lists.newArrayList();
+        final List<Integer> batchSizes = Lists.newArrayList();
+        private final long sleepMillis;
+
+        RecordingSink(long sleepMillis) {
+            super(ConsoleSink.newTemplate());
+            this.sleepMillis = sleepMillis;
+        }
+
+        @Override
+        public void processEvent(SinkContext ctx, Map<Integer, Event> eventsByInputId) {
+            values.add(eventsByInputId.get(1).getAttributeAsInteger("value"));
+        }
+
+        @Override
+        public void processEvents(SinkContext ctx, List<Map<Integer, Event>> eventsByInputId) {
+            batchSizes.add(eventsByInputId.size());
+            for (Map<Integer, Event> events : eventsByInputId) {
+                processEvent(ctx, events);
+            }
+            if (sleepMillis > 0) {
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
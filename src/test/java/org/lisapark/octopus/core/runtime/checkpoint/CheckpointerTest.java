@@ -0,0 +1,123 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.checkpoint;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.compiler.dataflow.ValuesSource;
+import org.lisapark.octopus.core.compiler.incremental.IncrementalEsperCompiler;
+import org.lisapark.octopus.core.processor.Sma;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.sink.external.ConsoleSink;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class CheckpointerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ProcessingModel model;
+    private Sma sma;
+
+    @Before
+    public void setUp() throws Exception {
+        ValuesSource source = ValuesSource.newTemplate("value", 1, 2, 3, 5, 6);
+
+        sma = Sma.newTemplate();
+        sma.setWindowLength(3);
+        sma.getInput().connectSource(source);
+        sma.getInput().setSourceAttribute("value");
+
+        ConsoleSink sink = ConsoleSink.newTemplate();
+        sink.getInput().connectSource(sma);
+
+        model = new ProcessingModel("checkpoint");
+        model.addExternalEventSource(source);
+        model.addProcessor(sma);
+        model.addExternalSink(sink);
+    }
+
+    @Test
+    public void testRestoreNewestSnapshot() throws Exception {
+        Checkpointer checkpointer = new Checkpointer(folder.getRoot(), "checkpoint", 60000);
+        run(checkpointer);
+        checkpointer.takeSnapshot();
+
+        checkpointer = new Checkpointer(folder.getRoot(), "checkpoint", 60000);
+        assertThat(checkpointer.restoreNewestSnapshot(), is(true));
+
+        // the window still holds 5 and 6 from the first run when the first value comes in
+        assertThat(firstLine(run(checkpointer)), is("Event{data={average=4.0, value=1.0}}"));
+    }
+
+    @Test
+    public void testRestoreNewestSnapshot_ProcessorChanged() throws Exception {
+        Checkpointer checkpointer = new Checkpointer(folder.getRoot(), "checkpoint", 60000);
+        run(checkpointer);
+        checkpointer.takeSnapshot();
+
+        sma.setWindowLength(2);
+        checkpointer = new Checkpointer(folder.getRoot(), "checkpoint", 60000);
+        checkpointer.restoreNewestSnapshot();
+
+        assertThat(firstLine(run(checkpointer)), is("Event{data={average=1.0, value=1.0}}"));
+    }
+
+    @Test
+    public void testTakeSnapshot_ModelNameIsPrefixOfAnother() throws Exception {
+        Checkpointer other = new Checkpointer(folder.getRoot(), "checkpoint-b", 60000);
+        File otherSnapshot = other.takeSnapshot();
+
+        Checkpointer checkpointer = new Checkpointer(folder.getRoot(), "checkpoint", 60000);
+        for (int i = 0; i < 3; ++i) {
+            checkpointer.takeSnapshot();
+        }
+
+        assertThat(otherSnapshot.exists(), is(true));
+        assertThat(folder.getRoot().listFiles().length, is(3));
+    }
+
+    @Test
+    public void testEscapeFileName() {
+        assertThat(Checkpointer.escapeFileName("a-b.c"), is("a-b.c"));
+        assertThat(Checkpointer.escapeFileName("a b"), is("a_0020b"));
+        assertThat(Checkpointer.escapeFileName("a_b"), is("a_005fb"));
+    }
+
+    private String firstLine(String output) {
+        return output.substring(0, output.indexOf('\n'));
+    }
+
+    private String run(Checkpointer checkpointer) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream stream = new PrintStream(output, true);
+
+        IncrementalEsperCompiler compiler = new IncrementalEsperCompiler();
+        compiler.setStandardOut(stream);
+        compiler.setStandardError(stream);
+        compiler.setCheckpointer(checkpointer);
+
+        ProcessingRuntime runtime = compiler.compile(checkpointer.checkpointedCopyOf(model));
+        runtime.start();
+        runtime.shutdown();
+
+        return output.toString();
+    }
+}
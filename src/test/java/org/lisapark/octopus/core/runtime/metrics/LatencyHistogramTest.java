@@ -0,0 +1,92 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.metrics;
+
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class LatencyHistogramTest {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    public void testBucketFor_Bounds() {
+        assertThat(LatencyHistogram.bucketFor(0), is(0));
+        assertThat(LatencyHistogram.bucketFor(1), is(1));
+        assertThat(LatencyHistogram.bucketFor(2), is(2));
+        assertThat(LatencyHistogram.bucketFor(3), is(2));
+        assertThat(LatencyHistogram.bucketFor(4), is(3));
+        assertThat(LatencyHistogram.bucketFor(1023), is(10));
+        assertThat(LatencyHistogram.bucketFor(1024), is(11));
+        assertThat(LatencyHistogram.bucketFor(Long.MAX_VALUE), is(63));
+
+        // every time is below the upper bound of its bucket and at least the upper bound of the bucket before
+        for (long nanos = 1; nanos < 5000; ++nanos) {
+            int bucket = LatencyHistogram.bucketFor(nanos);
+            assertThat(nanos < histogram.getUpperBoundNanos(bucket), is(true));
+            assertThat(nanos >= histogram.getUpperBoundNanos(bucket - 1), is(true));
+        }
+    }
+
+    @Test
+    public void testRecord_ZeroAndNegativeTimes() {
+        histogram.record(0);
+        histogram.record(-5);
+        histogram.record(Long.MIN_VALUE);
+
+        assertThat(histogram.getCount(0), is(3L));
+        assertThat(histogram.getTotalCount(), is(3L));
+        assertThat(histogram.getUpperBoundNanos(0), is(1L));
+        assertThat(histogram.getPercentileNanos(100), is(1L));
+    }
+
+    @Test
+    public void testRecord_LastBucketIsOpen() {
+        histogram.record(Long.MAX_VALUE);
+
+        assertThat(histogram.getCount(histogram.getNumberOfBuckets() - 1), is(1L));
+        assertThat(histogram.getPercentileNanos(50), is(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testGetPercentileNanos() {
+        // 50 times in [1, 2), 49 in [64, 128) and 1 in [512, 1024)
+        for (int i = 0; i < 50; ++i) {
+            histogram.record(1);
+        }
+        for (int i = 0; i < 49; ++i) {
+            histogram.record(100);
+        }
+        histogram.record(1000);
+
+        assertThat(histogram.getTotalCount(), is(100L));
+        assertThat(histogram.getPercentileNanos(0), is(2L));
+        assertThat(histogram.getPercentileNanos(50), is(2L));
+        assertThat(histogram.getPercentileNanos(50.5), is(128L));
+        assertThat(histogram.getPercentileNanos(99), is(128L));
+        assertThat(histogram.getPercentileNanos(99.5), is(1024L));
+        assertThat(histogram.getPercentileNanos(100), is(1024L));
+    }
+
+    @Test
+    public void testGetPercentileNanos_Empty() {
+        assertThat(histogram.getTotalCount(), is(0L));
+        assertThat(histogram.getPercentileNanos(50), is(0L));
+        assertThat(histogram.getPercentileNanos(99), is(0L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetPercentileNanos_OutOfRange() {
+        histogram.getPercentileNanos(100.5);
+    }
+}
@@ -0,0 +1,134 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.runtime.replay;
+
+import com.google.common.collect.Maps;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.compiler.dataflow.ValuesSource;
+import org.lisapark.octopus.core.compiler.incremental.IncrementalEsperCompiler;
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.processor.Sma;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.sink.external.ConsoleSink;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class EventLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadBack() throws Exception {
+        File directory = new File(folder.getRoot(), "log");
+        // small segments, so the events are spread over several of them
+        EventLogWriter writer = new EventLogWriter(directory, Arrays.asList("value", "name"), 1024);
+        for (int i = 0; i < 100; ++i) {
+            Map<String, Object> data = Maps.newHashMap();
+            data.put("value", (double) i);
+            data.put("name", i % 2 == 0 ? "even" : null);
+            data.put("other", (long) i);
+            writer.append(1000 + i, new Event(data));
+        }
+        writer.close();
+        assertTrue("Expected more than one segment", LogFormat.segmentFile(directory, 1).exists());
+
+        EventLogReader reader = new EventLogReader(directory);
+        for (int i = 0; i < 100; ++i) {
+            assertTrue(reader.next());
+            assertThat(reader.getTimestamp(), is(1000L + i));
+
+            Event event = reader.getEvent();
+            assertThat(event.getAttributeAsDouble("value"), is((double) i));
+            assertThat(event.getAttributeAsString("name"), is(i % 2 == 0 ? "even" : null));
+            assertThat(event.getAttributeAsLong("other"), is((long) i));
+            assertThat(event.getData().size(), is(3));
+        }
+        assertThat(reader.next(), is(false));
+    }
+
+    @Test
+    public void testSeek() throws Exception {
+        File directory = new File(folder.getRoot(), "log");
+        EventLogWriter writer = new EventLogWriter(directory, Arrays.asList("value"), 1024);
+        for (int i = 0; i < 3 * EventLogWriter.INDEX_INTERVAL; ++i) {
+            // two events per timestamp
+            writer.append(i / 2, new Event("value", (double) i));
+        }
+        writer.close();
+
+        EventLogReader reader = new EventLogReader(directory);
+        reader.seek(EventLogWriter.INDEX_INTERVAL);
+
+        assertTrue(reader.next());
+        assertThat(reader.getTimestamp(), is((long) EventLogWriter.INDEX_INTERVAL));
+        assertThat(reader.getEvent().getAttributeAsDouble("value"), is(2.0 * EventLogWriter.INDEX_INTERVAL));
+
+        reader.seek(3 * EventLogWriter.INDEX_INTERVAL);
+        assertThat(reader.next(), is(false));
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        ValuesSource source = ValuesSource.newTemplate("value", 1, 2, 3, 4, 5, 6);
+
+        Sma sma = Sma.newTemplate();
+        sma.getInput().connectSource(source);
+        sma.getInput().setSourceAttribute("value");
+
+        ConsoleSink sink = ConsoleSink.newTemplate();
+        sink.getInput().connectSource(sma);
+
+        ProcessingModel model = new ProcessingModel("replay");
+        model.addExternalEventSource(source);
+        model.addProcessor(sma);
+        model.addExternalSink(sink);
+
+        EventRecorder recorder = new EventRecorder(folder.getRoot());
+        String recordedOutput = run(recorder.recordingCopyOf(model));
+        assertThat(recorder.getRecordCount(), is(6L));
+        recorder.close();
+
+        ProcessingModel replayModel = ReplaySource.replayingCopyOf(model, folder.getRoot(),
+                ReplaySource.AS_FAST_AS_POSSIBLE, Long.MIN_VALUE);
+        assertTrue(replayModel.getExternalSources().iterator().next() instanceof ReplaySource);
+        String replayedOutput = run(replayModel);
+
+        assertTrue("Expected the model to produce output", recordedOutput.length() > 0);
+        assertThat(replayedOutput, is(recordedOutput));
+    }
+
+    private String run(ProcessingModel model) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream stream = new PrintStream(output, true);
+
+        IncrementalEsperCompiler compiler = new IncrementalEsperCompiler();
+        compiler.setStandardOut(stream);
+        compiler.setStandardError(stream);
+
+        ProcessingRuntime runtime = compiler.compile(model);
+        runtime.start();
+        runtime.shutdown();
+
+        return output.toString();
+    }
+}
@@ -0,0 +1,55 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.source.jdbc;
+
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class KeyRangesTest {
+
+    @Test
+    public void testLowerBounds() {
+        assertThat(KeyRanges.lowerBounds(1, 100, 4), is(new long[]{1, 26, 51, 76}));
+        assertThat(KeyRanges.lowerBounds(-5, 4, 2), is(new long[]{-5, 0}));
+    }
+
+    @Test
+    public void testLowerBounds_FewerKeysThanRanges() {
+        assertThat(KeyRanges.lowerBounds(7, 9, 8), is(new long[]{7, 8, 9}));
+        assertThat(KeyRanges.lowerBounds(7, 7, 8), is(new long[]{7}));
+    }
+
+    @Test
+    public void testLowerBounds_WholeLongRange() {
+        long[] bounds = KeyRanges.lowerBounds(Long.MIN_VALUE, Long.MAX_VALUE, 4);
+
+        assertThat(bounds.length, is(4));
+        assertThat(bounds[0], is(Long.MIN_VALUE));
+        for (int i = 1; i < bounds.length; ++i) {
+            assertThat(bounds[i] > bounds[i - 1], is(true));
+        }
+    }
+
+    @Test
+    public void testRangeQuery() {
+        String query = "select id, price from trades;";
+
+        assertThat(KeyRanges.rangeQuery(query, "id", 0, 1), is("select id, price from trades"));
+        assertThat(KeyRanges.rangeQuery(query, "id", 0, 3),
+                is("SELECT * FROM (select id, price from trades) octopus_range WHERE id < ? OR id IS NULL"));
+        assertThat(KeyRanges.rangeQuery(query, "id", 1, 3),
+                is("SELECT * FROM (select id, price from trades) octopus_range WHERE id >= ? AND id < ?"));
+        assertThat(KeyRanges.rangeQuery(query, "id", 2, 3),
+                is("SELECT * FROM (select id, price from trades) octopus_range WHERE id >= ?"));
+    }
+}
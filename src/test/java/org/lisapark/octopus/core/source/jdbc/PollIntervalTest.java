@@ -0,0 +1,41 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.source.jdbc;
+
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class PollIntervalTest {
+
+    @Test
+    public void testNext() {
+        PollInterval interval = new PollInterval(100, 1000);
+
+        // idle polls back off up to the maximum
+        assertThat(interval.next(0, 50), is(200L));
+        assertThat(interval.next(0, 50), is(400L));
+        assertThat(interval.next(0, 50), is(800L));
+        assertThat(interval.next(0, 50), is(1000L));
+
+        // busy polls tighten down to the minimum
+        assertThat(interval.next(10, 50), is(500L));
+        assertThat(interval.next(10, 50), is(250L));
+        assertThat(interval.next(10, 50), is(125L));
+        assertThat(interval.next(10, 50), is(100L));
+
+        // a full poll is followed right away
+        interval.next(0, 50);
+        assertThat(interval.next(50, 50), is(0L));
+        assertThat(interval.next(1, 50), is(100L));
+    }
+}
@@ -0,0 +1,145 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.core.source.jdbc;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lisapark.octopus.core.event.Event;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class WatermarkTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "source.watermark");
+    }
+
+    @Test
+    public void testReadFrom_MissingFile() throws IOException {
+        assertThat(Watermark.readFrom(file).isSet(), is(false));
+    }
+
+    @Test
+    public void testStoreTo() throws IOException {
+        Watermark watermark = new Watermark();
+        watermark.advance(41);
+        watermark.advance(null);
+        watermark.storeTo(file);
+
+        Watermark read = Watermark.readFrom(file);
+        assertThat(read.getType(), is(Watermark.Type.LONG));
+        assertThat(read.getValue(), is((Object) 41L));
+
+        Timestamp timestamp = Timestamp.valueOf("2013-05-01 10:15:30.123456789");
+        watermark.advance(timestamp);
+        watermark.storeTo(file);
+
+        read = Watermark.readFrom(file);
+        assertThat(read.getType(), is(Watermark.Type.TIMESTAMP));
+        assertThat(read.getValue(), is((Object) timestamp));
+
+        watermark.advance(new BigDecimal("12.50"));
+        watermark.storeTo(file);
+        assertThat(Watermark.readFrom(file).getValue(), is((Object) new BigDecimal("12.50")));
+
+        watermark.advance(2.5f);
+        watermark.storeTo(file);
+        read = Watermark.readFrom(file);
+        assertThat(read.getType(), is(Watermark.Type.DOUBLE));
+        assertThat(read.getValue(), is((Object) 2.5));
+    }
+
+    @Test
+    public void testReadFrom_OldFileAfterCrash() throws IOException {
+        Watermark watermark = new Watermark();
+        watermark.advance(7L);
+        watermark.storeTo(file);
+
+        // a crash after the old file was moved aside, but before the new one was renamed into place
+        assertThat(file.renameTo(new File(file.getPath() + ".old")), is(true));
+
+        assertThat(Watermark.readFrom(file).getValue(), is((Object) 7L));
+    }
+
+    @Test
+    public void testPollPage_TiesAcrossTheLimitAreHeldBack() {
+        Watermark watermark = new Watermark();
+        PollPage page = new PollPage(watermark, 4);
+        page.add(event(1), 10L);
+        page.add(event(2), 20L);
+        page.add(event(3), 30L);
+        // the limit cuts off the page here, there may be more rows with 30
+        page.add(event(4), 30L);
+        page.finish();
+
+        assertThat(page.getReleasedEvents().size(), is(2));
+        assertThat(watermark.getValue(), is((Object) 20L));
+        assertThat(page.getCutOffValue(), is((Object) null));
+    }
+
+    @Test
+    public void testPollPage_PageWithOnlyTies() {
+        Watermark watermark = new Watermark();
+        PollPage page = new PollPage(watermark, 3);
+        page.add(event(1), 30L);
+        page.add(event(2), 30L);
+        page.add(event(3), 30L);
+        page.finish();
+
+        assertThat(page.getReleasedEvents().isEmpty(), is(true));
+        assertThat(watermark.isSet(), is(false));
+        assertThat(page.getCutOffValue(), is((Object) 30L));
+    }
+
+    @Test
+    public void testPollPage_LastPage() {
+        Watermark watermark = new Watermark();
+        PollPage page = new PollPage(watermark, 4);
+        page.add(event(1), 10L);
+        page.add(event(2), 30L);
+        page.add(event(3), 30L);
+        page.finish();
+
+        assertThat(page.getReleasedEvents().size(), is(3));
+        assertThat(watermark.getValue(), is((Object) 30L));
+        assertThat(page.getCutOffValue(), is((Object) null));
+    }
+
+    @Test
+    public void testPollQuery() {
+        String query = "select id, price from trades;";
+
+        assertThat(PollingSqlQuerySource.pollQuery(query, "id", false),
+                is("SELECT * FROM (select id, price from trades) octopus_poll WHERE id IS NOT NULL ORDER BY id"));
+        assertThat(PollingSqlQuerySource.pollQuery(query, "id", true),
+                is("SELECT * FROM (select id, price from trades) octopus_poll WHERE id > ? ORDER BY id"));
+        assertThat(PollingSqlQuerySource.tieQuery(query, "id"),
+                is("SELECT * FROM (select id, price from trades) octopus_poll WHERE id = ?"));
+    }
+
+    private static Event event(int id) {
+        return new Event("id", id);
+    }
+}
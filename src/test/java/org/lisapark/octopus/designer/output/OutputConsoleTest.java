@@ -0,0 +1,73 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.designer.output;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class OutputConsoleTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private OutputLog log;
+    private OutputConsole console;
+
+    @Before
+    public void setUp() throws IOException {
+        log = OutputLog.createTemporary();
+        console = new OutputConsole(new OutputView(log));
+    }
+
+    @After
+    public void tearDown() {
+        log.close();
+    }
+
+    @Test
+    public void testNewOutputStream_LongLineIsNotCutInsideACharacter() throws IOException {
+        StringBuilder line = new StringBuilder("a");
+        for (int i = 0; i < 5000; ++i) {
+            line.append('\u00e9');
+        }
+
+        OutputStream out = console.newOutputStream(UTF_8);
+        // one byte at a time, so the stream has to hand the line over before it is complete
+        for (byte b : (line + "\n").getBytes(UTF_8)) {
+            out.write(b);
+        }
+        console.flush();
+
+        assertThat(log.getLineCount(), is(1));
+        assertThat(log.getLine(0, Integer.MAX_VALUE), is(line.toString()));
+    }
+
+    @Test
+    public void testNewOutputStream_FlushKeepsAPartialCharacter() throws IOException {
+        byte[] bytes = "caf\u00e9".getBytes(UTF_8);
+
+        OutputStream out = console.newOutputStream(UTF_8);
+        out.write(bytes, 0, bytes.length - 1);
+        out.flush();
+        out.write(bytes, bytes.length - 1, 1);
+        out.close();
+        console.flush();
+
+        assertThat(log.getLine(0, Integer.MAX_VALUE), is("caf\u00e9"));
+    }
+}
@@ -0,0 +1,189 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.designer.output;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class OutputLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private OutputLog log;
+
+    @Before
+    public void setUp() throws IOException {
+        // tiny chunks, so lines and offsets span several of them
+        log = newLog(1000, 1000);
+    }
+
+    @After
+    public void tearDown() {
+        log.close();
+    }
+
+    @Test
+    public void testAppend() throws IOException {
+        assertThat(log.getLineCount(), is(0));
+
+        log.append("first line\r\nsec");
+        assertThat(log.getLineCount(), is(2));
+        assertThat(log.getLine(1, 100), is("sec"));
+
+        log.append("ond line\n\nfourth été line\n");
+        assertThat(log.getLineCount(), is(4));
+        assertThat(log.getLine(0, 100), is("first line"));
+        assertThat(log.getLine(1, 100), is("second line"));
+        assertThat(log.getLine(2, 100), is(""));
+        assertThat(log.getLine(3, 100), is("fourth été line"));
+        assertThat(log.getLine(1, 3), is("sec"));
+        assertThat(log.getLongestLineLength(), is(18));
+    }
+
+    @Test
+    public void testFind() throws IOException {
+        for (int i = 0; i < 100; ++i) {
+            log.append(String.format("event %d%n", i));
+        }
+
+        assertThat(log.find("EVENT 4", 0), is(4));
+        assertThat(log.find("event 4", 5), is(40));
+        assertThat(log.find("event 100", 0), is(-1));
+    }
+
+    @Test
+    public void testOpenStream() throws IOException {
+        log.append("a\nbb\nccc\n");
+
+        assertThat(read(log.openStream(1, 2)), is("bb\nccc\n"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        log.writeTo(out);
+        assertThat(out.toString("UTF-8"), is("a\nbb\nccc\n"));
+
+        InputStream stream = log.openStream(0, 0);
+        log.clear();
+        assertThat(log.getLineCount(), is(0));
+        try {
+            read(stream);
+            fail("Stream should fail once the log is cleared");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDropsOldestLinesToKeepTheTextBound() throws IOException {
+        // 28 bytes, four lines of seven
+        log.close();
+        log = newLog(4, 100);
+
+        for (int i = 0; i < 10; ++i) {
+            log.append("line " + i + "\n");
+        }
+
+        assertThat(log.getDroppedLineCount(), is(6L));
+        assertThat(log.getLineCount(), is(5));
+        assertThat(log.getLine(0, 100), is("... 6 earlier lines of output dropped ..."));
+        assertThat(log.getLine(1, 100), is("line 6"));
+        assertThat(log.getLine(4, 100), is("line 9"));
+        assertThat(log.find("line 7", 0), is(2));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        log.writeTo(out);
+        assertThat(out.toString("UTF-8"), is("... 6 earlier lines of output dropped ...\nline 6\nline 7\nline 8\nline 9\n"));
+
+        log.clear();
+        assertThat(log.getDroppedLineCount(), is(0L));
+        assertThat(log.getLineCount(), is(0));
+    }
+
+    @Test
+    public void testDropsOldestLinesToKeepTheLineBound() throws IOException {
+        // room for the offsets of three lines and the line being written to
+        log.close();
+        log = newLog(1000, 2);
+
+        log.append("a\nb\nc\nd\ne\nf");
+
+        assertThat(log.getDroppedLineCount(), is(2L));
+        assertThat(log.getLineCount(), is(5));
+        assertThat(log.getLine(1, 100), is("c"));
+        assertThat(log.getLine(4, 100), is("f"));
+    }
+
+    @Test
+    public void testStreamFailsOnceItsLinesAreDropped() throws IOException {
+        log.close();
+        log = newLog(4, 100);
+
+        log.append("line 0\nline 1\nline 2\nline 3\n");
+        InputStream dropped = log.openStream(0, 0);
+        OutputLog.LineRange kept = log.selectLines(2, 3);
+
+        log.append("line 4\n");
+        assertThat(log.getLine(0, 100), is("... 1 earlier lines of output dropped ..."));
+        assertThat(read(kept.openStream()), is("line 2\nline 3\n"));
+        try {
+            read(dropped);
+            fail("Stream should fail once its lines are dropped");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCutsOffLongLines() throws IOException {
+        // a line is kept to seven bytes
+        log.close();
+        log = newLog(4, 100);
+
+        log.append("0123456789\n01");
+        log.append("23456789\n\u00e9\u00e9\u00e9\u00e9\u00e9\n");
+
+        assertThat(log.getLineCount(), is(3));
+        assertThat(log.getLine(0, 100), is("0123456"));
+        assertThat(log.getLine(1, 100), is("0123456"));
+        assertThat(log.getLine(2, 100), is("\u00e9\u00e9\u00e9"));
+        assertThat(log.getDroppedLineCount(), is(0L));
+    }
+
+    private OutputLog newLog(int dataChunks, int indexChunks) throws IOException {
+        File dataFile = new File(folder.getRoot(), "output-" + dataChunks + ".log");
+        File indexFile = new File(folder.getRoot(), "output-" + indexChunks + ".idx");
+
+        return new OutputLog(dataFile, indexFile, 7, dataChunks, 16, indexChunks);
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[3];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,115 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.designer.run;
+
+import org.junit.Test;
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.processor.Sma;
+import org.lisapark.octopus.core.runtime.metrics.ModelMetrics;
+import org.lisapark.octopus.core.runtime.metrics.NodeMetrics;
+import org.lisapark.octopus.core.sink.external.ConsoleSink;
+
+import java.util.UUID;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class ProfileReportTest {
+
+    /**
+     * The recorded times are at least the requested ones, the clock adds a little on top
+     */
+    private static final double DELTA = 0.01;
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    @Test
+    public void testCreateReport_SelfTimeAndShare() throws Exception {
+        Sma fastSma = Sma.newTemplate();
+        fastSma.setName("fast");
+        Sma slowSma = Sma.newTemplate();
+        slowSma.setName("slow");
+        Sma idleSma = Sma.newTemplate();
+        idleSma.setName("idle");
+        ConsoleSink sink = ConsoleSink.newTemplate();
+        sink.setName("sink");
+
+        ProcessingModel model = new ProcessingModel("profiled");
+        model.addProcessor(fastSma);
+        model.addProcessor(slowSma);
+        model.addProcessor(idleSma);
+        model.addExternalSink(sink);
+
+        ModelMetrics metrics = new ModelMetrics();
+        metrics.enableProfiling();
+        // the idle processor never processed an event, so it has no metrics and no entry
+        recordEvents(metrics, fastSma.getId(), 3, 1);
+        recordEvents(metrics, slowSma.getId(), 1, 6);
+        recordEvents(metrics, sink.getId(), 1, 1);
+
+        ProfileReport report = ProfileReport.createReport(model, metrics);
+
+        assertThat(report.getModelName(), is("profiled"));
+        assertThat(report.getEntries().size(), is(3));
+        assertEquals(10.0, (double) report.getTotalSelfNanos() / NANOS_PER_SECOND, DELTA);
+
+        // sorted by self time, highest first
+        ProfileReport.Entry slowEntry = report.getEntries().get(0);
+        assertThat(slowEntry.getNodeName(), is("slow"));
+        assertThat(slowEntry.getNodeType(), is("Processor"));
+        assertThat(slowEntry.getEvents(), is(1L));
+        assertEquals(6000.0, slowEntry.getSelfMillis(), DELTA * 1000);
+        assertEquals(0.6, report.getShare(slowEntry), DELTA);
+
+        ProfileReport.Entry fastEntry = report.getEntries().get(1);
+        assertThat(fastEntry.getNodeName(), is("fast"));
+        assertThat(fastEntry.getEvents(), is(3L));
+        assertEquals(3000.0, fastEntry.getSelfMillis(), DELTA * 1000);
+        assertEquals(1000000.0, fastEntry.getMeanMicros(), DELTA * 1000000);
+        assertEquals(0.3, report.getShare(fastEntry), DELTA);
+
+        ProfileReport.Entry sinkEntry = report.getEntries().get(2);
+        assertThat(sinkEntry.getNodeType(), is("Sink"));
+        assertEquals(0.1, report.getShare(sinkEntry), DELTA);
+
+        // the histogram bucket of one second is [2^29, 2^30) nanos
+        assertEquals(1L << 30, (long) (fastEntry.getP50Micros() * 1000));
+        assertEquals(1L << 30, (long) (fastEntry.getP99Micros() * 1000));
+    }
+
+    @Test
+    public void testGetShare_NoTimeRecorded() throws Exception {
+        Sma sma = Sma.newTemplate();
+        ProcessingModel model = new ProcessingModel("idle");
+        model.addProcessor(sma);
+
+        ModelMetrics metrics = new ModelMetrics();
+        metrics.metricsForNode(sma.getId());
+
+        ProfileReport report = ProfileReport.createReport(model, metrics);
+
+        assertThat(report.getTotalSelfNanos(), is(0L));
+        assertEquals(0.0, report.getShare(report.getEntries().get(0)), 0);
+        assertEquals(0.0, report.getEntries().get(0).getP50Micros(), 0);
+    }
+
+    /**
+     * Records events that each took the specified number of seconds, by starting them that long ago.
+     */
+    private static void recordEvents(ModelMetrics metrics, UUID nodeId, int events, long secondsPerEvent) {
+        NodeMetrics nodeMetrics = metrics.metricsForNode(nodeId);
+        for (int i = 0; i < events; ++i) {
+            long startTime = nodeMetrics.eventStarted() - secondsPerEvent * NANOS_PER_SECOND;
+            nodeMetrics.eventFinished(startTime, true);
+        }
+    }
+}
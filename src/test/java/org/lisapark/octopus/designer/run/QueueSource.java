@@ -0,0 +1,118 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.designer.run;
+
+import org.lisapark.octopus.core.Output;
+import org.lisapark.octopus.core.ValidationException;
+import org.lisapark.octopus.core.event.Attribute;
+import org.lisapark.octopus.core.event.Event;
+import org.lisapark.octopus.core.runtime.ProcessingRuntime;
+import org.lisapark.octopus.core.source.external.CompiledExternalSource;
+import org.lisapark.octopus.core.source.external.ExternalSource;
+
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Source that sends the values a test offers to it, one event at a time, until it is stopped. Copies share the
+ * queue, so the values reach whatever copy of the source has been compiled.
+ */
+public class QueueSource extends ExternalSource {
+
+    static final String ATTRIBUTE_NAME = "value";
+
+    private final BlockingQueue<Double> values;
+    private final boolean failCompile;
+
+    private QueueSource(UUID id, boolean failCompile) {
+        super(id, "Queue source", "Sends the values offered by a test");
+        this.values = new LinkedBlockingQueue<Double>();
+        this.failCompile = failCompile;
+    }
+
+    private QueueSource(UUID id, QueueSource copyFromSource) {
+        super(id, copyFromSource);
+        this.values = copyFromSource.values;
+        this.failCompile = copyFromSource.failCompile;
+    }
+
+    private QueueSource(QueueSource copyFromSource) {
+        super(copyFromSource);
+        this.values = copyFromSource.values;
+        this.failCompile = copyFromSource.failCompile;
+    }
+
+    @Override
+    public QueueSource newInstance() {
+        return new QueueSource(UUID.randomUUID(), this);
+    }
+
+    @Override
+    public QueueSource copyOf() {
+        return new QueueSource(this);
+    }
+
+    public static QueueSource newTemplate() throws ValidationException {
+        return newTemplate(false);
+    }
+
+    /**
+     * Creates a source that fails to compile, with a {@link ValidationException}.
+     */
+    public static QueueSource newFailingTemplate() throws ValidationException {
+        return newTemplate(true);
+    }
+
+    private static QueueSource newTemplate(boolean failCompile) throws ValidationException {
+        QueueSource source = new QueueSource(UUID.randomUUID(), failCompile);
+        source.setOutput(Output.outputWithId(1).setName("Output"));
+        source.getOutput().addAttribute(Attribute.doubleAttribute(ATTRIBUTE_NAME));
+
+        return source;
+    }
+
+    public void offer(double value) {
+        values.offer(value);
+    }
+
+    @Override
+    public CompiledExternalSource compile() throws ValidationException {
+        if (failCompile) {
+            throw new ValidationException("Queue source cannot be compiled");
+        }
+
+        return new CompiledExternalSource() {
+            private volatile boolean stopped;
+
+            @Override
+            public void startProcessingEvents(ProcessingRuntime runtime) {
+                while (!stopped) {
+                    try {
+                        Double value = values.poll(10, TimeUnit.MILLISECONDS);
+                        if (value != null) {
+                            runtime.sendEventFromSource(new Event(ATTRIBUTE_NAME, value), QueueSource.this);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+
+            @Override
+            public void stopProcessingEvents() {
+                stopped = true;
+            }
+        };
+    }
+}
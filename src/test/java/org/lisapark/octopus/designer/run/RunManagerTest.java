@@ -0,0 +1,181 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.designer.run;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.io.output.NullOutputStream;
+import org.junit.Before;
+import org.junit.Test;
+import org.lisapark.octopus.core.ProcessingModel;
+import org.lisapark.octopus.core.ValidationException;
+import org.lisapark.octopus.core.compiler.cache.CompiledRuntimeCache;
+import org.lisapark.octopus.core.sink.external.ConsoleSink;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class RunManagerTest {
+
+    private static final long TIMEOUT_MILLIS = 10000;
+    /**
+     * How long a paused source is given to send an event it should not send
+     */
+    private static final long PAUSED_MILLIS = 200;
+
+    private RecordingListener listener;
+    private RunManager runManager;
+    private QueueSource source;
+
+    @Before
+    public void setUp() throws Exception {
+        PrintStream nullStream = new PrintStream(new NullOutputStream());
+        listener = new RecordingListener();
+        runManager = new RunManager(listener, new CompiledRuntimeCache(nullStream, nullStream));
+        source = QueueSource.newTemplate();
+    }
+
+    @Test
+    public void testPauseBlocksSendsUntilResumed() throws Exception {
+        runManager.start(newModel(source));
+        awaitState(RunState.RUNNING);
+
+        source.offer(1);
+        awaitEventCount(1);
+
+        runManager.pause();
+        assertThat(runManager.getState(), is(RunState.PAUSED));
+        source.offer(2);
+        Thread.sleep(PAUSED_MILLIS);
+        assertThat(runManager.getEventCount(), is(1L));
+
+        runManager.resume();
+        assertThat(runManager.getState(), is(RunState.RUNNING));
+        awaitEventCount(2);
+
+        runManager.stop();
+        awaitState(RunState.IDLE);
+    }
+
+    @Test
+    public void testStopDrainsAndReachesIdle() throws Exception {
+        runManager.start(newModel(source));
+        awaitState(RunState.RUNNING);
+        source.offer(1);
+        awaitEventCount(1);
+
+        // the source is blocked by the pause when it is stopped, the event it holds is discarded
+        runManager.pause();
+        source.offer(2);
+        Thread.sleep(PAUSED_MILLIS);
+        runManager.stop();
+        awaitState(RunState.IDLE);
+
+        assertThat(runManager.getEventCount(), is(1L));
+        assertThat(listener.completed, is(true));
+        assertThat(listener.stopped, is(true));
+        assertThat(listener.failure, is((Throwable) null));
+        assertThat(listener.states, is((List<RunState>) Lists.newArrayList(RunState.COMPILING, RunState.RUNNING,
+                RunState.PAUSED, RunState.STOPPING, RunState.IDLE)));
+    }
+
+    @Test
+    public void testStopWhileCompiling() throws Exception {
+        runManager.start(newModel(source));
+        // the runner checks the state once compilation is done, so the stop may come before or after it
+        runManager.stop();
+        awaitState(RunState.IDLE);
+
+        assertThat(listener.completed, is(true));
+        assertThat(listener.stopped, is(true));
+        assertThat(runManager.getEventCount(), is(0L));
+    }
+
+    @Test
+    public void testFailedCompileIsReported() throws Exception {
+        runManager.start(newModel(QueueSource.newFailingTemplate()));
+        awaitState(RunState.IDLE);
+
+        assertThat(listener.completed, is(false));
+        assertThat(listener.failure, instanceOf(ValidationException.class));
+        assertThat(listener.states, is((List<RunState>) Lists.newArrayList(RunState.COMPILING, RunState.IDLE)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStartWhileActive() throws Exception {
+        runManager.start(newModel(source));
+        try {
+            runManager.start(newModel(QueueSource.newTemplate()));
+        } finally {
+            runManager.stop();
+            awaitState(RunState.IDLE);
+        }
+    }
+
+    private static ProcessingModel newModel(QueueSource source) {
+        ConsoleSink sink = ConsoleSink.newTemplate();
+        sink.getInput().connectSource(source);
+
+        ProcessingModel model = new ProcessingModel("run-" + source.getId());
+        model.addExternalEventSource(source);
+        model.addExternalSink(sink);
+
+        return model;
+    }
+
+    private void awaitState(RunState state) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!listener.states.contains(state) || runManager.getState() != state) {
+            if (System.currentTimeMillis() > deadline) {
+                fail(String.format("Run did not reach %s, states were %s", state, listener.states));
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private void awaitEventCount(long eventCount) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (runManager.getEventCount() < eventCount) {
+            if (System.currentTimeMillis() > deadline) {
+                fail(String.format("Only %d of %d events were sent", runManager.getEventCount(), eventCount));
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private static class RecordingListener implements RunListener {
+        private final List<RunState> states = new CopyOnWriteArrayList<RunState>();
+        private volatile boolean completed;
+        private volatile boolean stopped;
+        private volatile Throwable failure;
+
+        @Override
+        public void stateChanged(RunState newState) {
+            states.add(newState);
+        }
+
+        @Override
+        public void runCompleted(String modelName, long eventCount, long elapsedMillis, boolean stopped) {
+            this.stopped = stopped;
+            this.completed = true;
+        }
+
+        @Override
+        public void runFailed(String modelName, Throwable cause) {
+            this.failure = cause;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/* 
+ * Copyright (c) 2013 Lisa Park, Inc. (www.lisa-park.net).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Lisa Park, Inc. (www.lisa-park.net) - initial API and implementation and/or initial documentation
+ */
+package org.lisapark.octopus.util.jdbc;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ConnectionPoolTest {
+
+    private static final String URL = "jdbc:octopus-pool-test:db";
+
+    private final FakeDriver driver = new FakeDriver();
+    private ConnectionPool pool;
+
+    @Before
+    public void setUp() throws SQLException {
+        DriverManager.registerDriver(driver);
+        pool = new ConnectionPool(URL, null, null, 2, 4, 50);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        pool.close();
+        DriverManager.deregisterDriver(driver);
+    }
+
+    @Test
+    public void testGetConnection_ReusesConnectionsAndStatements() throws SQLException {
+        for (int i = 0; i < 3; ++i) {
+            Connection connection = pool.getConnection();
+            PreparedStatement statement = connection.prepareStatement("select 1");
+            statement.close();
+            connection.close();
+
+            assertThat(connection.isClosed(), is(true));
+        }
+
+        assertThat(driver.connectionsOpened.get(), is(1));
+        assertThat(driver.statementsPrepared.get(), is(1));
+        assertThat(pool.getMetrics().getConnectionsBorrowed(), is(3L));
+        assertThat(pool.getMetrics().getStatementCacheHits(), is(2L));
+        assertThat(pool.getMetrics().getConnectionsIdle(), is(1));
+    }
+
+    @Test
+    public void testGetConnection_ReplacesBrokenConnection() throws SQLException {
+        pool.getConnection().close();
+
+        driver.valid.set(false);
+        Connection connection = pool.getConnection();
+        driver.valid.set(true);
+
+        assertThat(driver.connectionsOpened.get(), is(2));
+        assertThat(pool.getMetrics().getValidationFailures(), is(1L));
+        connection.close();
+    }
+
+    @Test
+    public void testGetConnection_Bounded() throws SQLException {
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+
+        try {
+            pool.getConnection();
+            fail("Pool should not hand out more than two connections");
+        } catch (SQLException e) {
+            assertThat(pool.getMetrics().getBorrowTimeouts(), is(1L));
+        }
+
+        first.close();
+        pool.getConnection().close();
+        second.close();
+
+        assertThat(driver.connectionsOpened.get(), is(2));
+        assertThat(pool.getMetrics().getConnectionsInUse(), is(0));
+    }
+
+    /**
+     * Driver for the test url whose connections only count what is done with them
+     */
+    private static class FakeDriver implements Driver {
+        final AtomicInteger connectionsOpened = new AtomicInteger();
+        final AtomicInteger statementsPrepared = new AtomicInteger();
+        final AtomicBoolean valid = new AtomicBoolean(true);
+
+        @Override
+        public Connection connect(String url, Properties info) throws SQLException {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            connectionsOpened.incrementAndGet();
+
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class},
+                    new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            String name = method.getName();
+                            if (name.equals("prepareStatement")) {
+                                statementsPrepared.incrementAndGet();
+                                return Proxy.newProxyInstance(getClass().getClassLoader(),
+                                        new Class[]{PreparedStatement.class}, new InvocationHandler() {
+                                            @Override
+                                            public Object invoke(Object proxy, Method method, Object[] args) {
+                                                return null;
+                                            }
+                                        });
+                            } else if (name.equals("isValid")) {
+                                return valid.get();
+                            } else if (name.equals("getAutoCommit")) {
+                                return true;
+                            } else if (name.equals("isClosed")) {
+                                return false;
+                            }
+                            return null;
+                        }
+                    });
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url.startsWith("jdbc:octopus-pool-test:");
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        public Logger getParentLogger() {
+            return Logger.getLogger(FakeDriver.class.getName());
+        }
+    }
+}